@@ -0,0 +1,240 @@
+package com.ase.ism.wcdad;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+
+public class AdmissionController implements AutoCloseable {
+  private static final double EWMA_WEIGHT = 0.3;
+  private static final long MIN_RETRY_AFTER_SECONDS = 1;
+  private static final long MAX_RETRY_AFTER_SECONDS = 300;
+  private static final long DEFAULT_RETRY_AFTER_SECONDS = 5;
+  private static final long BLOCKED_RETRY_AFTER_SECONDS = 30;
+
+  private final Connection connection;
+  private final List<String> queueNames;
+  private final long maxInFlightBytes;
+  private final int maxInFlightJobs;
+  private final long maxQueueDepth;
+  private final long admissionTtlMillis;
+  private final PublishMetrics publishMetrics;
+  private final Map<String, Admission> admissions = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "c01-admission-poller");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private final LongAdder admitted = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+
+  private Channel pollChannel;
+  private volatile boolean brokerBlocked = false;
+  private volatile String brokerBlockedReason;
+  private volatile long queueDepth = 0;
+  private volatile long queueConsumers = 0;
+  private volatile double drainMessagesPerSecondEwma = -1;
+  private volatile double drainBytesPerSecondEwma = -1;
+  private long lastPollNanos = 0;
+  private long lastPollDepth = 0;
+  private long lastPollPublished = 0;
+
+  public AdmissionController(Connection connection, List<String> queueNames, long maxInFlightBytes,
+      int maxInFlightJobs, long maxQueueDepth, long admissionTtlMillis, long pollIntervalMs,
+      PublishMetrics publishMetrics) {
+    this.connection = connection;
+    this.queueNames = queueNames;
+    this.maxInFlightBytes = maxInFlightBytes;
+    this.maxInFlightJobs = maxInFlightJobs;
+    this.maxQueueDepth = maxQueueDepth;
+    this.admissionTtlMillis = admissionTtlMillis;
+    this.publishMetrics = publishMetrics;
+    connection.addBlockedListener(reason -> {
+      brokerBlocked = true;
+      brokerBlockedReason = reason;
+      System.err.println("[C01 Admission] Broker blocked publishers: " + reason);
+    }, () -> {
+      brokerBlocked = false;
+      brokerBlockedReason = null;
+      System.out.println("[C01 Admission] Broker unblocked publishers.");
+    });
+    poller.scheduleWithFixedDelay(this::poll, 0, pollIntervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  public synchronized Decision tryAdmit(String jobId, long bytes) {
+    expireStaleAdmissions();
+    String reason = null;
+    long retryAfterSeconds = 0;
+    long inFlightBytes = inFlightBytes();
+    if (brokerBlocked) {
+      reason = "Message broker is blocking publishers (" + brokerBlockedReason + ")";
+      retryAfterSeconds = BLOCKED_RETRY_AFTER_SECONDS;
+    } else if (queueDepth > maxQueueDepth) {
+      reason = "Processing queue holds " + queueDepth + " messages (limit " + maxQueueDepth + ")";
+      retryAfterSeconds = secondsToDrain(queueDepth - maxQueueDepth, drainMessagesPerSecondEwma);
+    } else if (admissions.size() >= maxInFlightJobs) {
+      reason = admissions.size() + " jobs are already in flight (limit " + maxInFlightJobs + ")";
+      retryAfterSeconds = secondsToDrain(oldestAdmissionBytes(), drainBytesPerSecondEwma);
+    } else if (!admissions.isEmpty() && inFlightBytes + bytes > maxInFlightBytes) {
+      reason = inFlightBytes + " bytes are already in flight (limit " + maxInFlightBytes + ")";
+      retryAfterSeconds = secondsToDrain(inFlightBytes + bytes - maxInFlightBytes, drainBytesPerSecondEwma);
+    }
+    if (reason != null) {
+      rejected.increment();
+      System.err.println("[C01 Admission] Rejected job " + jobId + " (" + bytes + " bytes): " + reason
+          + ". Retry after " + retryAfterSeconds + "s.");
+      return new Decision(false, reason, retryAfterSeconds);
+    }
+    admissions.put(jobId, new Admission(bytes, System.nanoTime()));
+    admitted.increment();
+    return new Decision(true, null, 0);
+  }
+
+  public void release(String jobId, boolean completed) {
+    Admission admission = admissions.remove(jobId);
+    if (admission == null || !completed) {
+      return;
+    }
+    double seconds = (System.nanoTime() - admission.admittedAtNanos) / 1_000_000_000.0;
+    if (seconds > 0 && admission.bytes > 0) {
+      drainBytesPerSecondEwma = ewma(drainBytesPerSecondEwma, admission.bytes / seconds);
+    }
+  }
+
+  public Map<String, Object> snapshot() {
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    snapshot.put("inFlightJobs", admissions.size());
+    snapshot.put("inFlightBytes", inFlightBytes());
+    snapshot.put("maxInFlightJobs", maxInFlightJobs);
+    snapshot.put("maxInFlightBytes", maxInFlightBytes);
+    snapshot.put("queueDepth", queueDepth);
+    snapshot.put("queueConsumers", queueConsumers);
+    snapshot.put("maxQueueDepth", maxQueueDepth);
+    snapshot.put("brokerBlocked", brokerBlocked);
+    snapshot.put("drainMessagesPerSecond", drainMessagesPerSecondEwma);
+    snapshot.put("drainBytesPerSecond", drainBytesPerSecondEwma);
+    snapshot.put("admitted", admitted.sum());
+    snapshot.put("rejected", rejected.sum());
+    return snapshot;
+  }
+
+  @Override
+  public void close() {
+    poller.shutdown();
+    try {
+      if (pollChannel != null && pollChannel.isOpen()) {
+        pollChannel.close();
+      }
+    } catch (Exception e) {
+      System.err.println("[C01 Admission] Error closing queue depth channel: " + e.getMessage());
+    }
+  }
+
+  private void poll() {
+    try {
+      if (pollChannel == null || !pollChannel.isOpen()) {
+        pollChannel = connection.createChannel();
+      }
+      long depth = 0;
+      long consumers = 0;
+      for (String queueName : queueNames) {
+        AMQP.Queue.DeclareOk declareOk = pollChannel.queueDeclarePassive(queueName);
+        depth += declareOk.getMessageCount();
+        consumers += declareOk.getConsumerCount();
+      }
+      long published = publishMetrics.published.sum();
+      long now = System.nanoTime();
+      if (lastPollNanos != 0) {
+        double seconds = (now - lastPollNanos) / 1_000_000_000.0;
+        long drained = lastPollDepth + (published - lastPollPublished) - depth;
+        if (seconds > 0 && drained >= 0) {
+          drainMessagesPerSecondEwma = ewma(drainMessagesPerSecondEwma, drained / seconds);
+        }
+      }
+      lastPollNanos = now;
+      lastPollDepth = depth;
+      lastPollPublished = published;
+      queueDepth = depth;
+      queueConsumers = consumers;
+    } catch (IOException e) {
+      // A passive declare of a queue C03 has not created yet closes the channel; reopen on the next poll.
+      queueDepth = 0;
+      lastPollNanos = 0;
+    } catch (Exception e) {
+      System.err.println("[C01 Admission] Failed to poll queue depth: " + e.getMessage());
+    }
+  }
+
+  private void expireStaleAdmissions() {
+    long now = System.nanoTime();
+    admissions.entrySet().removeIf(entry -> {
+      if (TimeUnit.NANOSECONDS.toMillis(now - entry.getValue().admittedAtNanos) > admissionTtlMillis) {
+        System.err.println("[C01 Admission] Admission for job " + entry.getKey()
+            + " expired without a terminal status. Releasing " + entry.getValue().bytes + " bytes.");
+        return true;
+      }
+      return false;
+    });
+  }
+
+  private long inFlightBytes() {
+    long total = 0;
+    for (Admission admission : admissions.values()) {
+      total += admission.bytes;
+    }
+    return total;
+  }
+
+  private long oldestAdmissionBytes() {
+    Admission oldest = null;
+    for (Admission admission : admissions.values()) {
+      if (oldest == null || admission.admittedAtNanos < oldest.admittedAtNanos) {
+        oldest = admission;
+      }
+    }
+    return oldest != null ? Math.max(1, oldest.bytes) : 1;
+  }
+
+  private static long secondsToDrain(long backlog, double ratePerSecond) {
+    if (ratePerSecond <= 0) {
+      return DEFAULT_RETRY_AFTER_SECONDS;
+    }
+    long seconds = (long) Math.ceil(backlog / ratePerSecond);
+    return Math.max(MIN_RETRY_AFTER_SECONDS, Math.min(MAX_RETRY_AFTER_SECONDS, seconds));
+  }
+
+  private static double ewma(double previous, double sample) {
+    return previous < 0 ? sample : previous + EWMA_WEIGHT * (sample - previous);
+  }
+
+  private static class Admission {
+    final long bytes;
+    final long admittedAtNanos;
+
+    Admission(long bytes, long admittedAtNanos) {
+      this.bytes = bytes;
+      this.admittedAtNanos = admittedAtNanos;
+    }
+  }
+
+  public static class Decision {
+    final boolean admitted;
+    final String reason;
+    final long retryAfterSeconds;
+
+    Decision(boolean admitted, String reason, long retryAfterSeconds) {
+      this.admitted = admitted;
+      this.reason = reason;
+      this.retryAfterSeconds = retryAfterSeconds;
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package com.ase.ism.wcdad;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class C05Client {
+  private final String baseUrl;
+  private final ObjectMapper objectMapper;
+  private final HttpClient httpClient = HttpClient.newBuilder()
+      .connectTimeout(Duration.ofSeconds(5))
+      .build();
+
+  public C05Client(String baseUrl, ObjectMapper objectMapper) {
+    this.baseUrl = baseUrl;
+    this.objectMapper = objectMapper;
+  }
+
+  public CompletableFuture<Void> recordCompletedJob(String jobId, String fileName, String operation, String mode,
+      String pictureId) {
+    Map<String, Object> createPayload = new HashMap<>();
+    createPayload.put("jobId", jobId);
+    createPayload.put("originalFileName", fileName);
+    createPayload.put("operation", operation);
+    createPayload.put("mode", mode);
+
+    Map<String, Object> updatePayload = new HashMap<>();
+    updatePayload.put("status", "DONE");
+    updatePayload.put("pictureId", pictureId);
+
+    return send("POST", "/api/jobs", createPayload)
+        .thenCompose(status -> {
+          if (status != 201) {
+            throw new IllegalStateException("C05 rejected job record (HTTP " + status + ")");
+          }
+          return send("PUT", "/api/jobs/" + jobId, updatePayload);
+        })
+        .handle((status, error) -> {
+          if (error != null) {
+            System.err.println("[C01 C05Client] Failed to record cached job " + jobId + " in C05: "
+                + error.getMessage());
+          } else {
+            System.out.println("[C01 C05Client] Recorded cached job " + jobId + " in C05 (HTTP " + status + ").");
+          }
+          return null;
+        });
+  }
+
+  private CompletableFuture<Integer> send(String method, String path, Map<String, Object> payload) {
+    try {
+      HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+          .timeout(Duration.ofSeconds(10))
+          .header("Content-Type", "application/json")
+          .header("Accept", "application/json")
+          .method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(payload)))
+          .build();
+      return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).thenApply(HttpResponse::statusCode);
+    } catch (Exception e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+}
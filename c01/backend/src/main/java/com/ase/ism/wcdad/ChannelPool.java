@@ -0,0 +1,129 @@
+package com.ase.ism.wcdad;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+
+public class ChannelPool {
+  private final Connection connection;
+  private final String exchange;
+  private final int size;
+  private final PublishMetrics metrics;
+  private final BlockingQueue<PooledChannel> idle = new LinkedBlockingQueue<>();
+  private final AtomicInteger live = new AtomicInteger();
+
+  public ChannelPool(Connection connection, String exchange, int size, PublishMetrics metrics) throws IOException {
+    this.connection = connection;
+    this.exchange = exchange;
+    this.size = Math.max(1, size);
+    this.metrics = metrics;
+    for (int i = 0; i < this.size; i++) {
+      idle.add(open());
+      live.incrementAndGet();
+    }
+    System.out.println("[C01 ChannelPool] Opened " + this.size + " publish channels for exchange: " + exchange);
+  }
+
+  public PooledChannel lease(long timeoutMs) throws IOException, InterruptedException {
+    long waitStart = System.nanoTime();
+    PooledChannel pooled = idle.poll();
+    if (pooled == null) {
+      pooled = openIfBelowCapacity();
+    }
+    if (pooled == null) {
+      metrics.channelLeaseWaits.increment();
+      pooled = idle.poll(timeoutMs, TimeUnit.MILLISECONDS);
+      metrics.channelLeaseWaitTime.recordNanos(System.nanoTime() - waitStart);
+      if (pooled == null) {
+        throw new IOException("No publish channel became available within " + timeoutMs + " ms");
+      }
+    }
+    return ensureOpen(pooled);
+  }
+
+  public PooledChannel tryLease() throws IOException {
+    PooledChannel pooled = idle.poll();
+    return pooled != null ? ensureOpen(pooled) : null;
+  }
+
+  public void release(PooledChannel pooled) {
+    if (pooled.channel.isOpen()) {
+      idle.add(pooled);
+      return;
+    }
+    System.err.println("[C01 ChannelPool] Released channel was closed. Opening a replacement.");
+    try {
+      idle.add(open());
+    } catch (IOException e) {
+      live.decrementAndGet();
+      System.err.println("[C01 ChannelPool] Failed to open replacement channel: " + e.getMessage());
+    }
+  }
+
+  public int available() {
+    return idle.size();
+  }
+
+  public void close() {
+    PooledChannel pooled;
+    while ((pooled = idle.poll()) != null) {
+      try {
+        if (pooled.channel.isOpen()) {
+          pooled.channel.close();
+        }
+      } catch (Exception e) {
+        System.err.println("[C01 ChannelPool] Error closing channel: " + e.getMessage());
+      }
+    }
+  }
+
+  private PooledChannel ensureOpen(PooledChannel pooled) throws IOException {
+    if (pooled.channel.isOpen()) {
+      return pooled;
+    }
+    try {
+      return open();
+    } catch (IOException e) {
+      live.decrementAndGet();
+      throw e;
+    }
+  }
+
+  private PooledChannel openIfBelowCapacity() throws IOException {
+    while (true) {
+      int current = live.get();
+      if (current >= size) {
+        return null;
+      }
+      if (live.compareAndSet(current, current + 1)) {
+        try {
+          return open();
+        } catch (IOException e) {
+          live.decrementAndGet();
+          throw e;
+        }
+      }
+    }
+  }
+
+  private PooledChannel open() throws IOException {
+    Channel channel = connection.createChannel();
+    channel.exchangeDeclare(exchange, "topic", true);
+    return new PooledChannel(channel, new ConfirmingPublisher(channel, exchange, metrics));
+  }
+
+  public static class PooledChannel {
+    final Channel channel;
+    final ConfirmingPublisher publisher;
+
+    PooledChannel(Channel channel, ConfirmingPublisher publisher) {
+      this.channel = channel;
+      this.publisher = publisher;
+    }
+  }
+}
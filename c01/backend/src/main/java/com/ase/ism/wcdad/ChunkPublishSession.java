@@ -0,0 +1,149 @@
+package com.ase.ism.wcdad;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.rabbitmq.client.AMQP;
+
+public class ChunkPublishSession implements AutoCloseable {
+  private final ChannelPool channelPool;
+  private final ExecutorService executor;
+  private final String jobId;
+  private final List<PublishLane> lanes = new ArrayList<>();
+  private final Semaphore queuedFrames;
+  private volatile boolean aborted = false;
+  private boolean completed = false;
+  private int nextLane = 0;
+
+  public ChunkPublishSession(ChannelPool channelPool, ExecutorService executor, String jobId, String routingKey,
+      int requestedLanes, int windowSize, long confirmTimeoutMs, int maxAttempts, long leaseTimeoutMs)
+      throws IOException, InterruptedException {
+    this.channelPool = channelPool;
+    this.executor = executor;
+    this.jobId = jobId;
+
+    List<ChannelPool.PooledChannel> leases = new ArrayList<>();
+    leases.add(channelPool.lease(leaseTimeoutMs));
+    try {
+      while (leases.size() < requestedLanes) {
+        ChannelPool.PooledChannel extra = channelPool.tryLease();
+        if (extra == null) {
+          break;
+        }
+        leases.add(extra);
+      }
+    } catch (IOException e) {
+      leases.forEach(channelPool::release);
+      throw e;
+    }
+
+    int laneWindow = Math.max(1, windowSize / leases.size());
+    for (ChannelPool.PooledChannel lease : leases) {
+      lanes.add(new PublishLane(lease,
+          lease.publisher.startJob(jobId, routingKey, laneWindow, confirmTimeoutMs, maxAttempts)));
+    }
+    this.queuedFrames = new Semaphore(lanes.size() * 2);
+    System.out.println("[C01 Publisher] Publishing jobId: " + jobId + " over " + lanes.size() + " channel(s)"
+        + ", window per channel: " + laneWindow);
+  }
+
+  public void publishFirst(int chunkId, AMQP.BasicProperties properties, byte[] body)
+      throws IOException, InterruptedException {
+    PublishLane lane = lanes.get(0);
+    lane.publication.publish(chunkId, properties, body);
+    lane.publication.awaitAllConfirmed();
+  }
+
+  public void publish(int chunkId, AMQP.BasicProperties properties, byte[] body)
+      throws IOException, InterruptedException {
+    PublishLane lane = lanes.get(nextLane);
+    nextLane = (nextLane + 1) % lanes.size();
+    if (lanes.size() == 1) {
+      lane.publication.publish(chunkId, properties, body);
+      return;
+    }
+    rethrowLaneFailure();
+    while (!queuedFrames.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+      rethrowLaneFailure();
+    }
+    lane.tail = lane.tail.thenRunAsync(() -> {
+      try {
+        if (!aborted) {
+          lane.publication.publish(chunkId, properties, body);
+        }
+      } catch (IOException | InterruptedException e) {
+        throw new CompletionException(e);
+      } finally {
+        queuedFrames.release();
+      }
+    }, executor);
+  }
+
+  public void awaitAllConfirmed() throws IOException, InterruptedException {
+    for (PublishLane lane : lanes) {
+      joinLane(lane);
+    }
+    for (PublishLane lane : lanes) {
+      lane.publication.awaitAllConfirmed();
+    }
+    completed = true;
+  }
+
+  @Override
+  public void close() {
+    if (!completed) {
+      aborted = true;
+      for (PublishLane lane : lanes) {
+        try {
+          lane.tail.join();
+        } catch (CompletionException ignored) {
+        }
+        lane.publication.abort();
+      }
+      System.err.println("[C01 Publisher] Aborted publishing for jobId: " + jobId);
+    }
+    for (PublishLane lane : lanes) {
+      channelPool.release(lane.lease);
+    }
+  }
+
+  private void rethrowLaneFailure() throws IOException, InterruptedException {
+    for (PublishLane lane : lanes) {
+      if (lane.tail.isCompletedExceptionally()) {
+        joinLane(lane);
+      }
+    }
+  }
+
+  private void joinLane(PublishLane lane) throws IOException, InterruptedException {
+    try {
+      lane.tail.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof InterruptedException) {
+        throw (InterruptedException) cause;
+      }
+      throw new IOException("Publishing failed for job " + jobId + ": " + cause, cause);
+    }
+  }
+
+  private static class PublishLane {
+    final ChannelPool.PooledChannel lease;
+    final ConfirmingPublisher.JobPublication publication;
+    CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+    PublishLane(ChannelPool.PooledChannel lease, ConfirmingPublisher.JobPublication publication) {
+      this.lease = lease;
+      this.publication = publication;
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package com.ase.ism.wcdad;
+
+import com.ase.ism.wcdad.common.ChunkCodec;
+
+public class ChunkSizePolicy {
+  static final int MIN_CHUNK_SIZE_BYTES = 1024 * 256;
+  private static final int AMQP_FRAME_OVERHEAD_BYTES = 8;
+  private static final int TARGET_CHUNKS_PER_JOB = 256;
+  private static final double TARGET_CONFIRM_MS = 200.0;
+
+  private final int defaultChunkSize;
+  private final int maxChunkSize;
+  private final int frameMax;
+  private final PublishMetrics metrics;
+
+  public ChunkSizePolicy(int defaultChunkSize, int maxChunkSize, int frameMax, PublishMetrics metrics) {
+    this.defaultChunkSize = defaultChunkSize;
+    this.maxChunkSize = Math.max(MIN_CHUNK_SIZE_BYTES, maxChunkSize);
+    this.frameMax = frameMax;
+    this.metrics = metrics;
+  }
+
+  public int chooseChunkSize(long fileSize, Integer requestedChunkSize) {
+    int chunkSize;
+    if (requestedChunkSize != null && requestedChunkSize > 0) {
+      chunkSize = requestedChunkSize;
+    } else if (fileSize <= defaultChunkSize) {
+      return defaultChunkSize;
+    } else {
+      double size = Math.max(defaultChunkSize, (double) fileSize / TARGET_CHUNKS_PER_JOB);
+      double ewma = metrics.getConfirmMillisPerMbEwma();
+      if (ewma > 0) {
+        double expectedConfirmMs = ewma * size / (1024 * 1024);
+        size *= Math.max(0.5, Math.min(2.0, TARGET_CONFIRM_MS / expectedConfirmMs));
+      }
+      chunkSize = (int) Math.min(Integer.MAX_VALUE, size);
+    }
+    chunkSize = Math.max(MIN_CHUNK_SIZE_BYTES, Math.min(maxChunkSize, chunkSize));
+    return alignToFrames(chunkSize);
+  }
+
+  private int alignToFrames(int chunkSize) {
+    if (frameMax <= AMQP_FRAME_OVERHEAD_BYTES) {
+      return chunkSize;
+    }
+    int framePayload = frameMax - AMQP_FRAME_OVERHEAD_BYTES;
+    int frames = Math.max(1, (chunkSize + ChunkCodec.HEADER_SIZE) / framePayload);
+    int aligned = frames * framePayload - ChunkCodec.HEADER_SIZE;
+    return aligned >= MIN_CHUNK_SIZE_BYTES ? aligned : chunkSize;
+  }
+}
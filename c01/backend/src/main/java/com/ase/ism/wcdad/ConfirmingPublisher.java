@@ -0,0 +1,188 @@
+package com.ase.ism.wcdad;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+
+public class ConfirmingPublisher {
+  private final Channel channel;
+  private final String exchange;
+  private final PublishMetrics metrics;
+  private final ConcurrentSkipListMap<Long, PendingChunk> outstanding = new ConcurrentSkipListMap<>();
+
+  public ConfirmingPublisher(Channel channel, String exchange, PublishMetrics metrics) throws IOException {
+    this.channel = channel;
+    this.exchange = exchange;
+    this.metrics = metrics;
+    channel.confirmSelect();
+    channel.addConfirmListener((deliveryTag, multiple) -> handleConfirm(deliveryTag, multiple, true),
+        (deliveryTag, multiple) -> handleConfirm(deliveryTag, multiple, false));
+  }
+
+  public JobPublication startJob(String jobId, String routingKey, int windowSize, long confirmTimeoutMs,
+      int maxAttempts) {
+    return new JobPublication(jobId, routingKey, windowSize, confirmTimeoutMs, maxAttempts);
+  }
+
+  private void send(PendingChunk pending) throws IOException {
+    synchronized (channel) {
+      long seqNo = channel.getNextPublishSeqNo();
+      pending.seqNo = seqNo;
+      pending.sentAtNanos = System.nanoTime();
+      pending.attempts++;
+      outstanding.put(seqNo, pending);
+      try {
+        channel.basicPublish(exchange, pending.job.routingKey, pending.properties, pending.body);
+      } catch (IOException | RuntimeException e) {
+        outstanding.remove(seqNo);
+        throw e;
+      }
+    }
+    metrics.published.increment();
+    metrics.publishedBytes.add(pending.body.length);
+  }
+
+  private void handleConfirm(long deliveryTag, boolean multiple, boolean ack) {
+    List<Map.Entry<Long, PendingChunk>> confirmed = new ArrayList<>();
+    if (multiple) {
+      NavigableMap<Long, PendingChunk> head = outstanding.headMap(deliveryTag, true);
+      confirmed.addAll(head.entrySet());
+      head.clear();
+    } else {
+      PendingChunk pending = outstanding.remove(deliveryTag);
+      if (pending != null) {
+        confirmed.add(Map.entry(deliveryTag, pending));
+      }
+    }
+    for (Map.Entry<Long, PendingChunk> entry : confirmed) {
+      entry.getValue().job.onConfirm(entry.getValue(), entry.getKey(), ack);
+    }
+  }
+
+  static class PendingChunk {
+    final JobPublication job;
+    final int chunkId;
+    final AMQP.BasicProperties properties;
+    final byte[] body;
+    volatile long seqNo;
+    volatile long sentAtNanos;
+    int attempts;
+
+    PendingChunk(JobPublication job, int chunkId, AMQP.BasicProperties properties, byte[] body) {
+      this.job = job;
+      this.chunkId = chunkId;
+      this.properties = properties;
+      this.body = body;
+    }
+  }
+
+  public class JobPublication {
+    private final String jobId;
+    private final String routingKey;
+    private final Semaphore window;
+    private final long confirmTimeoutNanos;
+    private final int maxAttempts;
+    private final Map<Integer, PendingChunk> unconfirmed = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<PendingChunk> retransmitQueue = new ConcurrentLinkedQueue<>();
+    private final Object signal = new Object();
+
+    private JobPublication(String jobId, String routingKey, int windowSize, long confirmTimeoutMs, int maxAttempts) {
+      this.jobId = jobId;
+      this.routingKey = routingKey;
+      this.window = new Semaphore(Math.max(1, windowSize));
+      this.confirmTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(confirmTimeoutMs);
+      this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    public void publish(int chunkId, AMQP.BasicProperties properties, byte[] body)
+        throws IOException, InterruptedException {
+      retransmitPending();
+      if (!window.tryAcquire()) {
+        metrics.windowStalls.increment();
+        long stallStart = System.nanoTime();
+        while (!window.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+          retransmitPending();
+        }
+        metrics.windowStallTime.recordNanos(System.nanoTime() - stallStart);
+      }
+      PendingChunk pending = new PendingChunk(this, chunkId, properties, body);
+      unconfirmed.put(chunkId, pending);
+      send(pending);
+    }
+
+    public void awaitAllConfirmed() throws IOException, InterruptedException {
+      while (!unconfirmed.isEmpty()) {
+        retransmitPending();
+        synchronized (signal) {
+          if (!unconfirmed.isEmpty() && retransmitQueue.isEmpty()) {
+            signal.wait(100);
+          }
+        }
+      }
+      System.out.println("[C01 Publisher] All chunks confirmed by broker for jobId: " + jobId);
+    }
+
+    public void abort() {
+      for (PendingChunk pending : unconfirmed.values()) {
+        outstanding.remove(pending.seqNo, pending);
+      }
+      unconfirmed.clear();
+      retransmitQueue.clear();
+    }
+
+    private void onConfirm(PendingChunk pending, long seqNo, boolean ack) {
+      if (pending.seqNo != seqNo) {
+        return;
+      }
+      if (ack) {
+        metrics.recordConfirm(pending.body.length, System.nanoTime() - pending.sentAtNanos);
+        if (unconfirmed.remove(pending.chunkId, pending)) {
+          window.release();
+        }
+      } else {
+        metrics.nacked.increment();
+        System.err.println("[C01 Publisher] Broker nacked chunk " + pending.chunkId + " for jobId: " + jobId
+            + ". Scheduling retransmit.");
+        retransmitQueue.add(pending);
+      }
+      synchronized (signal) {
+        signal.notifyAll();
+      }
+    }
+
+    private void retransmitPending() throws IOException {
+      PendingChunk nacked;
+      while ((nacked = retransmitQueue.poll()) != null) {
+        retransmit(nacked);
+      }
+      long now = System.nanoTime();
+      for (PendingChunk pending : unconfirmed.values()) {
+        if (now - pending.sentAtNanos > confirmTimeoutNanos && outstanding.remove(pending.seqNo, pending)) {
+          metrics.confirmTimeouts.increment();
+          System.err.println("[C01 Publisher] Confirm timed out for chunk " + pending.chunkId + " of jobId: "
+              + jobId + ". Retransmitting.");
+          retransmit(pending);
+        }
+      }
+    }
+
+    private void retransmit(PendingChunk pending) throws IOException {
+      if (pending.attempts >= maxAttempts) {
+        throw new IOException("Chunk " + pending.chunkId + " of job " + jobId + " was not confirmed after "
+            + pending.attempts + " attempts");
+      }
+      metrics.retransmits.increment();
+      send(pending);
+    }
+  }
+}
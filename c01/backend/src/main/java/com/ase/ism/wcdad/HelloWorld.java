@@ -2,64 +2,103 @@ package com.ase.ism.wcdad;
 
 import java.util.concurrent.TimeoutException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.HashMap;
-import java.util.Base64;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import com.ase.ism.wcdad.common.ChunkCodec;
+import com.ase.ism.wcdad.common.ChunkMessage;
+import com.ase.ism.wcdad.common.JobSharding;
+
+import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 import com.rabbitmq.client.DeliverCallback;
 
 import io.javalin.Javalin;
+import io.javalin.config.SizeUnit;
+import io.javalin.http.Context;
 import io.javalin.http.UploadedFile;
 import io.javalin.http.staticfiles.Location;
 import io.javalin.json.JavalinJackson;
 import io.javalin.websocket.WsContext;
 
 public class HelloWorld {
-  private static final String EXCHANGE_NAME_C03_JOBS = "image_processing_exchange";
-  private static final String ROUTING_KEY_C03_JOBS = "image.job";
+  private static final String EXCHANGE_NAME_C03_JOBS = JobSharding.EXCHANGE_NAME;
+  private static final int JOB_SHARD_COUNT = JobSharding.shardCount();
 
   private static final String JOB_NOTIFICATION_EXCHANGE_NAME = "job_updates_exchange";
   private static final String JOB_NOTIFICATION_QUEUE_NAME = "c01_job_updates_queue";
   private static final String JOB_NOTIFICATION_ROUTING_KEY = "job.update.#";
 
-  private static final int CHUNK_SIZE_BYTES = 1024 * 512;
+  private static final int DEFAULT_CHUNK_SIZE_BYTES = 1024 * 512;
+  private static final int MAX_CHUNK_SIZE_BYTES = Integer
+      .parseInt(System.getenv().getOrDefault("C01_MAX_CHUNK_SIZE_BYTES", String.valueOf(1024 * 1024 * 8)));
+  private static final String MULTIPART_CACHE_DIR = System.getenv().getOrDefault("C01_UPLOAD_CACHE_DIR",
+      System.getProperty("java.io.tmpdir"));
+  private static final int MULTIPART_MAX_IN_MEMORY_KB = 64;
+  private static final boolean USE_BINARY_CHUNK_FORMAT = !"json"
+      .equalsIgnoreCase(System.getenv().getOrDefault("C01_CHUNK_WIRE_FORMAT", "binary"));
+  private static final int PUBLISH_WINDOW_SIZE = Integer
+      .parseInt(System.getenv().getOrDefault("C01_PUBLISH_WINDOW", "32"));
+  private static final long CONFIRM_TIMEOUT_MS = Long
+      .parseLong(System.getenv().getOrDefault("C01_CONFIRM_TIMEOUT_MS", "30000"));
+  private static final int PUBLISH_MAX_ATTEMPTS = Integer
+      .parseInt(System.getenv().getOrDefault("C01_PUBLISH_MAX_ATTEMPTS", "5"));
+  private static final int PUBLISH_CHANNEL_POOL_SIZE = Integer
+      .parseInt(System.getenv().getOrDefault("C01_PUBLISH_CHANNELS", "16"));
+  private static final int PUBLISH_LANES_PER_JOB = Integer
+      .parseInt(System.getenv().getOrDefault("C01_PUBLISH_LANES_PER_JOB", "4"));
+  private static final int CHUNKS_PER_PUBLISH_LANE = 64;
+  private static final long CHANNEL_LEASE_TIMEOUT_MS = 30000;
+  private static final long MAX_INFLIGHT_BYTES = Long
+      .parseLong(System.getenv().getOrDefault("C01_MAX_INFLIGHT_BYTES", String.valueOf(2L * 1024 * 1024 * 1024)));
+  private static final int MAX_INFLIGHT_JOBS = Integer
+      .parseInt(System.getenv().getOrDefault("C01_MAX_INFLIGHT_JOBS", "64"));
+  private static final long MAX_QUEUE_DEPTH = Long
+      .parseLong(System.getenv().getOrDefault("C01_MAX_QUEUE_DEPTH", "5000"));
+  private static final long ADMISSION_TTL_MS = Long
+      .parseLong(System.getenv().getOrDefault("C01_ADMISSION_TTL_MS", "3600000"));
+  private static final long QUEUE_DEPTH_POLL_INTERVAL_MS = 1000;
+  private static final long UPLOAD_SESSION_TTL_MS = Long
+      .parseLong(System.getenv().getOrDefault("C01_UPLOAD_SESSION_TTL_MS", "3600000"));
   private static final ObjectMapper objectMapper = new ObjectMapper();
 
   private static Connection rabbitConnection;
-  private static Channel rabbitPublishChannel;
   private static Channel rabbitConsumeChannel;
-  private static final Map<String, WsContext> webSocketSessions = new ConcurrentHashMap<>();
-
-  static class ChunkMessage {
-    public String jobId;
-    public int chunkId;
-    public int totalChunks;
-    public boolean firstChunk;
-    public String metadataJson;
-    public String chunkDataB64;
-
-    public ChunkMessage() {
-    }
-
-    public ChunkMessage(String jobId, int chunkId, int totalChunks, boolean firstChunk, String metadataJson,
-        String chunkDataB64) {
-      this.jobId = jobId;
-      this.chunkId = chunkId;
-      this.totalChunks = totalChunks;
-      this.firstChunk = firstChunk;
-      this.metadataJson = metadataJson;
-      this.chunkDataB64 = chunkDataB64;
-    }
-  }
+  private static ChannelPool channelPool;
+  private static ChunkSizePolicy chunkSizePolicy;
+  private static AdmissionController admissionController;
+  private static final ExecutorService publishExecutor = Executors.newCachedThreadPool();
+  private static final PublishMetrics publishMetrics = new PublishMetrics();
+  private static final JobStatusHub jobStatusHub = new JobStatusHub(
+      Long.parseLong(System.getenv().getOrDefault("C01_WS_FLUSH_INTERVAL_MS", "100")),
+      Integer.parseInt(System.getenv().getOrDefault("C01_WS_MAX_SUBSCRIPTIONS", "1000")));
+  private static final Map<String, UploadSession> uploadSessions = new ConcurrentHashMap<>();
+  private static final ResultCache resultCache = new ResultCache(
+      Integer.parseInt(System.getenv().getOrDefault("C01_RESULT_CACHE_ENTRIES", "1024")),
+      System.getenv("C01_RESULT_CACHE_INDEX") != null ? Paths.get(System.getenv("C01_RESULT_CACHE_INDEX")) : null,
+      System.getenv("C01_RESULT_CACHE_SECRET"));
+  private static final JobStateCache jobStateCache = new JobStateCache(
+      Integer.parseInt(System.getenv().getOrDefault("C01_JOB_STATE_CACHE_ENTRIES", "10000")),
+      Long.parseLong(System.getenv().getOrDefault("C01_JOB_STATE_TTL_MS", "1800000")));
+  private static final int MAX_BULK_STATUS_JOB_IDS = 1000;
+  private static final C05Client c05Client = new C05Client(
+      System.getenv().getOrDefault("C05_API_URL", "http://c05:3000"), objectMapper);
 
   private static void initRabbitMQ() throws IOException, TimeoutException {
     ConnectionFactory factory = new ConnectionFactory();
@@ -70,11 +109,19 @@ public class HelloWorld {
 
     rabbitConnection = factory.newConnection();
 
-    rabbitPublishChannel = rabbitConnection.createChannel();
-    rabbitPublishChannel.exchangeDeclare(EXCHANGE_NAME_C03_JOBS, "topic", true);
+    chunkSizePolicy = new ChunkSizePolicy(DEFAULT_CHUNK_SIZE_BYTES, MAX_CHUNK_SIZE_BYTES,
+        rabbitConnection.getFrameMax(), publishMetrics);
+    System.out.println("RabbitMQ negotiated frame-max: " + rabbitConnection.getFrameMax() + " bytes");
+    declareJobShardQueues();
+    channelPool = new ChannelPool(rabbitConnection, EXCHANGE_NAME_C03_JOBS, PUBLISH_CHANNEL_POOL_SIZE,
+        publishMetrics);
     System.out
         .println("RabbitMQ channel for publishing image jobs initialized. Exchange: " + EXCHANGE_NAME_C03_JOBS);
 
+    admissionController = new AdmissionController(rabbitConnection, JobSharding.queueNames(JOB_SHARD_COUNT),
+        MAX_INFLIGHT_BYTES, MAX_INFLIGHT_JOBS, MAX_QUEUE_DEPTH, ADMISSION_TTL_MS, QUEUE_DEPTH_POLL_INTERVAL_MS,
+        publishMetrics);
+
     rabbitConsumeChannel = rabbitConnection.createChannel();
     rabbitConsumeChannel.exchangeDeclare(JOB_NOTIFICATION_EXCHANGE_NAME, "topic", true);
     rabbitConsumeChannel.queueDeclare(JOB_NOTIFICATION_QUEUE_NAME, true, false, false, null);
@@ -86,6 +133,17 @@ public class HelloWorld {
     startJobNotificationConsumer();
   }
 
+  private static void declareJobShardQueues() throws IOException, TimeoutException {
+    try (Channel setupChannel = rabbitConnection.createChannel()) {
+      setupChannel.exchangeDeclare(EXCHANGE_NAME_C03_JOBS, "topic", true);
+      for (int shard = 0; shard < JOB_SHARD_COUNT; shard++) {
+        setupChannel.queueDeclare(JobSharding.queueName(shard), true, false, false, null);
+        setupChannel.queueBind(JobSharding.queueName(shard), EXCHANGE_NAME_C03_JOBS, JobSharding.routingKey(shard));
+      }
+    }
+    System.out.println("RabbitMQ job shard queues declared: " + JOB_SHARD_COUNT + " shard(s).");
+  }
+
   private static void startJobNotificationConsumer() {
     try {
       DeliverCallback deliverCallback = (consumerTag, delivery) -> {
@@ -100,23 +158,13 @@ public class HelloWorld {
           String errorMessage = (String) notification.get("errorMessage");
 
           if (jobId != null && status != null) {
-            WsContext wsCtx = webSocketSessions.get(jobId);
-            if (wsCtx != null && wsCtx.session.isOpen()) {
-              Map<String, Object> wsMessageMap = new HashMap<>();
-              wsMessageMap.put("jobId", jobId);
-              wsMessageMap.put("status", status);
-              if (pictureId != null) {
-                String downloadLink = "/api/pictures/" + pictureId;
-
-                wsMessageMap.put("downloadLink", downloadLink);
-              }
-              if (errorMessage != null) {
-                wsMessageMap.put("errorMessage", errorMessage);
-              }
-              wsCtx.send(wsMessageMap);
-              System.out.println(" [C01] Sent WebSocket update to client for jobId: " + jobId + ", Status: " + status);
-            } else {
-              System.out.println(" [C01] No active WebSocket session for jobId: " + jobId + " or session is closed.");
+            resultCache.onJobUpdate(jobId, status, pictureId);
+            if ("DONE".equals(status) || "ERROR".equals(status)) {
+              admissionController.release(jobId, "DONE".equals(status));
+            }
+            if (!sendJobUpdateToClient(jobId, status, pictureId, errorMessage)) {
+              System.out.println(" [C01] No active WebSocket session for jobId: " + jobId
+                  + ". State cached for replay on connect.");
             }
           } else {
             System.err.println(" [C01] Invalid job notification message: missing jobId or status. Message: " + message);
@@ -138,6 +186,284 @@ public class HelloWorld {
     }
   }
 
+  private static Map<String, Object> jobUpdateMessage(JobStateCache.JobState state) {
+    Map<String, Object> wsMessageMap = new HashMap<>();
+    wsMessageMap.put("jobId", state.jobId);
+    wsMessageMap.put("status", state.status);
+    wsMessageMap.put("updatedAt", state.updatedAtMillis);
+    if (state.pictureId != null) {
+      wsMessageMap.put("downloadLink", "/api/pictures/" + state.pictureId);
+    }
+    if (state.errorMessage != null) {
+      wsMessageMap.put("errorMessage", state.errorMessage);
+    }
+    return wsMessageMap;
+  }
+
+  private static boolean sendJobUpdateToClient(String jobId, String status, String pictureId, String errorMessage) {
+    JobStateCache.JobState state = jobStateCache.update(jobId, status, pictureId, errorMessage);
+    int sessions = jobStatusHub.publish(jobId, jobUpdateMessage(state));
+    if (sessions > 0) {
+      System.out.println(" [C01] Queued WebSocket update for jobId: " + jobId + ", Status: " + status + " to "
+          + sessions + " session(s).");
+    }
+    return sessions > 0;
+  }
+
+  private static void replayJobState(WsContext ctx, String jobId) {
+    JobStateCache.JobState state = jobStateCache.get(jobId);
+    if (state != null) {
+      jobStatusHub.sendTo(ctx, jobId, jobUpdateMessage(state));
+    }
+  }
+
+  private static Map<String, Object> bulkJobStates(List<String> jobIds) {
+    Map<String, Object> states = new LinkedHashMap<>();
+    List<String> unknown = new ArrayList<>();
+    for (String jobId : jobIds) {
+      JobStateCache.JobState state = jobStateCache.get(jobId);
+      if (state != null) {
+        states.put(jobId, jobUpdateMessage(state));
+      } else {
+        unknown.add(jobId);
+      }
+    }
+    return Map.of("states", states, "unknown", unknown);
+  }
+
+  private static String normalizeOperation(String operation) {
+    return (operation != null && !operation.isEmpty()) ? operation.toUpperCase() : "ENCRYPT";
+  }
+
+  private static String normalizeMode(String mode) {
+    return (mode != null && !mode.isEmpty()) ? mode.toUpperCase() : "ECB";
+  }
+
+  private static int parseKeySize(String keySizeParam) {
+    try {
+      return keySizeParam != null ? Integer.parseInt(keySizeParam) : 128;
+    } catch (NumberFormatException e) {
+      System.err
+          .println("[C01 /api/newJob] Invalid keySize parameter: " + keySizeParam + ". Defaulting to 128.");
+      return 128;
+    }
+  }
+
+  private static boolean admitOrReject(Context ctx, String jobId, long bytes) {
+    if (admissionController == null) {
+      return true;
+    }
+    AdmissionController.Decision decision = admissionController.tryAdmit(jobId, bytes);
+    if (!decision.admitted) {
+      ctx.header("Retry-After", String.valueOf(decision.retryAfterSeconds));
+      ctx.status(429).result("Server is busy: " + decision.reason + ". Please retry in "
+          + decision.retryAfterSeconds + " seconds.");
+    }
+    return decision.admitted;
+  }
+
+  private static void releaseAdmission(String jobId) {
+    if (admissionController != null) {
+      admissionController.release(jobId, false);
+    }
+  }
+
+  private static Integer parseRequestedChunkSize(String chunkSizeParam) {
+    if (chunkSizeParam == null || chunkSizeParam.isEmpty()) {
+      return null;
+    }
+    try {
+      return Integer.parseInt(chunkSizeParam);
+    } catch (NumberFormatException e) {
+      System.err.println("[C01 /api/newJob] Invalid chunkSize parameter: " + chunkSizeParam + ". Ignoring.");
+      return null;
+    }
+  }
+
+  private static String buildJobMetadataJson(String jobId, String originalFileName, long originalFileSize,
+      String operation, String mode, String key, String keySizeParam, String iv, int chunkSize, long idleTtlMs)
+      throws IOException {
+    Map<String, Object> jobMetadata = new HashMap<>();
+    jobMetadata.put("fileName", originalFileName);
+    jobMetadata.put("originalFileSize", originalFileSize);
+    jobMetadata.put("operation", normalizeOperation(operation));
+    jobMetadata.put("mode", normalizeMode(mode));
+    jobMetadata.put("key", (key != null) ? key : "");
+    jobMetadata.put("keySize", parseKeySize(keySizeParam));
+    jobMetadata.put("chunkSize", chunkSize);
+    if (idleTtlMs > 0) {
+      // Resumable uploads can pause this long; C03 keeps the partial aggregation for at least as long.
+      jobMetadata.put("idleTtlMs", idleTtlMs);
+    }
+
+    if (iv != null && !iv.isEmpty()) {
+      jobMetadata.put("iv", iv);
+    } else if ("CBC".equalsIgnoreCase(mode)) {
+      System.err.println(
+          "[C01 /api/newJob] Warning: CBC mode specified but IV is missing or empty from request for job "
+              + jobId);
+    }
+
+    return objectMapper.writeValueAsString(jobMetadata);
+  }
+
+  static void publishChunk(ChunkPublishSession session, String jobId, int chunkId, int totalChunks,
+      boolean isFirstChunk, String chunkMetadata, byte[] buffer, int length) throws IOException, InterruptedException {
+    AMQP.BasicProperties properties;
+    byte[] body;
+    if (USE_BINARY_CHUNK_FORMAT) {
+      properties = ChunkCodec.binaryProperties(chunkMetadata);
+      body = ChunkCodec.encodeBinary(jobId, chunkId, totalChunks, isFirstChunk, buffer, 0, length);
+    } else {
+      properties = ChunkCodec.jsonProperties();
+      body = ChunkCodec.encodeJson(new ChunkMessage(jobId, chunkId, totalChunks, isFirstChunk, chunkMetadata,
+          Arrays.copyOf(buffer, length)));
+    }
+    if (isFirstChunk) {
+      session.publishFirst(chunkId, properties, body);
+    } else {
+      session.publish(chunkId, properties, body);
+    }
+  }
+
+  private static ChunkPublishSession openPublishSession(String jobId, int chunkCount)
+      throws IOException, InterruptedException {
+    int requestedLanes = Math.min(PUBLISH_LANES_PER_JOB, Math.max(1, chunkCount / CHUNKS_PER_PUBLISH_LANE));
+    String routingKey = JobSharding.routingKey(JobSharding.shardFor(jobId, JOB_SHARD_COUNT));
+    return new ChunkPublishSession(channelPool, publishExecutor, jobId, routingKey, requestedLanes,
+        PUBLISH_WINDOW_SIZE, CONFIRM_TIMEOUT_MS, PUBLISH_MAX_ATTEMPTS, CHANNEL_LEASE_TIMEOUT_MS);
+  }
+
+  private static void publishChunksFromStream(String jobId, InputStream fileStream, int chunkSize, int totalChunks,
+      String metadataJsonString) throws IOException, InterruptedException {
+    try (ChunkPublishSession session = openPublishSession(jobId, totalChunks)) {
+      readChunks(jobId, fileStream, chunkSize, totalChunks, (chunkId, isFirstChunk, buffer, length) -> {
+        publishChunk(session, jobId, chunkId, totalChunks, isFirstChunk, isFirstChunk ? metadataJsonString : null,
+            buffer, length);
+        System.out.println(
+            "[C01 /api/newJob] Sent chunk " + chunkId + " of " + totalChunks + " to C03 for jobId: " + jobId);
+      });
+      session.awaitAllConfirmed();
+    }
+  }
+
+  interface ChunkSink {
+    void accept(int chunkId, boolean isFirstChunk, byte[] buffer, int length) throws IOException, InterruptedException;
+  }
+
+  /**
+   * Reads the upload chunk by chunk into one reused buffer, so memory stays at one chunk however large the body is.
+   * The sink must be done with the buffer when it returns.
+   */
+  static void readChunks(String jobId, InputStream fileStream, int chunkSize, int totalChunks, ChunkSink sink)
+      throws IOException, InterruptedException {
+    byte[] buffer = new byte[chunkSize];
+    for (int chunkId = 0; chunkId < totalChunks; chunkId++) {
+      boolean isFirstChunk = (chunkId == 0);
+      int bytesRead = fileStream.readNBytes(buffer, 0, chunkSize);
+      if (bytesRead == 0 && !isFirstChunk) {
+        throw new IOException(
+            "Upload for job " + jobId + " ended early at chunk " + chunkId + " of " + totalChunks);
+      }
+      sink.accept(chunkId, isFirstChunk, buffer, bytesRead);
+    }
+  }
+
+  private static void publishUploadRange(UploadSession upload, InputStream body, int firstChunkId, int endChunkId)
+      throws IOException, InterruptedException {
+    List<Integer> claimedChunks = new ArrayList<>();
+    boolean confirmed = false;
+    try (ChunkPublishSession session = openPublishSession(upload.jobId, endChunkId - firstChunkId)) {
+      IOException truncated = null;
+      byte[] buffer = new byte[upload.chunkSize];
+      for (int chunkId = firstChunkId; chunkId < endChunkId; chunkId++) {
+        int length = upload.chunkLength(chunkId);
+        int bytesRead;
+        try {
+          bytesRead = body.readNBytes(buffer, 0, length);
+        } catch (IOException e) {
+          truncated = e;
+          break;
+        }
+        if (bytesRead < length) {
+          truncated = new IOException("Range for upload " + upload.jobId + " ended early at chunk " + chunkId);
+          break;
+        }
+        if (!upload.claim(chunkId)) {
+          System.out.println("[C01 /api/uploads] Chunk " + chunkId + " of upload " + upload.jobId
+              + " already committed or in flight. Skipping.");
+          continue;
+        }
+        claimedChunks.add(chunkId);
+        publishChunk(session, upload.jobId, chunkId, upload.totalChunks, false, null, buffer, bytesRead);
+      }
+      session.awaitAllConfirmed();
+      claimedChunks.forEach(upload::commit);
+      confirmed = true;
+      System.out.println("[C01 /api/uploads] Committed " + claimedChunks.size() + " chunk(s) for upload "
+          + upload.jobId + ". Committed offset: " + upload.committedOffset() + " of " + upload.fileSize);
+      if (truncated != null) {
+        throw truncated;
+      }
+    } finally {
+      if (!confirmed) {
+        claimedChunks.forEach(upload::release);
+      }
+    }
+  }
+
+  private static long[] parseContentRange(String contentRange, long fileSize) {
+    if (contentRange == null || !contentRange.startsWith("bytes ")) {
+      return null;
+    }
+    try {
+      String[] rangeAndTotal = contentRange.substring(6).trim().split("/");
+      String[] bounds = rangeAndTotal[0].split("-");
+      long start = Long.parseLong(bounds[0].trim());
+      long end = Long.parseLong(bounds[1].trim());
+      if (rangeAndTotal.length > 1 && !"*".equals(rangeAndTotal[1].trim())
+          && Long.parseLong(rangeAndTotal[1].trim()) != fileSize) {
+        return null;
+      }
+      if (start < 0 || end < start || end >= fileSize) {
+        return null;
+      }
+      return new long[] { start, end };
+    } catch (RuntimeException e) {
+      return null;
+    }
+  }
+
+  private static Map<String, Object> uploadStatus(UploadSession upload) {
+    List<String> missingRanges = new ArrayList<>();
+    for (long[] range : upload.missingRanges()) {
+      missingRanges.add(range[0] + "-" + range[1]);
+    }
+    Map<String, Object> status = new LinkedHashMap<>();
+    status.put("uploadId", upload.jobId);
+    status.put("jobId", upload.jobId);
+    status.put("fileSize", upload.fileSize);
+    status.put("chunkSize", upload.chunkSize);
+    status.put("totalChunks", upload.totalChunks);
+    status.put("committedOffset", upload.committedOffset());
+    status.put("committedChunks", upload.committedChunkCount());
+    status.put("missingRanges", missingRanges);
+    status.put("complete", upload.isComplete());
+    return status;
+  }
+
+  private static void purgeExpiredUploads() {
+    uploadSessions.values().removeIf(upload -> {
+      if (upload.idleMillis() > UPLOAD_SESSION_TTL_MS) {
+        System.out.println("[C01 /api/uploads] Expiring idle upload session " + upload.jobId + " at "
+            + upload.committedOffset() + " of " + upload.fileSize + " bytes.");
+        releaseAdmission(upload.jobId);
+        return true;
+      }
+      return false;
+    });
+  }
+
   public static void main(String[] args) {
     try {
       initRabbitMQ();
@@ -157,6 +483,9 @@ public class HelloWorld {
 
       config.jsonMapper(new JavalinJackson());
 
+      config.jetty.multipartConfig.cacheDirectory(MULTIPART_CACHE_DIR);
+      config.jetty.multipartConfig.maxInMemoryFileSize(MULTIPART_MAX_IN_MEMORY_KB, SizeUnit.KB);
+
     }).start(7000);
 
     app.ws("/api/testws", ws -> {
@@ -173,7 +502,49 @@ public class HelloWorld {
       ws.onError(ctx -> System.err.println("[C01 TestWS] Test WebSocket error: " + ctx.error()));
     });
 
+    app.get("/api/metrics/publisher", ctx -> ctx.json(publishMetrics.snapshot()));
+    app.get("/api/metrics/admission", ctx -> ctx.json(
+        admissionController != null ? admissionController.snapshot() : Map.of("enabled", false)));
+    app.get("/api/metrics/jobstatus",
+        ctx -> ctx.json(Map.of("hub", jobStatusHub.snapshot(), "stateCache", jobStateCache.snapshot())));
+
+    app.get("/api/jobs/states", ctx -> {
+      String jobIdsParam = ctx.queryParam("jobIds");
+      List<String> jobIds = new ArrayList<>();
+      if (jobIdsParam != null) {
+        for (String jobId : jobIdsParam.split(",")) {
+          if (!jobId.isBlank()) {
+            jobIds.add(jobId.trim());
+          }
+        }
+      }
+      if (jobIds.size() > MAX_BULK_STATUS_JOB_IDS) {
+        ctx.status(400).result("At most " + MAX_BULK_STATUS_JOB_IDS + " jobIds can be requested at once.");
+        return;
+      }
+      ctx.json(bulkJobStates(jobIds));
+    });
+
+    app.post("/api/jobs/states", ctx -> {
+      Map<String, Object> request = objectMapper.readValue(ctx.body(), new TypeReference<Map<String, Object>>() {
+      });
+      Object jobIdsValue = request.get("jobIds");
+      if (!(jobIdsValue instanceof List) || ((List<?>) jobIdsValue).size() > MAX_BULK_STATUS_JOB_IDS) {
+        ctx.status(400).result("jobIds must be an array of at most " + MAX_BULK_STATUS_JOB_IDS + " ids.");
+        return;
+      }
+      List<String> jobIds = new ArrayList<>();
+      for (Object jobId : (List<?>) jobIdsValue) {
+        jobIds.add(String.valueOf(jobId));
+      }
+      ctx.json(bulkJobStates(jobIds));
+    });
+
     app.post("/api/newJob", ctx -> {
+      String jobId = UUID.randomUUID().toString();
+      if (!admitOrReject(ctx, jobId, Math.max(0, ctx.contentLength()))) {
+        return;
+      }
       try {
         System.out.println("[C01 /api/newJob] Received request to /api/newJob.");
         System.out.println("[C01 /api/newJob] Request Content-Type: " + ctx.contentType());
@@ -186,10 +557,12 @@ public class HelloWorld {
         String key = ctx.formParam("key");
         String keySizeParam = ctx.formParam("keySize");
         String iv = ctx.formParam("iv");
+        String chunkSizeParam = ctx.formParam("chunkSize");
 
         if (file == null) {
           System.err.println(
               "[C01 /api/newJob] Error: ctx.uploadedFile(\"file\") returned null. This usually means the frontend did not send a file part with the name 'file' in the multipart/form-data request, or the Content-Type is not 'multipart/form-data'.");
+          releaseAdmission(jobId);
           ctx.status(400).result("File upload is missing.");
           return;
         }
@@ -199,8 +572,6 @@ public class HelloWorld {
             : file.filename();
         long originalFileSize = file.size();
 
-        String jobId = UUID.randomUUID().toString();
-
         System.out.println("[C01 /api/newJob] Job ID: " + jobId + ", Original Filename: '" + originalFileName +
             "', Uploaded Size: " + originalFileSize + " bytes, Content-Type: " + file.contentType());
 
@@ -208,63 +579,44 @@ public class HelloWorld {
           System.err.println("[C01 /api/newJob] Warning: Uploaded file '" + originalFileName + "' is empty (0 bytes).");
         }
 
-        byte[] fileBytes = file.content().readAllBytes();
-        int totalChunks = (int) Math.ceil((double) fileBytes.length / CHUNK_SIZE_BYTES);
-        if (totalChunks == 0 && fileBytes.length > 0) {
-          totalChunks = 1;
+        String resultDigest = null;
+        if (resultCache.isEnabled()) {
+          try (InputStream digestStream = file.content()) {
+            resultDigest = resultCache.digest(digestStream, normalizeOperation(operation), normalizeMode(mode),
+                parseKeySize(keySizeParam), key, iv);
+          }
+          String cachedPictureId = resultCache.lookup(resultDigest);
+          if (cachedPictureId != null) {
+            System.out.println("[C01 /api/newJob] Result cache hit for jobId: " + jobId + ". Reusing pictureId: "
+                + cachedPictureId + ". No chunks will be published.");
+            releaseAdmission(jobId);
+            c05Client.recordCompletedJob(jobId, originalFileName, normalizeOperation(operation), normalizeMode(mode),
+                cachedPictureId);
+            sendJobUpdateToClient(jobId, "DONE", cachedPictureId, null);
+            ctx.status(202).json(Map.of("jobId", jobId, "status", "DONE", "downloadLink",
+                "/api/pictures/" + cachedPictureId, "message", "Identical job already processed."));
+            return;
+          }
         }
-        if (fileBytes.length == 0) {
+
+        int chunkSize = chunkSizePolicy.chooseChunkSize(originalFileSize, parseRequestedChunkSize(chunkSizeParam));
+        int totalChunks = (int) Math.ceil((double) originalFileSize / chunkSize);
+        if (totalChunks == 0) {
           totalChunks = 1;
         }
 
-        System.out.println("[C01 /api/newJob] Total chunks required: " + totalChunks);
-
-        for (int chunkId = 0; chunkId < totalChunks; chunkId++) {
-          boolean isFirstChunk = (chunkId == 0);
-
-          String metadataJsonString = null;
-          if (isFirstChunk) {
-            Map<String, Object> jobMetadata = new HashMap<>();
-            jobMetadata.put("fileName", originalFileName);
-            jobMetadata.put("originalFileSize", originalFileSize);
-            jobMetadata.put("operation",
-                (operation != null && !operation.isEmpty()) ? operation.toUpperCase() : "ENCRYPT");
-            jobMetadata.put("mode", (mode != null && !mode.isEmpty()) ? mode.toUpperCase() : "ECB");
-            jobMetadata.put("key", (key != null) ? key : "");
-            try {
-              jobMetadata.put("keySize", keySizeParam != null ? Integer.parseInt(keySizeParam) : 128);
-            } catch (NumberFormatException e) {
-              System.err
-                  .println("[C01 /api/newJob] Invalid keySize parameter: " + keySizeParam + ". Defaulting to 128.");
-              jobMetadata.put("keySize", 128);
-            }
-
-            if (iv != null && !iv.isEmpty()) {
-              jobMetadata.put("iv", iv);
-            } else if ("CBC".equalsIgnoreCase(mode)) {
-              System.err.println(
-                  "[C01 /api/newJob] Warning: CBC mode specified but IV is missing or empty from request for job "
-                      + jobId);
-            }
+        System.out.println("[C01 /api/newJob] Chunk size: " + chunkSize + " bytes. Total chunks required: "
+            + totalChunks);
 
-            metadataJsonString = objectMapper.writeValueAsString(jobMetadata);
-          }
+        String metadataJsonString = buildJobMetadataJson(jobId, originalFileName, originalFileSize, operation, mode,
+            key, keySizeParam, iv, chunkSize, 0);
 
-          int chunkStart = chunkId * CHUNK_SIZE_BYTES;
-          int chunkEnd = Math.min(chunkStart + CHUNK_SIZE_BYTES, fileBytes.length);
-          byte[] chunkData = new byte[chunkEnd - chunkStart];
-          if (fileBytes.length > 0) {
-            System.arraycopy(fileBytes, chunkStart, chunkData, 0, chunkData.length);
-          }
-
-          ChunkMessage chunkMessage = new ChunkMessage(jobId, chunkId, totalChunks, isFirstChunk,
-              metadataJsonString,
-              Base64.getEncoder().encodeToString(chunkData));
-          String chunkMessageJson = objectMapper.writeValueAsString(chunkMessage);
-          rabbitPublishChannel.basicPublish(EXCHANGE_NAME_C03_JOBS, ROUTING_KEY_C03_JOBS, null,
-              chunkMessageJson.getBytes(StandardCharsets.UTF_8));
-          System.out.println(
-              "[C01 /api/newJob] Sent chunk " + chunkId + " of " + totalChunks + " to C03 for jobId: " + jobId);
+        if (resultDigest != null) {
+          resultCache.trackPending(jobId, resultDigest);
+        }
+        jobStateCache.update(jobId, "QUEUED", null, null);
+        try (InputStream fileStream = file.content()) {
+          publishChunksFromStream(jobId, fileStream, chunkSize, totalChunks, metadataJsonString);
         }
 
         ctx.status(202)
@@ -272,93 +624,190 @@ public class HelloWorld {
         System.out.println("[C01 /api/newJob] Response sent to client for jobId: " + jobId);
 
       } catch (Exception e) {
+        releaseAdmission(jobId);
         System.err.println("[C01 /api/newJob] Error processing new job request: " + e.getMessage());
         e.printStackTrace();
         ctx.status(500).result("Internal server error while processing the job.");
       }
     });
 
-    app.ws("/api/jobstatus/{jobId}", ws -> {
-      ws.onConnect(ctx -> {
-        ctx.session.setIdleTimeout(java.time.Duration.ofMinutes(15));
-        System.out.println(
-            "[C01 WS OnConnect] Handler invoked. Context hash: " + ctx.hashCode() + ". Idle timeout set to 15 mins.");
-        String jobId = null;
+    app.post("/api/uploads", ctx -> {
+      String jobId = UUID.randomUUID().toString();
+      try {
+        String fileName = ctx.formParam("filename");
+        String operation = ctx.formParam("operation");
+        String mode = ctx.formParam("mode");
+        String key = ctx.formParam("key");
+        String keySizeParam = ctx.formParam("keySize");
+        String iv = ctx.formParam("iv");
+        String chunkSizeParam = ctx.formParam("chunkSize");
+        long fileSize;
         try {
-          jobId = ctx.pathParam("jobId");
-          System.out.println("[C01 WS OnConnect] Attempting to connect WebSocket for jobId: " + jobId);
+          fileSize = Long.parseLong(ctx.formParam("fileSize"));
+        } catch (NumberFormatException | NullPointerException e) {
+          ctx.status(400).result("fileSize is missing or invalid.");
+          return;
+        }
+        if (fileSize <= 0 || fileName == null || fileName.trim().isEmpty()) {
+          ctx.status(400).result("A non-empty file name and size are required for resumable uploads.");
+          return;
+        }
 
-          webSocketSessions.put(jobId, ctx);
-          System.out.println("[C01 WS OnConnect] WebSocket successfully connected and session stored for jobId: "
-              + jobId + ". Session count: " + webSocketSessions.size());
-        } catch (Exception e) {
-          String logJobId = (jobId != null) ? jobId : "unavailable_or_null";
-          System.err
-              .println("[C01 WS OnConnect] Exception during WebSocket onConnect for (attempted) jobId: " + logJobId
-                  + ". Error: " + e.getMessage());
-          e.printStackTrace();
+        purgeExpiredUploads();
+        if (!admitOrReject(ctx, jobId, fileSize)) {
+          return;
+        }
+        int chunkSize = chunkSizePolicy.chooseChunkSize(fileSize, parseRequestedChunkSize(chunkSizeParam));
+        UploadSession upload = new UploadSession(jobId, fileSize, chunkSize);
+        String metadataJsonString = buildJobMetadataJson(jobId, fileName, fileSize, operation, mode, key,
+            keySizeParam, iv, chunkSize, UPLOAD_SESSION_TTL_MS);
+
+        jobStateCache.update(jobId, "QUEUED", null, null);
+        try (ChunkPublishSession session = openPublishSession(jobId, 1)) {
+          publishChunk(session, jobId, 0, upload.totalChunks, true, metadataJsonString, new byte[0], 0);
+          session.awaitAllConfirmed();
         }
+        uploadSessions.put(jobId, upload);
+        System.out.println("[C01 /api/uploads] Created upload session " + jobId + " for '" + fileName + "' ("
+            + fileSize + " bytes, " + upload.totalChunks + " chunks of " + chunkSize + " bytes).");
+        ctx.status(201).json(uploadStatus(upload));
+      } catch (Exception e) {
+        releaseAdmission(jobId);
+        System.err.println("[C01 /api/uploads] Error creating upload session: " + e.getMessage());
+        e.printStackTrace();
+        ctx.status(500).result("Internal server error while creating the upload session.");
+      }
+    });
+
+    app.get("/api/uploads/{uploadId}", ctx -> {
+      UploadSession upload = uploadSessions.get(ctx.pathParam("uploadId"));
+      if (upload == null) {
+        ctx.status(404).result("Unknown or expired upload session.");
+        return;
+      }
+      upload.touch();
+      ctx.header("Upload-Offset", String.valueOf(upload.committedOffset()));
+      ctx.json(uploadStatus(upload));
+    });
+
+    app.put("/api/uploads/{uploadId}", ctx -> {
+      UploadSession upload = uploadSessions.get(ctx.pathParam("uploadId"));
+      if (upload == null) {
+        ctx.status(404).result("Unknown or expired upload session.");
+        return;
+      }
+      long[] range = parseContentRange(ctx.header("Content-Range"), upload.fileSize);
+      if (range == null) {
+        ctx.status(416).result("Content-Range must be 'bytes start-end/" + upload.fileSize + "'.");
+        return;
+      }
+      if (range[0] % upload.chunkSize != 0
+          || ((range[1] + 1) % upload.chunkSize != 0 && range[1] + 1 != upload.fileSize)) {
+        ctx.status(400).result("Ranges must start and end on " + upload.chunkSize + "-byte chunk boundaries.");
+        return;
+      }
+      int firstChunkId = (int) (range[0] / upload.chunkSize);
+      int endChunkId = (int) ((range[1] + upload.chunkSize) / upload.chunkSize);
+      try (InputStream body = ctx.bodyInputStream()) {
+        publishUploadRange(upload, body, firstChunkId, endChunkId);
+      } catch (IOException e) {
+        System.err.println("[C01 /api/uploads] Range " + range[0] + "-" + range[1] + " of upload " + upload.jobId
+            + " was not fully committed: " + e.getMessage());
+        ctx.status(409).json(uploadStatus(upload));
+        return;
+      }
+      ctx.header("Upload-Offset", String.valueOf(upload.committedOffset()));
+      ctx.json(uploadStatus(upload));
+    });
+
+    app.post("/api/uploads/{uploadId}/commit", ctx -> {
+      String uploadId = ctx.pathParam("uploadId");
+      UploadSession upload = uploadSessions.get(uploadId);
+      if (upload == null) {
+        ctx.status(404).result("Unknown or expired upload session.");
+        return;
+      }
+      if (!upload.isComplete()) {
+        ctx.status(409).json(uploadStatus(upload));
+        return;
+      }
+      uploadSessions.remove(uploadId);
+      System.out.println("[C01 /api/uploads] Upload " + uploadId + " committed. All " + upload.totalChunks
+          + " chunks published to C03.");
+      ctx.status(202)
+          .json(Map.of("jobId", uploadId, "status", "accepted", "message", "Job is being processed in chunks."));
+    });
+
+    app.ws("/api/jobstatus", ws -> {
+      ws.onConnect(ctx -> {
+        ctx.session.setIdleTimeout(java.time.Duration.ofMinutes(15));
+        jobStatusHub.register(ctx, true);
+        System.out.println("[C01 WS OnConnect] Multiplexed job status session " + ctx.sessionId()
+            + " connected. Sessions: " + jobStatusHub.sessionCount());
       });
       ws.onMessage(ctx -> {
-        String jobId = "unknown_onMessage";
         try {
-          jobId = ctx.pathParam("jobId");
+          Map<String, Object> request = objectMapper.readValue(ctx.message(),
+              new TypeReference<Map<String, Object>>() {
+              });
+          String action = (String) request.get("action");
+          Object jobIds = request.get("jobIds");
+          if (!(jobIds instanceof List)) {
+            ctx.send(Map.of("type", "error", "message", "jobIds must be an array."));
+            return;
+          }
+          for (Object jobIdValue : (List<?>) jobIds) {
+            String jobId = String.valueOf(jobIdValue);
+            if ("unsubscribe".equals(action)) {
+              jobStatusHub.unsubscribe(ctx, jobId);
+            } else if (jobStatusHub.subscribe(ctx, jobId)) {
+              replayJobState(ctx, jobId);
+            } else {
+              ctx.send(Map.of("type", "error", "jobId", jobId, "message", "Subscription limit reached."));
+            }
+          }
         } catch (Exception e) {
-          System.err.println("[C01 WS OnMessage] Error retrieving jobId from path: " + e.getMessage()
-              + ". Context hash: " + ctx.hashCode());
+          System.err.println("[C01 WS OnMessage] Invalid subscription message from session " + ctx.sessionId()
+              + ": " + e.getMessage());
+          ctx.send(Map.of("type", "error", "message", "Invalid subscription message."));
         }
-        System.out.println("[C01 WS OnMessage] Received WebSocket message from jobId: " + jobId + " (Context hash: "
-            + ctx.hashCode() + "): " + ctx.message());
       });
       ws.onClose(ctx -> {
-        String jobId = "unknown_onClose";
-        try {
-          jobId = ctx.pathParam("jobId");
-        } catch (Exception e) {
-          System.err.println("[C01 WS OnClose] Error retrieving jobId from path: " + e.getMessage() + ". Context hash: "
-              + ctx.hashCode());
-        }
-        WsContext removedSession = webSocketSessions.remove(jobId);
-        boolean removed = removedSession != null;
-        System.out.println("[C01 WS OnClose] WebSocket disconnected for jobId: " + jobId +
-            " (Context hash: " + ctx.hashCode() + "). Status: " + ctx.status() +
-            ", Reason: " + (ctx.reason() == null ? "N/A" : ctx.reason()) +
-            ". Session was active and removed: " + removed + ". Remaining sessions: " + webSocketSessions.size());
-        if (removedSession != null && removedSession != ctx && !jobId.startsWith("unknown_")) {
-          System.err.println("[C01 WS OnClose] CRITICAL: Removed session context hash " + removedSession.hashCode()
-              + " does not match closing context hash " + ctx.hashCode() + " for Job ID: " + jobId);
-        }
-        if (jobId.startsWith("unknown_") && removed) {
-          System.err.println(
-              "[C01 WS OnClose] Warning: A session was removed but its jobId could not be retrieved from path params during onClose. Key used for removal: "
-                  + jobId);
-        }
+        jobStatusHub.unregister(ctx);
+        System.out.println("[C01 WS OnClose] Multiplexed job status session " + ctx.sessionId()
+            + " disconnected. Status: " + ctx.status() + ". Remaining sessions: " + jobStatusHub.sessionCount());
       });
       ws.onError(ctx -> {
-        String jobId = "unknown_onError";
-        try {
-          jobId = ctx.pathParam("jobId");
-        } catch (Exception e) {
-          System.err.println("[C01 WS OnError] Error retrieving jobId from path: " + e.getMessage() + ". Context hash: "
-              + ctx.hashCode());
-        }
         Throwable error = ctx.error();
-        System.err.println("[C01 WS OnError] WebSocket error for jobId: " + jobId +
-            " (Context hash: " + ctx.hashCode() + "). Error: "
+        System.err.println("[C01 WS OnError] Multiplexed job status session " + ctx.sessionId() + " error: "
             + (error != null ? error.getMessage() : "Unknown error"));
-        if (error != null) {
-          error.printStackTrace();
-        }
-        WsContext sessionOnError = webSocketSessions.remove(jobId);
-        if (sessionOnError != null) {
-          System.out.println("[C01 WS OnError] Session removed for jobId: " + jobId
-              + " due to error. Remaining sessions: " + webSocketSessions.size());
-          if (jobId.startsWith("unknown_")) {
-            System.err.println(
-                "[C01 WS OnError] Warning: A session was removed due to error, but its jobId could not be retrieved from path params during onError. Key used for removal: "
-                    + jobId);
-          }
-        }
+        jobStatusHub.unregister(ctx);
+      });
+    });
+
+    app.ws("/api/jobstatus/{jobId}", ws -> {
+      ws.onConnect(ctx -> {
+        ctx.session.setIdleTimeout(java.time.Duration.ofMinutes(15));
+        String jobId = ctx.pathParam("jobId");
+        jobStatusHub.register(ctx, false);
+        jobStatusHub.subscribe(ctx, jobId);
+        System.out.println("[C01 WS OnConnect] WebSocket connected for jobId: " + jobId + " (session "
+            + ctx.sessionId() + "). Sessions: " + jobStatusHub.sessionCount());
+        replayJobState(ctx, jobId);
+      });
+      ws.onMessage(ctx -> System.out.println("[C01 WS OnMessage] Received WebSocket message from jobId: "
+          + ctx.pathParam("jobId") + " (session " + ctx.sessionId() + "): " + ctx.message()));
+      ws.onClose(ctx -> {
+        jobStatusHub.unregister(ctx);
+        System.out.println("[C01 WS OnClose] WebSocket disconnected for jobId: " + ctx.pathParam("jobId")
+            + " (session " + ctx.sessionId() + "). Status: " + ctx.status() + ", Reason: "
+            + (ctx.reason() == null ? "N/A" : ctx.reason()) + ". Remaining sessions: " + jobStatusHub.sessionCount());
+      });
+      ws.onError(ctx -> {
+        Throwable error = ctx.error();
+        System.err.println("[C01 WS OnError] WebSocket error for jobId: " + ctx.pathParam("jobId") + " (session "
+            + ctx.sessionId() + "). Error: " + (error != null ? error.getMessage() : "Unknown error"));
+        jobStatusHub.unregister(ctx);
       });
     });
 
@@ -369,9 +818,14 @@ public class HelloWorld {
           rabbitConsumeChannel.close();
           System.out.println("[C01] RabbitMQ consume channel closed.");
         }
-        if (rabbitPublishChannel != null && rabbitPublishChannel.isOpen()) {
-          rabbitPublishChannel.close();
-          System.out.println("[C01] RabbitMQ publish channel closed.");
+        publishExecutor.shutdown();
+        jobStatusHub.close();
+        if (admissionController != null) {
+          admissionController.close();
+        }
+        if (channelPool != null) {
+          channelPool.close();
+          System.out.println("[C01] RabbitMQ publish channel pool closed.");
         }
         if (rabbitConnection != null && rabbitConnection.isOpen()) {
           rabbitConnection.close();
@@ -0,0 +1,91 @@
+package com.ase.ism.wcdad;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class JobStateCache {
+  private final int maxEntries;
+  private final long ttlMillis;
+  private final LinkedHashMap<String, JobState> states = new LinkedHashMap<>();
+  private long evictions = 0;
+
+  public JobStateCache(int maxEntries, long ttlMillis) {
+    this.maxEntries = Math.max(1, maxEntries);
+    this.ttlMillis = ttlMillis;
+  }
+
+  public synchronized JobState update(String jobId, String status, String pictureId, String errorMessage) {
+    long now = System.currentTimeMillis();
+    JobState previous = states.get(jobId);
+    if (previous != null && previous.isTerminal() && !isTerminal(status)) {
+      return previous;
+    }
+    states.remove(jobId);
+    JobState next = new JobState(jobId, status,
+        pictureId != null ? pictureId : (previous != null ? previous.pictureId : null), errorMessage, now);
+    states.put(jobId, next);
+    evict(now);
+    return next;
+  }
+
+  public synchronized JobState get(String jobId) {
+    JobState state = states.get(jobId);
+    if (state != null && isExpired(state, System.currentTimeMillis())) {
+      states.remove(jobId);
+      evictions++;
+      return null;
+    }
+    return state;
+  }
+
+  public synchronized Map<String, Object> snapshot() {
+    evict(System.currentTimeMillis());
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    snapshot.put("entries", states.size());
+    snapshot.put("maxEntries", maxEntries);
+    snapshot.put("ttlMillis", ttlMillis);
+    snapshot.put("evictions", evictions);
+    return snapshot;
+  }
+
+  private void evict(long now) {
+    Iterator<JobState> iterator = states.values().iterator();
+    while (iterator.hasNext()) {
+      JobState eldest = iterator.next();
+      if (states.size() <= maxEntries && !isExpired(eldest, now)) {
+        break;
+      }
+      iterator.remove();
+      evictions++;
+    }
+  }
+
+  private boolean isExpired(JobState state, long now) {
+    return now - state.updatedAtMillis > ttlMillis;
+  }
+
+  private static boolean isTerminal(String status) {
+    return "DONE".equals(status) || "ERROR".equals(status);
+  }
+
+  public static class JobState {
+    final String jobId;
+    final String status;
+    final String pictureId;
+    final String errorMessage;
+    final long updatedAtMillis;
+
+    JobState(String jobId, String status, String pictureId, String errorMessage, long updatedAtMillis) {
+      this.jobId = jobId;
+      this.status = status;
+      this.pictureId = pictureId;
+      this.errorMessage = errorMessage;
+      this.updatedAtMillis = updatedAtMillis;
+    }
+
+    boolean isTerminal() {
+      return JobStateCache.isTerminal(status);
+    }
+  }
+}
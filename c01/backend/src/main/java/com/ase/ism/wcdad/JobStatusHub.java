@@ -0,0 +1,194 @@
+package com.ase.ism.wcdad;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.javalin.websocket.WsContext;
+
+public class JobStatusHub implements AutoCloseable {
+  private final Map<String, Set<Subscriber>> subscribersByJob = new ConcurrentHashMap<>();
+  private final Map<String, Subscriber> subscribersBySession = new ConcurrentHashMap<>();
+  private final int maxSubscriptionsPerSession;
+  private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "c01-job-status-flusher");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private final LongAdder updatesReceived = new LongAdder();
+  private final LongAdder updatesCoalesced = new LongAdder();
+  private final LongAdder framesSent = new LongAdder();
+
+  public JobStatusHub(long flushIntervalMs, int maxSubscriptionsPerSession) {
+    this.maxSubscriptionsPerSession = maxSubscriptionsPerSession;
+    flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  public void register(WsContext ctx, boolean multiplexed) {
+    subscribersBySession.computeIfAbsent(ctx.sessionId(), key -> new Subscriber(ctx, multiplexed));
+  }
+
+  public boolean subscribe(WsContext ctx, String jobId) {
+    Subscriber subscriber = subscribersBySession.get(ctx.sessionId());
+    if (subscriber == null) {
+      return false;
+    }
+    synchronized (subscriber) {
+      if (!subscriber.jobIds.contains(jobId) && subscriber.jobIds.size() >= maxSubscriptionsPerSession) {
+        return false;
+      }
+      subscriber.jobIds.add(jobId);
+    }
+    subscribersByJob.compute(jobId, (key, subscribers) -> {
+      Set<Subscriber> updated = subscribers != null ? subscribers : ConcurrentHashMap.newKeySet();
+      updated.add(subscriber);
+      return updated;
+    });
+    return true;
+  }
+
+  public void unsubscribe(WsContext ctx, String jobId) {
+    Subscriber subscriber = subscribersBySession.get(ctx.sessionId());
+    if (subscriber != null) {
+      detach(subscriber, jobId);
+    }
+  }
+
+  public void unregister(WsContext ctx) {
+    Subscriber subscriber = subscribersBySession.remove(ctx.sessionId());
+    if (subscriber == null) {
+      return;
+    }
+    List<String> jobIds;
+    synchronized (subscriber) {
+      jobIds = new ArrayList<>(subscriber.jobIds);
+    }
+    for (String jobId : jobIds) {
+      detach(subscriber, jobId);
+    }
+  }
+
+  public int publish(String jobId, Map<String, Object> update) {
+    updatesReceived.increment();
+    Set<Subscriber> subscribers = subscribersByJob.get(jobId);
+    if (subscribers == null || subscribers.isEmpty()) {
+      return 0;
+    }
+    for (Subscriber subscriber : subscribers) {
+      enqueue(subscriber, jobId, update);
+    }
+    return subscribers.size();
+  }
+
+  public void sendTo(WsContext ctx, String jobId, Map<String, Object> update) {
+    Subscriber subscriber = subscribersBySession.get(ctx.sessionId());
+    if (subscriber != null) {
+      enqueue(subscriber, jobId, update);
+    }
+  }
+
+  public int sessionCount() {
+    return subscribersBySession.size();
+  }
+
+  public Map<String, Object> snapshot() {
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    snapshot.put("sessions", subscribersBySession.size());
+    snapshot.put("subscribedJobs", subscribersByJob.size());
+    snapshot.put("updatesReceived", updatesReceived.sum());
+    snapshot.put("updatesCoalesced", updatesCoalesced.sum());
+    snapshot.put("framesSent", framesSent.sum());
+    return snapshot;
+  }
+
+  @Override
+  public void close() {
+    flusher.shutdown();
+  }
+
+  private void enqueue(Subscriber subscriber, String jobId, Map<String, Object> update) {
+    synchronized (subscriber) {
+      Map<String, Object> queued = subscriber.pending.get(jobId);
+      if (queued != null) {
+        updatesCoalesced.increment();
+        if (updatedAt(queued) > updatedAt(update)) {
+          return;
+        }
+      }
+      subscriber.pending.put(jobId, update);
+    }
+  }
+
+  private static long updatedAt(Map<String, Object> update) {
+    Object updatedAt = update.get("updatedAt");
+    return updatedAt instanceof Number ? ((Number) updatedAt).longValue() : 0L;
+  }
+
+  private void detach(Subscriber subscriber, String jobId) {
+    synchronized (subscriber) {
+      subscriber.jobIds.remove(jobId);
+    }
+    subscribersByJob.computeIfPresent(jobId, (key, subscribers) -> {
+      subscribers.remove(subscriber);
+      return subscribers.isEmpty() ? null : subscribers;
+    });
+  }
+
+  private void flush() {
+    for (Subscriber subscriber : subscribersBySession.values()) {
+      List<Map<String, Object>> updates;
+      synchronized (subscriber) {
+        if (subscriber.pending.isEmpty()) {
+          continue;
+        }
+        updates = new ArrayList<>(subscriber.pending.values());
+        subscriber.pending.clear();
+      }
+      try {
+        if (!subscriber.ctx.session.isOpen()) {
+          unregister(subscriber.ctx);
+          continue;
+        }
+        if (subscriber.multiplexed) {
+          subscriber.ctx.send(Map.of("type", "jobUpdates", "updates", updates));
+          framesSent.increment();
+        } else {
+          for (Map<String, Object> update : updates) {
+            subscriber.ctx.send(update);
+            framesSent.increment();
+          }
+        }
+        for (Map<String, Object> update : updates) {
+          Object status = update.get("status");
+          if (subscriber.multiplexed && ("DONE".equals(status) || "ERROR".equals(status))) {
+            detach(subscriber, (String) update.get("jobId"));
+          }
+        }
+      } catch (Exception e) {
+        System.err.println("[C01 JobStatusHub] Failed to send job updates to session " + subscriber.ctx.sessionId()
+            + ": " + e.getMessage() + ". Dropping session.");
+        unregister(subscriber.ctx);
+      }
+    }
+  }
+
+  private static class Subscriber {
+    final WsContext ctx;
+    final boolean multiplexed;
+    final Set<String> jobIds = new HashSet<>();
+    final Map<String, Map<String, Object>> pending = new LinkedHashMap<>();
+
+    Subscriber(WsContext ctx, boolean multiplexed) {
+      this.ctx = ctx;
+      this.multiplexed = multiplexed;
+    }
+  }
+}
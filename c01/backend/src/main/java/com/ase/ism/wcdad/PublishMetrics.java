@@ -0,0 +1,56 @@
+package com.ase.ism.wcdad;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.ase.ism.wcdad.common.LatencyHistogram;
+
+public class PublishMetrics {
+  private static final double EWMA_WEIGHT = 0.2;
+
+  final LatencyHistogram confirmLatency = new LatencyHistogram();
+  final LatencyHistogram windowStallTime = new LatencyHistogram();
+  final LatencyHistogram channelLeaseWaitTime = new LatencyHistogram();
+  final LongAdder published = new LongAdder();
+  final LongAdder publishedBytes = new LongAdder();
+  final LongAdder acked = new LongAdder();
+  final LongAdder nacked = new LongAdder();
+  final LongAdder confirmTimeouts = new LongAdder();
+  final LongAdder retransmits = new LongAdder();
+  final LongAdder windowStalls = new LongAdder();
+  final LongAdder channelLeaseWaits = new LongAdder();
+  private volatile double confirmMillisPerMbEwma = -1;
+
+  void recordConfirm(int bodyBytes, long latencyNanos) {
+    acked.increment();
+    confirmLatency.recordNanos(latencyNanos);
+    if (bodyBytes <= 0) {
+      return;
+    }
+    double millisPerMb = (latencyNanos / 1_000_000.0) / (bodyBytes / (1024.0 * 1024.0));
+    double previous = confirmMillisPerMbEwma;
+    confirmMillisPerMbEwma = previous < 0 ? millisPerMb : previous + EWMA_WEIGHT * (millisPerMb - previous);
+  }
+
+  double getConfirmMillisPerMbEwma() {
+    return confirmMillisPerMbEwma;
+  }
+
+  public Map<String, Object> snapshot() {
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    snapshot.put("published", published.sum());
+    snapshot.put("publishedBytes", publishedBytes.sum());
+    snapshot.put("acked", acked.sum());
+    snapshot.put("nacked", nacked.sum());
+    snapshot.put("confirmTimeouts", confirmTimeouts.sum());
+    snapshot.put("retransmits", retransmits.sum());
+    snapshot.put("windowStalls", windowStalls.sum());
+    snapshot.put("channelLeaseWaits", channelLeaseWaits.sum());
+    snapshot.put("confirmMillisPerMbEwma", confirmMillisPerMbEwma);
+    snapshot.put("confirmLatency", confirmLatency.snapshot());
+    snapshot.put("windowStallTime", windowStallTime.snapshot());
+    snapshot.put("channelLeaseWaitTime", channelLeaseWaitTime.snapshot());
+    return snapshot;
+  }
+}
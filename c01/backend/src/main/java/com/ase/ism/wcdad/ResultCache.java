@@ -0,0 +1,168 @@
+package com.ase.ism.wcdad;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+public class ResultCache {
+  private static final String HMAC_ALGORITHM = "HmacSHA256";
+  private static final int DIGEST_BUFFER_SIZE = 64 * 1024;
+
+  private final int maxEntries;
+  private final Path indexPath;
+  private final SecretKeySpec hmacKey;
+  private final Map<String, String> pictureIdsByDigest;
+  private final Map<String, String> pendingDigestsByJobId;
+  private int indexLinesWritten = 0;
+
+  public ResultCache(int maxEntries, Path indexPath, String secret) {
+    this.maxEntries = Math.max(0, maxEntries);
+    this.indexPath = indexPath;
+    byte[] keyBytes;
+    if (secret != null && !secret.isEmpty()) {
+      keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+    } else {
+      keyBytes = new byte[32];
+      new SecureRandom().nextBytes(keyBytes);
+      if (indexPath != null) {
+        System.err.println("[C01 ResultCache] No cache secret configured. Entries persisted to " + indexPath
+            + " will not match after a restart.");
+      }
+    }
+    this.hmacKey = new SecretKeySpec(keyBytes, HMAC_ALGORITHM);
+    this.pictureIdsByDigest = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+        return size() > ResultCache.this.maxEntries;
+      }
+    };
+    this.pendingDigestsByJobId = new LinkedHashMap<>() {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+        return size() > ResultCache.this.maxEntries;
+      }
+    };
+    loadIndex();
+  }
+
+  public boolean isEnabled() {
+    return maxEntries > 0;
+  }
+
+  public String digest(InputStream content, String operation, String mode, int keySize, String key, String iv)
+      throws IOException {
+    Mac mac;
+    try {
+      mac = Mac.getInstance(HMAC_ALGORITHM);
+      mac.init(hmacKey);
+    } catch (GeneralSecurityException e) {
+      throw new IOException("Failed to initialise result cache digest", e);
+    }
+    String parameters = operation + "\n" + mode + "\n" + keySize + "\n" + (key != null ? key : "") + "\n"
+        + (iv != null ? iv : "") + "\n";
+    mac.update(parameters.getBytes(StandardCharsets.UTF_8));
+
+    byte[] buffer = new byte[DIGEST_BUFFER_SIZE];
+    int bytesRead;
+    while ((bytesRead = content.read(buffer)) != -1) {
+      mac.update(buffer, 0, bytesRead);
+    }
+    return HexFormat.of().formatHex(mac.doFinal());
+  }
+
+  public synchronized String lookup(String digest) {
+    return pictureIdsByDigest.get(digest);
+  }
+
+  public synchronized void trackPending(String jobId, String digest) {
+    pendingDigestsByJobId.put(jobId, digest);
+  }
+
+  public void onJobUpdate(String jobId, String status, String pictureId) {
+    String digest;
+    synchronized (this) {
+      if ("DONE".equals(status) || "ERROR".equals(status)) {
+        digest = pendingDigestsByJobId.remove(jobId);
+      } else {
+        return;
+      }
+      if (digest == null || !"DONE".equals(status) || pictureId == null) {
+        return;
+      }
+      pictureIdsByDigest.put(digest, pictureId);
+    }
+    System.out.println("[C01 ResultCache] Cached pictureId " + pictureId + " for jobId: " + jobId);
+    appendToIndex(digest, pictureId);
+  }
+
+  public synchronized int size() {
+    return pictureIdsByDigest.size();
+  }
+
+  private void loadIndex() {
+    if (indexPath == null || !isEnabled() || !Files.exists(indexPath)) {
+      return;
+    }
+    try {
+      List<String> lines = Files.readAllLines(indexPath, StandardCharsets.UTF_8);
+      for (String line : lines) {
+        String[] parts = line.trim().split(" ");
+        if (parts.length == 2) {
+          pictureIdsByDigest.put(parts[0], parts[1]);
+        }
+      }
+      System.out.println("[C01 ResultCache] Loaded " + pictureIdsByDigest.size() + " entries from " + indexPath);
+      if (lines.size() > pictureIdsByDigest.size()) {
+        compactIndex();
+      } else {
+        indexLinesWritten = lines.size();
+      }
+    } catch (IOException e) {
+      System.err.println("[C01 ResultCache] Failed to load index " + indexPath + ": " + e.getMessage());
+    }
+  }
+
+  private synchronized void appendToIndex(String digest, String pictureId) {
+    if (indexPath == null) {
+      return;
+    }
+    try {
+      if (indexLinesWritten >= maxEntries * 2) {
+        compactIndex();
+        return;
+      }
+      Files.writeString(indexPath, digest + " " + pictureId + "\n", StandardCharsets.UTF_8,
+          StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+      indexLinesWritten++;
+    } catch (IOException e) {
+      System.err.println("[C01 ResultCache] Failed to append to index " + indexPath + ": " + e.getMessage());
+    }
+  }
+
+  private synchronized void compactIndex() throws IOException {
+    Path tempPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+    List<Map.Entry<String, String>> entries = new ArrayList<>(pictureIdsByDigest.entrySet());
+    try (BufferedWriter writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+      for (Map.Entry<String, String> entry : entries) {
+        writer.write(entry.getKey() + " " + entry.getValue() + "\n");
+      }
+    }
+    Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    indexLinesWritten = entries.size();
+  }
+}
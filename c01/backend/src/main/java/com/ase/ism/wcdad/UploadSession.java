@@ -0,0 +1,80 @@
+package com.ase.ism.wcdad;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+public class UploadSession {
+  final String jobId;
+  final long fileSize;
+  final int chunkSize;
+  final int totalChunks;
+  private final BitSet committedChunks;
+  private final BitSet claimedChunks;
+  private volatile long lastActivityMillis = System.currentTimeMillis();
+
+  public UploadSession(String jobId, long fileSize, int chunkSize) {
+    this.jobId = jobId;
+    this.fileSize = fileSize;
+    this.chunkSize = chunkSize;
+    this.totalChunks = (int) ((fileSize + chunkSize - 1) / chunkSize);
+    this.committedChunks = new BitSet(totalChunks);
+    this.claimedChunks = new BitSet(totalChunks);
+  }
+
+  public int chunkLength(int chunkId) {
+    return (int) Math.min(chunkSize, fileSize - (long) chunkId * chunkSize);
+  }
+
+  public synchronized boolean claim(int chunkId) {
+    touch();
+    if (committedChunks.get(chunkId) || claimedChunks.get(chunkId)) {
+      return false;
+    }
+    claimedChunks.set(chunkId);
+    return true;
+  }
+
+  public synchronized void release(int chunkId) {
+    claimedChunks.clear(chunkId);
+  }
+
+  public synchronized void commit(int chunkId) {
+    touch();
+    claimedChunks.clear(chunkId);
+    committedChunks.set(chunkId);
+  }
+
+  public synchronized int committedChunkCount() {
+    return committedChunks.cardinality();
+  }
+
+  public synchronized boolean isComplete() {
+    return committedChunks.cardinality() == totalChunks;
+  }
+
+  public synchronized long committedOffset() {
+    int contiguous = committedChunks.nextClearBit(0);
+    return Math.min(fileSize, (long) contiguous * chunkSize);
+  }
+
+  public synchronized List<long[]> missingRanges() {
+    List<long[]> ranges = new ArrayList<>();
+    int start = committedChunks.nextClearBit(0);
+    while (start < totalChunks) {
+      int nextCommitted = committedChunks.nextSetBit(start);
+      int end = nextCommitted < 0 ? totalChunks : Math.min(totalChunks, nextCommitted);
+      ranges.add(new long[] { (long) start * chunkSize, Math.min(fileSize, (long) end * chunkSize) - 1 });
+      start = committedChunks.nextClearBit(end);
+    }
+    return ranges;
+  }
+
+  public void touch() {
+    lastActivityMillis = System.currentTimeMillis();
+  }
+
+  public long idleMillis() {
+    return System.currentTimeMillis() - lastActivityMillis;
+  }
+}
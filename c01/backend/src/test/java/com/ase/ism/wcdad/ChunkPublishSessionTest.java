@@ -0,0 +1,200 @@
+package com.ase.ism.wcdad;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.ase.ism.wcdad.common.ChunkCodec;
+import com.ase.ism.wcdad.common.ChunkMessage;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmCallback;
+import com.rabbitmq.client.Connection;
+
+class ChunkPublishSessionTest {
+  private static final int CHUNK_SIZE = 1024;
+  private static final int CHUNKS_PER_JOB = 300;
+  private static final int JOBS = 4;
+  private static final int LANES_PER_JOB = 4;
+  private static final long CONFIRM_DELAY_MS = 1;
+  // Slow enough that a data chunk published without waiting for it would be caught.
+  private static final long FIRST_CHUNK_CONFIRM_DELAY_MS = 50;
+  private static final String METADATA = "{\"fileName\":\"image.bmp\"}";
+
+  private final FakeBroker broker = new FakeBroker();
+  private final ExecutorService publishExecutor = Executors.newCachedThreadPool();
+  private final ExecutorService uploads = Executors.newFixedThreadPool(JOBS);
+
+  @AfterEach
+  void shutDown() {
+    uploads.shutdownNow();
+    publishExecutor.shutdownNow();
+    broker.confirmer.shutdownNow();
+  }
+
+  @Test
+  void parallelLanesKeepChunkMetadataCorrect() throws Exception {
+    ChannelPool pool = new ChannelPool(broker.connection(), "jobs", JOBS * LANES_PER_JOB, new PublishMetrics());
+    List<String> jobIds = new ArrayList<>();
+    List<Future<?>> running = new ArrayList<>();
+    for (int i = 0; i < JOBS; i++) {
+      String jobId = UUID.randomUUID().toString();
+      jobIds.add(jobId);
+      running.add(uploads.submit(() -> {
+        try (ChunkPublishSession session = new ChunkPublishSession(pool, publishExecutor, jobId, "shard.0",
+            LANES_PER_JOB, 32, 30_000, 5, 5_000)) {
+          byte[] buffer = new byte[CHUNK_SIZE];
+          for (int chunkId = 0; chunkId < CHUNKS_PER_JOB; chunkId++) {
+            Arrays.fill(buffer, (byte) chunkId);
+            // The last chunk is short, like the tail of a real upload.
+            int length = chunkId == CHUNKS_PER_JOB - 1 ? CHUNK_SIZE / 3 : CHUNK_SIZE;
+            HelloWorld.publishChunk(session, jobId, chunkId, CHUNKS_PER_JOB, chunkId == 0,
+                chunkId == 0 ? METADATA : null, buffer, length);
+          }
+          session.awaitAllConfirmed();
+        }
+        return null;
+      }));
+    }
+    for (Future<?> upload : running) {
+      upload.get(60, TimeUnit.SECONDS);
+    }
+    pool.close();
+
+    assertTrue(broker.nacked.get() > 0, "some chunks must have been nacked and retransmitted");
+    assertTrue(broker.channelsUsed.size() > JOBS, "large jobs must publish over more than one channel");
+    for (String jobId : jobIds) {
+      Map<Integer, List<Confirmed>> byChunk = new ConcurrentHashMap<>();
+      for (Confirmed confirmed : broker.acked) {
+        if (confirmed.chunk.jobId.equals(jobId)) {
+          byChunk.computeIfAbsent(confirmed.chunk.chunkId, id -> new ArrayList<>()).add(confirmed);
+        }
+      }
+      assertEquals(CHUNKS_PER_JOB, byChunk.size(), "every chunk of " + jobId + " is confirmed");
+      long firstChunkAcked = byChunk.get(0).get(0).ackedAt;
+      for (Map.Entry<Integer, List<Confirmed>> entry : byChunk.entrySet()) {
+        int chunkId = entry.getKey();
+        assertEquals(1, entry.getValue().size(), "chunk " + chunkId + " is confirmed exactly once");
+        Confirmed confirmed = entry.getValue().get(0);
+        ChunkMessage chunk = confirmed.chunk;
+        assertEquals(CHUNKS_PER_JOB, chunk.totalChunks);
+        assertEquals(chunkId == 0, chunk.firstChunk);
+        if (chunkId == 0) {
+          assertEquals(METADATA, chunk.metadataJson);
+        } else {
+          assertNull(chunk.metadataJson);
+          assertTrue(broker.firstPublishedAt.get(jobId + "/" + chunkId) > firstChunkAcked,
+              "data chunk " + chunkId + " was published before the first chunk was confirmed");
+        }
+        int length = chunkId == CHUNKS_PER_JOB - 1 ? CHUNK_SIZE / 3 : CHUNK_SIZE;
+        byte[] expected = new byte[length];
+        Arrays.fill(expected, (byte) chunkId);
+        assertArrayEquals(expected, chunk.chunkData, "payload of chunk " + chunkId);
+      }
+    }
+  }
+
+  private static class Confirmed {
+    final ChunkMessage chunk;
+    final long ackedAt;
+
+    Confirmed(ChunkMessage chunk, long ackedAt) {
+      this.chunk = chunk;
+      this.ackedAt = ackedAt;
+    }
+  }
+
+  /**
+   * Confirm-mode channels that confirm every publish asynchronously, the
+   * first chunk of a job slower than the rest, and nack every 17th publish
+   * once.
+   */
+  private static class FakeBroker {
+    final ScheduledExecutorService confirmer = Executors.newScheduledThreadPool(2);
+    final List<Confirmed> acked = Collections.synchronizedList(new ArrayList<>());
+    final Map<String, Long> firstPublishedAt = new ConcurrentHashMap<>();
+    final Set<Integer> channelsUsed = ConcurrentHashMap.newKeySet();
+    final Set<String> nackedOnce = ConcurrentHashMap.newKeySet();
+    final AtomicInteger publishes = new AtomicInteger();
+    final AtomicInteger nacked = new AtomicInteger();
+    final AtomicLong clock = new AtomicLong();
+    final AtomicInteger channelNumbers = new AtomicInteger();
+
+    Connection connection() {
+      return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+          new Class<?>[] { Connection.class },
+          (proxy, method, args) -> "createChannel".equals(method.getName()) ? channel() : null);
+    }
+
+    private Channel channel() {
+      int channelNumber = channelNumbers.incrementAndGet();
+      AtomicLong nextSeqNo = new AtomicLong(1);
+      ConfirmCallback[] callbacks = new ConfirmCallback[2];
+      return (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[] { Channel.class },
+          (proxy, method, args) -> {
+            switch (method.getName()) {
+              case "addConfirmListener" -> {
+                callbacks[0] = (ConfirmCallback) args[0];
+                callbacks[1] = (ConfirmCallback) args[1];
+                return null;
+              }
+              case "getNextPublishSeqNo" -> {
+                return nextSeqNo.get();
+              }
+              case "basicPublish" -> {
+                long seqNo = nextSeqNo.getAndIncrement();
+                ChunkMessage chunk = ChunkCodec.decode((AMQP.BasicProperties) args[2], (byte[]) args[3]);
+                String key = chunk.jobId + "/" + chunk.chunkId;
+                firstPublishedAt.putIfAbsent(key, clock.incrementAndGet());
+                channelsUsed.add(channelNumber);
+                boolean nack = publishes.incrementAndGet() % 17 == 0 && nackedOnce.add(key);
+                confirmer.schedule(() -> {
+                  try {
+                    if (nack) {
+                      nacked.incrementAndGet();
+                      callbacks[1].handle(seqNo, false);
+                    } else {
+                      acked.add(new Confirmed(chunk, clock.incrementAndGet()));
+                      callbacks[0].handle(seqNo, false);
+                    }
+                  } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                  }
+                }, chunk.firstChunk ? FIRST_CHUNK_CONFIRM_DELAY_MS : CONFIRM_DELAY_MS, TimeUnit.MILLISECONDS);
+                return null;
+              }
+              case "isOpen" -> {
+                return true;
+              }
+              case "getChannelNumber" -> {
+                return channelNumber;
+              }
+              default -> {
+                return null;
+              }
+            }
+          });
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package com.ase.ism.wcdad;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.ase.ism.wcdad.common.ChunkCodec;
+
+class ChunkSizePolicyTest {
+  private static final int KB = 1024;
+  private static final int MB = 1024 * KB;
+  private static final int DEFAULT_CHUNK_SIZE = 512 * KB;
+  private static final int MAX_CHUNK_SIZE = 8 * MB;
+  // RabbitMQ's default frame-max; every frame carries 8 bytes of framing.
+  private static final int FRAME_MAX = 131072;
+  private static final int FRAME_PAYLOAD = FRAME_MAX - 8;
+
+  private static ChunkSizePolicy policy(int frameMax) {
+    return new ChunkSizePolicy(DEFAULT_CHUNK_SIZE, MAX_CHUNK_SIZE, frameMax, new PublishMetrics());
+  }
+
+  @Test
+  void chunkPlusHeaderFillsWholeFrames() {
+    ChunkSizePolicy policy = policy(FRAME_MAX);
+    for (long fileSize : new long[] { 200L * MB, 512L * MB, 1024L * MB, 3L * 1024 * MB }) {
+      int chunkSize = policy.chooseChunkSize(fileSize, null);
+      assertEquals(0, (chunkSize + ChunkCodec.HEADER_SIZE) % FRAME_PAYLOAD, "file of " + fileSize + " bytes");
+      assertTrue(chunkSize <= MAX_CHUNK_SIZE && chunkSize >= ChunkSizePolicy.MIN_CHUNK_SIZE_BYTES);
+    }
+    // 1 GiB / 256 chunks is 4 MiB, rounded down to 32 frames.
+    assertEquals(32 * FRAME_PAYLOAD - ChunkCodec.HEADER_SIZE, policy.chooseChunkSize(1024L * MB, null));
+  }
+
+  @Test
+  void requestedSizesAreClampedToMinAndMax() {
+    ChunkSizePolicy policy = policy(FRAME_MAX);
+    // Aligning the minimum down would drop below it, so it stays unaligned.
+    assertEquals(ChunkSizePolicy.MIN_CHUNK_SIZE_BYTES, policy.chooseChunkSize(10L * MB, KB));
+    int largest = policy.chooseChunkSize(10L * MB, 100 * MB);
+    assertEquals(MAX_CHUNK_SIZE / FRAME_PAYLOAD * FRAME_PAYLOAD - ChunkCodec.HEADER_SIZE, largest);
+    assertTrue(largest <= MAX_CHUNK_SIZE);
+    // Files too large for the target chunk count are capped at the maximum as well.
+    assertEquals(largest, policy.chooseChunkSize(64L * 1024 * MB, null));
+  }
+
+  @Test
+  void smallFilesUseTheDefaultChunkSize() {
+    assertEquals(DEFAULT_CHUNK_SIZE, policy(FRAME_MAX).chooseChunkSize(100 * KB, null));
+    assertEquals(DEFAULT_CHUNK_SIZE, policy(FRAME_MAX).chooseChunkSize(DEFAULT_CHUNK_SIZE, null));
+  }
+
+  @Test
+  void unlimitedFrameMaxSkipsAlignment() {
+    assertEquals(4 * MB, policy(0).chooseChunkSize(1024L * MB, null));
+  }
+
+  @Test
+  void slowConfirmsShrinkTheChunkByAtMostHalf() {
+    PublishMetrics metrics = new PublishMetrics();
+    metrics.recordConfirm(MB, TimeUnit.SECONDS.toNanos(1));
+    ChunkSizePolicy policy = new ChunkSizePolicy(DEFAULT_CHUNK_SIZE, MAX_CHUNK_SIZE, 0, metrics);
+    assertEquals(2 * MB, policy.chooseChunkSize(1024L * MB, null));
+  }
+}
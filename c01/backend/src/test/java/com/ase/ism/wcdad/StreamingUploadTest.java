@@ -0,0 +1,84 @@
+package com.ase.ism.wcdad;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class StreamingUploadTest {
+  private static final int CHUNK_SIZE = 8 * 1024 * 1024;
+
+  @Test
+  void streamsMultiGigabyteBodyInOrderWithinSmallHeap() throws Exception {
+    long bodySize = 3L * 1024 * 1024 * 1024 + 12345;
+    int totalChunks = (int) ((bodySize + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    assertTrue(Runtime.getRuntime().maxMemory() < bodySize / 16,
+        "the test must run with a heap much smaller than the body (see surefire argLine)");
+
+    int[] nextChunk = { 0 };
+    long[] received = { 0 };
+    HelloWorld.readChunks("job-stream", new ChunkPatternStream(bodySize), CHUNK_SIZE, totalChunks,
+        (chunkId, isFirstChunk, buffer, length) -> {
+          assertEquals(nextChunk[0]++, chunkId);
+          assertEquals(chunkId == 0, isFirstChunk);
+          int expectedLength = chunkId == totalChunks - 1 ? (int) (bodySize - (long) chunkId * CHUNK_SIZE)
+              : CHUNK_SIZE;
+          assertEquals(expectedLength, length);
+          assertEquals((byte) chunkId, buffer[0]);
+          assertEquals((byte) chunkId, buffer[length - 1]);
+          received[0] += length;
+        });
+
+    assertEquals(totalChunks, nextChunk[0]);
+    assertEquals(bodySize, received[0]);
+  }
+
+  @Test
+  void failsWhenBodyEndsBeforeLastChunk() {
+    long bodySize = 3L * CHUNK_SIZE;
+    IOException error = assertThrows(IOException.class, () -> HelloWorld.readChunks("job-short",
+        new ChunkPatternStream(bodySize), CHUNK_SIZE, 5, (chunkId, isFirstChunk, buffer, length) -> {
+        }));
+    assertTrue(error.getMessage().contains("chunk 3 of 5"), error.getMessage());
+  }
+
+  /** Generates {@code size} bytes without holding them; every byte of chunk n has the value n. */
+  private static class ChunkPatternStream extends InputStream {
+    private final long size;
+    private long position = 0;
+
+    ChunkPatternStream(long size) {
+      this.size = size;
+    }
+
+    @Override
+    public int read() {
+      if (position >= size) {
+        return -1;
+      }
+      return (int) (position++ / CHUNK_SIZE) & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (position >= size) {
+        return -1;
+      }
+      int count = (int) Math.min(len, size - position);
+      int written = 0;
+      while (written < count) {
+        long chunk = position / CHUNK_SIZE;
+        int run = (int) Math.min(count - written, (chunk + 1) * CHUNK_SIZE - position);
+        Arrays.fill(b, off + written, off + written + run, (byte) chunk);
+        written += run;
+        position += run;
+      }
+      return count;
+    }
+  }
+}
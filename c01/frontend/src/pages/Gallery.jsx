@@ -24,160 +24,153 @@ export default function Gallery() {
     import.meta.env.VITE_API_BASE_URL || "http://localhost:3000";
   const wsBaseUrl = import.meta.env.VITE_WS_BASE_URL || "ws://localhost:8080";
 
-  const jobWebSockets = useRef({});
+  const statusSocket = useRef(null);
+  const subscribedJobs = useRef(new Set());
 
-  useEffect(() => {
-    const fetchInitialData = async () => {
-      setLoading(true);
-      try {
-        const response = await fetch(`${apiBaseUrl}/api/jobs`);
-        if (!response.ok) {
-          throw new Error(`HTTP error! status: ${response.status}`);
+  const applyJobUpdate = (messageData) => {
+    setJobs((prevJobs) => {
+      let jobFound = false;
+      const updatedJobs = prevJobs.map((job) => {
+        if (job.jobId === messageData.jobId) {
+          jobFound = true;
+          return {
+            ...job,
+            status: messageData.status,
+            errorMessage:
+              messageData.errorMessage !== undefined
+                ? messageData.errorMessage
+                : job.errorMessage,
+            downloadLink:
+              messageData.status === "DONE" && messageData.downloadLink
+                ? messageData.downloadLink
+                : messageData.status === "ERROR"
+                ? null
+                : job.downloadLink,
+            finished_at:
+              messageData.status === "DONE" && messageData.finished_at
+                ? messageData.finished_at
+                : job.finished_at,
+          };
         }
-        const initialJobs = await response.json();
-        setJobs(initialJobs);
-        setError(null);
+        return job;
+      });
 
-        initialJobs.forEach((job) => {
-          if (job.status !== "DONE" && job.status !== "ERROR") {
-            setupWebSocketForJob(job.jobId);
-          }
-        });
-      } catch (e) {
-        console.error("Failed to fetch initial jobs:", e);
-        setError(e.message);
-      } finally {
-        setLoading(false);
+      if (!jobFound) {
+        console.warn(
+          `[Gallery.jsx] setJobs: Job with ID ${messageData.jobId} not found in current jobs list. WS message might be for a new job not yet fetched or an old/stale one.`
+        );
+        return prevJobs;
       }
-    };
+      return updatedJobs;
+    });
 
-    fetchInitialData();
+    if (messageData.status === "DONE" || messageData.status === "ERROR") {
+      subscribedJobs.current.delete(messageData.jobId);
+    }
+  };
 
-    return () => {
-      Object.values(jobWebSockets.current).forEach((ws) => {
-        if (ws && ws.readyState === WebSocket.OPEN) {
-          console.log("Closing WebSocket on component unmount:", ws.url);
-          ws.close();
-        }
-      });
-      jobWebSockets.current = {};
-    };
-  }, [apiBaseUrl, wsBaseUrl]);
+  const sendSubscription = (action, jobIds) => {
+    const ws = statusSocket.current;
+    if (ws && ws.readyState === WebSocket.OPEN && jobIds.length > 0) {
+      ws.send(JSON.stringify({ action, jobIds }));
+    }
+  };
 
-  const setupWebSocketForJob = (jobId) => {
-    if (
-      jobWebSockets.current[jobId] &&
-      jobWebSockets.current[jobId].readyState !== WebSocket.CLOSED
-    ) {
+  const subscribeToJob = (jobId) => {
+    if (subscribedJobs.current.has(jobId)) {
       return;
     }
+    subscribedJobs.current.add(jobId);
+    sendSubscription("subscribe", [jobId]);
+  };
 
-    const wsUrl = `${wsBaseUrl}/api/jobstatus/${jobId}`;
-    const ws = new WebSocket(wsUrl);
-    jobWebSockets.current[jobId] = ws;
-
-    ws.onopen = () => {
-      console.log(
-        `[Gallery.jsx] WebSocket connected for job ${jobId} at ${wsUrl}`
-      );
-    };
+  useEffect(() => {
+    let unmounted = false;
+    let reconnectTimer = null;
 
-    ws.onmessage = (event) => {
-      try {
-        const messageData = JSON.parse(event.data);
-        console.log(
-          `[Gallery.jsx] WebSocket message received for Job ID (from WS message): ${messageData.jobId}. Parsed data:`,
-          JSON.stringify(messageData, null, 2)
-        );
+    const connect = () => {
+      const wsUrl = `${wsBaseUrl}/api/jobstatus`;
+      const ws = new WebSocket(wsUrl);
+      statusSocket.current = ws;
 
-        setJobs((prevJobs) => {
-          console.log(
-            `[Gallery.jsx] setJobs: Updating jobs. Current jobs count: ${prevJobs.length}. Message Job ID (from WS data): ${messageData.jobId}`
-          );
-          let jobFound = false;
-          const updatedJobs = prevJobs.map((job) => {
-            if (job.jobId === messageData.jobId) {
-              jobFound = true;
-              return {
-                ...job,
-                status: messageData.status,
-                errorMessage:
-                  messageData.errorMessage !== undefined
-                    ? messageData.errorMessage
-                    : job.errorMessage,
-                downloadLink:
-                  messageData.status === "DONE" && messageData.downloadLink
-                    ? messageData.downloadLink
-                    : messageData.status === "ERROR"
-                    ? null
-                    : job.downloadLink,
-                finished_at:
-                  messageData.status === "DONE" && messageData.finished_at
-                    ? messageData.finished_at
-                    : job.finished_at,
-              };
-            }
-            return job;
-          });
+      ws.onopen = () => {
+        console.log(`[Gallery.jsx] Job status WebSocket connected at ${wsUrl}`);
+        sendSubscription("subscribe", Array.from(subscribedJobs.current));
+      };
 
-          if (!jobFound) {
-            console.warn(
-              `[Gallery.jsx] setJobs: Job with ID ${messageData.jobId} not found in current jobs list. WS message might be for a new job not yet fetched or an old/stale one. Current jobs:`,
-              prevJobs.map((j) => j.jobId)
-            );
-            return prevJobs;
-          } else {
-            console.log(
-              `[Gallery.jsx] setJobs: Job ${messageData.jobId} updated in the new jobs array. New status: ${messageData.status}`
-            );
+      ws.onmessage = (event) => {
+        try {
+          const messageData = JSON.parse(event.data);
+          if (messageData.type === "jobUpdates") {
+            messageData.updates.forEach(applyJobUpdate);
+          } else if (messageData.type === "error") {
+            console.warn("[Gallery.jsx] Job status WebSocket error:", messageData);
+          } else if (messageData.jobId) {
+            applyJobUpdate(messageData);
           }
-          return updatedJobs;
-        });
-
-        if (messageData.status === "DONE" || messageData.status === "ERROR") {
-          console.log(
-            `[Gallery.jsx] Job ${messageData.jobId} reported as ${messageData.status}. Closing WebSocket.`
+        } catch (parseError) {
+          console.error(
+            "[Gallery.jsx] Failed to parse job status WebSocket message:",
+            parseError,
+            "Raw Data:",
+            event.data
           );
-          ws.close();
-          if (jobWebSockets.current[messageData.jobId]) {
-            delete jobWebSockets.current[messageData.jobId];
-          }
         }
-      } catch (parseError) {
-        console.error(
-          `[Gallery.jsx] Failed to parse WebSocket message for job ${jobId}:`,
-          parseError,
-          "Raw Data:",
-          event.data
+      };
+
+      ws.onerror = (error) => {
+        console.error("Job status WebSocket error:", error);
+      };
+
+      ws.onclose = (event) => {
+        console.log(
+          `Job status WebSocket disconnected. Code: ${event.code}, Reason: ${event.reason}`
         );
-      }
+        if (!unmounted) {
+          reconnectTimer = setTimeout(connect, 2000);
+        }
+      };
     };
 
-    ws.onerror = (error) => {
-      console.error(`WebSocket error for job ${jobId}:`, error);
+    connect();
+
+    return () => {
+      unmounted = true;
+      clearTimeout(reconnectTimer);
+      if (statusSocket.current) {
+        statusSocket.current.close();
+        statusSocket.current = null;
+      }
+      subscribedJobs.current = new Set();
     };
+  }, [wsBaseUrl]);
 
-    ws.onclose = (event) => {
-      console.log(
-        `WebSocket disconnected for job ${jobId}. Code: ${event.code}, Reason: ${event.reason}`
-      );
-      if (jobWebSockets.current[jobId]) {
-        delete jobWebSockets.current[jobId];
+  useEffect(() => {
+    const fetchInitialData = async () => {
+      setLoading(true);
+      try {
+        const response = await fetch(`${apiBaseUrl}/api/jobs`);
+        if (!response.ok) {
+          throw new Error(`HTTP error! status: ${response.status}`);
+        }
+        const initialJobs = await response.json();
+        setJobs(initialJobs);
+        setError(null);
+      } catch (e) {
+        console.error("Failed to fetch initial jobs:", e);
+        setError(e.message);
+      } finally {
+        setLoading(false);
       }
     };
-  };
+
+    fetchInitialData();
+  }, [apiBaseUrl]);
 
   useEffect(() => {
     jobs.forEach((job) => {
-      if (
-        job.status !== "DONE" &&
-        job.status !== "ERROR" &&
-        !jobWebSockets.current[job.jobId]
-      ) {
-        console.log(
-          `Setting up WebSocket for existing job not in final state: ${job.jobId}`
-        );
-        setupWebSocketForJob(job.jobId);
+      if (job.status !== "DONE" && job.status !== "ERROR") {
+        subscribeToJob(job.jobId);
       }
     });
   }, [jobs]);
@@ -7,6 +7,11 @@
 #include <algorithm>
 #include <iomanip>
 #include <sstream>
+#include <cstring>
+
+#include <sys/socket.h>
+#include <sys/un.h>
+#include <unistd.h>
 
 #include "mpi.h"
 #include "omp.h"
@@ -205,16 +210,9 @@ std::vector<unsigned char> reconstruct_bmp_pixel_data(
     return reconstructed_data;
 }
 
-int main(int argc, char *argv[])
-{
-    MPI_Init(&argc, &argv);
-    OpenSSL_add_all_algorithms();
-    ERR_load_crypto_strings();
-
-    int world_rank, world_size;
-    MPI_Comm_rank(MPI_COMM_WORLD, &world_rank);
-    MPI_Comm_size(MPI_COMM_WORLD, &world_size);
 
+int run_job(int world_rank, int world_size, const std::vector<std::string> &job_args, const std::string &key_hex)
+{
     std::string input_path, output_path, operation_str, key_size_str, mode_str, iv_hex_str;
     std::vector<unsigned char> key_bytes, iv_bytes;
     int expected_key_len_bits = 0;
@@ -226,511 +224,524 @@ int main(int argc, char *argv[])
     int true_original_pure_plaintext_size = 0;
     int size_for_crypto_operation = 0;
 
-    try
+    input_path = job_args[0];
+    output_path = job_args[1];
+    operation_str = job_args[2];
+    key_size_str = job_args[3];
+    mode_str = job_args[4];
+    if (job_args.size() > 5)
+        iv_hex_str = job_args[5];
+
+    key_bytes = hex_to_bytes(key_hex);
+    expected_key_len_bits = std::stoi(key_size_str);
+
+    if (expected_key_len_bits != 128 && expected_key_len_bits != 192 && expected_key_len_bits != 256)
+    {
+        if (world_rank == 0)
+            std::cerr << "Error: Invalid key size. Must be 128, 192, or 256." << std::endl;
+        return 1;
+    }
+    if (static_cast<int>(key_bytes.size() * 8) != expected_key_len_bits)
     {
-        if (argc < 6)
+        if (world_rank == 0)
+            std::cerr << "Error: Key length (" << key_bytes.size() * 8 << " bits) does not match specified key size (" << expected_key_len_bits << " bits)." << std::endl;
+        return 1;
+    }
+
+    std::transform(mode_str.begin(), mode_str.end(), mode_str.begin(), ::toupper);
+    if (mode_str == "CBC")
+    {
+        if (iv_hex_str.empty())
         {
             if (world_rank == 0)
-                std::cerr << "Usage: " << argv[0] << " <input.bmp> <output.bmp> <encrypt|decrypt> <128|192|256> <ECB|CBC> [IV_hex_for_CBC]" << std::endl;
-            MPI_Abort(MPI_COMM_WORLD, 1);
+                std::cerr << "Error: IV must be provided for CBC mode." << std::endl;
             return 1;
         }
+        iv_bytes = hex_to_bytes(iv_hex_str);
+        if (iv_bytes.size() != AES_BLOCK_SIZE)
+        {
+            if (world_rank == 0)
+                std::cerr << "Error: IV length must be " << AES_BLOCK_SIZE << " bytes for CBC mode." << std::endl;
+            return 1;
+        }
+    }
+    else if (mode_str != "ECB")
+    {
+        if (world_rank == 0)
+            std::cerr << "Error: Invalid mode. Must be ECB or CBC." << std::endl;
+        return 1;
+    }
+
+    if (operation_str != "encrypt" && operation_str != "decrypt")
+    {
+        if (world_rank == 0)
+            std::cerr << "Error: Invalid operation. Must be encrypt or decrypt." << std::endl;
+        return 1;
+    }
 
-        input_path = argv[1];
-        output_path = argv[2];
-        operation_str = argv[3];
-        key_size_str = argv[4];
-        mode_str = argv[5];
-        if (argc > 6)
-            iv_hex_str = argv[6];
+    std::vector<unsigned char> pure_pixel_data_buffer;
 
-        const char *key_env = std::getenv("PROCESSING_KEY");
-        if (!key_env)
+    // Rank 0 reads and validates the input. Its outcome is broadcast before anything else, so a bad input fails
+    // the job on every rank instead of aborting the whole world.
+    auto read_input_on_root = [&]() -> int
+    {
+        std::cout << "Rank 0: Processing " << input_path << " -> " << output_path << std::endl;
+        std::cout << "Operation: " << operation_str << ", Mode: " << mode_str << ", Key Size: " << expected_key_len_bits << std::endl;
+
+        std::ifstream file(input_path, std::ios::binary);
+        if (!file)
         {
-            if (world_rank == 0)
-                std::cerr << "Error: PROCESSING_KEY environment variable not set." << std::endl;
-            MPI_Abort(MPI_COMM_WORLD, 1);
+            std::cerr << "Error opening input file: " << input_path << std::endl;
             return 1;
         }
-        key_bytes = hex_to_bytes(std::string(key_env));
-        expected_key_len_bits = std::stoi(key_size_str);
 
-        if (expected_key_len_bits != 128 && expected_key_len_bits != 192 && expected_key_len_bits != 256)
+        file.read(reinterpret_cast<char *>(&file_header), sizeof(file_header));
+        file.read(reinterpret_cast<char *>(&info_header), sizeof(info_header));
+
+        if (file_header.file_type != 0x4D42)
         {
-            if (world_rank == 0)
-                std::cerr << "Error: Invalid key size. Must be 128, 192, or 256." << std::endl;
-            MPI_Abort(MPI_COMM_WORLD, 1);
+            std::cerr << "Not a BMP file." << std::endl;
             return 1;
         }
-        if (static_cast<int>(key_bytes.size() * 8) != expected_key_len_bits)
+        if (info_header.bit_count != 24 && info_header.bit_count != 32)
         {
-            if (world_rank == 0)
-                std::cerr << "Error: Key length (" << key_bytes.size() * 8 << " bits) does not match specified key size (" << expected_key_len_bits << " bits)." << std::endl;
-            MPI_Abort(MPI_COMM_WORLD, 1);
+            std::cerr << "Only 24/32 bpp supported." << std::endl;
             return 1;
         }
-
-        std::transform(mode_str.begin(), mode_str.end(), mode_str.begin(), ::toupper);
-        if (mode_str == "CBC")
+        if (info_header.compression != 0)
         {
-            if (iv_hex_str.empty())
-            {
-                if (world_rank == 0)
-                    std::cerr << "Error: IV must be provided for CBC mode." << std::endl;
-                MPI_Abort(MPI_COMM_WORLD, 1);
-                return 1;
-            }
-            iv_bytes = hex_to_bytes(iv_hex_str);
-            if (iv_bytes.size() != AES_BLOCK_SIZE)
-            {
-                if (world_rank == 0)
-                    std::cerr << "Error: IV length must be " << AES_BLOCK_SIZE << " bytes for CBC mode." << std::endl;
-                MPI_Abort(MPI_COMM_WORLD, 1);
-                return 1;
-            }
+            std::cerr << "Compressed BMP not supported." << std::endl;
+            return 1;
         }
-        else if (mode_str != "ECB")
+        if (info_header.width <= 0 || info_header.height == 0)
         {
-            if (world_rank == 0)
-                std::cerr << "Error: Invalid mode. Must be ECB or CBC." << std::endl;
-            MPI_Abort(MPI_COMM_WORLD, 1);
+            std::cerr << "Invalid BMP dimensions." << std::endl;
             return 1;
         }
 
-        if (operation_str != "encrypt" && operation_str != "decrypt")
+        int bytes_per_pixel = info_header.bit_count / 8;
+        int actual_row_width_bytes_calc = info_header.width * bytes_per_pixel;
+        int bmp_padded_row_stride_calculated_in_main = (actual_row_width_bytes_calc + 3) & ~3;
+        original_bmp_row_padding = bmp_padded_row_stride_calculated_in_main - actual_row_width_bytes_calc;
+
+        if (info_header.width > 0 && abs(info_header.height) > 0 && bytes_per_pixel > 0)
         {
-            if (world_rank == 0)
-                std::cerr << "Error: Invalid operation. Must be encrypt or decrypt." << std::endl;
-            MPI_Abort(MPI_COMM_WORLD, 1);
-            return 1;
+            true_original_pure_plaintext_size = abs(info_header.height) * info_header.width * bytes_per_pixel;
         }
+        std::cout << "Rank 0: True original pure plaintext size (calculated from headers): " << true_original_pure_plaintext_size << std::endl;
 
-        std::vector<unsigned char> pure_pixel_data_buffer;
+        std::vector<unsigned char> raw_bmp_pixel_data;
+        size_t expected_pixel_data_size;
 
-        if (world_rank == 0)
+        file.seekg(file_header.offset_data, std::ios::beg);
+
+        if (info_header.size_image != 0)
+        {
+            expected_pixel_data_size = info_header.size_image;
+        }
+        else
         {
-            std::cout << "Rank 0: Processing " << input_path << " -> " << output_path << std::endl;
-            std::cout << "Operation: " << operation_str << ", Mode: " << mode_str << ", Key Size: " << expected_key_len_bits << std::endl;
+            expected_pixel_data_size = static_cast<size_t>(abs(info_header.height)) * bmp_padded_row_stride_calculated_in_main;
+        }
 
-            std::ifstream file(input_path, std::ios::binary);
-            if (!file)
-            {
-                std::cerr << "Error opening input file: " << input_path << std::endl;
-                MPI_Abort(MPI_COMM_WORLD, 1);
-                return 1;
-            }
+        std::cout << "Rank 0: Expected pixel data size from header/calculation: " << expected_pixel_data_size << std::endl;
 
-            file.read(reinterpret_cast<char *>(&file_header), sizeof(file_header));
-            file.read(reinterpret_cast<char *>(&info_header), sizeof(info_header));
+        if (expected_pixel_data_size > 0)
+        {
+            raw_bmp_pixel_data.resize(expected_pixel_data_size);
+            file.read(reinterpret_cast<char *>(raw_bmp_pixel_data.data()), expected_pixel_data_size);
+            std::streamsize gcount = file.gcount();
 
-            if (file_header.file_type != 0x4D42)
+            if (file.fail() && !file.eof())
             {
-                std::cerr << "Not a BMP file." << std::endl;
-                MPI_Abort(MPI_COMM_WORLD, 1);
-                return 1;
-            }
-            if (info_header.bit_count != 24 && info_header.bit_count != 32)
-            {
-                std::cerr << "Only 24/32 bpp supported." << std::endl;
-                MPI_Abort(MPI_COMM_WORLD, 1);
-                return 1;
-            }
-            if (info_header.compression != 0)
-            {
-                std::cerr << "Compressed BMP not supported." << std::endl;
-                MPI_Abort(MPI_COMM_WORLD, 1);
-                return 1;
-            }
-            if (info_header.width <= 0 || info_header.height == 0)
-            {
-                std::cerr << "Invalid BMP dimensions." << std::endl;
-                MPI_Abort(MPI_COMM_WORLD, 1);
+                std::cerr << "Rank 0 Error: File stream error after attempting to read pixel data. Status: eof=" << file.eof() << " fail=" << file.fail() << " bad=" << file.bad() << std::endl;
+                file.close();
                 return 1;
             }
 
-            int bytes_per_pixel = info_header.bit_count / 8;
-            int actual_row_width_bytes_calc = info_header.width * bytes_per_pixel;
-            int bmp_padded_row_stride_calculated_in_main = (actual_row_width_bytes_calc + 3) & ~3;
-            original_bmp_row_padding = bmp_padded_row_stride_calculated_in_main - actual_row_width_bytes_calc;
-
-            if (info_header.width > 0 && abs(info_header.height) > 0 && bytes_per_pixel > 0)
+            if (gcount < static_cast<std::streamsize>(expected_pixel_data_size))
             {
-                true_original_pure_plaintext_size = abs(info_header.height) * info_header.width * bytes_per_pixel;
+                std::cout << "Rank 0 Warning: Read " << gcount << " bytes of pixel data, but expected " << expected_pixel_data_size
+                          << ". Using actual bytes read (" << (gcount < 0 ? 0 : gcount) << "). This might indicate a truncated or malformed BMP." << std::endl;
+                raw_bmp_pixel_data.resize(gcount < 0 ? 0 : static_cast<size_t>(gcount));
             }
-            std::cout << "Rank 0: True original pure plaintext size (calculated from headers): " << true_original_pure_plaintext_size << std::endl;
+            std::cout << "Rank 0: Actual size of raw_bmp_pixel_data after read and potential resize: " << raw_bmp_pixel_data.size() << std::endl;
+        }
+        else
+        {
+            std::cout << "Rank 0: Expected pixel data size is 0. raw_bmp_pixel_data will be empty." << std::endl;
+        }
+        file.close();
 
-            std::vector<unsigned char> raw_bmp_pixel_data;
-            size_t expected_pixel_data_size;
+        if (info_header.size_image == 0 && raw_bmp_pixel_data.empty() &&
+            (static_cast<size_t>(abs(info_header.height)) * bmp_padded_row_stride_calculated_in_main > 0))
+        {
+            std::cout << "Rank 0 Warning: BMP header's size_image was 0, calculated size was > 0, but read 0 bytes for pixel data. The file might be truncated before pixel data section or is an empty image." << std::endl;
+        }
 
-            file.seekg(file_header.offset_data, std::ios::beg);
+        std::vector<unsigned char> temp_extracted_data = extract_pure_pixel_data(raw_bmp_pixel_data, info_header.width, info_header.height, bytes_per_pixel, original_bmp_row_padding);
+        std::cout << "Rank 0: Size of data extracted by extract_pure_pixel_data: " << temp_extracted_data.size() << std::endl;
 
-            if (info_header.size_image != 0)
+        if (operation_str == "encrypt")
+        {
+            std::cout << "Rank 0: Operation: ENCRYPT" << std::endl;
+            pure_pixel_data_buffer = temp_extracted_data;
+
+            if (mode_str == "ECB")
             {
-                expected_pixel_data_size = info_header.size_image;
+                size_for_crypto_operation = ((temp_extracted_data.size() + AES_BLOCK_SIZE - 1) / AES_BLOCK_SIZE) * AES_BLOCK_SIZE;
+                if (temp_extracted_data.size() > 0 && size_for_crypto_operation == 0)
+                    size_for_crypto_operation = AES_BLOCK_SIZE;
+                pure_pixel_data_buffer.resize(size_for_crypto_operation, 0);
+                std::cout << "Rank 0: ECB mode. Plaintext manually AES-padded to: " << size_for_crypto_operation << std::endl;
             }
             else
             {
-                expected_pixel_data_size = static_cast<size_t>(abs(info_header.height)) * bmp_padded_row_stride_calculated_in_main;
+                size_for_crypto_operation = temp_extracted_data.size();
+                std::cout << "Rank 0: CBC mode. Plaintext size for OpenSSL (will pad): " << size_for_crypto_operation << std::endl;
             }
+        }
+        else
+        {
+            std::cout << "Rank 0: Operation: DECRYPT" << std::endl;
+            pure_pixel_data_buffer = temp_extracted_data;
+            size_for_crypto_operation = temp_extracted_data.size();
+            std::cout << "Rank 0: Ciphertext size for OpenSSL: " << size_for_crypto_operation << std::endl;
 
-            std::cout << "Rank 0: Expected pixel data size from header/calculation: " << expected_pixel_data_size << std::endl;
-
-            if (expected_pixel_data_size > 0)
-            {
-                raw_bmp_pixel_data.resize(expected_pixel_data_size);
-                file.read(reinterpret_cast<char *>(raw_bmp_pixel_data.data()), expected_pixel_data_size);
-                std::streamsize gcount = file.gcount();
-
-                if (file.fail() && !file.eof())
-                {
-                    std::cerr << "Rank 0 Error: File stream error after attempting to read pixel data. Status: eof=" << file.eof() << " fail=" << file.fail() << " bad=" << file.bad() << std::endl;
-                    file.close();
-                    MPI_Abort(MPI_COMM_WORLD, 1);
-                    return 1;
-                }
-
-                if (gcount < static_cast<std::streamsize>(expected_pixel_data_size))
-                {
-                    std::cout << "Rank 0 Warning: Read " << gcount << " bytes of pixel data, but expected " << expected_pixel_data_size
-                              << ". Using actual bytes read (" << (gcount < 0 ? 0 : gcount) << "). This might indicate a truncated or malformed BMP." << std::endl;
-                    raw_bmp_pixel_data.resize(gcount < 0 ? 0 : static_cast<size_t>(gcount));
-                }
-                std::cout << "Rank 0: Actual size of raw_bmp_pixel_data after read and potential resize: " << raw_bmp_pixel_data.size() << std::endl;
-            }
-            else
+            if (size_for_crypto_operation == 0 && true_original_pure_plaintext_size > 0)
             {
-                std::cout << "Rank 0: Expected pixel data size is 0. raw_bmp_pixel_data will be empty." << std::endl;
+                std::cerr << "Rank 0 Error: Decryption - Extracted ciphertext is empty, but original image was expected to have content ("
+                          << true_original_pure_plaintext_size << " bytes). Aborting." << std::endl;
+                return 1;
             }
-            file.close();
-
-            if (info_header.size_image == 0 && raw_bmp_pixel_data.empty() &&
-                (static_cast<size_t>(abs(info_header.height)) * bmp_padded_row_stride_calculated_in_main > 0))
+            if (size_for_crypto_operation == 0 && true_original_pure_plaintext_size == 0)
             {
-                std::cout << "Rank 0 Warning: BMP header's size_image was 0, calculated size was > 0, but read 0 bytes for pixel data. The file might be truncated before pixel data section or is an empty image." << std::endl;
+                std::cout << "Rank 0: Decryption - Extracted ciphertext is empty, and original image was also expected to be empty. Proceeding." << std::endl;
             }
 
-            std::vector<unsigned char> temp_extracted_data = extract_pure_pixel_data(raw_bmp_pixel_data, info_header.width, info_header.height, bytes_per_pixel, original_bmp_row_padding);
-            std::cout << "Rank 0: Size of data extracted by extract_pure_pixel_data: " << temp_extracted_data.size() << std::endl;
-
-            if (operation_str == "encrypt")
+            if (mode_str == "CBC")
             {
-                std::cout << "Rank 0: Operation: ENCRYPT" << std::endl;
-                pure_pixel_data_buffer = temp_extracted_data;
-
-                if (mode_str == "ECB")
-                {
-                    size_for_crypto_operation = ((temp_extracted_data.size() + AES_BLOCK_SIZE - 1) / AES_BLOCK_SIZE) * AES_BLOCK_SIZE;
-                    if (temp_extracted_data.size() > 0 && size_for_crypto_operation == 0)
-                        size_for_crypto_operation = AES_BLOCK_SIZE;
-                    pure_pixel_data_buffer.resize(size_for_crypto_operation, 0);
-                    std::cout << "Rank 0: ECB mode. Plaintext manually AES-padded to: " << size_for_crypto_operation << std::endl;
-                }
-                else
+                if (size_for_crypto_operation > 0 && size_for_crypto_operation % AES_BLOCK_SIZE != 0)
                 {
-                    size_for_crypto_operation = temp_extracted_data.size();
-                    std::cout << "Rank 0: CBC mode. Plaintext size for OpenSSL (will pad): " << size_for_crypto_operation << std::endl;
+                    std::cerr << "Rank 0 Error: CBC Decryption - Ciphertext size (" << size_for_crypto_operation
+                              << ") is not a multiple of AES_BLOCK_SIZE (" << AES_BLOCK_SIZE
+                              << "). This indicates a corrupted or truncated input file. Aborting." << std::endl;
+                    return 1;
                 }
             }
             else
             {
-                std::cout << "Rank 0: Operation: DECRYPT" << std::endl;
-                pure_pixel_data_buffer = temp_extracted_data;
-                size_for_crypto_operation = temp_extracted_data.size();
-                std::cout << "Rank 0: Ciphertext size for OpenSSL: " << size_for_crypto_operation << std::endl;
-
-                if (size_for_crypto_operation == 0 && true_original_pure_plaintext_size > 0)
+                if (size_for_crypto_operation > 0 && size_for_crypto_operation % AES_BLOCK_SIZE != 0)
                 {
-                    std::cerr << "Rank 0 Error: Decryption - Extracted ciphertext is empty, but original image was expected to have content ("
-                              << true_original_pure_plaintext_size << " bytes). Aborting." << std::endl;
-                    MPI_Abort(MPI_COMM_WORLD, 1);
-                    return 1;
-                }
-                if (size_for_crypto_operation == 0 && true_original_pure_plaintext_size == 0)
-                {
-                    std::cout << "Rank 0: Decryption - Extracted ciphertext is empty, and original image was also expected to be empty. Proceeding." << std::endl;
-                }
-
-                if (mode_str == "CBC")
-                {
-                    if (size_for_crypto_operation > 0 && size_for_crypto_operation % AES_BLOCK_SIZE != 0)
-                    {
-                        std::cerr << "Rank 0 Error: CBC Decryption - Ciphertext size (" << size_for_crypto_operation
-                                  << ") is not a multiple of AES_BLOCK_SIZE (" << AES_BLOCK_SIZE
-                                  << "). This indicates a corrupted or truncated input file. Aborting." << std::endl;
-                        MPI_Abort(MPI_COMM_WORLD, 1);
-                        return 1;
-                    }
-                }
-                else
-                {
-                    if (size_for_crypto_operation > 0 && size_for_crypto_operation % AES_BLOCK_SIZE != 0)
-                    {
-                        std::cerr << "Rank 0 Warning: ECB Decryption - Ciphertext size (" << size_for_crypto_operation
-                                  << ") is not a multiple of AES_BLOCK_SIZE. Decryption might produce incorrect results due to unpadding issues." << std::endl;
-                    }
+                    std::cerr << "Rank 0 Warning: ECB Decryption - Ciphertext size (" << size_for_crypto_operation
+                              << ") is not a multiple of AES_BLOCK_SIZE. Decryption might produce incorrect results due to unpadding issues." << std::endl;
                 }
             }
         }
+        return 0;
+    };
 
-        MPI_Bcast(&file_header, sizeof(BMPFileHeader), MPI_BYTE, 0, MPI_COMM_WORLD);
-        MPI_Bcast(&info_header, sizeof(BMPInfoHeader), MPI_BYTE, 0, MPI_COMM_WORLD);
-        MPI_Bcast(&original_bmp_row_padding, 1, MPI_INT, 0, MPI_COMM_WORLD);
-        MPI_Bcast(&true_original_pure_plaintext_size, 1, MPI_INT, 0, MPI_COMM_WORLD);
-        MPI_Bcast(&size_for_crypto_operation, 1, MPI_INT, 0, MPI_COMM_WORLD);
-
-        if (world_rank != 0)
+    int input_status = 0;
+    if (world_rank == 0)
+    {
+        try
         {
-            pure_pixel_data_buffer.resize(size_for_crypto_operation);
+            input_status = read_input_on_root();
         }
-        if (size_for_crypto_operation > 0)
+        catch (const std::exception &e)
         {
-            MPI_Bcast(pure_pixel_data_buffer.data(), size_for_crypto_operation, MPI_UNSIGNED_CHAR, 0, MPI_COMM_WORLD);
+            std::cerr << "Rank 0 Exception while reading input: " << e.what() << std::endl;
+            input_status = 1;
         }
+    }
+    MPI_Bcast(&input_status, 1, MPI_INT, 0, MPI_COMM_WORLD);
+    if (input_status != 0)
+        return input_status;
 
-        std::vector<unsigned char> processed_local_data;
-        int local_offset = 0;
-        int local_chunk_size_val = 0;
+    MPI_Bcast(&file_header, sizeof(BMPFileHeader), MPI_BYTE, 0, MPI_COMM_WORLD);
+    MPI_Bcast(&info_header, sizeof(BMPInfoHeader), MPI_BYTE, 0, MPI_COMM_WORLD);
+    MPI_Bcast(&original_bmp_row_padding, 1, MPI_INT, 0, MPI_COMM_WORLD);
+    MPI_Bcast(&true_original_pure_plaintext_size, 1, MPI_INT, 0, MPI_COMM_WORLD);
+    MPI_Bcast(&size_for_crypto_operation, 1, MPI_INT, 0, MPI_COMM_WORLD);
 
-        if (mode_str == "ECB" && size_for_crypto_operation > 0)
-        {
-            int num_total_blocks = size_for_crypto_operation / AES_BLOCK_SIZE;
-            int blocks_per_rank = num_total_blocks / world_size;
-            int extra_blocks = num_total_blocks % world_size;
+    if (world_rank != 0)
+    {
+        pure_pixel_data_buffer.resize(size_for_crypto_operation);
+    }
+    if (size_for_crypto_operation > 0)
+    {
+        MPI_Bcast(pure_pixel_data_buffer.data(), size_for_crypto_operation, MPI_UNSIGNED_CHAR, 0, MPI_COMM_WORLD);
+    }
 
-            local_chunk_size_val = (blocks_per_rank + (world_rank < extra_blocks ? 1 : 0)) * AES_BLOCK_SIZE;
+    std::vector<unsigned char> processed_local_data;
+    int local_offset = 0;
+    int local_chunk_size_val = 0;
+    int local_status = 0;
 
-            for (int i = 0; i < world_rank; ++i)
-            {
-                local_offset += (blocks_per_rank + (i < extra_blocks ? 1 : 0)) * AES_BLOCK_SIZE;
-            }
+    if (mode_str == "ECB" && size_for_crypto_operation > 0)
+    {
+        int num_total_blocks = size_for_crypto_operation / AES_BLOCK_SIZE;
+        int blocks_per_rank = num_total_blocks / world_size;
+        int extra_blocks = num_total_blocks % world_size;
 
-            if (local_chunk_size_val > 0)
-            {
-                if (static_cast<size_t>(local_offset + local_chunk_size_val) > pure_pixel_data_buffer.size())
-                {
-                    std::cerr << "Rank " << world_rank << ": ECB - Calculated chunk [offset " << local_offset << ", size " << local_chunk_size_val
-                              << "] exceeds pure_pixel_data_buffer size (" << pure_pixel_data_buffer.size() << "). Aborting." << std::endl;
-                    MPI_Abort(MPI_COMM_WORLD, 1);
-                    return 1;
-                }
-                processed_local_data.resize(local_chunk_size_val);
-            }
-        }
-        else if (mode_str == "CBC" && world_rank == 0 && size_for_crypto_operation > 0)
+        local_chunk_size_val = (blocks_per_rank + (world_rank < extra_blocks ? 1 : 0)) * AES_BLOCK_SIZE;
+
+        for (int i = 0; i < world_rank; ++i)
         {
-            local_chunk_size_val = size_for_crypto_operation;
-            processed_local_data.resize(size_for_crypto_operation + AES_BLOCK_SIZE);
+            local_offset += (blocks_per_rank + (i < extra_blocks ? 1 : 0)) * AES_BLOCK_SIZE;
         }
 
         if (local_chunk_size_val > 0)
         {
-            EVP_CIPHER_CTX *ctx = EVP_CIPHER_CTX_new();
-            if (!ctx)
+            if (static_cast<size_t>(local_offset + local_chunk_size_val) > pure_pixel_data_buffer.size())
             {
-                handle_openssl_errors("EVP_CIPHER_CTX_new");
-                MPI_Abort(MPI_COMM_WORLD, 1);
-                return 1;
-            }
-
-            const EVP_CIPHER *cipher = nullptr;
-            if (mode_str == "ECB")
-            {
-                if (expected_key_len_bits == 128)
-                    cipher = EVP_aes_128_ecb();
-                else if (expected_key_len_bits == 192)
-                    cipher = EVP_aes_192_ecb();
-                else
-                    cipher = EVP_aes_256_ecb();
+                std::cerr << "Rank " << world_rank << ": ECB - Calculated chunk [offset " << local_offset << ", size " << local_chunk_size_val
+                          << "] exceeds pure_pixel_data_buffer size (" << pure_pixel_data_buffer.size() << "). Aborting." << std::endl;
+                local_status = 1;
+                local_chunk_size_val = 0;
             }
             else
             {
-                if (expected_key_len_bits == 128)
-                    cipher = EVP_aes_128_cbc();
-                else if (expected_key_len_bits == 192)
-                    cipher = EVP_aes_192_cbc();
-                else
-                    cipher = EVP_aes_256_cbc();
+                processed_local_data.resize(local_chunk_size_val);
             }
+        }
+    }
+    else if (mode_str == "CBC" && world_rank == 0 && size_for_crypto_operation > 0)
+    {
+        local_chunk_size_val = size_for_crypto_operation;
+        processed_local_data.resize(size_for_crypto_operation + AES_BLOCK_SIZE);
+    }
 
-            int op_encrypt = (operation_str == "encrypt") ? 1 : 0;
-
-            if (1 != EVP_CipherInit_ex(ctx, cipher, nullptr, key_bytes.data(), (mode_str == "CBC" ? iv_bytes.data() : nullptr), op_encrypt))
-            {
-                handle_openssl_errors("EVP_CipherInit_ex");
-                EVP_CIPHER_CTX_free(ctx);
-                MPI_Abort(MPI_COMM_WORLD, 1);
-                return 1;
-            }
+    auto run_local_cipher = [&]() -> int
+    {
+        EVP_CIPHER_CTX *ctx = EVP_CIPHER_CTX_new();
+        if (!ctx)
+        {
+            handle_openssl_errors("EVP_CIPHER_CTX_new");
+            return 1;
+        }
 
-            if (mode_str == "ECB")
-            {
-                if (1 != EVP_CIPHER_CTX_set_padding(ctx, 0))
-                {
-                    handle_openssl_errors("EVP_CIPHER_CTX_set_padding(0) for ECB");
-                    EVP_CIPHER_CTX_free(ctx);
-                    MPI_Abort(MPI_COMM_WORLD, 1);
-                    return 1;
-                }
-            }
+        const EVP_CIPHER *cipher = nullptr;
+        if (mode_str == "ECB")
+        {
+            if (expected_key_len_bits == 128)
+                cipher = EVP_aes_128_ecb();
+            else if (expected_key_len_bits == 192)
+                cipher = EVP_aes_192_ecb();
             else
-            {
-                if (1 != EVP_CIPHER_CTX_set_padding(ctx, 1))
-                {
-                    handle_openssl_errors("EVP_CIPHER_CTX_set_padding(1) for CBC");
-                    EVP_CIPHER_CTX_free(ctx);
-                    MPI_Abort(MPI_COMM_WORLD, 1);
-                    return 1;
-                }
-            }
+                cipher = EVP_aes_256_ecb();
+        }
+        else
+        {
+            if (expected_key_len_bits == 128)
+                cipher = EVP_aes_128_cbc();
+            else if (expected_key_len_bits == 192)
+                cipher = EVP_aes_192_cbc();
+            else
+                cipher = EVP_aes_256_cbc();
+        }
+
+        int op_encrypt = (operation_str == "encrypt") ? 1 : 0;
 
-            int out_len1 = 0;
-            const unsigned char *input_chunk_ptr = (mode_str == "ECB") ? (pure_pixel_data_buffer.data() + local_offset) : pure_pixel_data_buffer.data();
+        if (1 != EVP_CipherInit_ex(ctx, cipher, nullptr, key_bytes.data(), (mode_str == "CBC" ? iv_bytes.data() : nullptr), op_encrypt))
+        {
+            handle_openssl_errors("EVP_CipherInit_ex");
+            EVP_CIPHER_CTX_free(ctx);
+            return 1;
+        }
 
-            if (1 != EVP_CipherUpdate(ctx, processed_local_data.data(), &out_len1, input_chunk_ptr, local_chunk_size_val))
+        if (mode_str == "ECB")
+        {
+            if (1 != EVP_CIPHER_CTX_set_padding(ctx, 0))
             {
-                handle_openssl_errors("EVP_CipherUpdate");
+                handle_openssl_errors("EVP_CIPHER_CTX_set_padding(0) for ECB");
                 EVP_CIPHER_CTX_free(ctx);
-                MPI_Abort(MPI_COMM_WORLD, 1);
                 return 1;
             }
-
-            int out_len2 = 0;
-            if (1 != EVP_CipherFinal_ex(ctx, processed_local_data.data() + out_len1, &out_len2))
+        }
+        else
+        {
+            if (1 != EVP_CIPHER_CTX_set_padding(ctx, 1))
             {
-                handle_openssl_errors("EVP_CipherFinal_ex");
+                handle_openssl_errors("EVP_CIPHER_CTX_set_padding(1) for CBC");
                 EVP_CIPHER_CTX_free(ctx);
-                MPI_Abort(MPI_COMM_WORLD, 1);
                 return 1;
             }
-            processed_local_data.resize(out_len1 + out_len2);
+        }
+
+        int out_len1 = 0;
+        const unsigned char *input_chunk_ptr = (mode_str == "ECB") ? (pure_pixel_data_buffer.data() + local_offset) : pure_pixel_data_buffer.data();
+
+        if (1 != EVP_CipherUpdate(ctx, processed_local_data.data(), &out_len1, input_chunk_ptr, local_chunk_size_val))
+        {
+            handle_openssl_errors("EVP_CipherUpdate");
             EVP_CIPHER_CTX_free(ctx);
+            return 1;
         }
 
-        std::vector<unsigned char> final_processed_crypto_data;
-        if (world_rank == 0)
+        int out_len2 = 0;
+        if (1 != EVP_CipherFinal_ex(ctx, processed_local_data.data() + out_len1, &out_len2))
         {
-            if (size_for_crypto_operation > 0)
-            {
-                if (mode_str == "ECB")
-                {
-                    final_processed_crypto_data.resize(size_for_crypto_operation);
-                }
-                else
-                {
-                }
-            }
+            handle_openssl_errors("EVP_CipherFinal_ex");
+            EVP_CIPHER_CTX_free(ctx);
+            return 1;
         }
+        processed_local_data.resize(out_len1 + out_len2);
+        EVP_CIPHER_CTX_free(ctx);
+        return 0;
+    };
 
-        if (mode_str == "ECB" && size_for_crypto_operation > 0)
+    if (local_chunk_size_val > 0)
+    {
+        try
         {
-            std::vector<int> recvcounts(world_size);
-            std::vector<int> displs(world_size);
-            int current_offset_gather = 0;
-            int num_total_blocks = size_for_crypto_operation / AES_BLOCK_SIZE;
-            int blocks_per_rank = num_total_blocks / world_size;
-            int extra_blocks = num_total_blocks % world_size;
+            local_status = run_local_cipher();
+        }
+        catch (const std::exception &e)
+        {
+            std::cerr << "Rank " << world_rank << " Exception during AES processing: " << e.what() << std::endl;
+            local_status = 1;
+        }
+    }
+    // A failed rank must not leave the others waiting in MPI_Gatherv, so every rank learns the outcome first.
+    int cipher_status = 0;
+    MPI_Allreduce(&local_status, &cipher_status, 1, MPI_INT, MPI_MAX, MPI_COMM_WORLD);
+    if (cipher_status != 0)
+        return cipher_status;
 
-            for (int i = 0; i < world_size; ++i)
+    std::vector<unsigned char> final_processed_crypto_data;
+    if (world_rank == 0)
+    {
+        if (size_for_crypto_operation > 0)
+        {
+            if (mode_str == "ECB")
+            {
+                final_processed_crypto_data.resize(size_for_crypto_operation);
+            }
+            else
             {
-                recvcounts[i] = (blocks_per_rank + (i < extra_blocks ? 1 : 0)) * AES_BLOCK_SIZE;
-                displs[i] = current_offset_gather;
-                current_offset_gather += recvcounts[i];
             }
-
-            MPI_Gatherv(processed_local_data.data(), processed_local_data.size(), MPI_UNSIGNED_CHAR,
-                        final_processed_crypto_data.data(), recvcounts.data(), displs.data(), MPI_UNSIGNED_CHAR,
-                        0, MPI_COMM_WORLD);
         }
-        else if (mode_str == "CBC" && world_rank == 0 && size_for_crypto_operation > 0)
+    }
+
+    if (mode_str == "ECB" && size_for_crypto_operation > 0)
+    {
+        std::vector<int> recvcounts(world_size);
+        std::vector<int> displs(world_size);
+        int current_offset_gather = 0;
+        int num_total_blocks = size_for_crypto_operation / AES_BLOCK_SIZE;
+        int blocks_per_rank = num_total_blocks / world_size;
+        int extra_blocks = num_total_blocks % world_size;
+
+        for (int i = 0; i < world_size; ++i)
         {
-            final_processed_crypto_data = processed_local_data;
+            recvcounts[i] = (blocks_per_rank + (i < extra_blocks ? 1 : 0)) * AES_BLOCK_SIZE;
+            displs[i] = current_offset_gather;
+            current_offset_gather += recvcounts[i];
         }
 
-        if (world_rank == 0)
+        MPI_Gatherv(processed_local_data.data(), processed_local_data.size(), MPI_UNSIGNED_CHAR,
+                    final_processed_crypto_data.data(), recvcounts.data(), displs.data(), MPI_UNSIGNED_CHAR,
+                    0, MPI_COMM_WORLD);
+    }
+    else if (mode_str == "CBC" && world_rank == 0 && size_for_crypto_operation > 0)
+    {
+        final_processed_crypto_data = processed_local_data;
+    }
+
+    if (world_rank == 0)
+    {
+        bool has_data_to_finalize = !final_processed_crypto_data.empty();
+        if (mode_str == "ECB" && size_for_crypto_operation > 0 && final_processed_crypto_data.empty() && world_size > 0)
         {
-            bool has_data_to_finalize = !final_processed_crypto_data.empty();
-            if (mode_str == "ECB" && size_for_crypto_operation > 0 && final_processed_crypto_data.empty() && world_size > 0)
+            if (final_processed_crypto_data.size() != static_cast<size_t>(size_for_crypto_operation) && size_for_crypto_operation > 0)
             {
-                if (final_processed_crypto_data.size() != static_cast<size_t>(size_for_crypto_operation) && size_for_crypto_operation > 0)
-                {
-                    std::cerr << "Rank 0 Warning: ECB - final_processed_crypto_data size (" << final_processed_crypto_data.size()
-                              << ") does not match expected crypto size (" << size_for_crypto_operation << ")." << std::endl;
-                }
+                std::cerr << "Rank 0 Warning: ECB - final_processed_crypto_data size (" << final_processed_crypto_data.size()
+                          << ") does not match expected crypto size (" << size_for_crypto_operation << ")." << std::endl;
             }
+        }
 
-            if (size_for_crypto_operation > 0 && !final_processed_crypto_data.empty())
-            {
-                std::vector<unsigned char> final_pure_data_unpadded_for_bmp;
+        if (size_for_crypto_operation > 0 && !final_processed_crypto_data.empty())
+        {
+            std::vector<unsigned char> final_pure_data_unpadded_for_bmp;
 
-                if (mode_str == "ECB")
+            if (mode_str == "ECB")
+            {
+                if (final_processed_crypto_data.size() < static_cast<size_t>(true_original_pure_plaintext_size))
                 {
-                    if (final_processed_crypto_data.size() < static_cast<size_t>(true_original_pure_plaintext_size))
-                    {
-                        std::cerr << "Rank 0 Error: ECB processed data size (" << final_processed_crypto_data.size()
-                                  << ") is less than true original pure plaintext size (" << true_original_pure_plaintext_size
-                                  << "). Cannot unpad correctly. Aborting." << std::endl;
-                        MPI_Abort(MPI_COMM_WORLD, 1);
-                        return 1;
-                    }
-                    size_t unpad_count = std::min(final_processed_crypto_data.size(), static_cast<size_t>(true_original_pure_plaintext_size));
-                    final_pure_data_unpadded_for_bmp.assign(final_processed_crypto_data.begin(), final_processed_crypto_data.begin() + unpad_count);
-
-                    std::cout << "Rank 0: ECB data unpadded from " << final_processed_crypto_data.size()
-                              << " to target original pure size: " << final_pure_data_unpadded_for_bmp.size() << std::endl;
-                    if (unpad_count != static_cast<size_t>(true_original_pure_plaintext_size))
-                    {
-                        std::cout << "Rank 0: Warning - ECB unpadded size " << unpad_count
-                                  << " does not match true_original_pure_plaintext_size " << true_original_pure_plaintext_size << std::endl;
-                    }
+                    std::cerr << "Rank 0 Error: ECB processed data size (" << final_processed_crypto_data.size()
+                              << ") is less than true original pure plaintext size (" << true_original_pure_plaintext_size
+                              << "). Cannot unpad correctly. Aborting." << std::endl;
+                    return 1;
                 }
-                else
+                size_t unpad_count = std::min(final_processed_crypto_data.size(), static_cast<size_t>(true_original_pure_plaintext_size));
+                final_pure_data_unpadded_for_bmp.assign(final_processed_crypto_data.begin(), final_processed_crypto_data.begin() + unpad_count);
+
+                std::cout << "Rank 0: ECB data unpadded from " << final_processed_crypto_data.size()
+                          << " to target original pure size: " << final_pure_data_unpadded_for_bmp.size() << std::endl;
+                if (unpad_count != static_cast<size_t>(true_original_pure_plaintext_size))
                 {
-                    final_pure_data_unpadded_for_bmp = final_processed_crypto_data;
-                    std::cout << "Rank 0: CBC data (OpenSSL unpadded) size: " << final_pure_data_unpadded_for_bmp.size() << std::endl;
-
-                    if (operation_str == "decrypt" && final_pure_data_unpadded_for_bmp.size() != static_cast<size_t>(true_original_pure_plaintext_size))
-                    {
-                        std::cout << "Rank 0: Warning - CBC decrypted size (" << final_pure_data_unpadded_for_bmp.size()
-                                  << ") differs from true original pure plaintext size (" << true_original_pure_plaintext_size
-                                  << "). This may be normal if original data wasn't block-aligned for encryption, or indicates an issue." << std::endl;
-                    }
+                    std::cout << "Rank 0: Warning - ECB unpadded size " << unpad_count
+                              << " does not match true_original_pure_plaintext_size " << true_original_pure_plaintext_size << std::endl;
                 }
+            }
+            else
+            {
+                final_pure_data_unpadded_for_bmp = final_processed_crypto_data;
+                std::cout << "Rank 0: CBC data (OpenSSL unpadded) size: " << final_pure_data_unpadded_for_bmp.size() << std::endl;
 
-                if (final_pure_data_unpadded_for_bmp.empty() && true_original_pure_plaintext_size > 0)
+                if (operation_str == "decrypt" && final_pure_data_unpadded_for_bmp.size() != static_cast<size_t>(true_original_pure_plaintext_size))
                 {
-                    std::cerr << "Rank 0 Error: final_pure_data_unpadded_for_bmp is empty but original was not. Aborting before BMP reconstruction." << std::endl;
-                    MPI_Abort(MPI_COMM_WORLD, 1);
-                    return 1;
+                    std::cout << "Rank 0: Warning - CBC decrypted size (" << final_pure_data_unpadded_for_bmp.size()
+                              << ") differs from true original pure plaintext size (" << true_original_pure_plaintext_size
+                              << "). This may be normal if original data wasn't block-aligned for encryption, or indicates an issue." << std::endl;
                 }
+            }
 
-                int bytes_per_pixel = info_header.bit_count / 8;
-                std::vector<unsigned char> output_bmp_pixel_data = reconstruct_bmp_pixel_data(
-                    final_pure_data_unpadded_for_bmp, info_header.width, info_header.height, bytes_per_pixel, original_bmp_row_padding);
+            if (final_pure_data_unpadded_for_bmp.empty() && true_original_pure_plaintext_size > 0)
+            {
+                std::cerr << "Rank 0 Error: final_pure_data_unpadded_for_bmp is empty but original was not. Aborting before BMP reconstruction." << std::endl;
+                return 1;
+            }
 
-                file_header.file_size = file_header.offset_data + output_bmp_pixel_data.size();
-                info_header.size_image = output_bmp_pixel_data.size();
+            int bytes_per_pixel = info_header.bit_count / 8;
+            std::vector<unsigned char> output_bmp_pixel_data = reconstruct_bmp_pixel_data(
+                final_pure_data_unpadded_for_bmp, info_header.width, info_header.height, bytes_per_pixel, original_bmp_row_padding);
 
-                std::ofstream outfile(output_path, std::ios::binary);
-                if (!outfile)
-                {
-                    std::cerr << "Error opening output file: " << output_path << std::endl;
-                    MPI_Abort(MPI_COMM_WORLD, 1);
-                    return 1;
-                }
-                outfile.write(reinterpret_cast<const char *>(&file_header), sizeof(file_header));
-                outfile.write(reinterpret_cast<const char *>(&info_header), sizeof(info_header));
-                outfile.write(reinterpret_cast<const char *>(output_bmp_pixel_data.data()), output_bmp_pixel_data.size());
-                outfile.close();
-                std::cout << "Rank 0: Successfully wrote processed image to " << output_path << std::endl;
-            }
-            else
+            file_header.file_size = file_header.offset_data + output_bmp_pixel_data.size();
+            info_header.size_image = output_bmp_pixel_data.size();
+
+            std::ofstream outfile(output_path, std::ios::binary);
+            if (!outfile)
             {
-                std::cout << "Rank 0: No processed data to write (original data might have been empty or processing failed). Output file will be empty or not modified significantly." << std::endl;
-                std::ofstream outfile(output_path, std::ios::binary);
-                outfile.close();
+                std::cerr << "Error opening output file: " << output_path << std::endl;
+                return 1;
             }
+            outfile.write(reinterpret_cast<const char *>(&file_header), sizeof(file_header));
+            outfile.write(reinterpret_cast<const char *>(&info_header), sizeof(info_header));
+            outfile.write(reinterpret_cast<const char *>(output_bmp_pixel_data.data()), output_bmp_pixel_data.size());
+            outfile.close();
+            std::cout << "Rank 0: Successfully wrote processed image to " << output_path << std::endl;
+        }
+        else
+        {
+            std::cout << "Rank 0: No processed data to write (original data might have been empty or processing failed). Output file will be empty or not modified significantly." << std::endl;
+            std::ofstream outfile(output_path, std::ios::binary);
+            outfile.close();
         }
     }
+    return 0;
+}
+
+// Runs a job and returns its exit code. run_job reports its failures by return code, in step on all ranks. An
+// exception escaping it comes either from argument parsing, which every rank does identically, or from rank 0
+// alone after the last collective call.
+int run_job_safely(int world_rank, int world_size, const std::vector<std::string> &job_args, const std::string &key_hex)
+{
+    try
+    {
+        return run_job(world_rank, world_size, job_args, key_hex);
+    }
     catch (const std::exception &e)
     {
         if (world_rank == 0)
@@ -744,9 +755,9 @@ int main(int argc, char *argv[])
         if (std::string(e.what()).find("OpenSSL") != std::string::npos || ERR_peek_error() != 0)
         {
             if (world_rank == 0)
-                handle_openssl_errors("Exception caught in main");
+                handle_openssl_errors("Exception caught while processing job");
         }
-        MPI_Abort(MPI_COMM_WORLD, 1);
+        return 1;
     }
     catch (...)
     {
@@ -758,9 +769,218 @@ int main(int argc, char *argv[])
         {
             std::cerr << "Rank " << world_rank << ": Unknown exception caught!" << std::endl;
         }
+        return 1;
+    }
+}
+
+void run_job_or_abort(int world_rank, int world_size, const std::vector<std::string> &job_args, const std::string &key_hex)
+{
+    if (run_job_safely(world_rank, world_size, job_args, key_hex) != 0)
+    {
+        MPI_Abort(MPI_COMM_WORLD, 1);
+    }
+}
+
+std::vector<std::string> split_fields(const std::string &line, char separator)
+{
+    std::vector<std::string> fields;
+    std::string field;
+    std::istringstream stream(line);
+    while (std::getline(stream, field, separator))
+    {
+        fields.push_back(field);
+    }
+    return fields;
+}
+
+bool send_line(int client_fd, const std::string &line)
+{
+    std::string data = line + "\n";
+    size_t sent = 0;
+    while (sent < data.size())
+    {
+        ssize_t n = send(client_fd, data.data() + sent, data.size() - sent, MSG_NOSIGNAL);
+        if (n <= 0)
+            return false;
+        sent += static_cast<size_t>(n);
+    }
+    return true;
+}
+
+bool read_line(int client_fd, std::string &line)
+{
+    line.clear();
+    char c;
+    while (true)
+    {
+        ssize_t n = recv(client_fd, &c, 1, 0);
+        if (n <= 0)
+            return false;
+        if (c == '\n')
+            return true;
+        line.push_back(c);
+    }
+}
+
+// Rank 0 only. Blocks until a client submits a job and returns its fields (jobId, key hex, job args),
+// answering health checks meanwhile. Returns an empty line when the client asks the world to shut down.
+std::string next_job_line(int listen_fd, int &client_fd)
+{
+    std::string line;
+    while (true)
+    {
+        if (client_fd < 0)
+        {
+            client_fd = accept(listen_fd, nullptr, nullptr);
+            if (client_fd < 0)
+                continue;
+            std::cout << "Rank 0: MPI worker client connected." << std::endl;
+        }
+        if (!read_line(client_fd, line))
+        {
+            close(client_fd);
+            client_fd = -1;
+            continue;
+        }
+        if (line == "PING")
+        {
+            send_line(client_fd, "PONG");
+        }
+        else if (line == "QUIT")
+        {
+            return "";
+        }
+        else if (line.rfind("JOB\t", 0) == 0)
+        {
+            return line.substr(4);
+        }
+        else
+        {
+            send_line(client_fd, "ERROR\tUnknown command");
+        }
+    }
+}
+
+// Keeps the MPI world alive and runs one job per request received by rank 0 on a Unix socket, so jobs do not
+// pay for mpiexec, orted and MPI_Init each time. Other ranks poll for the next job instead of spinning in a
+// blocking broadcast while the world is idle.
+void serve(int world_rank, int world_size, const std::string &socket_path)
+{
+    int listen_fd = -1;
+    int client_fd = -1;
+    if (world_rank == 0)
+    {
+        listen_fd = socket(AF_UNIX, SOCK_STREAM, 0);
+        sockaddr_un addr{};
+        addr.sun_family = AF_UNIX;
+        strncpy(addr.sun_path, socket_path.c_str(), sizeof(addr.sun_path) - 1);
+        unlink(socket_path.c_str());
+        if (listen_fd < 0 || bind(listen_fd, reinterpret_cast<sockaddr *>(&addr), sizeof(addr)) != 0 || listen(listen_fd, 1) != 0)
+        {
+            std::cerr << "Rank 0 Error: Cannot listen on MPI worker socket " << socket_path << std::endl;
+            MPI_Abort(MPI_COMM_WORLD, 1);
+            return;
+        }
+        std::cout << "Rank 0: MPI worker world of " << world_size << " rank(s) listening on " << socket_path << std::endl;
+    }
+
+    while (true)
+    {
+        std::string job_line;
+        int length = 0;
+        if (world_rank == 0)
+        {
+            job_line = next_job_line(listen_fd, client_fd);
+            length = static_cast<int>(job_line.size());
+            MPI_Bcast(&length, 1, MPI_INT, 0, MPI_COMM_WORLD);
+        }
+        else
+        {
+            MPI_Request request;
+            MPI_Ibcast(&length, 1, MPI_INT, 0, MPI_COMM_WORLD, &request);
+            int done = 0;
+            while (!done)
+            {
+                MPI_Test(&request, &done, MPI_STATUS_IGNORE);
+                if (!done)
+                    usleep(1000);
+            }
+        }
+        if (length == 0)
+            break;
+
+        job_line.resize(length);
+        MPI_Bcast(&job_line[0], length, MPI_CHAR, 0, MPI_COMM_WORLD);
+        std::vector<std::string> fields = split_fields(job_line, '\t');
+        if (fields.size() < 7)
+        {
+            if (world_rank == 0)
+                send_line(client_fd, "DONE\t" + (fields.empty() ? std::string() : fields[0]) + "\t1");
+            continue;
+        }
+
+        std::vector<std::string> job_args(fields.begin() + 2, fields.end());
+        // A failed job is reported back to the client; only the job fails, the world keeps serving.
+        int exit_code = run_job_safely(world_rank, world_size, job_args, fields[1]);
+        MPI_Barrier(MPI_COMM_WORLD);
+        if (world_rank == 0)
+        {
+            std::cout << "=== JOB " << fields[0] << " FINISHED (exit code " << exit_code << ") ===" << std::endl;
+            send_line(client_fd, "DONE\t" + fields[0] + "\t" + std::to_string(exit_code));
+        }
+    }
+
+    if (world_rank == 0)
+    {
+        if (client_fd >= 0)
+            close(client_fd);
+        close(listen_fd);
+        unlink(socket_path.c_str());
+        std::cout << "Rank 0: MPI worker world shutting down." << std::endl;
+    }
+}
+
+int main(int argc, char *argv[])
+{
+    MPI_Init(&argc, &argv);
+    OpenSSL_add_all_algorithms();
+    ERR_load_crypto_strings();
+
+    int world_rank, world_size;
+    MPI_Comm_rank(MPI_COMM_WORLD, &world_rank);
+    MPI_Comm_size(MPI_COMM_WORLD, &world_size);
+
+    if (argc >= 3 && std::string(argv[1]) == "--serve")
+    {
+        serve(world_rank, world_size, argv[2]);
+        ERR_free_strings();
+        EVP_cleanup();
+        MPI_Finalize();
+        return 0;
+    }
+
+    if (argc < 6)
+    {
+        if (world_rank == 0)
+            std::cerr << "Usage: " << argv[0] << " <input.bmp> <output.bmp> <encrypt|decrypt> <128|192|256> <ECB|CBC> [IV_hex_for_CBC]" << std::endl;
+        if (world_rank == 0)
+            std::cerr << "       " << argv[0] << " --serve <socket_path>" << std::endl;
         MPI_Abort(MPI_COMM_WORLD, 1);
+        return 1;
     }
 
+    const char *key_env = std::getenv("PROCESSING_KEY");
+    if (!key_env)
+    {
+        if (world_rank == 0)
+            std::cerr << "Error: PROCESSING_KEY environment variable not set." << std::endl;
+        MPI_Abort(MPI_COMM_WORLD, 1);
+        return 1;
+    }
+
+    std::vector<std::string> job_args(argv + 1, argv + argc);
+    run_job_or_abort(world_rank, world_size, job_args, std::string(key_env));
+
     MPI_Barrier(MPI_COMM_WORLD);
     if (world_rank == 0)
     {
@@ -772,3 +992,4 @@ int main(int argc, char *argv[])
     MPI_Finalize();
     return 0;
 }
+
@@ -0,0 +1,161 @@
+package com.ase.ism.wcdad.c03;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only checkpoint of a job's aggregation, kept next to its
+ * {@code _aggregated.dat} file. A chunk is journaled only after its bytes were
+ * written to the data file and before the delivery is acked, so replaying the
+ * journal after a restart never claims data that is not on disk. A torn
+ * trailing record is ignored; its chunk is simply redelivered.
+ */
+public class AggregationJournal implements AutoCloseable {
+    public static final String SUFFIX = ".journal";
+
+    private static final byte RECORD_METADATA = 'M';
+    private static final byte RECORD_CHUNK = 'C';
+    private static final byte RECORD_DEFERRED_LAST_CHUNK = 'L';
+    private static final byte RECORD_REGISTERED = 'R';
+
+    private final Path path;
+    private final FileChannel channel;
+    private final boolean fsync;
+
+    private AggregationJournal(Path path, FileChannel channel, boolean fsync) {
+        this.path = path;
+        this.channel = channel;
+        this.fsync = fsync;
+    }
+
+    public static Path pathFor(Path dataFilePath) {
+        return Paths.get(dataFilePath.toString() + SUFFIX);
+    }
+
+    public static AggregationJournal create(Path path, int totalChunks, byte[] metadata, boolean fsync)
+            throws IOException {
+        Files.deleteIfExists(path);
+        AggregationJournal journal = new AggregationJournal(path, FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND), fsync);
+        ByteBuffer record = ByteBuffer.allocate(1 + 4 + 4 + metadata.length);
+        record.put(RECORD_METADATA).putInt(totalChunks).putInt(metadata.length).put(metadata).flip();
+        journal.append(record);
+        return journal;
+    }
+
+    /** Reopens a replayed journal for appending, dropping any torn record at its tail. */
+    public static AggregationJournal reopen(Path path, Replay replay, boolean fsync) throws IOException {
+        try (FileChannel truncating = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            if (truncating.size() > replay.validLength) {
+                truncating.truncate(replay.validLength);
+            }
+        }
+        return new AggregationJournal(path,
+                FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND), fsync);
+    }
+
+    public synchronized void recordChunk(int chunkId, int length) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(1 + 4 + 4);
+        record.put(RECORD_CHUNK).putInt(chunkId).putInt(length).flip();
+        append(record);
+    }
+
+    public synchronized void recordDeferredLastChunk(byte[] data) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(1 + 4 + data.length);
+        record.put(RECORD_DEFERRED_LAST_CHUNK).putInt(data.length).put(data).flip();
+        append(record);
+    }
+
+    public synchronized void recordRegistered() throws IOException {
+        append(ByteBuffer.wrap(new byte[] { RECORD_REGISTERED }));
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            channel.close();
+        }
+    }
+
+    private void append(ByteBuffer record) throws IOException {
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+    }
+
+    public static Replay replay(Path path) throws IOException {
+        Replay replay = new Replay();
+        long journalSize = Files.size(path);
+        try (InputStream in = Files.newInputStream(path);
+                DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+            if (data.readByte() != RECORD_METADATA) {
+                throw new IOException("Journal " + path + " does not start with a metadata record.");
+            }
+            replay.totalChunks = data.readInt();
+            int metadataLength = data.readInt();
+            if (metadataLength < 0 || metadataLength > journalSize) {
+                throw new IOException("Journal " + path + " has a corrupt metadata record.");
+            }
+            replay.metadata = new byte[metadataLength];
+            data.readFully(replay.metadata);
+            replay.validLength = 1 + 4 + 4 + replay.metadata.length;
+            while (true) {
+                byte type = data.readByte();
+                if (type == RECORD_CHUNK) {
+                    int chunkId = data.readInt();
+                    int length = data.readInt();
+                    replay.chunks.add(new int[] { chunkId, length });
+                    replay.validLength += 1 + 4 + 4;
+                } else if (type == RECORD_DEFERRED_LAST_CHUNK) {
+                    int length = data.readInt();
+                    if (length < 0 || length > journalSize - replay.validLength) {
+                        break;
+                    }
+                    byte[] chunk = new byte[length];
+                    data.readFully(chunk);
+                    replay.deferredLastChunk = chunk;
+                    replay.validLength += 1 + 4 + chunk.length;
+                } else if (type == RECORD_REGISTERED) {
+                    replay.registered = true;
+                    replay.validLength += 1;
+                } else {
+                    System.err.println(" [!] Unknown record type " + type + " in journal " + path
+                            + ". Ignoring the rest of it.");
+                    break;
+                }
+            }
+        } catch (EOFException endOfJournal) {
+            if (replay.metadata == null) {
+                throw new IOException("Journal " + path + " ends before its metadata record.");
+            }
+        }
+        return replay;
+    }
+
+    public static class Replay {
+        int totalChunks;
+        byte[] metadata;
+        final List<int[]> chunks = new ArrayList<>();
+        byte[] deferredLastChunk;
+        boolean registered;
+        long validLength;
+    }
+}
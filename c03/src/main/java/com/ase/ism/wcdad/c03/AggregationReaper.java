@@ -0,0 +1,160 @@
+package com.ase.ism.wcdad.c03;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class AggregationReaper implements AutoCloseable {
+    public interface EvictionHandler {
+        void evicted(String jobId, String reason);
+    }
+
+    private final Map<String, C03Consumer.JobChunkAggregator> activeJobs;
+    private final long idleTtlMillis;
+    private final long diskBudgetBytes;
+    private final long heapBudgetBytes;
+    private final long budgetEvictionMinIdleMillis;
+    private final EvictionHandler evictionHandler;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "c03-aggregation-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LongAdder idleEvictions = new LongAdder();
+    private final LongAdder budgetEvictions = new LongAdder();
+    private volatile long diskBytesInUse = 0;
+    private volatile long diskBytesReserved = 0;
+    private volatile long heapBytesInUse = 0;
+    private volatile boolean overBudget = false;
+    private String lastReport;
+
+    public AggregationReaper(Map<String, C03Consumer.JobChunkAggregator> activeJobs, long idleTtlMillis,
+            long diskBudgetBytes, long heapBudgetBytes, long budgetEvictionMinIdleMillis,
+            EvictionHandler evictionHandler) {
+        this.activeJobs = activeJobs;
+        this.idleTtlMillis = idleTtlMillis;
+        this.diskBudgetBytes = diskBudgetBytes;
+        this.heapBudgetBytes = heapBudgetBytes;
+        this.budgetEvictionMinIdleMillis = budgetEvictionMinIdleMillis;
+        this.evictionHandler = evictionHandler;
+    }
+
+    public void start(long intervalMillis) {
+        scheduler.scheduleWithFixedDelay(this::sweep, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        System.out.println(" [*] Aggregation reaper started (idle TTL " + idleTtlMillis + "ms, disk budget "
+                + diskBudgetBytes + " bytes, heap budget " + heapBudgetBytes + " bytes).");
+    }
+
+    /**
+     * True while in-flight aggregation uses its whole disk or heap budget. New
+     * jobs are held back until running ones finish or get evicted. Disk counts
+     * the chunk data written so far; the preallocated rest of each file is
+     * sparse and only reported.
+     */
+    public boolean isOverBudget() {
+        return overBudget;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    void sweep() {
+        try {
+            long now = System.currentTimeMillis();
+            List<Map.Entry<String, C03Consumer.JobChunkAggregator>> jobs = new ArrayList<>(activeJobs.entrySet());
+            for (Map.Entry<String, C03Consumer.JobChunkAggregator> job : jobs) {
+                long idleMillis = now - job.getValue().lastActivityTime;
+                long jobIdleTtlMillis = Math.max(idleTtlMillis, job.getValue().idleTtlMillis());
+                if (idleMillis > jobIdleTtlMillis && evict(job.getKey(), job.getValue(),
+                        "Job abandoned: no chunks received for " + (idleMillis / 1000) + "s.")) {
+                    idleEvictions.increment();
+                }
+            }
+
+            measure();
+            if (diskBytesInUse > diskBudgetBytes || heapBytesInUse > heapBudgetBytes) {
+                jobs = new ArrayList<>(activeJobs.entrySet());
+                jobs.sort(Comparator.comparingLong(job -> job.getValue().lastActivityTime));
+                for (Map.Entry<String, C03Consumer.JobChunkAggregator> job : jobs) {
+                    if (diskBytesInUse <= diskBudgetBytes && heapBytesInUse <= heapBudgetBytes) {
+                        break;
+                    }
+                    if (now - job.getValue().lastActivityTime < budgetEvictionMinIdleMillis) {
+                        break;
+                    }
+                    // A job that has received no data only holds a preallocated extent; evicting it frees nothing.
+                    if (job.getValue().writtenBytes() == 0 && heapBytesInUse <= heapBudgetBytes) {
+                        continue;
+                    }
+                    if (evict(job.getKey(), job.getValue(),
+                            "Job evicted: C03 aggregation budget exhausted while the job was idle.")) {
+                        budgetEvictions.increment();
+                        measure();
+                    }
+                }
+            }
+
+            boolean nowOverBudget = diskBytesInUse >= diskBudgetBytes || heapBytesInUse >= heapBudgetBytes;
+            if (nowOverBudget != overBudget) {
+                System.out.println(nowOverBudget
+                        ? " [!] Aggregation budget exhausted. Holding back new jobs until space frees up."
+                        : " [ok] Aggregation budget available again. Accepting new jobs.");
+            }
+            overBudget = nowOverBudget;
+            report();
+        } catch (Exception e) {
+            System.err.println(" [!] Aggregation reaper sweep failed: " + e.getMessage());
+        }
+    }
+
+    private boolean evict(String jobId, C03Consumer.JobChunkAggregator aggregator, String reason) {
+        if (!activeJobs.remove(jobId, aggregator)) {
+            return false;
+        }
+        aggregator.evict();
+        System.err.println(" [!] Job " + jobId + ": " + reason + " Evicted from aggregation.");
+        evictionHandler.evicted(jobId, reason);
+        return true;
+    }
+
+    private void measure() {
+        long disk = 0;
+        long reserved = 0;
+        long heap = 0;
+        for (C03Consumer.JobChunkAggregator aggregator : activeJobs.values()) {
+            disk += aggregator.writtenBytes();
+            reserved += aggregator.reservedBytes();
+            heap += aggregator.heapBytes();
+        }
+        diskBytesInUse = disk;
+        diskBytesReserved = reserved;
+        heapBytesInUse = heap;
+    }
+
+    private void report() {
+        if (activeJobs.isEmpty() && diskBytesInUse == 0 && lastReport == null) {
+            return;
+        }
+        String utilization = String.format(
+                "%d active job(s), disk %d/%d bytes (%.1f%%) written + %d bytes preallocated, heap %d/%d bytes"
+                        + " (%.1f%%), evicted idle=%d budget=%d",
+                activeJobs.size(), diskBytesInUse, diskBudgetBytes, percent(diskBytesInUse, diskBudgetBytes),
+                diskBytesReserved, heapBytesInUse, heapBudgetBytes, percent(heapBytesInUse, heapBudgetBytes), idleEvictions.sum(),
+                budgetEvictions.sum());
+        if (!utilization.equals(lastReport)) {
+            System.out.println(" [i] Aggregation budget: " + utilization);
+            lastReport = activeJobs.isEmpty() && diskBytesInUse == 0 ? null : utilization;
+        }
+    }
+
+    private static double percent(long used, long budget) {
+        return budget > 0 ? used * 100.0 / budget : 0;
+    }
+}
@@ -1,18 +1,23 @@
 package com.ase.ism.wcdad.c03;
 
+import com.ase.ism.wcdad.common.ChunkCodec;
+import com.ase.ism.wcdad.common.ChunkMessage;
+import com.ase.ism.wcdad.common.JobSharding;
+import com.ase.ism.wcdad.common.LatencyHistogram;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.BuiltinExchangeType;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
-import com.rabbitmq.client.DeliverCallback;
+import com.rabbitmq.client.Delivery;
 
+import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
 import org.apache.hc.client5.http.classic.methods.HttpPut;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.HttpEntity;
@@ -20,57 +25,171 @@ import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpException;
 import org.apache.hc.core5.http.io.HttpClientResponseHandler;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.FileEntity;
 import org.apache.hc.core5.http.io.entity.StringEntity;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.crypto.BadPaddingException;
 
 public class C03Consumer {
 
-    private static final String EXCHANGE_NAME = "image_processing_exchange";
-    private static final String QUEUE_NAME = "image_processing_queue";
-    private static final String ROUTING_KEY = "image.job";
+    private static final String EXCHANGE_NAME = JobSharding.EXCHANGE_NAME;
+    private static final int JOB_SHARD_COUNT = JobSharding.shardCount();
+    private static final String C03_INSTANCE_ID = resolveInstanceId();
+    private static final long C03_MEMBER_TTL_MS = Long
+            .parseLong(System.getenv().getOrDefault("C03_MEMBER_TTL_MS", "10000"));
     private static final String C05_API_URL_ENV = "C05_API_URL";
     private static final String DEFAULT_C05_API_BASE_URL = "http://c05:3000";
     private static final String C05_JOBS_ENDPOINT = "/api/jobs";
     private static final String C05_INITIATE_CHUNKED_UPLOAD_ENDPOINT = "/api/pictures/initiate-chunked-upload";
     private static final String C05_UPLOAD_CHUNK_ENDPOINT = "/api/pictures/upload-chunk";
     private static final String C05_FINALIZE_CHUNKED_UPLOAD_ENDPOINT = "/api/pictures/finalize-chunked-upload";
+    private static final String C05_UPLOAD_CAPABILITIES_ENDPOINT = "/api/pictures/upload-capabilities";
+    private static final String C05_STREAM_UPLOAD_ENDPOINT = "/api/pictures/stream-upload";
+    private static final boolean C03_STREAMING_RESULT_UPLOAD = Boolean
+            .parseBoolean(System.getenv().getOrDefault("C03_STREAMING_RESULT_UPLOAD", "true"));
+    private static final long C05_CAPABILITIES_RECHECK_MS = 5 * 60 * 1000;
+    // Package-private so tests can point C03 at a stub C05.
+    static volatile String c05ApiBaseUrl = System.getenv().getOrDefault(C05_API_URL_ENV, DEFAULT_C05_API_BASE_URL);
+    private static volatile Boolean c05SupportsStreamingUpload;
+    private static volatile long c05CapabilitiesCheckedAt = 0;
 
     private static final String NATIVE_EXECUTABLE_PATH_ENV = "NATIVE_EXECUTABLE_PATH";
     private static final String DEFAULT_NATIVE_EXECUTABLE_PATH = "/home/mpiuser/app/process_image_mpi";
     private static final String TEMP_DIR = "/tmp/img_processing";
     private static final String HOSTFILE_PATH = TEMP_DIR + "/hostfile";
+    private static final String AGGREGATED_FILE_SUFFIX = "_aggregated.dat";
+    private static final boolean C03_CHECKPOINT_FSYNC = Boolean
+            .parseBoolean(System.getenv().getOrDefault("C03_CHECKPOINT_FSYNC", "false"));
 
     private static final String JOB_NOTIFICATION_EXCHANGE_NAME = "job_updates_exchange";
     private static final String JOB_NOTIFICATION_ROUTING_KEY = "job.update";
 
     private static ObjectMapper objectMapper = new ObjectMapper();
-    private static ExecutorService processingExecutor = Executors.newFixedThreadPool(4);
+    private static final int DEFAULT_MPI_SLOTS_PER_NODE = 2;
+    private static final SlotScheduler jobScheduler = new SlotScheduler(mpiSlotsByHost(),
+            Long.parseLong(System.getenv().getOrDefault("C03_SCHEDULER_AGING_BYTES_PER_SECOND",
+                    String.valueOf(1024 * 1024))),
+            Long.parseLong(System.getenv().getOrDefault("C03_SCHEDULER_STARVATION_MS", "120000")));
+    private static final long C03_SCHEDULER_BYTES_PER_RANK = Long.parseLong(System.getenv().getOrDefault(
+            "C03_SCHEDULER_BYTES_PER_RANK", String.valueOf(8 * 1024 * 1024)));
+    private static final int C03_SCHEDULER_MAX_RANKS_PER_JOB = Integer.parseInt(System.getenv().getOrDefault(
+            "C03_SCHEDULER_MAX_RANKS_PER_JOB", String.valueOf(mpiSlots("MPI_SLOTS_C03") + mpiSlots("MPI_SLOTS_C04"))));
+    private static final long SCHEDULER_METRICS_LOG_INTERVAL_SECONDS = 60;
+    private static final int C03_PREFETCH = Integer
+            .parseInt(System.getenv().getOrDefault("C03_PREFETCH", "64"));
+    private static final int C03_CONSUMER_THREADS = Integer.parseInt(System.getenv().getOrDefault(
+            "C03_CONSUMER_THREADS", String.valueOf(Math.max(4, Runtime.getRuntime().availableProcessors()))));
+    private static final ExecutorService c05RegistrationExecutor = Executors.newFixedThreadPool(Integer
+            .parseInt(System.getenv().getOrDefault("C03_C05_REGISTRATION_THREADS", "4")));
+    private static final LongAdder chunksIngested = new LongAdder();
+    private static final C05HttpClient c05HttpClient = new C05HttpClient(
+            Integer.parseInt(System.getenv().getOrDefault("C05_HTTP_MAX_CONNECTIONS", "32")),
+            Integer.parseInt(System.getenv().getOrDefault("C05_HTTP_MAX_CONNECTIONS_PER_ROUTE", "16")),
+            Long.parseLong(System.getenv().getOrDefault("C05_HTTP_CONNECT_TIMEOUT_MS", "5000")),
+            Long.parseLong(System.getenv().getOrDefault("C05_HTTP_RESPONSE_TIMEOUT_MS", "60000")),
+            Long.parseLong(System.getenv().getOrDefault("C05_HTTP_POOL_TIMEOUT_MS", "10000")),
+            Integer.parseInt(System.getenv().getOrDefault("C05_HTTP_MAX_RETRIES", "3")),
+            Long.parseLong(System.getenv().getOrDefault("C05_HTTP_RETRY_BASE_DELAY_MS", "200")));
+    private static final JobStatusDispatcher jobStatusDispatcher = new JobStatusDispatcher(
+            C03Consumer::publishJobNotification, C03Consumer::persistJobStatusBatch,
+            Integer.parseInt(System.getenv().getOrDefault("C03_STATUS_QUEUE_CAPACITY", "1024")),
+            Integer.parseInt(System.getenv().getOrDefault("C03_STATUS_BATCH_SIZE", "50")),
+            Long.parseLong(System.getenv().getOrDefault("C03_STATUS_LINGER_MS", "100")),
+            Integer.parseInt(System.getenv().getOrDefault("C03_STATUS_MAX_ATTEMPTS", "5")),
+            Long.parseLong(System.getenv().getOrDefault("C03_STATUS_RETRY_DELAY_MS", "500")));
+    private static volatile Boolean statusBatchSupported = null;
+    private static final long C05_HTTP_METRICS_LOG_INTERVAL_SECONDS = 60;
+    private static final long INGEST_RATE_LOG_INTERVAL_SECONDS = 30;
+    // C01_UPLOAD_SESSION_TTL_MS's default; resumable uploads also carry their own idleTtlMs in the metadata.
+    private static final long C03_JOB_IDLE_TTL_MS = Long
+            .parseLong(System.getenv().getOrDefault("C03_JOB_IDLE_TTL_MS", "3600000"));
+    private static final long C03_AGGREGATION_DISK_BUDGET_BYTES = Long.parseLong(
+            System.getenv().getOrDefault("C03_AGGREGATION_DISK_BUDGET_BYTES", String.valueOf(8L * 1024 * 1024 * 1024)));
+    private static final long C03_AGGREGATION_HEAP_BUDGET_BYTES = Long.parseLong(
+            System.getenv().getOrDefault("C03_AGGREGATION_HEAP_BUDGET_BYTES", String.valueOf(64L * 1024 * 1024)));
+    private static final long C03_BUDGET_EVICTION_MIN_IDLE_MS = Long
+            .parseLong(System.getenv().getOrDefault("C03_BUDGET_EVICTION_MIN_IDLE_MS", "60000"));
+    private static final long C03_REAPER_INTERVAL_MS = Long
+            .parseLong(System.getenv().getOrDefault("C03_REAPER_INTERVAL_MS", "5000"));
+    private static final long C03_NODE_PROBE_INTERVAL_MS = Long
+            .parseLong(System.getenv().getOrDefault("C03_NODE_PROBE_INTERVAL_MS", "30000"));
+    private static final NodeHealthMonitor nodeHealthMonitor = new NodeHealthMonitor(
+            Arrays.asList(System.getenv().getOrDefault("C03_MPI_PROBE_HOSTS", "localhost,c04").split(",")),
+            Long.parseLong(System.getenv().getOrDefault("C03_NODE_HEALTH_FRESHNESS_MS", "60000")),
+            Long.parseLong(System.getenv().getOrDefault("C03_NODE_PROBE_TIMEOUT_SECONDS", "15")));
+    private static final long C03_SSH_MASTER_CHECK_INTERVAL_MS = Long
+            .parseLong(System.getenv().getOrDefault("C03_SSH_MASTER_CHECK_INTERVAL_MS", "30000"));
+    private static final SshMultiplexer sshMultiplexer = new SshMultiplexer("mpiuser",
+            Arrays.asList(System.getenv().getOrDefault("C03_MPI_HOSTNAME", "c03"),
+                    System.getenv().getOrDefault("C04_MPI_HOSTNAME", "c04")),
+            Paths.get(TEMP_DIR, "ssh-mux"),
+            Boolean.parseBoolean(System.getenv().getOrDefault("C03_SSH_MULTIPLEXING", "true")));
+    private static final LatencyHistogram mpiLaunchLatency = new LatencyHistogram();
+    private static final long C03_JVM_AES_MAX_BYTES = Long
+            .parseLong(System.getenv().getOrDefault("C03_JVM_AES_MAX_BYTES", String.valueOf(1024 * 1024)));
+    private static final ParallelAesEngine parallelAesEngine = Boolean
+            .parseBoolean(System.getenv().getOrDefault("C03_PARALLEL_AES", "true"))
+                    ? new ParallelAesEngine(
+                            Integer.parseInt(System.getenv().getOrDefault("C03_PARALLEL_AES_THREADS",
+                                    String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                            Integer.parseInt(System.getenv().getOrDefault("C03_PARALLEL_AES_SEGMENT_BYTES",
+                                    String.valueOf(4 * 1024 * 1024))))
+                    : null;
+    private static final boolean C03_PARALLEL_AES_ECB_ENCRYPT = Boolean
+            .parseBoolean(System.getenv().getOrDefault("C03_PARALLEL_AES_ECB_ENCRYPT", "false"));
+    private static WorkerPoolClient mpiWorkerPool;
     private static Channel staticRabbitMqChannel;
+    private static ShardCoordinator shardCoordinator;
+    private static AggregationReaper aggregationReaper;
     private static final Map<String, JobChunkAggregator> activeJobChunks = new ConcurrentHashMap<>();
     private static final int C03_UPLOAD_CHUNK_SIZE = 1024 * 512;
+    private static final int C03_MIN_UPLOAD_CHUNK_SIZE = 1024 * 256;
+    // C05 caps JSON bodies at 10mb and Base64 inflates chunk data by 4/3.
+    private static final int C03_MAX_UPLOAD_CHUNK_SIZE = 1024 * 1024 * 6;
+    private static final double C05_TARGET_CHUNK_UPLOAD_MS = 250.0;
+    private static final double UPLOAD_LATENCY_EWMA_WEIGHT = 0.2;
+    private static volatile double c05UploadMillisPerMbEwma = -1;
+    private static final int C03_RESULT_UPLOAD_CONCURRENCY = Integer
+            .parseInt(System.getenv().getOrDefault("C03_RESULT_UPLOAD_CONCURRENCY", "4"));
+    private static final int C03_RESULT_UPLOAD_CHUNK_RETRIES = Integer
+            .parseInt(System.getenv().getOrDefault("C03_RESULT_UPLOAD_CHUNK_RETRIES", "3"));
+    private static final long C03_RESULT_UPLOAD_RETRY_DELAY_MS = 500;
+    private static final ExecutorService resultUploadExecutor = Executors.newFixedThreadPool(Integer
+            .parseInt(System.getenv().getOrDefault("C03_RESULT_UPLOAD_THREADS", "16")));
 
     static class C05JobPayload {
         public String jobId;
@@ -141,32 +260,29 @@ public class C03Consumer {
         }
     }
 
-    static class ChunkMessage {
-        public String jobId;
-        public int chunkId;
-        public int totalChunks;
-        public boolean firstChunk;
-        public String metadataJson;
-        public String chunkDataB64;
-
-        public ChunkMessage() {
-        }
-    }
-
     static class JobChunkAggregator {
         String jobId;
         ImageProcessingJob initialJobDetails;
         byte[] originalMetadataBytes;
         int totalChunks = -1;
-        long lastActivityTime;
+        volatile long lastActivityTime;
         boolean metadataInitialized = false;
+        private boolean evicted = false;
+        CompletableFuture<Void> c05Registration = CompletableFuture.completedFuture(null);
         private final ObjectMapper objMapper;
 
         private Path assembledDataFilePath;
-        private FileOutputStream dataFileOutputStream;
-        private final Map<Integer, byte[]> pendingChunks = new TreeMap<>();
-        private int nextChunkIdToWrite = 0;
+        private FileChannel dataFileChannel;
+        private BitSet writtenChunks;
         private int chunksSuccessfullyWritten = 0;
+        private int chunkSize = 0;
+        private long assembledLength = 0;
+        private long reservedDiskBytes = 0;
+        private long writtenBytes = 0;
+        // Only used when the metadata carries no chunkSize and the last chunk arrives before any full one.
+        private byte[] deferredLastChunk;
+        private AggregationJournal journal;
+        private boolean registeredInC05 = false;
         private final File tempDirFile;
 
         public JobChunkAggregator(String jobId, ObjectMapper objectMapperInstance, String tempDirectoryPath)
@@ -181,17 +297,17 @@ public class C03Consumer {
             }
         }
 
-        public synchronized void initializeMetadata(ChunkMessage chunk) throws IOException {
+        public synchronized boolean initializeMetadata(ChunkMessage chunk) throws IOException {
             if (!chunk.firstChunk) {
                 System.err.println(
                         " [!] Job " + jobId + ": Attempted to initialize metadata with a non-first chunk (chunkId: "
                                 + chunk.chunkId + "). Ignoring.");
-                return;
+                return false;
             }
             if (this.metadataInitialized) {
                 System.err.println(" [!] Job " + jobId
                         + ": Metadata already initialized. Ignoring new metadata from chunkId: " + chunk.chunkId);
-                return;
+                return false;
             }
 
             this.totalChunks = chunk.totalChunks;
@@ -206,12 +322,25 @@ public class C03Consumer {
                     + (this.originalMetadataBytes != null ? this.originalMetadataBytes.length : 0));
 
             if (this.totalChunks > 0) {
+                this.chunkSize = this.initialJobDetails != null ? Math.max(0, this.initialJobDetails.getChunkSize())
+                        : 0;
+                this.writtenChunks = new BitSet(this.totalChunks);
                 this.assembledDataFilePath = Paths.get(this.tempDirFile.getAbsolutePath(),
-                        this.jobId + "_aggregated.dat");
+                        this.jobId + AGGREGATED_FILE_SUFFIX);
                 Files.deleteIfExists(this.assembledDataFilePath);
-                this.dataFileOutputStream = new FileOutputStream(this.assembledDataFilePath.toFile());
-                System.out.println(
-                        " [i] Job " + jobId + ": Opened temp file for chunk data: " + this.assembledDataFilePath);
+                this.dataFileChannel = FileChannel.open(this.assembledDataFilePath, StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                long expectedSize = this.initialJobDetails != null ? this.initialJobDetails.getOriginalFileSize() : 0;
+                if (expectedSize > 0) {
+                    // Reserve the full extent up front so positional writes never grow the file piecemeal.
+                    this.dataFileChannel.write(ByteBuffer.allocate(1), expectedSize - 1);
+                    this.reservedDiskBytes = expectedSize;
+                }
+                System.out.println(" [i] Job " + jobId + ": Opened temp file for chunk data: "
+                        + this.assembledDataFilePath + " (chunk size " + this.chunkSize + " bytes, preallocated "
+                        + Math.max(0, expectedSize) + " bytes)");
+                this.journal = AggregationJournal.create(AggregationJournal.pathFor(this.assembledDataFilePath),
+                        this.totalChunks, withoutKey(this.originalMetadataBytes), C03_CHECKPOINT_FSYNC);
             } else if (this.totalChunks == 0) {
                 System.out.println(
                         " [i] Job " + jobId + ": Metadata-only job (totalChunks is 0), no data file will be created.");
@@ -219,6 +348,88 @@ public class C03Consumer {
             } else {
                 throw new IOException("Job " + jobId + ": Invalid totalChunks value in metadata: " + this.totalChunks);
             }
+            return true;
+        }
+
+        // The AES key never goes to disk; after a restart it comes back with the redelivered first chunk.
+        private byte[] withoutKey(byte[] metadataBytes) throws IOException {
+            JsonNode metadata = objMapper.readTree(metadataBytes);
+            if (metadata instanceof ObjectNode metadataObject) {
+                metadataObject.remove("key");
+            }
+            return objMapper.writeValueAsBytes(metadata);
+        }
+
+        public synchronized boolean isAwaitingKey() {
+            return metadataInitialized && initialJobDetails != null && initialJobDetails.getKey() == null;
+        }
+
+        /** Takes the key from a redelivered first chunk of a recovered job. Returns false if it was not needed. */
+        public synchronized boolean restoreKey(ChunkMessage chunk) throws IOException {
+            if (!isAwaitingKey() || chunk.metadataJson == null) {
+                return false;
+            }
+            ImageProcessingJob redelivered = objMapper.readValue(chunk.metadataJson, ImageProcessingJob.class);
+            if (redelivered.getKey() == null) {
+                return false;
+            }
+            this.initialJobDetails = redelivered;
+            this.originalMetadataBytes = chunk.metadataJson.getBytes(StandardCharsets.UTF_8);
+            this.lastActivityTime = System.currentTimeMillis();
+            return true;
+        }
+
+        static JobChunkAggregator recover(String jobId, ObjectMapper objectMapperInstance, String tempDirectoryPath,
+                Path journalPath) throws IOException {
+            AggregationJournal.Replay replay = AggregationJournal.replay(journalPath);
+            JobChunkAggregator aggregator = new JobChunkAggregator(jobId, objectMapperInstance, tempDirectoryPath);
+            synchronized (aggregator) {
+                aggregator.restore(replay, journalPath);
+            }
+            return aggregator;
+        }
+
+        private void restore(AggregationJournal.Replay replay, Path journalPath) throws IOException {
+            this.totalChunks = replay.totalChunks;
+            this.originalMetadataBytes = replay.metadata;
+            this.initialJobDetails = this.objMapper.readValue(replay.metadata, ImageProcessingJob.class);
+            this.metadataInitialized = true;
+            this.registeredInC05 = replay.registered;
+            this.chunkSize = Math.max(0, this.initialJobDetails.getChunkSize());
+            this.writtenChunks = new BitSet(this.totalChunks);
+            this.assembledDataFilePath = Paths.get(this.tempDirFile.getAbsolutePath(),
+                    this.jobId + AGGREGATED_FILE_SUFFIX);
+            this.dataFileChannel = FileChannel.open(this.assembledDataFilePath, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.reservedDiskBytes = this.dataFileChannel.size();
+            for (int[] record : replay.chunks) {
+                int chunkId = record[0];
+                int length = record[1];
+                if (chunkId < 0 || chunkId >= totalChunks || writtenChunks.get(chunkId)) {
+                    continue;
+                }
+                if (chunkSize <= 0 && chunkId < totalChunks - 1) {
+                    chunkSize = length;
+                }
+                writtenChunks.set(chunkId);
+                chunksSuccessfullyWritten++;
+                writtenBytes += length;
+                assembledLength = Math.max(assembledLength, (long) chunkId * chunkSize + length);
+            }
+            this.journal = AggregationJournal.reopen(journalPath, replay, C03_CHECKPOINT_FSYNC);
+            if (replay.deferredLastChunk != null && !writtenChunks.get(totalChunks - 1)) {
+                if (chunkSize > 0) {
+                    writeChunkAt(totalChunks - 1, replay.deferredLastChunk);
+                } else {
+                    deferredLastChunk = replay.deferredLastChunk;
+                }
+            }
+            System.out.println(" [ok] Job " + jobId + ": Recovered aggregation from checkpoint with "
+                    + chunksSuccessfullyWritten + "/" + totalChunks + " chunks"
+                    + (registeredInC05 ? "." : ". C05 registration still pending."));
+            if (isComplete()) {
+                finishDataFile();
+            }
         }
 
         public synchronized void addChunkData(ChunkMessage chunk) throws IOException {
@@ -226,6 +437,11 @@ public class C03Consumer {
                 throw new IllegalStateException("Job " + jobId + ": Cannot add chunk data for chunkId " + chunk.chunkId
                         + ", metadata not initialized.");
             }
+            if (evicted) {
+                System.out.println(" [i] Job " + jobId + ": Chunk " + chunk.chunkId
+                        + " arrived after the job was evicted. Ignoring.");
+                return;
+            }
             if (totalChunks == 0) {
                 System.err.println(" [!] Job " + jobId + ": Received data chunk " + chunk.chunkId
                         + " for a metadata-only job. Ignoring.");
@@ -236,56 +452,145 @@ public class C03Consumer {
                         + " out of expected range [0-" + (totalChunks - 1) + "]. Ignoring.");
                 return;
             }
-            byte[] decodedData = (chunk.chunkDataB64 != null && !chunk.chunkDataB64.isEmpty())
-                    ? Base64.getDecoder().decode(chunk.chunkDataB64)
-                    : new byte[0];
-            pendingChunks.put(chunk.chunkId, decodedData);
-            System.out.println(" [i] Job " + jobId + ": Added chunk " + chunk.chunkId + " to pending map. Size: "
-                    + decodedData.length + " bytes. Pending map size: " + pendingChunks.size());
+            // Checked before the data file: a recovered job may already be complete when its chunks are redelivered.
+            boolean lastChunk = chunk.chunkId == totalChunks - 1;
+            if (writtenChunks.get(chunk.chunkId) || (lastChunk && deferredLastChunk != null)) {
+                System.out.println(" [i] Job " + jobId + ": Duplicate delivery of chunk " + chunk.chunkId
+                        + ". Ignoring.");
+                return;
+            }
+            if (dataFileChannel == null) {
+                throw new IllegalStateException("Job " + jobId
+                        + ": Data file channel not initialized for writing chunks, but chunks are expected.");
+            }
+            byte[] decodedData = chunk.hasData() ? chunk.chunkData : new byte[0];
             this.lastActivityTime = System.currentTimeMillis();
-            writePendingChunksToFile();
+
+            if (chunkSize <= 0) {
+                if (!lastChunk) {
+                    chunkSize = decodedData.length;
+                } else if (totalChunks > 1) {
+                    deferredLastChunk = decodedData;
+                    journal.recordDeferredLastChunk(decodedData);
+                    System.out.println(" [i] Job " + jobId + ": Holding last chunk " + chunk.chunkId
+                            + " until the chunk size is known.");
+                    return;
+                }
+            }
+            writeChunkAt(chunk.chunkId, decodedData);
+            if (deferredLastChunk != null && chunkSize > 0) {
+                byte[] deferred = deferredLastChunk;
+                deferredLastChunk = null;
+                writeChunkAt(totalChunks - 1, deferred);
+            }
+            if (isComplete()) {
+                finishDataFile();
+            }
         }
 
-        private synchronized void writePendingChunksToFile() throws IOException {
-            if (totalChunks == 0)
+        private void writeChunkAt(int chunkId, byte[] data) throws IOException {
+            long position = (long) chunkId * chunkSize;
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                dataFileChannel.write(buffer, position + buffer.position());
+            }
+            if (C03_CHECKPOINT_FSYNC) {
+                dataFileChannel.force(false);
+            }
+            journal.recordChunk(chunkId, data.length);
+            writtenChunks.set(chunkId);
+            chunksSuccessfullyWritten++;
+            writtenBytes += data.length;
+            assembledLength = Math.max(assembledLength, position + data.length);
+            System.out.println(" [i] Job " + jobId + ": Wrote chunk " + chunkId + " at offset " + position
+                    + ". Total written: " + chunksSuccessfullyWritten + "/" + totalChunks);
+        }
+
+        private void finishDataFile() throws IOException {
+            if (dataFileChannel == null) {
                 return;
-            if (dataFileOutputStream == null && totalChunks > 0) {
-                throw new IllegalStateException("Job " + jobId
-                        + ": Data file stream not initialized for writing chunks, but chunks are expected.");
             }
-            while (pendingChunks.containsKey(nextChunkIdToWrite)) {
-                byte[] dataToWrite = pendingChunks.remove(nextChunkIdToWrite);
-                if (dataFileOutputStream != null) {
-                    dataFileOutputStream.write(dataToWrite);
+            try {
+                if (dataFileChannel.size() != assembledLength) {
+                    System.err.println(" [!] Job " + jobId + ": Preallocated size " + dataFileChannel.size()
+                            + " differs from assembled length " + assembledLength + ". Truncating.");
+                    dataFileChannel.truncate(assembledLength);
                 }
-                chunksSuccessfullyWritten++;
-                System.out.println(" [i] Job " + jobId + ": Wrote chunk " + nextChunkIdToWrite
-                        + " to file. Total written: " + chunksSuccessfullyWritten + "/" + totalChunks);
-                nextChunkIdToWrite++;
+                dataFileChannel.close();
+                System.out.println(" [i] Job " + jobId + ": All chunks written (" + chunksSuccessfullyWritten
+                        + "/" + totalChunks + ") and data file closed: " + assembledDataFilePath);
+            } catch (IOException e) {
+                System.err.println(" [!] Job " + jobId + ": Error closing data file channel: " + e.getMessage());
+                throw e;
+            } finally {
+                dataFileChannel = null;
+                closeJournalIfSettled();
             }
-            if (isComplete()) {
-                if (dataFileOutputStream != null) {
-                    try {
-                        dataFileOutputStream.flush();
-                        dataFileOutputStream.close();
-                        System.out.println(" [i] Job " + jobId + ": All chunks written (" + chunksSuccessfullyWritten
-                                + "/" + totalChunks + ") and data file closed: " + assembledDataFilePath);
-                    } catch (IOException e) {
-                        System.err.println(
-                                " [!] Job " + jobId + ": Error closing data file output stream: " + e.getMessage());
-                        throw e;
-                    } finally {
-                        dataFileOutputStream = null;
-                    }
-                } else if (totalChunks > 0) {
-                    System.err.println(" [!] Job " + jobId
-                            + ": Aggregation complete but dataFileOutputStream is null for a data-bearing job.");
+        }
+
+        public synchronized boolean isRegisteredInC05() {
+            return registeredInC05;
+        }
+
+        public synchronized void markRegisteredInC05() {
+            registeredInC05 = true;
+            if (journal != null) {
+                try {
+                    journal.recordRegistered();
+                } catch (IOException e) {
+                    System.err.println(" [!] Job " + jobId + ": Failed to checkpoint C05 registration: "
+                            + e.getMessage());
                 }
             }
+            closeJournalIfSettled();
+        }
+
+        // The journal stays open until both the data and the C05 registration are settled.
+        private void closeJournalIfSettled() {
+            if (journal != null && dataFileChannel == null && registeredInC05) {
+                closeJournal();
+            }
+        }
+
+        private void closeJournal() {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.err.println(" [!] Job " + jobId + ": Error closing checkpoint journal: " + e.getMessage());
+            }
+            journal = null;
+        }
+
+        /** Chunk data actually written to the data file. */
+        public synchronized long writtenBytes() {
+            return writtenBytes;
+        }
+
+        /**
+         * The part of the preallocated extent no chunk has been written to yet.
+         * For a paused resumable upload this is most of the file.
+         */
+        public synchronized long reservedBytes() {
+            return dataFileChannel != null ? Math.max(0, reservedDiskBytes - writtenBytes) : 0;
+        }
+
+        /** The idle TTL C01 asked for in the job metadata, 0 if it did not. */
+        public synchronized long idleTtlMillis() {
+            return initialJobDetails != null ? Math.max(0, initialJobDetails.getIdleTtlMs()) : 0;
+        }
+
+        public synchronized long heapBytes() {
+            return (originalMetadataBytes != null ? originalMetadataBytes.length : 0)
+                    + (deferredLastChunk != null ? deferredLastChunk.length : 0);
+        }
+
+        public synchronized void evict() {
+            evicted = true;
+            cleanupTemporaryFiles();
         }
 
         public synchronized boolean isComplete() {
-            if (!metadataInitialized || totalChunks < 0)
+            if (evicted || !metadataInitialized || totalChunks < 0)
                 return false;
             if (totalChunks == 0)
                 return true;
@@ -297,17 +602,14 @@ public class C03Consumer {
                 throw new IllegalStateException(
                         "Job " + jobId + ": Aggregation is not complete. Cannot get data path.");
             }
-            if (dataFileOutputStream != null) {
+            if (dataFileChannel != null) {
                 System.out.println(" [i] Job " + jobId
-                        + ": DataFileOutputStream was still open in getAggregatedDataPath. Closing now.");
+                        + ": Data file channel was still open in getAggregatedDataPath. Closing now.");
                 try {
-                    dataFileOutputStream.flush();
-                    dataFileOutputStream.close();
+                    finishDataFile();
                 } catch (IOException e) {
                     System.err.println(" [!] Job " + jobId
-                            + ": Error closing data file output stream in getAggregatedDataPath: " + e.getMessage());
-                } finally {
-                    dataFileOutputStream = null;
+                            + ": Error closing data file channel in getAggregatedDataPath: " + e.getMessage());
                 }
             }
             if (assembledDataFilePath == null && totalChunks > 0) {
@@ -326,19 +628,24 @@ public class C03Consumer {
         }
 
         public synchronized void cleanupTemporaryFiles() {
-            if (this.dataFileOutputStream != null) {
+            if (this.dataFileChannel != null) {
                 try {
-                    if (this.dataFileOutputStream.getChannel().isOpen()) {
-                        this.dataFileOutputStream.close();
-                        System.out.println(" [i] Job " + jobId + ": Closed dataFileOutputStream during cleanup.");
+                    if (this.dataFileChannel.isOpen()) {
+                        this.dataFileChannel.close();
+                        System.out.println(" [i] Job " + jobId + ": Closed data file channel during cleanup.");
                     }
                 } catch (IOException e) {
-                    System.err.println(" [!] Job " + jobId + ": Error closing dataFileOutputStream during cleanup: "
+                    System.err.println(" [!] Job " + jobId + ": Error closing data file channel during cleanup: "
                             + e.getMessage());
                 }
-                this.dataFileOutputStream = null;
+                this.dataFileChannel = null;
+            }
+            this.deferredLastChunk = null;
+            if (this.journal != null) {
+                closeJournal();
             }
             if (this.assembledDataFilePath != null) {
+                deleteCheckpointJournal(jobId, this.assembledDataFilePath);
                 try {
                     if (Files.exists(this.assembledDataFilePath)) {
                         Files.delete(this.assembledDataFilePath);
@@ -359,7 +666,7 @@ public class C03Consumer {
     }
 
     private static String getC05ApiBaseUrl() {
-        return System.getenv().getOrDefault(C05_API_URL_ENV, DEFAULT_C05_API_BASE_URL);
+        return c05ApiBaseUrl;
     }
 
     public static void main(String[] args) {
@@ -370,6 +677,7 @@ public class C03Consumer {
         factory.setPassword(System.getenv().getOrDefault("RABBITMQ_PASS", "password"));
         factory.setAutomaticRecoveryEnabled(true);
         factory.setNetworkRecoveryInterval(10000);
+        factory.setSharedExecutor(Executors.newFixedThreadPool(C03_CONSUMER_THREADS));
 
         try {
             Connection connection = factory.newConnection();
@@ -377,8 +685,6 @@ public class C03Consumer {
             staticRabbitMqChannel = connection.createChannel();
 
             channel.exchangeDeclare(EXCHANGE_NAME, BuiltinExchangeType.TOPIC, true);
-            channel.queueDeclare(QUEUE_NAME, true, false, false, null);
-            channel.queueBind(QUEUE_NAME, EXCHANGE_NAME, ROUTING_KEY);
 
             staticRabbitMqChannel.exchangeDeclare(JOB_NOTIFICATION_EXCHANGE_NAME, BuiltinExchangeType.TOPIC, true);
 
@@ -401,177 +707,389 @@ public class C03Consumer {
                 }
             }
 
-            DeliverCallback deliverCallback = (consumerTag, delivery) -> {
-                String messageBody = new String(delivery.getBody(), StandardCharsets.UTF_8);
-                ChunkMessage chunk = null;
-                String jobId = null;
+            nodeHealthMonitor.start(C03_NODE_PROBE_INTERVAL_MS);
+            Runtime.getRuntime().addShutdownHook(new Thread(nodeHealthMonitor::close));
+            sshMultiplexer.start(C03_SSH_MASTER_CHECK_INTERVAL_MS);
+            Runtime.getRuntime().addShutdownHook(new Thread(sshMultiplexer::close));
+            startMpiWorkerPool();
+            startSchedulerMetricsLogger();
+            Runtime.getRuntime().addShutdownHook(new Thread(jobScheduler::close));
+
+            recoverCheckpointedJobs();
+
+            aggregationReaper = new AggregationReaper(activeJobChunks, C03_JOB_IDLE_TTL_MS,
+                    C03_AGGREGATION_DISK_BUDGET_BYTES, C03_AGGREGATION_HEAP_BUDGET_BYTES,
+                    C03_BUDGET_EVICTION_MIN_IDLE_MS, (evictedJobId, reason) -> {
+                        jobStatusDispatcher.report(evictedJobId, "ERROR", null, reason);
+                    });
+            aggregationReaper.start(C03_REAPER_INTERVAL_MS);
+            Runtime.getRuntime().addShutdownHook(new Thread(aggregationReaper::close));
+
+            shardCoordinator = new ShardCoordinator(connection, objectMapper, C03_INSTANCE_ID, JOB_SHARD_COUNT,
+                    C03_MEMBER_TTL_MS, C03_PREFETCH, C03Consumer::handleChunkDelivery,
+                    C03Consumer::hasActiveJobsOnShard);
+            shardCoordinator.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(shardCoordinator::close));
+            startIngestRateLogger();
+            startC05HttpMetricsLogger();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                jobStatusDispatcher.close();
+                c05HttpClient.close();
+            }));
+
+        } catch (IOException | TimeoutException e) {
+            System.err.println(" [!] RabbitMQ connection or channel setup failed: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
 
+    private static void startIngestRateLogger() {
+        ScheduledExecutorService rateLogger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "c03-ingest-rate");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long[] lastCount = { 0 };
+        rateLogger.scheduleAtFixedRate(() -> {
+            long count = chunksIngested.sum();
+            long delta = count - lastCount[0];
+            lastCount[0] = count;
+            if (delta > 0) {
+                System.out.printf(" [i] Chunk ingest: %.1f chunks/s over the last %ds (%d total, shards %s)%n",
+                        (double) delta / INGEST_RATE_LOG_INTERVAL_SECONDS, INGEST_RATE_LOG_INTERVAL_SECONDS, count,
+                        shardCoordinator.ownedShards());
+            }
+        }, INGEST_RATE_LOG_INTERVAL_SECONDS, INGEST_RATE_LOG_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static void startC05Registration(String jobId, JobChunkAggregator aggregator) {
+        ImageProcessingJob jobDetails = aggregator.getInitialJobDetails();
+        if (jobDetails != null && aggregator.originalMetadataBytes != null) {
+            int totalChunks = aggregator.totalChunks;
+            byte[] metadataBytes = aggregator.originalMetadataBytes;
+            aggregator.c05Registration = CompletableFuture.runAsync(() -> {
+                if (registerJobInC05(jobId, jobDetails, totalChunks, metadataBytes)) {
+                    aggregator.markRegisteredInC05();
+                }
+            }, c05RegistrationExecutor);
+        } else {
+            System.err.println(" [!] Job " + jobId
+                    + ": Cannot create C05 entry, jobDetails or originalMetadataBytes is null after metadata initialization.");
+            jobStatusDispatcher.report(jobId, "ERROR", null,
+                    "Internal error: Missing job details or metadata for C05 registration.");
+        }
+    }
+
+    private static void dispatchCompletedJob(String finalJobId, JobChunkAggregator aggregator) throws IOException {
+        ImageProcessingJob jobDetails = aggregator.getInitialJobDetails();
+        Path assembledDataPath = aggregator.getAggregatedDataPath();
+
+        if (jobDetails == null) {
+            System.err.println(" [!] Job " + finalJobId
+                    + ": Aggregation complete but jobDetails is null. Cannot process.");
+            jobStatusDispatcher.report(finalJobId, "ERROR", null,
+                    "Internal error: Missing job details after aggregation.");
+            aggregator.cleanupTemporaryFiles();
+            return;
+        }
+
+        if (aggregator.totalChunks > 0) {
+            if (assembledDataPath == null) {
+                System.err.println(" [!] Job " + finalJobId
+                        + ": Aggregation complete for data-bearing job, but assembledDataPath is null. Cannot process.");
+                jobStatusDispatcher.report(finalJobId, "ERROR", null,
+                        "Internal error: Missing aggregated data file path.");
+                aggregator.cleanupTemporaryFiles();
+                return;
+            }
+
+            // Processing starts once C05 holds the job record, so RUNNING/DONE never precede it.
+            long jobSizeBytes = Files.size(assembledDataPath);
+            aggregator.c05Registration.whenComplete((ignored, registrationError) -> jobScheduler.submit(finalJobId,
+                    jobSizeBytes, mpiRanksFor(jobDetails, jobSizeBytes), headNodeRanksFor(jobDetails, jobSizeBytes),
+                    allocation -> {
                 try {
+                    processMessage(assembledDataPath, finalJobId, jobDetails, allocation);
+                } catch (Exception ex) {
+                    System.err.println(" [!] Exception in processing thread for job " + finalJobId
+                            + ": " + ex.getMessage());
+                    ex.printStackTrace();
+                    handleProcessingError(finalJobId, ex, aggregator);
                     try {
-                        @SuppressWarnings("unchecked")
-                        Map<String, Object> tempParse = objectMapper.readValue(messageBody, Map.class);
-                        if (tempParse.containsKey("jobId")) {
-                            jobId = (String) tempParse.get("jobId");
+                        if (Files.exists(assembledDataPath)) {
+                            Files.delete(assembledDataPath);
+                            System.out.println(
+                                    " [i] Cleaned up temporary aggregated file in executor catch: "
+                                            + assembledDataPath + " for job " + finalJobId);
                         }
-                    } catch (Exception e) {
-                        System.err.println(" [!] Pre-parse for jobId failed: " + e.getMessage() + ". Body: "
-                                + messageBody.substring(0, Math.min(messageBody.length(), 100)));
+                    } catch (IOException ioex) {
+                        System.err.println(" [!] Failed to delete temporary aggregated file "
+                                + assembledDataPath + " in executor catch for job " + finalJobId + ": "
+                                + ioex.getMessage());
                     }
+                    deleteCheckpointJournal(finalJobId, assembledDataPath);
+                }
+            }));
+        } else if (aggregator.totalChunks == 0) {
+            System.out.println(" [i] Job " + finalJobId
+                    + ": Metadata-only job is complete. No processing via MPI needed.");
+            aggregator.cleanupTemporaryFiles();
+        }
+    }
 
-                    chunk = objectMapper.readValue(messageBody, ChunkMessage.class);
-                    if (jobId == null)
-                        jobId = chunk.jobId;
+    private static void recoverCheckpointedJobs() {
+        File[] journals = new File(TEMP_DIR).listFiles((dir, name) -> name.endsWith(AGGREGATED_FILE_SUFFIX
+                + AggregationJournal.SUFFIX));
+        if (journals == null || journals.length == 0) {
+            return;
+        }
+        System.out.println(" [i] Found " + journals.length + " aggregation checkpoint(s). Recovering.");
+        for (File journalFile : journals) {
+            String name = journalFile.getName();
+            String jobId = name.substring(0,
+                    name.length() - AGGREGATED_FILE_SUFFIX.length() - AggregationJournal.SUFFIX.length());
+            try {
+                JobChunkAggregator aggregator = JobChunkAggregator.recover(jobId, objectMapper, TEMP_DIR,
+                        journalFile.toPath());
+                if (aggregator.isAwaitingKey()) {
+                    System.out.println(" [i] Job " + jobId
+                            + ": Checkpoint recovered. Waiting for the redelivered first chunk to supply the key.");
+                    activeJobChunks.put(jobId, aggregator);
+                    continue;
+                }
+                if (!aggregator.isRegisteredInC05()) {
+                    startC05Registration(jobId, aggregator);
+                }
+                if (aggregator.isComplete()) {
+                    System.out.println(" [i] Job " + jobId
+                            + ": Checkpoint holds every chunk. Submitting recovered job for processing.");
+                    dispatchCompletedJob(jobId, aggregator);
+                } else {
+                    activeJobChunks.put(jobId, aggregator);
+                }
+            } catch (Exception e) {
+                System.err.println(" [!] Job " + jobId + ": Failed to recover aggregation checkpoint "
+                        + journalFile + ": " + e.getMessage() + ". Discarding it.");
+                Path dataPath = Paths.get(TEMP_DIR, jobId + AGGREGATED_FILE_SUFFIX);
+                try {
+                    Files.deleteIfExists(dataPath);
+                } catch (IOException ioex) {
+                    System.err.println(" [!] Failed to delete " + dataPath + ": " + ioex.getMessage());
+                }
+                deleteCheckpointJournal(jobId, dataPath);
+            }
+        }
+    }
 
-                    if (jobId == null || jobId.isEmpty()) {
-                        System.err.println(" [!] Received chunk with null or empty jobId. Discarding. Body: "
-                                + messageBody.substring(0, Math.min(messageBody.length(), 200)));
-                        channel.basicNack(delivery.getEnvelope().getDeliveryTag(), false, false);
-                        return;
-                    }
+    private static void deleteCheckpointJournal(String jobId, Path dataFilePath) {
+        ackHeldFirstChunk(jobId);
+        Path journalPath = AggregationJournal.pathFor(dataFilePath);
+        try {
+            if (Files.deleteIfExists(journalPath)) {
+                System.out.println(" [i] Job " + jobId + ": Deleted aggregation checkpoint " + journalPath);
+            }
+        } catch (IOException e) {
+            System.err.println(" [!] Job " + jobId + ": Failed to delete aggregation checkpoint " + journalPath
+                    + ": " + e.getMessage());
+        }
+    }
 
-                    final String finalJobId = jobId;
+    private static void ackHeldFirstChunk(String jobId) {
+        // Recovery deletes stale checkpoints before any shard is consumed, so nothing can be held yet.
+        if (shardCoordinator != null) {
+            shardCoordinator.ackHeld(jobId);
+        }
+    }
 
-                    JobChunkAggregator aggregator = activeJobChunks.computeIfAbsent(finalJobId, k -> {
-                        try {
-                            System.out.println(" [i] Creating new JobChunkAggregator for job: " + k);
-                            return new JobChunkAggregator(k, objectMapper, TEMP_DIR);
-                        } catch (IOException e) {
-                            throw new RuntimeException("Failed to create JobChunkAggregator for job " + k, e);
-                        }
-                    });
+    private static String resolveInstanceId() {
+        String configured = System.getenv("C03_INSTANCE_ID");
+        if (configured != null && !configured.isEmpty()) {
+            return configured;
+        }
+        // A restarted C03 must reclaim the same shards to finish its checkpointed jobs, so the id survives restarts.
+        Path idPath = Paths.get(TEMP_DIR, "instance-id");
+        try {
+            if (Files.exists(idPath)) {
+                String persisted = Files.readString(idPath, StandardCharsets.UTF_8).trim();
+                if (!persisted.isEmpty()) {
+                    return persisted;
+                }
+            }
+            String generated = System.getenv().getOrDefault("HOSTNAME", "c03") + "-"
+                    + UUID.randomUUID().toString().substring(0, 8);
+            Files.createDirectories(idPath.getParent());
+            Files.writeString(idPath, generated, StandardCharsets.UTF_8);
+            return generated;
+        } catch (IOException e) {
+            System.err.println(" [!] Failed to persist C03 instance id in " + idPath + ": " + e.getMessage());
+            return System.getenv().getOrDefault("HOSTNAME", "c03") + "-" + UUID.randomUUID().toString().substring(0, 8);
+        }
+    }
 
-                    if (chunk.firstChunk) {
-                        aggregator.initializeMetadata(chunk);
-                        if (aggregator.getInitialJobDetails() != null && aggregator.metadataInitialized) {
-                            ImageProcessingJob jobDetails = aggregator.getInitialJobDetails();
-                            System.out.println(" [dbg C03] Deserialized jobDetails: " + jobDetails.toString());
-                            System.out.println(" [dbg C03] Deserialized keySize: " + jobDetails.getKeySize());
-                            if (jobDetails != null && aggregator.originalMetadataBytes != null) {
-                                boolean jobRecordCreated = createInitialJobRecordInC05(finalJobId, jobDetails);
-
-                                if (jobRecordCreated) {
-                                    String metadataJsonBase64 = Base64.getEncoder()
-                                            .encodeToString(aggregator.originalMetadataBytes);
-
-                                    createJobEntryInC05(finalJobId, jobDetails, aggregator.totalChunks,
-                                            metadataJsonBase64);
-                                } else {
-                                    System.err.println(" [!] Job " + finalJobId +
-                                            ": Failed to create initial job record in C05. Aborting picture upload initiation.");
-                                }
-                            } else {
-                                System.err.println(" [!] Job " + finalJobId
-                                        + ": Cannot create C05 entry, jobDetails or originalMetadataBytes is null after metadata initialization.");
-                                updateJobStatusInC05(finalJobId, "ERROR", null,
-                                        "Internal error: Missing job details or metadata for C05 registration.");
-                                publishJobNotification(finalJobId, "ERROR", null,
-                                        "Internal error: Missing job details or metadata for C05 registration.");
-                            }
-                        }
-                        if (chunk.chunkDataB64 != null && !chunk.chunkDataB64.isEmpty() && aggregator.totalChunks > 0) {
-                            System.out.println(" [i] Job " + finalJobId
-                                    + ": First chunk also contains data for chunkId " + chunk.chunkId + ". Adding it.");
-                            aggregator.addChunkData(chunk);
-                        }
+    private static void startC05HttpMetricsLogger() {
+        ScheduledExecutorService metricsLogger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "c03-c05-http-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long[] lastCount = { 0 };
+        metricsLogger.scheduleAtFixedRate(() -> {
+            long count = c05HttpClient.requestCount();
+            if (count == lastCount[0]) {
+                return;
+            }
+            lastCount[0] = count;
+            try {
+                System.out.println(
+                        " [i] C05 HTTP client: " + objectMapper.writeValueAsString(c05HttpClient.snapshot()));
+            } catch (Exception e) {
+                System.err.println(" [!] Failed to log C05 HTTP client metrics: " + e.getMessage());
+            }
+        }, C05_HTTP_METRICS_LOG_INTERVAL_SECONDS, C05_HTTP_METRICS_LOG_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static boolean registerJobInC05(String jobId, ImageProcessingJob jobDetails, int totalChunks,
+            byte[] metadataBytes) {
+        try {
+            if (createInitialJobRecordInC05(jobId, jobDetails)) {
+                createJobEntryInC05(jobId, jobDetails, totalChunks, Base64.getEncoder().encodeToString(metadataBytes));
+                return true;
+            } else {
+                System.err.println(" [!] Job " + jobId
+                        + ": Failed to create initial job record in C05. Aborting picture upload initiation.");
+            }
+        } catch (Exception e) {
+            System.err.println(" [!] Job " + jobId + ": Unexpected error registering job in C05: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    private static boolean hasActiveJobsOnShard(int shard) {
+        for (String jobId : activeJobChunks.keySet()) {
+            if (JobSharding.shardFor(jobId, JOB_SHARD_COUNT) == shard) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void handleChunkDelivery(int shard, Channel channel, Delivery delivery) throws IOException {
+        ChunkMessage chunk = null;
+        String jobId = null;
+
+        try {
+            try {
+                chunk = ChunkCodec.decode(delivery.getProperties(), delivery.getBody());
+            } catch (IOException e) {
+                System.err.println(" [!] Failed to decode chunk message (content type: "
+                        + delivery.getProperties().getContentType() + "): " + e.getMessage()
+                        + ". Discarding.");
+                channel.basicNack(delivery.getEnvelope().getDeliveryTag(), false, false);
+                return;
+            }
+            jobId = chunk.jobId;
+
+            if (jobId == null || jobId.isEmpty()) {
+                System.err.println(" [!] Received chunk " + chunk.chunkId
+                        + " with null or empty jobId. Discarding.");
+                channel.basicNack(delivery.getEnvelope().getDeliveryTag(), false, false);
+                return;
+            }
+
+            if (!activeJobChunks.containsKey(jobId)) {
+                if (shardCoordinator.isDraining(shard) || aggregationReaper.isOverBudget()) {
+                    shardCoordinator.requeueLater(channel, delivery.getEnvelope().getDeliveryTag());
+                    return;
+                }
+                if (!chunk.firstChunk) {
+                    if (delivery.getEnvelope().isRedeliver()) {
+                        System.err.println(" [!] Job " + jobId + ": Chunk " + chunk.chunkId
+                                + " redelivered for a job that is not being aggregated here. Discarding.");
+                        channel.basicNack(delivery.getEnvelope().getDeliveryTag(), false, false);
                     } else {
-                        aggregator.addChunkData(chunk);
+                        System.out.println(" [i] Job " + jobId + ": Chunk " + chunk.chunkId
+                                + " arrived before the job metadata. Requeueing.");
+                        channel.basicNack(delivery.getEnvelope().getDeliveryTag(), false, true);
                     }
+                    return;
+                }
+            }
 
-                    if (aggregator.isComplete()) {
-                        System.out.println(
-                                " [i] Job " + finalJobId
-                                        + " data aggregation is complete. Removing from active map and submitting for processing.");
-                        activeJobChunks.remove(finalJobId);
-
-                        ImageProcessingJob jobDetails = aggregator.getInitialJobDetails();
-                        Path assembledDataPath = aggregator.getAggregatedDataPath();
-
-                        if (jobDetails == null) {
-                            System.err.println(" [!] Job " + finalJobId
-                                    + ": Aggregation complete but jobDetails is null. Cannot process.");
-                            updateJobStatusInC05(finalJobId, "ERROR", null,
-                                    "Internal error: Missing job details after aggregation.");
-                            publishJobNotification(finalJobId, "ERROR", null,
-                                    "Internal error: Missing job details after aggregation.");
-                            aggregator.cleanupTemporaryFiles();
-                            channel.basicAck(delivery.getEnvelope().getDeliveryTag(), false);
-                            return;
-                        }
+            final String finalJobId = jobId;
 
-                        if (aggregator.totalChunks > 0) {
-                            if (assembledDataPath == null) {
-                                System.err.println(" [!] Job " + finalJobId
-                                        + ": Aggregation complete for data-bearing job, but assembledDataPath is null. Cannot process.");
-                                updateJobStatusInC05(finalJobId, "ERROR", null,
-                                        "Internal error: Missing aggregated data file path.");
-                                publishJobNotification(finalJobId, "ERROR", null,
-                                        "Internal error: Missing aggregated data file path.");
-                                aggregator.cleanupTemporaryFiles();
-                                channel.basicAck(delivery.getEnvelope().getDeliveryTag(), false);
-                                return;
-                            }
-
-                            final JobChunkAggregator completedAggregator = aggregator;
-                            processingExecutor.submit(() -> {
-                                try {
-                                    processMessage(assembledDataPath, finalJobId, jobDetails);
-                                } catch (Exception ex) {
-                                    System.err.println(" [!] Exception in processing thread for job " + finalJobId
-                                            + ": " + ex.getMessage());
-                                    ex.printStackTrace();
-                                    handleProcessingError(finalJobId, ex, completedAggregator);
-                                    try {
-                                        if (Files.exists(assembledDataPath)) {
-                                            Files.delete(assembledDataPath);
-                                            System.out.println(
-                                                    " [i] Cleaned up temporary aggregated file in executor catch: "
-                                                            + assembledDataPath + " for job " + finalJobId);
-                                        }
-                                    } catch (IOException ioex) {
-                                        System.err.println(" [!] Failed to delete temporary aggregated file "
-                                                + assembledDataPath + " in executor catch for job " + finalJobId + ": "
-                                                + ioex.getMessage());
-                                    }
-                                }
-                            });
-                        } else if (aggregator.totalChunks == 0) {
-                            System.out.println(" [i] Job " + finalJobId
-                                    + ": Metadata-only job is complete. No processing via MPI needed.");
-                            aggregator.cleanupTemporaryFiles();
-                        }
-                    }
-                    channel.basicAck(delivery.getEnvelope().getDeliveryTag(), false);
+            JobChunkAggregator aggregator = activeJobChunks.computeIfAbsent(finalJobId, k -> {
+                try {
+                    System.out.println(" [i] Creating new JobChunkAggregator for job: " + k);
+                    return new JobChunkAggregator(k, objectMapper, TEMP_DIR);
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to create JobChunkAggregator for job " + k, e);
+                }
+            });
 
-                } catch (Exception e) {
-                    String errorJobId = (jobId != null) ? jobId
-                            : ((chunk != null && chunk.jobId != null) ? chunk.jobId : "UNKNOWN_JOB");
-                    System.err.println(" [!] Unhandled error in DeliverCallback for job "
-                            + errorJobId + ": " + e.getMessage());
-                    e.printStackTrace();
-                    channel.basicNack(delivery.getEnvelope().getDeliveryTag(), false, false);
-
-                    if (!"UNKNOWN_JOB".equals(errorJobId)) {
-                        updateJobStatusInC05(errorJobId, "ERROR", null,
-                                "Internal error in C03 chunk handling: " + e.getMessage());
-                        publishJobNotification(errorJobId, "ERROR", null,
-                                "Internal error in C03 chunk handling: " + e.getMessage());
-                        JobChunkAggregator existingAggregator = activeJobChunks.remove(errorJobId);
-                        if (existingAggregator != null) {
-                            System.out.println(" [i] Cleaning up aggregator for job " + errorJobId
-                                    + " due to error in DeliverCallback.");
-                            existingAggregator.cleanupTemporaryFiles();
-                        }
+            boolean holdAck = false;
+            if (chunk.firstChunk) {
+                if (aggregator.initializeMetadata(chunk)) {
+                    ImageProcessingJob jobDetails = aggregator.getInitialJobDetails();
+                    System.out.println(" [dbg C03] Deserialized jobDetails: " + jobDetails.toString());
+                    System.out.println(" [dbg C03] Deserialized keySize: " + jobDetails.getKeySize());
+                    startC05Registration(finalJobId, aggregator);
+                    holdAck = aggregator.totalChunks > 0;
+                } else if (aggregator.restoreKey(chunk)) {
+                    System.out.println(" [ok] Job " + finalJobId + ": Key restored from the redelivered first chunk.");
+                    if (!aggregator.isRegisteredInC05()) {
+                        startC05Registration(finalJobId, aggregator);
                     }
+                    holdAck = true;
+                } else if (aggregator.totalChunks > 0 && !shardCoordinator.isHolding(finalJobId)) {
+                    // The channel that held the first chunk closed and the broker redelivered it.
+                    holdAck = true;
                 }
-            };
-            channel.basicConsume(QUEUE_NAME, false, deliverCallback, consumerTag -> {
-                System.out.println(" [i] Consumer " + consumerTag + " cancelled.");
-            });
+                if (holdAck) {
+                    // Unacked, the first chunk is the only copy of the key if C03 restarts before the job finishes.
+                    shardCoordinator.hold(finalJobId, shard, channel, delivery.getEnvelope().getDeliveryTag());
+                }
+                if (chunk.hasData() && aggregator.totalChunks > 0) {
+                    System.out.println(" [i] Job " + finalJobId
+                            + ": First chunk also contains data for chunkId " + chunk.chunkId + ". Adding it.");
+                    aggregator.addChunkData(chunk);
+                }
+            } else {
+                aggregator.addChunkData(chunk);
+            }
 
-        } catch (IOException | TimeoutException e) {
-            System.err.println(" [!] RabbitMQ connection or channel setup failed: " + e.getMessage());
+            if (aggregator.isComplete()) {
+                System.out.println(
+                        " [i] Job " + finalJobId
+                                + " data aggregation is complete. Removing from active map and submitting for processing.");
+                activeJobChunks.remove(finalJobId);
+                dispatchCompletedJob(finalJobId, aggregator);
+            }
+            if (!holdAck) {
+                channel.basicAck(delivery.getEnvelope().getDeliveryTag(), false);
+            }
+            chunksIngested.increment();
+
+        } catch (Exception e) {
+            String errorJobId = (jobId != null) ? jobId
+                    : ((chunk != null && chunk.jobId != null) ? chunk.jobId : "UNKNOWN_JOB");
+            System.err.println(" [!] Unhandled error in DeliverCallback for job "
+                    + errorJobId + ": " + e.getMessage());
             e.printStackTrace();
-            System.exit(1);
+            shardCoordinator.forgetHeld(errorJobId, channel, delivery.getEnvelope().getDeliveryTag());
+            channel.basicNack(delivery.getEnvelope().getDeliveryTag(), false, false);
+
+            if (!"UNKNOWN_JOB".equals(errorJobId)) {
+                jobStatusDispatcher.report(errorJobId, "ERROR", null,
+                        "Internal error in C03 chunk handling: " + e.getMessage());
+                JobChunkAggregator existingAggregator = activeJobChunks.remove(errorJobId);
+                if (existingAggregator != null) {
+                    System.out.println(" [i] Cleaning up aggregator for job " + errorJobId
+                            + " due to error in DeliverCallback.");
+                    existingAggregator.cleanupTemporaryFiles();
+                }
+            }
         }
     }
 
@@ -579,8 +1097,7 @@ public class C03Consumer {
         System.err.println(" [!] Error processing job " + jobId + ": " + e.getMessage());
         e.printStackTrace();
         String errorMessage = e.getMessage() != null ? e.getMessage() : "Unknown processing error";
-        updateJobStatusInC05(jobId, "ERROR", null, "Processing failed: " + errorMessage);
-        publishJobNotification(jobId, "ERROR", null, "Processing failed: " + errorMessage);
+        jobStatusDispatcher.report(jobId, "ERROR", null, "Processing failed: " + errorMessage);
     }
 
     private static void publishJobNotification(String jobId, String status, String pictureId, String errorMessage) {
@@ -646,7 +1163,7 @@ public class C03Consumer {
 
         String url = getC05ApiBaseUrl() + C05_JOBS_ENDPOINT;
 
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+        try {
             HttpPost request = new HttpPost(url);
 
             String operationUpper = jobDetails.getOperation() != null ? jobDetails.getOperation().toUpperCase()
@@ -680,20 +1197,19 @@ public class C03Consumer {
                     System.err.println(
                             " [!] Job " + jobId + ": Failed to create initial job record in C05. Status: " + status
                                     + ". Response: " + responseBody);
-                    updateJobStatusInC05(jobId, "ERROR", null,
+                    jobStatusDispatcher.persist(jobId, "ERROR", null,
                             "Failed to create initial C05 job record (HTTP " + status + "): " + responseBody);
                     publishJobNotification(jobId, "ERROR", null,
                             "Failed to create initial C05 job record (HTTP " + status + ")");
                     return false;
                 }
             };
-            return httpClient.execute(request, responseHandler);
+            return c05HttpClient.execute("createJob", request, responseHandler);
         } catch (Exception e) {
             System.err.println(
                     " [!] Job " + jobId + ": Exception while creating initial job record in C05: " + e.getMessage());
             e.printStackTrace();
-            updateJobStatusInC05(jobId, "ERROR", null, "Exception during C05 initial job creation: " + e.getMessage());
-            publishJobNotification(jobId, "ERROR", null,
+            jobStatusDispatcher.report(jobId, "ERROR", null,
                     "Exception during C05 initial job creation: " + e.getMessage());
             return false;
         }
@@ -716,7 +1232,7 @@ public class C03Consumer {
             mimeType = "image/jpeg";
         }
 
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+        try {
             HttpPost request = new HttpPost(getC05ApiBaseUrl() + C05_INITIATE_CHUNKED_UPLOAD_ENDPOINT);
 
             C05InitiateUploadRequest payload = new C05InitiateUploadRequest(
@@ -749,7 +1265,7 @@ public class C03Consumer {
                     System.err.println(
                             " [!] Job " + jobId + ": Failed to initiate picture upload in C05. Status: " + status
                                     + ". Response: " + responseBody);
-                    updateJobStatusInC05(jobId, "ERROR", null,
+                    jobStatusDispatcher.persist(jobId, "ERROR", null,
                             "Failed to initiate C05 picture upload (HTTP " + status + "): " + responseBody);
                     publishJobNotification(jobId, "ERROR", null,
                             "Failed to initiate C05 picture upload (HTTP " + status + ")");
@@ -757,7 +1273,7 @@ public class C03Consumer {
                 }
             };
 
-            String c05Response = httpClient.execute(request, responseHandler);
+            String c05Response = c05HttpClient.execute("initiateUpload", request, responseHandler);
             if (c05Response == null) {
                 System.err.println(" [!] Job " + jobId
                         + ": Null response from C05 picture upload initiation, indicating failure.");
@@ -767,9 +1283,7 @@ public class C03Consumer {
             System.err.println(
                     " [!] Job " + jobId + ": Exception while initiating picture upload in C05: " + e.getMessage());
             e.printStackTrace();
-            updateJobStatusInC05(jobId, "ERROR", null,
-                    "Exception during C05 picture upload initiation: " + e.getMessage());
-            publishJobNotification(jobId, "ERROR", null,
+            jobStatusDispatcher.report(jobId, "ERROR", null,
                     "Exception during C05 picture upload initiation: " + e.getMessage());
         }
     }
@@ -779,45 +1293,92 @@ public class C03Consumer {
         initiatePictureUploadInC05(jobId, jobDetails, totalAggregatorChunks, metadataJsonBase64);
     }
 
-    private static void updateJobStatusInC05(String jobId, String status, String pictureId, String errorMessage) {
-        String url = getC05ApiBaseUrl() + C05_JOBS_ENDPOINT + "/" + jobId;
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            HttpPut httpPut = new HttpPut(url);
-            C05JobUpdatePayload payload = new C05JobUpdatePayload(status, pictureId, errorMessage);
-            String jsonPayload = objectMapper.writeValueAsString(payload);
-            StringEntity entity = new StringEntity(jsonPayload, ContentType.APPLICATION_JSON);
-            httpPut.setEntity(entity);
+    private static void persistJobStatusBatch(List<JobStatusDispatcher.StatusUpdate> updates) throws IOException {
+        if (Boolean.FALSE.equals(statusBatchSupported)) {
+            for (JobStatusDispatcher.StatusUpdate update : updates) {
+                putJobStatusToC05(update);
+            }
+            return;
+        }
 
-            System.out.println(" [>] Updating job status in C05 for " + jobId + " to " + status + " at " + url
-                    + " with payload: " + jsonPayload);
-            HttpClientResponseHandler<String> responseHandler = new HttpClientResponseHandler<String>() {
-                @Override
-                public String handleResponse(final ClassicHttpResponse response) throws HttpException, IOException {
-                    int statusCode = response.getCode();
-                    HttpEntity responseEntity = response.getEntity();
-                    String responseBody = responseEntity != null ? EntityUtils.toString(responseEntity) : null;
-                    if (statusCode >= 200 && statusCode < 300) {
-                        System.out.println(" [ok] Successfully updated job status in C05 for " + jobId + ". Response: "
-                                + responseBody);
-                        return responseBody;
-                    } else {
-                        System.err.println(" [!] Failed to update job status in C05 for " + jobId + ". Status: "
-                                + statusCode + ". Response: " + responseBody);
-                        return null;
+        List<Map<String, Object>> entries = new ArrayList<>(updates.size());
+        for (JobStatusDispatcher.StatusUpdate update : updates) {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("jobId", update.jobId);
+            entry.put("status", update.status);
+            entry.put("pictureId", update.pictureId);
+            entry.put("error_message", update.errorMessage);
+            entries.add(entry);
+        }
+        Map<String, Object> body = new HashMap<>();
+        body.put("updates", entries);
+
+        HttpPost httpPost = new HttpPost(getC05ApiBaseUrl() + C05_JOBS_ENDPOINT + "/status-batch");
+        httpPost.setEntity(new StringEntity(objectMapper.writeValueAsString(body), ContentType.APPLICATION_JSON));
+        Integer statusCode = c05HttpClient.execute("updateStatusBatch", httpPost, response -> {
+            HttpEntity responseEntity = response.getEntity();
+            String responseBody = responseEntity != null ? EntityUtils.toString(responseEntity) : null;
+            int code = response.getCode();
+            if (code >= 200 && code < 300 && responseBody != null) {
+                for (JsonNode result : objectMapper.readTree(responseBody).path("results")) {
+                    if (!result.path("updated").asBoolean(false)) {
+                        System.err.println(" [!] C05 did not apply status update for job "
+                                + result.path("jobId").asText() + ": " + result.path("message").asText());
                     }
                 }
-            };
-            httpClient.execute(httpPut, responseHandler);
-
-        } catch (Exception e) {
-            System.err.println(" [!] Error updating job status in C05 for " + jobId + ": " + e.getMessage());
-            e.printStackTrace();
+            } else if (code != 404) {
+                throw new IOException("C05 status batch returned " + code + ": " + responseBody);
+            }
+            return code;
+        });
+
+        if (statusCode == 404) {
+            System.out.println(" [i] C05 has no status batch endpoint. Falling back to one PUT per status update.");
+            statusBatchSupported = false;
+            for (JobStatusDispatcher.StatusUpdate update : updates) {
+                putJobStatusToC05(update);
+            }
+            return;
         }
+        statusBatchSupported = true;
+        System.out.println(" [ok] Persisted " + updates.size() + " job status update(s) in C05.");
+    }
+
+    private static void putJobStatusToC05(JobStatusDispatcher.StatusUpdate update) throws IOException {
+        String url = getC05ApiBaseUrl() + C05_JOBS_ENDPOINT + "/" + update.jobId;
+        HttpPut httpPut = new HttpPut(url);
+        C05JobUpdatePayload payload = new C05JobUpdatePayload(update.status, update.pictureId, update.errorMessage);
+        String jsonPayload = objectMapper.writeValueAsString(payload);
+        httpPut.setEntity(new StringEntity(jsonPayload, ContentType.APPLICATION_JSON));
+
+        System.out.println(" [>] Updating job status in C05 for " + update.jobId + " to " + update.status + " at "
+                + url + " with payload: " + jsonPayload);
+        HttpClientResponseHandler<String> responseHandler = new HttpClientResponseHandler<String>() {
+            @Override
+            public String handleResponse(final ClassicHttpResponse response) throws HttpException, IOException {
+                int statusCode = response.getCode();
+                HttpEntity responseEntity = response.getEntity();
+                String responseBody = responseEntity != null ? EntityUtils.toString(responseEntity) : null;
+                if (statusCode >= 200 && statusCode < 300) {
+                    System.out.println(" [ok] Successfully updated job status in C05 for " + update.jobId
+                            + ". Response: " + responseBody);
+                    return responseBody;
+                } else if (statusCode >= 500) {
+                    throw new IOException("C05 returned " + statusCode + " for job " + update.jobId + ": "
+                            + responseBody);
+                } else {
+                    System.err.println(" [!] Failed to update job status in C05 for " + update.jobId + ". Status: "
+                            + statusCode + ". Response: " + responseBody);
+                    return null;
+                }
+            }
+        };
+        c05HttpClient.execute("updateStatus", httpPut, responseHandler);
     }
 
     private static void createHostfile() throws IOException {
-        int slotsC03 = Integer.parseInt(System.getenv().getOrDefault("MPI_SLOTS_C03", "2"));
-        int slotsC04 = Integer.parseInt(System.getenv().getOrDefault("MPI_SLOTS_C04", "2"));
+        int slotsC03 = mpiSlots("MPI_SLOTS_C03");
+        int slotsC04 = mpiSlots("MPI_SLOTS_C04");
         String c03ServiceName = System.getenv().getOrDefault("C03_MPI_HOSTNAME", "c03");
         String c04ServiceName = System.getenv().getOrDefault("C04_MPI_HOSTNAME", "c04");
 
@@ -845,68 +1406,113 @@ public class C03Consumer {
         }
     }
 
-    private static boolean testSSHConnectivity() {
-        System.out.println(" [i] Testing SSH connectivity to MPI nodes...");
+    private static void startMpiWorkerPool() {
+        if (!Boolean.parseBoolean(System.getenv().getOrDefault("C03_MPI_WORKER_POOL", "false"))) {
+            return;
+        }
+        int totalProcesses = Math.max(1, mpiSlots("MPI_SLOTS_C03") + mpiSlots("MPI_SLOTS_C04"));
+        Path socketPath = Paths.get(TEMP_DIR, "mpi-worker", "worker.sock");
+        List<String> command = new ArrayList<>(Arrays.asList("mpiexec", "--hostfile", HOSTFILE_PATH,
+                "-n", String.valueOf(totalProcesses),
+                "--mca", "orte_rsh_agent", sshMultiplexer.rshAgent(),
+                "--mca", "orte_keep_fqdn_hostnames", "1",
+                "--mca", "orte_launch_agent", "orted",
+                "--mca", "plm_rsh_no_tree_spawn", "1",
+                System.getenv().getOrDefault(NATIVE_EXECUTABLE_PATH_ENV, DEFAULT_NATIVE_EXECUTABLE_PATH),
+                "--serve", socketPath.toString()));
+        mpiWorkerPool = new WorkerPoolClient(command, socketPath,
+                Long.parseLong(System.getenv().getOrDefault("C03_MPI_WORKER_START_TIMEOUT_MS", "60000")),
+                Long.parseLong(System.getenv().getOrDefault("C03_MPI_WORKER_JOB_TIMEOUT_MS", "300000")),
+                Long.parseLong(System.getenv().getOrDefault("C03_MPI_WORKER_BUSY_WAIT_MS", "2000")));
+        mpiWorkerPool.start(Long.parseLong(System.getenv().getOrDefault("C03_MPI_WORKER_HEALTH_INTERVAL_MS",
+                "15000")));
+        Runtime.getRuntime().addShutdownHook(new Thread(mpiWorkerPool::close));
+    }
 
-        String[] testHosts = { "localhost", "c04" };
-        boolean allConnectionsWork = true;
+    private static void recordMpiLaunchLatency(String jobId, long nanos) {
+        mpiLaunchLatency.recordNanos(nanos);
+        try {
+            System.out.println(" [i] Job " + jobId + ": First MPI output " + TimeUnit.NANOSECONDS.toMillis(nanos)
+                    + "ms after launch (SSH multiplexing " + (sshMultiplexer.isEnabled() ? "on" : "off")
+                    + "). Launch latency: " + objectMapper.writeValueAsString(mpiLaunchLatency.snapshot()));
+        } catch (Exception e) {
+            System.err.println(" [!] Failed to log MPI launch latency: " + e.getMessage());
+        }
+    }
 
-        for (String host : testHosts) {
-            try {
-                List<String> sshTestCommand = Arrays.asList(
-                        "ssh",
-                        "-o", "StrictHostKeyChecking=no",
-                        "-o", "UserKnownHostsFile=/home/mpiuser/.ssh/known_hosts",
-                        "-o", "PasswordAuthentication=no",
-                        "-o", "PreferredAuthentications=publickey",
-                        "-o", "IdentityFile=/home/mpiuser/.ssh/id_rsa",
-                        "-o", "ConnectTimeout=10",
-                        "-o", "BatchMode=yes",
-                        "mpiuser@" + host,
-                        "echo 'SSH test successful to " + host + "'");
-
-                ProcessBuilder pb = new ProcessBuilder(sshTestCommand);
-                pb.redirectErrorStream(true);
-                Process process = pb.start();
-
-                boolean finished = process.waitFor(15, TimeUnit.SECONDS);
-                int exitCode = finished ? process.exitValue() : -1;
-
-                if (!finished) {
-                    process.destroyForcibly();
-                    System.err.println(" [!] SSH test to " + host + " timed out after 15 seconds");
-                    allConnectionsWork = false;
-                } else if (exitCode == 0) {
-                    System.out.println(" [✓] SSH connectivity to " + host + " is working");
-                } else {
-                    System.err.println(" [!] SSH test to " + host + " failed with exit code: " + exitCode);
+    private static Map<String, Integer> mpiSlotsByHost() {
+        Map<String, Integer> slotsByHost = new LinkedHashMap<>();
+        slotsByHost.put(System.getenv().getOrDefault("C03_MPI_HOSTNAME", "c03"), mpiSlots("MPI_SLOTS_C03"));
+        slotsByHost.merge(System.getenv().getOrDefault("C04_MPI_HOSTNAME", "c04"), mpiSlots("MPI_SLOTS_C04"),
+                Integer::sum);
+        return slotsByHost;
+    }
 
-                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                        String line;
-                        System.err.println(" [!] SSH test output for " + host + ":");
-                        while ((line = reader.readLine()) != null) {
-                            System.err.println("     " + line);
-                        }
-                    }
-                    allConnectionsWork = false;
-                }
-            } catch (IOException | InterruptedException e) {
-                System.err.println(" [!] Exception during SSH test to " + host + ": " + e.getMessage());
-                allConnectionsWork = false;
-            }
-        }
+    /** Slots a node offers, from the given environment variable; the hostfile, scheduler and worker pool agree. */
+    private static int mpiSlots(String envName) {
+        return Integer.parseInt(System.getenv().getOrDefault(envName, String.valueOf(DEFAULT_MPI_SLOTS_PER_NODE)));
+    }
 
-        if (allConnectionsWork) {
-            System.out.println(" [✓] All SSH connectivity tests passed");
-        } else {
-            System.err.println(" [!] Some SSH connectivity tests failed");
+    /**
+     * Slots a job reserves. Jobs small enough for the JVM path and CBC jobs,
+     * whose native implementation runs on rank 0 only, take one slot. Jobs
+     * for the parallel AES engine take every head-node slot, since its
+     * threads use the cores of that node. ECB jobs get one rank per
+     * C03_SCHEDULER_BYTES_PER_RANK of input. The persistent worker world
+     * always occupies every slot.
+     */
+    private static int mpiRanksFor(ImageProcessingJob jobDetails, long sizeBytes) {
+        if (sizeBytes <= C03_JVM_AES_MAX_BYTES) {
+            return 1;
+        }
+        if (mpiWorkerPool != null) {
+            return jobScheduler.getCapacity();
+        }
+        if (usesParallelAesEngine(jobDetails, sizeBytes)) {
+            return jobScheduler.getHeadHostSlots();
+        }
+        if ("CBC".equalsIgnoreCase(jobDetails.getMode())) {
+            return 1;
         }
+        long ranks = (sizeBytes + C03_SCHEDULER_BYTES_PER_RANK - 1) / C03_SCHEDULER_BYTES_PER_RANK;
+        return (int) Math.max(1, Math.min(ranks, C03_SCHEDULER_MAX_RANKS_PER_JOB));
+    }
+
+    private static int headNodeRanksFor(ImageProcessingJob jobDetails, long sizeBytes) {
+        return usesParallelAesEngine(jobDetails, sizeBytes) ? jobScheduler.getHeadHostSlots() : 1;
+    }
 
-        return allConnectionsWork;
+    private static boolean usesParallelAesEngine(ImageProcessingJob jobDetails, long sizeBytes) {
+        return sizeBytes > C03_JVM_AES_MAX_BYTES && jobDetails.getOperation() != null
+                && useParallelAesEngine(jobDetails.getOperation().toLowerCase(), jobDetails.getMode());
     }
 
-    private static void processMessage(Path imageDataFilePath, String jobId, ImageProcessingJob jobDetails)
-            throws IOException, InterruptedException {
+    private static void startSchedulerMetricsLogger() {
+        ScheduledExecutorService metricsLogger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "c03-scheduler-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long[] lastCompleted = { 0 };
+        metricsLogger.scheduleAtFixedRate(() -> {
+            Map<String, Object> snapshot = jobScheduler.snapshot();
+            jobScheduler.resetUtilizationWindow();
+            long completed = (Long) snapshot.get("completedJobs");
+            if (completed == lastCompleted[0] && (Integer) snapshot.get("busySlots") == 0
+                    && (Integer) snapshot.get("queued") == 0) {
+                return;
+            }
+            lastCompleted[0] = completed;
+            try {
+                System.out.println(" [i] Job scheduler: " + objectMapper.writeValueAsString(snapshot));
+            } catch (Exception e) {
+                System.err.println(" [!] Failed to log job scheduler metrics: " + e.getMessage());
+            }
+        }, SCHEDULER_METRICS_LOG_INTERVAL_SECONDS, SCHEDULER_METRICS_LOG_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static void processMessage(Path imageDataFilePath, String jobId, ImageProcessingJob jobDetails,
+            SlotScheduler.Allocation allocation) throws IOException, InterruptedException {
         System.out.println(" [i] Processing job: " + jobId + " for file: " + jobDetails.getFileName() +
                 ", Operation: " + jobDetails.getOperation() +
                 ", KeySize: " + jobDetails.getKeySize() +
@@ -926,37 +1532,63 @@ public class C03Consumer {
         int keySize = jobDetails.getKeySize();
         String mode = jobDetails.getMode();
 
-        createHostfile();
+        if (Files.size(imageDataFilePath) <= C03_JVM_AES_MAX_BYTES && processLocally("in-JVM AES",
+                JvmAesProcessor::process, imageDataFilePath, jobId, jobDetails, outputFilePath, outputDir,
+                allocation)) {
+            return;
+        }
+
+        if (useParallelAesEngine(operationType, mode) && processLocally("parallel AES engine",
+                parallelAesEngine::process, imageDataFilePath, jobId, jobDetails, outputFilePath, outputDir,
+                allocation)) {
+            return;
+        }
+
+        if (!Files.exists(Paths.get(HOSTFILE_PATH))) {
+            createHostfile();
+        }
 
-        if (!testSSHConnectivity()) {
+        if (!nodeHealthMonitor.allNodesHealthy()) {
             System.err.println(" [!] Job " + jobId + ": SSH connectivity test failed. Aborting MPI execution.");
-            updateJobStatusInC05(jobId, "ERROR", null, "SSH connectivity test failed");
-            publishJobNotification(jobId, "ERROR", null, "SSH connectivity test failed");
+            jobStatusDispatcher.report(jobId, "ERROR", null, "SSH connectivity test failed");
             cleanupTemporaryFiles(jobId, imageDataFilePath, outputFilePath, outputDir);
             return;
         }
 
+        if (mpiWorkerPool != null) {
+            List<String> jobArgs = new ArrayList<>(Arrays.asList(inputFilePath, outputFilePath.toString(),
+                    operationType, String.valueOf(keySize), mode));
+            if ("CBC".equalsIgnoreCase(mode) && jobDetails.getIv() != null && !jobDetails.getIv().isEmpty()) {
+                jobArgs.add(jobDetails.getIv());
+            }
+            long workerStart = System.nanoTime();
+            Integer workerExitCode = mpiWorkerPool.submit(jobId, key, keySize, jobArgs);
+            if (workerExitCode != null) {
+                System.out.println(" [i] Job " + jobId + ": MPI worker pool finished in "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - workerStart) + "ms.");
+                completeProcessedJob(jobId, workerExitCode, "", jobDetails, imageDataFilePath, outputFilePath,
+                        outputDir, allocation);
+                return;
+            }
+            System.out.println(" [i] Job " + jobId + ": MPI worker pool unavailable. Falling back to mpiexec.");
+            Files.deleteIfExists(outputFilePath);
+        }
+
+        Path jobHostfilePath = jobHostfilePath(jobId);
+        Files.writeString(jobHostfilePath, allocation.toHostfile(), StandardCharsets.UTF_8);
+        System.out.println(" [i] Job " + jobId + ": Running on reserved MPI slots " + allocation.getSlotsByHost());
+
         List<String> command = new ArrayList<>();
         command.add("mpiexec");
         command.add("--hostfile");
-        command.add(HOSTFILE_PATH);
+        command.add(jobHostfilePath.toString());
 
-        int slotsC03 = Integer.parseInt(System.getenv().getOrDefault("MPI_SLOTS_C03", "1"));
-        int slotsC04 = Integer.parseInt(System.getenv().getOrDefault("MPI_SLOTS_C04", "1"));
-        int totalProcesses = slotsC03 + slotsC04;
-
-        if (totalProcesses <= 0) {
-            System.err
-                    .println(" [!] Job " + jobId + ": Total MPI processes is " + totalProcesses + ". Defaulting to 1.");
-            totalProcesses = 1; // Fallback to at least 1 process
-        }
         command.add("-n");
-        command.add(String.valueOf(totalProcesses));
+        command.add(String.valueOf(allocation.ranks()));
 
         command.add("--mca");
         command.add("orte_rsh_agent");
-        command.add(
-                "ssh -o StrictHostKeyChecking=no -o UserKnownHostsFile=/home/mpiuser/.ssh/known_hosts -o PasswordAuthentication=no -o PreferredAuthentications=publickey -o IdentityFile=/home/mpiuser/.ssh/id_rsa -o ConnectTimeout=10 -o ServerAliveInterval=5 -o ServerAliveCountMax=3");
+        command.add(sshMultiplexer.rshAgent());
 
         command.add("--mca");
         command.add("orte_keep_fqdn_hostnames");
@@ -992,8 +1624,7 @@ public class C03Consumer {
 
         command.add("--mca");
         command.add("orte_rsh_agent");
-        command.add(
-                "ssh -o StrictHostKeyChecking=no -o UserKnownHostsFile=/home/mpiuser/.ssh/known_hosts -o PasswordAuthentication=no -o PreferredAuthentications=publickey -o IdentityFile=/home/mpiuser/.ssh/id_rsa -o ConnectTimeout=10 -o ServerAliveInterval=5 -o ServerAliveCountMax=3");
+        command.add(sshMultiplexer.rshAgent());
 
         command.add("--mca");
         command.add("orte_keep_fqdn_hostnames");
@@ -1029,8 +1660,7 @@ public class C03Consumer {
 
         command.add("--mca");
         command.add("orte_rsh_agent");
-        command.add(
-                "ssh -o StrictHostKeyChecking=no -o UserKnownHostsFile=/home/mpiuser/.ssh/known_hosts -o PasswordAuthentication=no -o PreferredAuthentications=publickey -o IdentityFile=/home/mpiuser/.ssh/id_rsa -o ConnectTimeout=10 -o ServerAliveInterval=5 -o ServerAliveCountMax=3");
+        command.add(sshMultiplexer.rshAgent());
 
         command.add("--mca");
         command.add("orte_keep_fqdn_hostnames");
@@ -1069,12 +1699,18 @@ public class C03Consumer {
 
         processBuilder.environment().put("PROCESSING_KEY", key);
 
+        long launchStart = System.nanoTime();
         Process process = processBuilder.start();
 
         StringBuilder processOutputLog = new StringBuilder();
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
             String line;
+            boolean firstLine = true;
             while ((line = reader.readLine()) != null) {
+                if (firstLine) {
+                    firstLine = false;
+                    recordMpiLaunchLatency(jobId, System.nanoTime() - launchStart);
+                }
                 System.out.println(" [MPI Process Output] " + line);
                 processOutputLog.append(line).append(System.lineSeparator());
             }
@@ -1089,27 +1725,72 @@ public class C03Consumer {
             process.destroyForcibly();
             System.err
                     .println(" [!] Job " + jobId + ": MPI process timed out after 5 minutes and was forcibly killed.");
-            updateJobStatusInC05(jobId, "ERROR", null, "MPI process timed out. Log: " + processOutputLog.toString());
+            jobStatusDispatcher.persist(jobId, "ERROR", null,
+                    "MPI process timed out. Log: " + processOutputLog.toString());
             publishJobNotification(jobId, "ERROR", null, "MPI process timed out");
             cleanupTemporaryFiles(jobId, imageDataFilePath, outputFilePath, outputDir);
             return;
         }
 
-        System.out.println(" [i] Job " + jobId + ": MPI process exited with code " + exitCode);
+        completeProcessedJob(jobId, exitCode, processOutputLog.toString(), jobDetails, imageDataFilePath, outputFilePath,
+                outputDir, allocation);
+    }
+
+    interface LocalAesPath {
+        boolean process(Path input, Path output, String operation, int keySize, String mode, String keyHex,
+                String ivHex) throws IOException, GeneralSecurityException;
+    }
+
+    private static boolean processLocally(String pathName, LocalAesPath localPath, Path imageDataFilePath,
+            String jobId, ImageProcessingJob jobDetails, Path outputFilePath, Path outputDir,
+            SlotScheduler.Allocation allocation) throws IOException {
+        long inputSize = Files.size(imageDataFilePath);
+        long start = System.nanoTime();
+        try {
+            if (!localPath.process(imageDataFilePath, outputFilePath, jobDetails.getOperation().toLowerCase(),
+                    jobDetails.getKeySize(), jobDetails.getMode(), jobDetails.getKey(), jobDetails.getIv())) {
+                System.out.println(" [i] Job " + jobId + ": Input not eligible for " + pathName + ". Using MPI.");
+                return false;
+            }
+        } catch (BadPaddingException e) {
+            completeProcessedJob(jobId, 1, "bad decrypt", jobDetails, imageDataFilePath, outputFilePath, outputDir,
+                    allocation);
+            return true;
+        } catch (GeneralSecurityException e) {
+            System.err.println(" [!] Job " + jobId + ": " + pathName + " failed (" + e.getMessage() + "). Using MPI.");
+            Files.deleteIfExists(outputFilePath);
+            return false;
+        }
+        System.out.println(" [i] Job " + jobId + ": Processed " + inputSize + " bytes with " + pathName + " in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms.");
+        completeProcessedJob(jobId, 0, "", jobDetails, imageDataFilePath, outputFilePath, outputDir, allocation);
+        return true;
+    }
+
+    private static boolean useParallelAesEngine(String operationType, String mode) {
+        return parallelAesEngine != null && ("decrypt".equals(operationType)
+                || (C03_PARALLEL_AES_ECB_ENCRYPT && "ECB".equalsIgnoreCase(mode)));
+    }
+
+    private static void completeProcessedJob(String jobId, int exitCode, String processOutput,
+            ImageProcessingJob jobDetails, Path imageDataFilePath, Path outputFilePath, Path outputDir,
+            SlotScheduler.Allocation allocation) throws IOException {
+        System.out.println(" [i] Job " + jobId + ": Processing exited with code " + exitCode);
+        // The ranks are done; the upload to C05 must not keep other jobs off the slots.
+        allocation.release();
         if (exitCode == 0 && Files.exists(outputFilePath) && Files.size(outputFilePath) > 0) {
             System.out.println(" [i] Job " + jobId + ": MPI process successful. Output file: " + outputFilePath
                     + ", Size: " + Files.size(outputFilePath));
-            String pictureId = sendProcessedImageToC05(jobId, outputFilePath, jobDetails);
+            String pictureId = sendProcessedImageToC05(jobId, outputFilePath, jobDetails,
+                    C03_RESULT_UPLOAD_CONCURRENCY);
             if (pictureId != null) {
-                updateJobStatusInC05(jobId, "DONE", pictureId, null);
-                publishJobNotification(jobId, "DONE", pictureId, null);
+                jobStatusDispatcher.report(jobId, "DONE", pictureId, null);
             } else {
-                updateJobStatusInC05(jobId, "ERROR", null,
-                        "Failed to upload processed image to C05. MPI Log: " + processOutputLog.toString());
+                jobStatusDispatcher.persist(jobId, "ERROR", null,
+                        "Failed to upload processed image to C05. MPI Log: " + processOutput);
                 publishJobNotification(jobId, "ERROR", null, "Failed to upload processed image to C05");
             }
         } else {
-            String processOutput = processOutputLog.toString();
             String userFriendlyErrorMsg;
 
             if (processOutput.contains("bad decrypt") ||
@@ -1128,16 +1809,24 @@ public class C03Consumer {
             }
 
             System.err.println(" [!] Job " + jobId + ": " + userFriendlyErrorMsg);
-            updateJobStatusInC05(jobId, "ERROR", null, userFriendlyErrorMsg);
-            publishJobNotification(jobId, "ERROR", null, userFriendlyErrorMsg);
+            jobStatusDispatcher.report(jobId, "ERROR", null, userFriendlyErrorMsg);
         }
 
         cleanupTemporaryFiles(jobId, imageDataFilePath, outputFilePath, outputDir);
     }
 
+    private static Path jobHostfilePath(String jobId) {
+        return Paths.get(TEMP_DIR, "hostfile-" + jobId);
+    }
+
     private static void cleanupTemporaryFiles(String jobId, Path inputPath, Path outputPath, Path outputDir) {
         System.out.println(" [i] Job " + jobId + ": Cleaning up temporary files: " + inputPath + ", " + outputPath
                 + ", " + outputDir);
+        try {
+            Files.deleteIfExists(jobHostfilePath(jobId));
+        } catch (IOException e) {
+            System.err.println(" [!] Job " + jobId + ": Warning: Error deleting job hostfile: " + e.getMessage());
+        }
         try {
             if (inputPath != null && Files.exists(inputPath))
                 Files.delete(inputPath);
@@ -1145,6 +1834,9 @@ public class C03Consumer {
             System.err.println(
                     " [!] Job " + jobId + ": Warning: Error deleting input file " + inputPath + ": " + e.getMessage());
         }
+        if (inputPath != null) {
+            deleteCheckpointJournal(jobId, inputPath);
+        }
         try {
             if (outputPath != null && Files.exists(outputPath))
                 Files.delete(outputPath);
@@ -1175,7 +1867,223 @@ public class C03Consumer {
         }
     }
 
-    private static String sendProcessedImageToC05(String jobId, Path imagePath, ImageProcessingJob originalJobDetails) {
+    private static int chooseUploadChunkSize(ImageProcessingJob jobDetails, long fileSize) {
+        int chunkSize = jobDetails.getChunkSize() > 0 ? jobDetails.getChunkSize() : C03_UPLOAD_CHUNK_SIZE;
+        double ewma = c05UploadMillisPerMbEwma;
+        if (ewma > 0) {
+            double expectedUploadMs = ewma * chunkSize / (1024 * 1024);
+            chunkSize = (int) (chunkSize * Math.max(0.5, Math.min(2.0, C05_TARGET_CHUNK_UPLOAD_MS / expectedUploadMs)));
+        }
+        chunkSize = Math.max(C03_MIN_UPLOAD_CHUNK_SIZE, Math.min(C03_MAX_UPLOAD_CHUNK_SIZE, chunkSize));
+        if (fileSize > 0 && fileSize < chunkSize) {
+            return (int) fileSize;
+        }
+        return chunkSize;
+    }
+
+    private static void recordChunkUploadLatency(int chunkBytes, long latencyNanos) {
+        if (chunkBytes <= 0) {
+            return;
+        }
+        double millisPerMb = (latencyNanos / 1_000_000.0) / (chunkBytes / (1024.0 * 1024.0));
+        double previous = c05UploadMillisPerMbEwma;
+        c05UploadMillisPerMbEwma = previous < 0 ? millisPerMb
+                : previous + UPLOAD_LATENCY_EWMA_WEIGHT * (millisPerMb - previous);
+    }
+
+    /**
+     * Uploads the processed file to C05 with up to {@code concurrency} chunks
+     * in flight. Each chunk is read with a positional read and retried on
+     * its own; C05 stores chunks by id, so a retried chunk simply overwrites.
+     * Returns the number of chunks acknowledged, which is all of them unless an
+     * exception is thrown.
+     */
+    static int uploadResultChunksToC05(String jobId, String uploadId, Path imagePath, long fileSize,
+            int uploadChunkSize, int totalChunks, int concurrency) throws IOException, InterruptedException {
+        String uploadChunkUrl = getC05ApiBaseUrl() + C05_UPLOAD_CHUNK_ENDPOINT;
+        Semaphore inFlight = new Semaphore(concurrency);
+        List<Future<?>> uploads = new ArrayList<>(totalChunks);
+        AtomicReference<Exception> firstFailure = new AtomicReference<>();
+        LongAdder acknowledged = new LongAdder();
+        long uploadStart = System.nanoTime();
+
+        try (FileChannel fileChannel = FileChannel.open(imagePath, StandardOpenOption.READ)) {
+            for (int chunkNumber = 0; chunkNumber < totalChunks && firstFailure.get() == null; chunkNumber++) {
+                int chunkId = chunkNumber;
+                long offset = (long) chunkId * uploadChunkSize;
+                int length = (int) Math.min(uploadChunkSize, fileSize - offset);
+                inFlight.acquire();
+                try {
+                    uploads.add(resultUploadExecutor.submit(() -> {
+                        try {
+                            byte[] chunkData = readFully(fileChannel, offset, length);
+                            uploadResultChunk(jobId, uploadId, uploadChunkUrl, chunkId, chunkData);
+                            acknowledged.increment();
+                        } catch (Exception e) {
+                            firstFailure.compareAndSet(null, e);
+                        } finally {
+                            inFlight.release();
+                        }
+                    }));
+                } catch (RuntimeException e) {
+                    inFlight.release();
+                    throw e;
+                }
+            }
+            for (Future<?> upload : uploads) {
+                try {
+                    upload.get();
+                } catch (ExecutionException e) {
+                    firstFailure.compareAndSet(null, e);
+                }
+            }
+        }
+
+        Exception failure = firstFailure.get();
+        if (failure != null) {
+            throw new IOException("Upload of processed file to C05 failed for job " + jobId + ": "
+                    + failure.getMessage(), failure);
+        }
+        System.out.printf(" [ok] Job %s: Uploaded %d chunk(s) (%d bytes) to C05 in %.1f ms with up to %d in flight.%n",
+                jobId, acknowledged.sum(), fileSize, (System.nanoTime() - uploadStart) / 1_000_000.0, concurrency);
+        return (int) acknowledged.sum();
+    }
+
+    private static byte[] readFully(FileChannel fileChannel, long offset, int length) throws IOException {
+        byte[] data = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            if (fileChannel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file at offset " + (offset + buffer.position()));
+            }
+        }
+        return data;
+    }
+
+    private static void uploadResultChunk(String jobId, String uploadId, String uploadChunkUrl, int chunkId,
+            byte[] chunkData) throws IOException, InterruptedException {
+        Map<String, Object> chunkPayloadMap = new HashMap<>();
+        chunkPayloadMap.put("jobId", uploadId);
+        chunkPayloadMap.put("chunkId", chunkId);
+        chunkPayloadMap.put("chunkDataB64", Base64.getEncoder().encodeToString(chunkData));
+        String jsonChunkPayload = objectMapper.writeValueAsString(chunkPayloadMap);
+
+        for (int attempt = 1;; attempt++) {
+            HttpPost httpPostChunk = new HttpPost(uploadChunkUrl);
+            httpPostChunk.setEntity(new StringEntity(jsonChunkPayload, ContentType.APPLICATION_JSON));
+            System.out.println(" [>] Job " + jobId + ": Sending chunk " + chunkId + " to C05. Size: "
+                    + chunkData.length + (attempt > 1 ? " (attempt " + attempt + ")" : ""));
+            String failure;
+            long chunkStart = System.nanoTime();
+            try {
+                int chunkStatus = c05HttpClient.execute("uploadResultChunk", httpPostChunk, response -> {
+                    EntityUtils.consume(response.getEntity());
+                    return response.getCode();
+                });
+                if (chunkStatus >= 200 && chunkStatus < 300) {
+                    recordChunkUploadLatency(chunkData.length, System.nanoTime() - chunkStart);
+                    System.out.println(
+                            " [ok] Job " + jobId + ": Successfully uploaded chunk " + chunkId + " to C05.");
+                    return;
+                }
+                failure = "status " + chunkStatus;
+            } catch (IOException e) {
+                failure = e.getMessage();
+            }
+            System.err.println(" [!] Job " + jobId + ": Failed to upload chunk " + chunkId + " to C05 (" + failure
+                    + ", attempt " + attempt + "/" + (C03_RESULT_UPLOAD_CHUNK_RETRIES + 1) + ").");
+            if (attempt > C03_RESULT_UPLOAD_CHUNK_RETRIES) {
+                throw new IOException("Failed to upload chunk " + chunkId + " to C05: " + failure);
+            }
+            Thread.sleep(C03_RESULT_UPLOAD_RETRY_DELAY_MS * attempt);
+        }
+    }
+
+    private static boolean c05SupportsStreamingUpload() {
+        if (!C03_STREAMING_RESULT_UPLOAD) {
+            return false;
+        }
+        Boolean supported = c05SupportsStreamingUpload;
+        if (supported != null && (supported
+                || System.currentTimeMillis() - c05CapabilitiesCheckedAt < C05_CAPABILITIES_RECHECK_MS)) {
+            return supported;
+        }
+        boolean advertised;
+        try {
+            HttpGet request = new HttpGet(getC05ApiBaseUrl() + C05_UPLOAD_CAPABILITIES_ENDPOINT);
+            advertised = c05HttpClient.execute("uploadCapabilities", request, response -> {
+                HttpEntity entity = response.getEntity();
+                String responseBody = entity != null ? EntityUtils.toString(entity) : null;
+                if (response.getCode() != 200 || responseBody == null) {
+                    return false;
+                }
+                Map<?, ?> capabilities = objectMapper.readValue(responseBody, Map.class);
+                return Boolean.TRUE.equals(capabilities.get("streamingUpload"));
+            });
+        } catch (Exception e) {
+            System.err.println(" [!] Failed to query C05 upload capabilities: " + e.getMessage());
+            advertised = false;
+        }
+        setStreamingUploadSupport(advertised);
+        return advertised;
+    }
+
+    private static void setStreamingUploadSupport(boolean supported) {
+        if (!Boolean.valueOf(supported).equals(c05SupportsStreamingUpload)) {
+            System.out.println(" [i] C05 streaming result upload "
+                    + (supported ? "available." : "not available. Using the chunked upload protocol."));
+        }
+        c05SupportsStreamingUpload = supported;
+        c05CapabilitiesCheckedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Sends the processed file to C05 as the raw body of a single request,
+     * straight from disk. Returns null when C05 turns out not to support it, so
+     * the caller can fall back to the chunked protocol.
+     */
+    private static String streamProcessedImageToC05(String jobId, Path imagePath, long fileSize, String bmpMetadata)
+            throws IOException {
+        HttpPost request = new HttpPost(getC05ApiBaseUrl() + C05_STREAM_UPLOAD_ENDPOINT + "/" + jobId);
+        request.setEntity(new FileEntity(imagePath.toFile(), ContentType.APPLICATION_OCTET_STREAM));
+        request.setHeader(HttpHeaders.ACCEPT, "application/json");
+        if (bmpMetadata != null) {
+            try {
+                objectMapper.readTree(bmpMetadata);
+                request.setHeader("X-Bmp-Metadata",
+                        Base64.getEncoder().encodeToString(bmpMetadata.getBytes(StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                System.err.println(" [!] Job " + jobId + ": Failed to parse BMP metadata JSON: " + e.getMessage());
+            }
+        }
+
+        System.out.println(" [>] Job " + jobId + ": Streaming processed file to C05 (" + fileSize + " bytes) at "
+                + request.getRequestUri());
+        long start = System.nanoTime();
+        return c05HttpClient.execute("streamResultUpload", request, response -> {
+            int status = response.getCode();
+            HttpEntity entity = response.getEntity();
+            String responseBody = entity != null ? EntityUtils.toString(entity) : null;
+            if (status == 200 || status == 201) {
+                FinalizeUploadResponse uploadResponse = objectMapper.readValue(responseBody,
+                        FinalizeUploadResponse.class);
+                System.out.printf(" [ok] Job %s: Streamed processed file to C05 in %.1f ms. Picture ID: %s%n", jobId,
+                        (System.nanoTime() - start) / 1_000_000.0, uploadResponse.pictureId);
+                return uploadResponse.pictureId;
+            }
+            if (status == 404 || status == 405 || status == 415) {
+                System.err.println(" [!] Job " + jobId + ": C05 rejected the streaming upload (HTTP " + status
+                        + "). Falling back to the chunked upload protocol.");
+                setStreamingUploadSupport(false);
+                return null;
+            }
+            throw new IOException("Failed to stream processed file to C05, status: " + status + ", Body: "
+                    + responseBody);
+        });
+    }
+
+    static String sendProcessedImageToC05(String jobId, Path imagePath, ImageProcessingJob originalJobDetails,
+            int uploadConcurrency) {
         String c05UploadIdForProcessedFile = null;
         int totalChunksForFinalize = 0;
         long fileSize = 0;
@@ -1190,7 +2098,6 @@ public class C03Consumer {
                 try {
                     bmpMetadata = new String(Files.readAllBytes(metadataPath), StandardCharsets.UTF_8);
                     System.out.println(" [i] Job " + jobId + ": Found BMP metadata file: " + metadataPath);
-                    System.out.println(" [dbg] Job " + jobId + ": BMP metadata content: " + bmpMetadata);
                 } catch (IOException e) {
                     System.err.println(" [!] Job " + jobId + ": Failed to read BMP metadata file: " + e.getMessage());
                 }
@@ -1198,58 +2105,64 @@ public class C03Consumer {
                 System.out.println(" [i] Job " + jobId + ": No BMP metadata file found at: " + metadataPath);
             }
 
-            totalChunksForFinalize = (int) Math.ceil((double) fileSize / C03_UPLOAD_CHUNK_SIZE);
+            if (c05SupportsStreamingUpload()) {
+                String pictureId = streamProcessedImageToC05(jobId, imagePath, fileSize, bmpMetadata);
+                if (pictureId != null) {
+                    return pictureId;
+                }
+            }
+
+            int uploadChunkSize = chooseUploadChunkSize(originalJobDetails, fileSize);
+            totalChunksForFinalize = (int) Math.ceil((double) fileSize / uploadChunkSize);
             if (fileSize == 0)
                 totalChunksForFinalize = 0;
 
             System.out.println(" [i] Job " + jobId + ": Initiating upload of PROCESSED file to C05. Name: "
                     + originalJobDetails.getFileName() +
-                    ", Size: " + fileSize + " bytes, Chunks: " + totalChunksForFinalize + ", OperationType: "
+                    ", Size: " + fileSize + " bytes, Chunks: " + totalChunksForFinalize + " of " + uploadChunkSize
+                    + " bytes, OperationType: "
                     + processedOperationType);
 
-            try (CloseableHttpClient initHttpClient = HttpClients.createDefault()) {
-                HttpPost initRequest = new HttpPost(getC05ApiBaseUrl() + C05_INITIATE_CHUNKED_UPLOAD_ENDPOINT);
-                C05InitiateUploadRequest initPayload = new C05InitiateUploadRequest(
-                        jobId,
-                        originalJobDetails.getFileName(),
-                        processedOperationType,
-                        "application/octet-stream",
-                        totalChunksForFinalize,
-                        fileSize,
-                        null);
-                String jsonInitPayload = objectMapper.writeValueAsString(initPayload);
-                initRequest.setEntity(new StringEntity(jsonInitPayload, ContentType.APPLICATION_JSON));
-                initRequest.setHeader(HttpHeaders.ACCEPT, "application/json");
-                initRequest.setHeader(HttpHeaders.CONTENT_TYPE, "application/json");
-
-                InitiateUploadResponse initResponse = initHttpClient.execute(initRequest, response -> {
-                    int status = response.getCode();
-                    HttpEntity entity = response.getEntity();
-                    String responseBody = entity != null ? EntityUtils.toString(entity) : null;
-                    if (status >= 200 && status < 300) {
-                        System.out.println(" [i] Job " + jobId
-                                + ": Successfully initiated processed file upload to C05. Response: " + responseBody);
-                        return objectMapper.readValue(responseBody, InitiateUploadResponse.class);
-                    } else {
-                        System.err.println(
-                                " [!] Job " + jobId + ": Failed to initiate PROCESSED file upload to C05. Status: "
-                                        + status + ". Response: " + responseBody);
-                        throw new IOException("Failed to initiate processed file upload to C05 (HTTP " + status + "): "
-                                + responseBody);
-                    }
-                });
-
-                if (initResponse == null || initResponse.jobId == null) {
-                    throw new IOException(
-                            "Failed to get a valid jobId from C05 for processed file initiation. Response: "
-                                    + (initResponse != null ? objectMapper.writeValueAsString(initResponse) : "null"));
+            HttpPost initRequest = new HttpPost(getC05ApiBaseUrl() + C05_INITIATE_CHUNKED_UPLOAD_ENDPOINT);
+            C05InitiateUploadRequest initPayload = new C05InitiateUploadRequest(
+                    jobId,
+                    originalJobDetails.getFileName(),
+                    processedOperationType,
+                    "application/octet-stream",
+                    totalChunksForFinalize,
+                    fileSize,
+                    null);
+            String jsonInitPayload = objectMapper.writeValueAsString(initPayload);
+            initRequest.setEntity(new StringEntity(jsonInitPayload, ContentType.APPLICATION_JSON));
+            initRequest.setHeader(HttpHeaders.ACCEPT, "application/json");
+            initRequest.setHeader(HttpHeaders.CONTENT_TYPE, "application/json");
+
+            InitiateUploadResponse initResponse = c05HttpClient.execute("initiateResultUpload", initRequest, response -> {
+                int status = response.getCode();
+                HttpEntity entity = response.getEntity();
+                String responseBody = entity != null ? EntityUtils.toString(entity) : null;
+                if (status >= 200 && status < 300) {
+                    System.out.println(" [i] Job " + jobId
+                            + ": Successfully initiated processed file upload to C05. Response: " + responseBody);
+                    return objectMapper.readValue(responseBody, InitiateUploadResponse.class);
+                } else {
+                    System.err.println(
+                            " [!] Job " + jobId + ": Failed to initiate PROCESSED file upload to C05. Status: "
+                                    + status + ". Response: " + responseBody);
+                    throw new IOException("Failed to initiate processed file upload to C05 (HTTP " + status + "): "
+                            + responseBody);
                 }
-                c05UploadIdForProcessedFile = initResponse.jobId;
-                System.out
-                        .println(" [i] Job " + jobId + ": C05 confirmed initiation for processed file. Using uploadId: "
-                                + c05UploadIdForProcessedFile);
+            });
 
+            if (initResponse == null || initResponse.jobId == null) {
+                throw new IOException(
+                        "Failed to get a valid jobId from C05 for processed file initiation. Response: "
+                                + (initResponse != null ? objectMapper.writeValueAsString(initResponse) : "null"));
             }
+            c05UploadIdForProcessedFile = initResponse.jobId;
+            System.out
+                    .println(" [i] Job " + jobId + ": C05 confirmed initiation for processed file. Using uploadId: "
+                            + c05UploadIdForProcessedFile);
 
             if (fileSize == 0 && !"metadata-only".equals(originalJobDetails.getOperation())) {
                 System.out.println(
@@ -1257,46 +2170,8 @@ public class C03Consumer {
                 return c05UploadIdForProcessedFile;
             }
 
-            String uploadChunkUrl = getC05ApiBaseUrl() + C05_UPLOAD_CHUNK_ENDPOINT;
-            byte[] buffer = new byte[C03_UPLOAD_CHUNK_SIZE];
-            int chunkNumber = 0;
-            try (FileInputStream fis = new FileInputStream(imagePath.toFile());
-                    CloseableHttpClient chunkHttpClient = HttpClients.createDefault()) {
-                int bytesRead;
-                while ((bytesRead = fis.read(buffer)) != -1) {
-                    HttpPost httpPostChunk = new HttpPost(uploadChunkUrl);
-                    Map<String, Object> chunkPayloadMap = new HashMap<>();
-                    chunkPayloadMap.put("jobId", c05UploadIdForProcessedFile);
-                    chunkPayloadMap.put("chunkId", chunkNumber);
-
-                    byte[] actualChunkData;
-                    if (bytesRead < C03_UPLOAD_CHUNK_SIZE) {
-                        actualChunkData = Arrays.copyOf(buffer, bytesRead);
-                    } else {
-                        actualChunkData = buffer;
-                    }
-                    chunkPayloadMap.put("chunkDataB64", Base64.getEncoder().encodeToString(actualChunkData));
-                    String jsonChunkPayload = objectMapper.writeValueAsString(chunkPayloadMap);
-                    httpPostChunk.setEntity(new StringEntity(jsonChunkPayload, ContentType.APPLICATION_JSON));
-
-                    System.out.println(" [>] Job " + jobId + ": Sending chunk " + chunkNumber + " to C05. Size: "
-                            + actualChunkData.length);
-
-                    ClassicHttpResponse chunkResponse = chunkHttpClient.execute(httpPostChunk, response -> response);
-                    int chunkStatus = chunkResponse.getCode();
-                    EntityUtils.consume(chunkResponse.getEntity());
-
-                    if (chunkStatus < 200 || chunkStatus >= 300) {
-                        System.err.println(" [!] Job " + jobId + ": Failed to upload chunk " + chunkNumber
-                                + " to C05. Status: " + chunkStatus);
-                        throw new IOException(
-                                "Failed to upload chunk " + chunkNumber + " to C05, status: " + chunkStatus);
-                    }
-                    System.out.println(
-                            " [ok] Job " + jobId + ": Successfully uploaded chunk " + chunkNumber + " to C05.");
-                    chunkNumber++;
-                }
-            }
+            int chunkNumber = uploadResultChunksToC05(jobId, c05UploadIdForProcessedFile, imagePath, fileSize,
+                    uploadChunkSize, totalChunksForFinalize, uploadConcurrency);
 
             if (chunkNumber != totalChunksForFinalize && fileSize > 0) {
                 System.err.println(" [!] Job " + jobId + ": Mismatch in sent chunks (" + chunkNumber
@@ -1304,56 +2179,54 @@ public class C03Consumer {
                 throw new IOException("Chunk count mismatch during upload to C05 for job " + jobId);
             }
             String finalizeUrl = getC05ApiBaseUrl() + C05_FINALIZE_CHUNKED_UPLOAD_ENDPOINT;
-            try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-                HttpPost httpPostFinalize = new HttpPost(finalizeUrl);
-                Map<String, Object> finalizePayload = new HashMap<>();
-                finalizePayload.put("jobId", c05UploadIdForProcessedFile);
-                finalizePayload.put("fileName", originalJobDetails.getFileName());
-                finalizePayload.put("totalChunks", totalChunksForFinalize);
-
-                if (bmpMetadata != null) {
-                    try {
-                        ObjectMapper metadataMapper = new ObjectMapper();
-                        Object bmpMetadataObj = metadataMapper.readValue(bmpMetadata, Object.class);
-                        finalizePayload.put("bmpMetadata", bmpMetadataObj);
-                        System.out.println(" [i] Job " + jobId + ": Including BMP metadata in finalize request");
-                    } catch (Exception e) {
-                        System.err.println(
-                                " [!] Job " + jobId + ": Failed to parse BMP metadata JSON: " + e.getMessage());
-                    }
-                }
+            HttpPost httpPostFinalize = new HttpPost(finalizeUrl);
+            Map<String, Object> finalizePayload = new HashMap<>();
+            finalizePayload.put("jobId", c05UploadIdForProcessedFile);
+            finalizePayload.put("fileName", originalJobDetails.getFileName());
+            finalizePayload.put("totalChunks", totalChunksForFinalize);
 
-                String jsonFinalizePayload = objectMapper.writeValueAsString(finalizePayload);
-                httpPostFinalize.setEntity(new StringEntity(jsonFinalizePayload, ContentType.APPLICATION_JSON));
-
-                System.out.println(" [>] Finalizing chunked upload to C05 for job " + jobId + " (uploadId: "
-                        + c05UploadIdForProcessedFile + ") at " + finalizeUrl);
-
-                HttpClientResponseHandler<String> finalizeResponseHandler = response -> {
-                    int statusCode = response.getCode();
-                    HttpEntity responseEntity = response.getEntity();
-                    String responseBody = responseEntity != null ? EntityUtils.toString(responseEntity) : null;
-                    if (statusCode == 200 || statusCode == 201) {
-                        FinalizeUploadResponse finalizeResponse = objectMapper.readValue(responseBody,
-                                FinalizeUploadResponse.class);
-                        System.out.println(" [ok] Successfully finalized C05 upload for job " + jobId + ". Picture ID: "
-                                + finalizeResponse.pictureId);
-                        return finalizeResponse.pictureId;
-                    } else {
-                        System.err.println(" [!] Failed to finalize C05 upload for job " + jobId + ". Status: "
-                                + statusCode + ". Response: " + responseBody);
-                        throw new IOException(
-                                "Failed to finalize C05 upload, status: " + statusCode + ", Body: " + responseBody);
-                    }
-                };
-                return httpClient.execute(httpPostFinalize, finalizeResponseHandler);
+            if (bmpMetadata != null) {
+                try {
+                    ObjectMapper metadataMapper = new ObjectMapper();
+                    Object bmpMetadataObj = metadataMapper.readValue(bmpMetadata, Object.class);
+                    finalizePayload.put("bmpMetadata", bmpMetadataObj);
+                    System.out.println(" [i] Job " + jobId + ": Including BMP metadata in finalize request");
+                } catch (Exception e) {
+                    System.err.println(
+                            " [!] Job " + jobId + ": Failed to parse BMP metadata JSON: " + e.getMessage());
+                }
             }
 
+            String jsonFinalizePayload = objectMapper.writeValueAsString(finalizePayload);
+            httpPostFinalize.setEntity(new StringEntity(jsonFinalizePayload, ContentType.APPLICATION_JSON));
+
+            System.out.println(" [>] Finalizing chunked upload to C05 for job " + jobId + " (uploadId: "
+                    + c05UploadIdForProcessedFile + ") at " + finalizeUrl);
+
+            HttpClientResponseHandler<String> finalizeResponseHandler = response -> {
+                int statusCode = response.getCode();
+                HttpEntity responseEntity = response.getEntity();
+                String responseBody = responseEntity != null ? EntityUtils.toString(responseEntity) : null;
+                if (statusCode == 200 || statusCode == 201) {
+                    FinalizeUploadResponse finalizeResponse = objectMapper.readValue(responseBody,
+                            FinalizeUploadResponse.class);
+                    System.out.println(" [ok] Successfully finalized C05 upload for job " + jobId + ". Picture ID: "
+                            + finalizeResponse.pictureId);
+                    return finalizeResponse.pictureId;
+                } else {
+                    System.err.println(" [!] Failed to finalize C05 upload for job " + jobId + ". Status: "
+                            + statusCode + ". Response: " + responseBody);
+                    throw new IOException(
+                            "Failed to finalize C05 upload, status: " + statusCode + ", Body: " + responseBody);
+                }
+            };
+            return c05HttpClient.execute("finalizeResultUpload", httpPostFinalize, finalizeResponseHandler);
+
         } catch (Exception e) {
             System.err.println(" [!] Error sending processed image to C05 for job " + jobId + ": " + e.getMessage());
             e.printStackTrace();
-            updateJobStatusInC05(jobId, "ERROR", null, "Failed to send processed image to C05: " + e.getMessage());
-            publishJobNotification(jobId, "ERROR", null, "Failed to send processed image to C05: " + e.getMessage());
+            jobStatusDispatcher.report(jobId, "ERROR", null,
+                    "Failed to send processed image to C05: " + e.getMessage());
             return null;
         }
     }
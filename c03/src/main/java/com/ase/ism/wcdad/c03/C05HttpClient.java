@@ -0,0 +1,137 @@
+package com.ase.ism.wcdad.c03;
+
+import com.ase.ism.wcdad.common.LatencyHistogram;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultHttpRequestRetryStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.io.HttpClientResponseHandler;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shared, pooled HTTP client for every C03 call to C05. Connections are kept
+ * alive across jobs, every request has connect, pool-lease and response
+ * timeouts, and idempotent requests (GET/PUT) are retried with exponential
+ * backoff on I/O errors and 429/503 responses. POSTs are not retried because
+ * C05 would create duplicate records.
+ */
+public class C05HttpClient implements AutoCloseable {
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final Map<String, LatencyHistogram> latencyByOperation = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> failuresByOperation = new ConcurrentHashMap<>();
+
+    public C05HttpClient(int maxConnections, int maxConnectionsPerRoute, long connectTimeoutMs,
+            long responseTimeoutMs, long poolLeaseTimeoutMs, int maxRetries, long retryBaseDelayMs) {
+        this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                        .build())
+                .build();
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolLeaseTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                        .build())
+                .setRetryStrategy(new BackoffRetryStrategy(maxRetries, retryBaseDelayMs))
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(60))
+                .build();
+    }
+
+    public <T> T execute(String operation, ClassicHttpRequest request, HttpClientResponseHandler<T> handler)
+            throws IOException {
+        long start = System.nanoTime();
+        try {
+            return httpClient.execute(request, handler);
+        } catch (IOException | RuntimeException e) {
+            failuresByOperation.computeIfAbsent(operation, key -> new LongAdder()).increment();
+            throw e;
+        } finally {
+            latencyByOperation.computeIfAbsent(operation, key -> new LatencyHistogram())
+                    .recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    public long requestCount() {
+        long total = 0;
+        for (LatencyHistogram histogram : latencyByOperation.values()) {
+            total += histogram.getCount();
+        }
+        return total;
+    }
+
+    public Map<String, Object> snapshot() {
+        PoolStats stats = connectionManager.getTotalStats();
+        Map<String, Object> pool = new LinkedHashMap<>();
+        pool.put("leased", stats.getLeased());
+        pool.put("available", stats.getAvailable());
+        pool.put("pending", stats.getPending());
+        pool.put("max", stats.getMax());
+
+        Map<String, Object> operations = new LinkedHashMap<>();
+        latencyByOperation.forEach((operation, histogram) -> {
+            Map<String, Object> operationSnapshot = histogram.snapshot();
+            LongAdder failures = failuresByOperation.get(operation);
+            operationSnapshot.put("failures", failures != null ? failures.sum() : 0L);
+            operations.put(operation, operationSnapshot);
+        });
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("pool", pool);
+        snapshot.put("operations", operations);
+        return snapshot;
+    }
+
+    @Override
+    public void close() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            System.err.println(" [!] Error closing C05 HTTP client: " + e.getMessage());
+        }
+    }
+
+    private static class BackoffRetryStrategy extends DefaultHttpRequestRetryStrategy {
+        private final long baseDelayMs;
+
+        BackoffRetryStrategy(int maxRetries, long baseDelayMs) {
+            super(maxRetries, TimeValue.ofMilliseconds(baseDelayMs));
+            this.baseDelayMs = baseDelayMs;
+        }
+
+        @Override
+        public TimeValue getRetryInterval(HttpResponse response, int execCount, HttpContext context) {
+            TimeValue retryAfter = super.getRetryInterval(response, execCount, context);
+            long backoffMs = baseDelayMs << Math.min(execCount - 1, 6);
+            return retryAfter.toMilliseconds() > backoffMs ? retryAfter : TimeValue.ofMilliseconds(backoffMs);
+        }
+
+        @Override
+        public TimeValue getRetryInterval(HttpRequest request, IOException exception,
+                int execCount, HttpContext context) {
+            return TimeValue.ofMilliseconds(baseDelayMs << Math.min(execCount - 1, 6));
+        }
+    }
+}
@@ -15,6 +15,8 @@ public class ImageProcessingJob {
     private String mode;
     private String operation;
     private long originalFileSize;
+    private int chunkSize;
+    private long idleTtlMs;
     private transient byte[] originalJsonMetadataBytes;
 
     @JsonCreator
@@ -27,7 +29,9 @@ public class ImageProcessingJob {
             @JsonProperty("key") String key,
             @JsonProperty("mode") String mode,
             @JsonProperty("operation") String operation,
-            @JsonProperty("originalFileSize") long originalFileSize) {
+            @JsonProperty("originalFileSize") long originalFileSize,
+            @JsonProperty("chunkSize") int chunkSize,
+            @JsonProperty("idleTtlMs") long idleTtlMs) {
         this.jobId = jobId;
         this.fileName = fileName;
         this.keySize = keySize;
@@ -37,6 +41,8 @@ public class ImageProcessingJob {
         this.mode = mode;
         this.operation = operation;
         this.originalFileSize = originalFileSize;
+        this.chunkSize = chunkSize;
+        this.idleTtlMs = idleTtlMs;
     }
 
     public void setOriginalJsonMetadataBytes(byte[] metadataBytes) {
@@ -94,6 +100,15 @@ public class ImageProcessingJob {
         return originalFileSize;
     }
 
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /** How long C01 keeps the upload open between chunks; 0 when it did not say. */
+    public long getIdleTtlMs() {
+        return idleTtlMs;
+    }
+
     @Override
     public String toString() {
         return "ImageProcessingJob{" +
@@ -0,0 +1,226 @@
+package com.ase.ism.wcdad.c03;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind job status updates. The AMQP notification goes out on the
+ * caller's thread right away, while the C05 update is queued, coalesced with
+ * later transitions of the same job and persisted in batches by a background
+ * thread, with retries. A terminal status is never replaced by a
+ * non-terminal one while it waits in the queue.
+ */
+public class JobStatusDispatcher implements AutoCloseable {
+    public interface Notifier {
+        void publish(String jobId, String status, String pictureId, String errorMessage);
+    }
+
+    public interface BatchSender {
+        void send(List<StatusUpdate> updates) throws IOException;
+    }
+
+    private final Notifier notifier;
+    private final BatchSender sender;
+    private final int capacity;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final int maxAttempts;
+    private final long retryBaseDelayMillis;
+    private final LinkedHashMap<String, StatusUpdate> pending = new LinkedHashMap<>();
+    private final Thread worker;
+    private final LongAdder reported = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder persisted = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private boolean closed = false;
+
+    public JobStatusDispatcher(Notifier notifier, BatchSender sender, int capacity, int batchSize,
+            long lingerMillis, int maxAttempts, long retryBaseDelayMillis) {
+        this.notifier = notifier;
+        this.sender = sender;
+        this.capacity = Math.max(1, capacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerMillis = lingerMillis;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBaseDelayMillis = retryBaseDelayMillis;
+        this.worker = new Thread(this::run, "c03-job-status-dispatcher");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public void report(String jobId, String status, String pictureId, String errorMessage) {
+        reported.increment();
+        notifier.publish(jobId, status, pictureId, errorMessage);
+        persist(jobId, status, pictureId, errorMessage);
+    }
+
+    /** Queues a C05 update without an AMQP notification. */
+    public void persist(String jobId, String status, String pictureId, String errorMessage) {
+        enqueue(new StatusUpdate(jobId, status, pictureId, errorMessage, 1), true);
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        synchronized (this) {
+            snapshot.put("queued", pending.size());
+        }
+        snapshot.put("capacity", capacity);
+        snapshot.put("reported", reported.sum());
+        snapshot.put("coalesced", coalesced.sum());
+        snapshot.put("persisted", persisted.sum());
+        snapshot.put("failedBatches", failedBatches.sum());
+        snapshot.put("dropped", dropped.sum());
+        return snapshot;
+    }
+
+    /** Stops accepting updates and waits up to the timeout for queued ones to reach C05. */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (!pending.isEmpty()) {
+                System.err.println(" [!] " + pending.size() + " job status update(s) were not persisted to C05 "
+                        + "before shutdown.");
+            }
+        }
+    }
+
+    private synchronized void enqueue(StatusUpdate update, boolean waitForSpace) {
+        StatusUpdate queued = pending.get(update.jobId);
+        if (queued != null) {
+            coalesced.increment();
+            if (queued.isTerminal() && !update.isTerminal()) {
+                return;
+            }
+            pending.put(update.jobId, update.withPictureIdFrom(queued));
+            return;
+        }
+        while (waitForSpace && pending.size() >= capacity && !closed) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        pending.put(update.jobId, update);
+        notifyAll();
+    }
+
+    private void run() {
+        while (true) {
+            List<StatusUpdate> batch = nextBatch();
+            if (batch == null) {
+                return;
+            }
+            try {
+                sender.send(batch);
+                persisted.add(batch.size());
+            } catch (Exception e) {
+                failedBatches.increment();
+                int attempt = batch.get(0).attempt;
+                System.err.println(" [!] Failed to persist " + batch.size() + " job status update(s) to C05 (attempt "
+                        + attempt + "/" + maxAttempts + "): " + e.getMessage());
+                requeue(batch);
+                sleepQuietly(retryBaseDelayMillis << Math.min(attempt - 1, 6));
+            }
+        }
+    }
+
+    private synchronized List<StatusUpdate> nextBatch() {
+        while (pending.isEmpty()) {
+            if (closed) {
+                return null;
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                return null;
+            }
+        }
+        if (!closed && pending.size() < batchSize && lingerMillis > 0) {
+            // Give quick successive transitions of the same job a chance to coalesce.
+            try {
+                wait(lingerMillis);
+            } catch (InterruptedException e) {
+                return null;
+            }
+        }
+        List<StatusUpdate> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        Iterator<StatusUpdate> iterator = pending.values().iterator();
+        while (iterator.hasNext() && batch.size() < batchSize) {
+            batch.add(iterator.next());
+            iterator.remove();
+        }
+        notifyAll();
+        return batch;
+    }
+
+    private synchronized void requeue(List<StatusUpdate> batch) {
+        for (StatusUpdate update : batch) {
+            if (pending.containsKey(update.jobId)) {
+                // A newer transition arrived meanwhile; it supersedes the failed one.
+                continue;
+            }
+            if (update.attempt >= maxAttempts) {
+                dropped.increment();
+                System.err.println(" [!] Job " + update.jobId + ": Giving up persisting status " + update.status
+                        + " to C05 after " + update.attempt + " attempt(s).");
+                continue;
+            }
+            pending.put(update.jobId, update.nextAttempt());
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static class StatusUpdate {
+        final String jobId;
+        final String status;
+        final String pictureId;
+        final String errorMessage;
+        final int attempt;
+
+        StatusUpdate(String jobId, String status, String pictureId, String errorMessage, int attempt) {
+            this.jobId = jobId;
+            this.status = status;
+            this.pictureId = pictureId;
+            this.errorMessage = errorMessage;
+            this.attempt = attempt;
+        }
+
+        boolean isTerminal() {
+            return "DONE".equals(status) || "ERROR".equals(status);
+        }
+
+        StatusUpdate withPictureIdFrom(StatusUpdate previous) {
+            return pictureId != null || previous.pictureId == null ? this
+                    : new StatusUpdate(jobId, status, previous.pictureId, errorMessage, attempt);
+        }
+
+        StatusUpdate nextAttempt() {
+            return new StatusUpdate(jobId, status, pictureId, errorMessage, attempt + 1);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.ase.ism.wcdad.c03;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * In-JVM equivalent of {@code process_image_mpi} for small images. It mirrors
+ * the native program step by step: strip the row padding, zero-pad ECB input
+ * and PKCS#7-pad CBC input, truncate ECB output to the original pixel size,
+ * rebuild padded rows, and write only the 54 header bytes followed by the
+ * pixels. The output is byte-identical to the native program's.
+ * Any input the native program rejects or treats oddly makes
+ * {@link #process} return false, so the job goes to MPI and fails there
+ * the usual way.
+ */
+public final class JvmAesProcessor {
+    private static final int FILE_HEADER_SIZE = 14;
+    private static final int INFO_HEADER_SIZE = 40;
+    private static final int AES_BLOCK_SIZE = 16;
+
+    private JvmAesProcessor() {
+    }
+
+    /**
+     * Processes {@code input} into {@code output}. Returns false without
+     * writing anything if the job has to run on MPI instead. Throws
+     * {@link javax.crypto.BadPaddingException} when CBC decryption fails,
+     * i.e. on a wrong key.
+     */
+    public static boolean process(Path input, Path output, String operation, int keySize, String mode,
+            String keyHex, String ivHex) throws IOException, GeneralSecurityException {
+        boolean encrypt = "encrypt".equals(operation);
+        boolean cbc = "CBC".equalsIgnoreCase(mode);
+        if (!encrypt && !"decrypt".equals(operation) || !cbc && !"ECB".equalsIgnoreCase(mode)) {
+            return false;
+        }
+        byte[] key = hexToBytes(keyHex);
+        byte[] iv = cbc ? hexToBytes(ivHex) : null;
+        if (key == null || key.length * 8 != keySize || (keySize != 128 && keySize != 192 && keySize != 256)
+                || (cbc && (iv == null || iv.length != AES_BLOCK_SIZE))) {
+            return false;
+        }
+
+        byte[] headers = new byte[FILE_HEADER_SIZE + INFO_HEADER_SIZE];
+        byte[] rawPixels;
+        ByteBuffer header = ByteBuffer.wrap(headers).order(ByteOrder.LITTLE_ENDIAN);
+        try (InputStream in = Files.newInputStream(input)) {
+            if (in.readNBytes(headers, 0, headers.length) != headers.length) {
+                return false;
+            }
+            int offsetData = header.getInt(10);
+            int width = header.getInt(18);
+            int height = header.getInt(22);
+            int bitCount = header.getShort(28) & 0xFFFF;
+            int compression = header.getInt(30);
+            long sizeImage = header.getInt(34) & 0xFFFFFFFFL;
+            if ((header.getShort(0) & 0xFFFF) != 0x4D42 || (bitCount != 24 && bitCount != 32) || compression != 0
+                    || width <= 0 || height == 0 || offsetData < headers.length) {
+                return false;
+            }
+            int rowBytes = width * (bitCount / 8);
+            long expected = sizeImage != 0 ? sizeImage : (long) Math.abs(height) * ((rowBytes + 3) & ~3);
+            if (expected > Integer.MAX_VALUE) {
+                return false;
+            }
+            in.skipNBytes(offsetData - headers.length);
+            rawPixels = in.readNBytes((int) expected);
+        } catch (EOFException e) {
+            return false;
+        }
+
+        int width = header.getInt(18);
+        int height = header.getInt(22);
+        int bytesPerPixel = (header.getShort(28) & 0xFFFF) / 8;
+        int rowBytes = width * bytesPerPixel;
+        int rowPadding = ((rowBytes + 3) & ~3) - rowBytes;
+        long trueOriginalSize = (long) Math.abs(height) * rowBytes;
+        byte[] pure = extractPurePixelData(rawPixels, rowBytes, rowPadding);
+
+        byte[] processed;
+        if (encrypt) {
+            if (cbc) {
+                processed = pure.length > 0 ? cipher("AES/CBC/PKCS5Padding", Cipher.ENCRYPT_MODE, key, iv)
+                        .doFinal(pure) : new byte[0];
+            } else {
+                processed = pure.length > 0 ? cipher("AES/ECB/NoPadding", Cipher.ENCRYPT_MODE, key, null)
+                        .doFinal(Arrays.copyOf(pure, (pure.length + AES_BLOCK_SIZE - 1) / AES_BLOCK_SIZE
+                                * AES_BLOCK_SIZE)) : new byte[0];
+            }
+        } else {
+            if ((cbc && pure.length % AES_BLOCK_SIZE != 0) || (pure.length == 0 && trueOriginalSize > 0)) {
+                return false;
+            }
+            if (cbc) {
+                processed = pure.length > 0 ? cipher("AES/CBC/PKCS5Padding", Cipher.DECRYPT_MODE, key, iv)
+                        .doFinal(pure) : new byte[0];
+            } else {
+                // Like the native ranks, decrypt whole blocks only and leave a trailing partial block zeroed.
+                int alignedLength = pure.length / AES_BLOCK_SIZE * AES_BLOCK_SIZE;
+                processed = new byte[pure.length];
+                if (alignedLength > 0) {
+                    cipher("AES/ECB/NoPadding", Cipher.DECRYPT_MODE, key, null)
+                            .doFinal(pure, 0, alignedLength, processed, 0);
+                }
+            }
+        }
+
+        byte[] finalPure = processed;
+        if (!cbc && processed.length > 0) {
+            if (processed.length < trueOriginalSize) {
+                return false;
+            }
+            finalPure = Arrays.copyOf(processed, (int) trueOriginalSize);
+        }
+
+        try (OutputStream out = Files.newOutputStream(output)) {
+            if (processed.length == 0) {
+                return true;
+            }
+            byte[] outputPixels = reconstructBmpPixelData(finalPure, rowBytes, rowPadding);
+            header.putInt(2, header.getInt(10) + outputPixels.length);
+            header.putInt(34, outputPixels.length);
+            out.write(headers);
+            out.write(outputPixels);
+        }
+        return true;
+    }
+
+    private static Cipher cipher(String transformation, int cipherMode, byte[] key, byte[] iv)
+            throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(transformation);
+        if (iv != null) {
+            cipher.init(cipherMode, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+        } else {
+            cipher.init(cipherMode, new SecretKeySpec(key, "AES"));
+        }
+        return cipher;
+    }
+
+    private static byte[] extractPurePixelData(byte[] raw, int rowBytes, int rowPadding) {
+        int stride = rowBytes + rowPadding;
+        byte[] pure = new byte[(int) Math.min((long) (raw.length + stride - 1) / stride * rowBytes, raw.length)];
+        int written = 0;
+        for (int offset = 0; offset < raw.length; offset += stride) {
+            int segment = Math.min(stride, raw.length - offset);
+            int toCopy = Math.min(segment > rowPadding ? segment - rowPadding : 0, rowBytes);
+            if (toCopy == 0) {
+                break;
+            }
+            System.arraycopy(raw, offset, pure, written, toCopy);
+            written += toCopy;
+        }
+        return written == pure.length ? pure : Arrays.copyOf(pure, written);
+    }
+
+    private static byte[] reconstructBmpPixelData(byte[] pure, int rowBytes, int rowPadding) {
+        int rows = (pure.length + rowBytes - 1) / rowBytes;
+        byte[] reconstructed = new byte[pure.length + rows * rowPadding];
+        int read = 0;
+        int written = 0;
+        for (int row = 0; row < rows; row++) {
+            int toCopy = Math.min(rowBytes, pure.length - read);
+            System.arraycopy(pure, read, reconstructed, written, toCopy);
+            read += toCopy;
+            written += toCopy + rowPadding;
+        }
+        return reconstructed;
+    }
+
+    static byte[] hexToBytes(String hex) {
+        if (hex == null || hex.length() % 2 != 0) {
+            return null;
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+}
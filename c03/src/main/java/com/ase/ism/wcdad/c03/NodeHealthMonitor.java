@@ -0,0 +1,194 @@
+package com.ase.ism.wcdad.c03;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Probes SSH reachability of the MPI nodes in the background and caches the
+ * result, so jobs do not pay for an {@code ssh} round trip before every
+ * {@code mpiexec}. A job only probes synchronously when a node's cached state
+ * is older than the freshness window or flipped on the last probe. The probe
+ * itself runs outside the node's lock, so while one is in flight everyone else
+ * reads the cached state instead of waiting for ssh to time out.
+ */
+public class NodeHealthMonitor implements AutoCloseable {
+    private final Map<String, NodeState> nodes = new LinkedHashMap<>();
+    private final long freshnessMillis;
+    private final long probeTimeoutSeconds;
+    private final ScheduledExecutorService scheduler;
+
+    public NodeHealthMonitor(List<String> hosts, long freshnessMillis, long probeTimeoutSeconds) {
+        for (String host : hosts) {
+            nodes.put(host, new NodeState(host));
+        }
+        this.freshnessMillis = freshnessMillis;
+        this.probeTimeoutSeconds = probeTimeoutSeconds;
+        this.scheduler = Executors.newScheduledThreadPool(Math.max(1, hosts.size()), runnable -> {
+            Thread thread = new Thread(runnable, "c03-node-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start(long intervalMillis) {
+        for (NodeState node : nodes.values()) {
+            scheduler.scheduleWithFixedDelay(() -> probe(node), 0, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+        System.out.println(" [*] MPI node health monitor started for " + nodes.keySet() + " (every "
+                + intervalMillis + "ms, fresh for " + freshnessMillis + "ms).");
+    }
+
+    /**
+     * True if every node is reachable. Answers from the cache unless a node's
+     * state is stale or just flipped, in which case that node is re-probed now.
+     */
+    public boolean allNodesHealthy() {
+        boolean allHealthy = true;
+        long now = System.currentTimeMillis();
+        for (NodeState node : nodes.values()) {
+            boolean healthy;
+            boolean reprobe;
+            synchronized (node) {
+                awaitFirstProbe(node);
+                healthy = node.healthy;
+                reprobe = !node.probing && (node.flipped || now - node.lastProbeTime > freshnessMillis);
+            }
+            if (reprobe) {
+                healthy = probe(node);
+            }
+            if (!healthy) {
+                System.err.println(" [!] MPI node " + node.host + " is unreachable over SSH.");
+                allHealthy = false;
+            }
+        }
+        return allHealthy;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        for (NodeState node : nodes.values()) {
+            synchronized (node) {
+                snapshot.put(node.host, node.lastProbeTime == 0 ? "unknown"
+                        : (node.healthy ? "up" : "down") + " (" + (now - node.lastProbeTime) + "ms ago)");
+            }
+        }
+        return snapshot;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    // There is no cached state before the first probe, so callers wait for that one only.
+    private static void awaitFirstProbe(NodeState node) {
+        while (node.probing && node.lastProbeTime == 0) {
+            try {
+                node.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private boolean probe(NodeState node) {
+        synchronized (node) {
+            if (node.probing) {
+                awaitFirstProbe(node);
+                return node.healthy;
+            }
+            node.probing = true;
+        }
+        boolean healthy = false;
+        try {
+            healthy = runSshProbe(node.host);
+        } finally {
+            publish(node, healthy);
+        }
+        return healthy;
+    }
+
+    private static void publish(NodeState node, boolean healthy) {
+        synchronized (node) {
+            boolean previouslyProbed = node.lastProbeTime != 0;
+            node.flipped = previouslyProbed && healthy != node.healthy;
+            if (node.flipped || !previouslyProbed) {
+                System.out.println(healthy
+                        ? " [✓] SSH connectivity to " + node.host + " is working"
+                        : " [!] SSH connectivity to " + node.host + " is failing");
+            }
+            node.healthy = healthy;
+            node.lastProbeTime = System.currentTimeMillis();
+            node.probing = false;
+            node.notifyAll();
+        }
+    }
+
+    private boolean runSshProbe(String host) {
+        List<String> sshTestCommand = Arrays.asList(
+                "ssh",
+                "-o", "StrictHostKeyChecking=no",
+                "-o", "UserKnownHostsFile=/home/mpiuser/.ssh/known_hosts",
+                "-o", "PasswordAuthentication=no",
+                "-o", "PreferredAuthentications=publickey",
+                "-o", "IdentityFile=/home/mpiuser/.ssh/id_rsa",
+                "-o", "ConnectTimeout=10",
+                "-o", "BatchMode=yes",
+                "mpiuser@" + host,
+                "echo 'SSH test successful to " + host + "'");
+        try {
+            ProcessBuilder pb = new ProcessBuilder(sshTestCommand);
+            pb.redirectErrorStream(true);
+            Process process = pb.start();
+
+            boolean finished = process.waitFor(probeTimeoutSeconds, TimeUnit.SECONDS);
+            if (!finished) {
+                process.destroyForcibly();
+                System.err.println(" [!] SSH test to " + host + " timed out after " + probeTimeoutSeconds
+                        + " seconds");
+                return false;
+            }
+            int exitCode = process.exitValue();
+            if (exitCode == 0) {
+                return true;
+            }
+            System.err.println(" [!] SSH test to " + host + " failed with exit code: " + exitCode);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                System.err.println(" [!] SSH test output for " + host + ":");
+                while ((line = reader.readLine()) != null) {
+                    System.err.println("     " + line);
+                }
+            }
+            return false;
+        } catch (IOException e) {
+            System.err.println(" [!] Exception during SSH test to " + host + ": " + e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static class NodeState {
+        final String host;
+        boolean healthy;
+        boolean flipped;
+        boolean probing;
+        long lastProbeTime;
+
+        NodeState(String host) {
+            this.host = host;
+        }
+    }
+}
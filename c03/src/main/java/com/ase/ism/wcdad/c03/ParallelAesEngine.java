@@ -0,0 +1,252 @@
+package com.ase.ism.wcdad.c03;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Multi-core AES over memory-mapped files for images whose rows need no
+ * padding, so the cipher text is one contiguous range of the file. The range
+ * is split into block-aligned segments processed on a ForkJoinPool. CBC
+ * decryption parallelizes because each segment only needs the cipher block
+ * before it as its IV. The PKCS#7 padding is checked on the last block
+ * once all segments are done. ECB runs this way in both directions; CBC
+ * encryption is serial and stays on the other paths. The output follows the
+ * same layout rules as {@link JvmAesProcessor} and the native program.
+ */
+public final class ParallelAesEngine {
+    private static final int HEADERS_SIZE = 54;
+    private static final int AES_BLOCK_SIZE = 16;
+
+    private final ForkJoinPool pool;
+    private final int segmentBytes;
+
+    public ParallelAesEngine(int parallelism, int segmentBytes) {
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+        this.segmentBytes = Math.max(AES_BLOCK_SIZE, segmentBytes / AES_BLOCK_SIZE * AES_BLOCK_SIZE);
+    }
+
+    /**
+     * Processes {@code input} into {@code output}, or returns false without
+     * touching {@code output} if the job needs another path. Throws
+     * {@link BadPaddingException} when CBC decryption finds invalid padding,
+     * i.e. on a wrong key.
+     */
+    public boolean process(Path input, Path output, String operation, int keySize, String mode, String keyHex,
+            String ivHex) throws IOException, GeneralSecurityException {
+        boolean decrypt = "decrypt".equals(operation);
+        boolean cbc = "CBC".equalsIgnoreCase(mode);
+        if ((!decrypt && (cbc || !"encrypt".equals(operation))) || (!cbc && !"ECB".equalsIgnoreCase(mode))) {
+            return false;
+        }
+        byte[] key = JvmAesProcessor.hexToBytes(keyHex);
+        byte[] iv = cbc ? JvmAesProcessor.hexToBytes(ivHex) : null;
+        if (key == null || key.length * 8 != keySize || (keySize != 128 && keySize != 192 && keySize != 256)
+                || (cbc && (iv == null || iv.length != AES_BLOCK_SIZE))) {
+            return false;
+        }
+
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+            if (in.size() < HEADERS_SIZE) {
+                return false;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADERS_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(in, header, 0);
+            int offsetData = header.getInt(10);
+            int width = header.getInt(18);
+            int height = header.getInt(22);
+            int bitCount = header.getShort(28) & 0xFFFF;
+            long sizeImage = header.getInt(34) & 0xFFFFFFFFL;
+            if ((header.getShort(0) & 0xFFFF) != 0x4D42 || (bitCount != 24 && bitCount != 32)
+                    || header.getInt(30) != 0 || width <= 0 || height == 0 || offsetData < HEADERS_SIZE) {
+                return false;
+            }
+            long rowBytes = (long) width * (bitCount / 8);
+            if (rowBytes % 4 != 0) {
+                // Padded rows interleave pixels and padding; the other paths strip it.
+                return false;
+            }
+            long trueOriginalSize = Math.abs((long) height) * rowBytes;
+            long expected = sizeImage != 0 ? sizeImage : trueOriginalSize;
+            long dataLength = Math.max(0, Math.min(expected, in.size() - offsetData));
+
+            long outputLength;
+            if (cbc) {
+                if (dataLength == 0 || dataLength % AES_BLOCK_SIZE != 0) {
+                    return false;
+                }
+                outputLength = dataLength;
+            } else {
+                if (dataLength == 0 || dataLength < trueOriginalSize) {
+                    return false;
+                }
+                outputLength = trueOriginalSize;
+            }
+
+            String transformation = cbc ? "AES/CBC/NoPadding" : "AES/ECB/NoPadding";
+            SecretKeySpec keySpec = new SecretKeySpec(key, "AES");
+            int cipherMode = decrypt ? Cipher.DECRYPT_MODE : Cipher.ENCRYPT_MODE;
+            try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                // Size the output up front so the segments' mappings never have to grow the file.
+                out.write(ByteBuffer.wrap(new byte[1]), HEADERS_SIZE + outputLength - 1);
+                pool.invoke(new SegmentTask(in, out, offsetData, 0, outputLength, transformation, keySpec, iv,
+                        cipherMode, dataLength));
+
+                long plainLength = outputLength;
+                if (cbc) {
+                    plainLength -= checkPkcs7Padding(out, outputLength);
+                }
+                out.truncate(HEADERS_SIZE + plainLength);
+                if (plainLength == 0) {
+                    out.truncate(0);
+                    return true;
+                }
+                header.putInt(2, (int) (offsetData + plainLength));
+                header.putInt(34, (int) plainLength);
+                header.position(0);
+                long position = 0;
+                while (header.hasRemaining()) {
+                    position += out.write(header, position);
+                }
+            } catch (RuntimeException e) {
+                for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                    if (cause instanceof GeneralSecurityException) {
+                        throw (GeneralSecurityException) cause;
+                    }
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                }
+                throw e;
+            }
+        }
+        return true;
+    }
+
+    public void close() {
+        pool.shutdown();
+    }
+
+    private static int checkPkcs7Padding(FileChannel out, long length) throws IOException, BadPaddingException {
+        ByteBuffer lastBlock = ByteBuffer.allocate(AES_BLOCK_SIZE);
+        readFully(out, lastBlock, HEADERS_SIZE + length - AES_BLOCK_SIZE);
+        int padding = lastBlock.get(AES_BLOCK_SIZE - 1) & 0xFF;
+        if (padding < 1 || padding > AES_BLOCK_SIZE) {
+            throw new BadPaddingException("bad decrypt");
+        }
+        for (int i = AES_BLOCK_SIZE - padding; i < AES_BLOCK_SIZE; i++) {
+            if ((lastBlock.get(i) & 0xFF) != padding) {
+                throw new BadPaddingException("bad decrypt");
+            }
+        }
+        return padding;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file at " + (position + buffer.position()));
+            }
+        }
+    }
+
+    /**
+     * Processes output bytes [start, end) of the pixel data. ECB encryption of
+     * a trailing partial block zero-pads the remaining input first, and both
+     * directions keep only the bytes that fit. A decryption block that runs
+     * past the end of the input stays zeroed, like in the native ranks.
+     */
+    private class SegmentTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel in;
+        private final FileChannel out;
+        private final long dataOffset;
+        private final long start;
+        private final long end;
+        private final String transformation;
+        private final SecretKeySpec keySpec;
+        private final byte[] iv;
+        private final int cipherMode;
+        private final long dataLength;
+
+        SegmentTask(FileChannel in, FileChannel out, long dataOffset, long start, long end, String transformation,
+                SecretKeySpec keySpec, byte[] iv, int cipherMode, long dataLength) {
+            this.in = in;
+            this.out = out;
+            this.dataOffset = dataOffset;
+            this.start = start;
+            this.end = end;
+            this.transformation = transformation;
+            this.keySpec = keySpec;
+            this.iv = iv;
+            this.cipherMode = cipherMode;
+            this.dataLength = dataLength;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > segmentBytes) {
+                List<SegmentTask> segments = new ArrayList<>();
+                for (long segmentStart = start; segmentStart < end; segmentStart += segmentBytes) {
+                    segments.add(new SegmentTask(in, out, dataOffset, segmentStart,
+                            Math.min(end, segmentStart + segmentBytes), transformation, keySpec, iv, cipherMode,
+                            dataLength));
+                }
+                invokeAll(segments);
+                return;
+            }
+            try {
+                processSegment();
+            } catch (IOException | GeneralSecurityException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private void processSegment() throws IOException, GeneralSecurityException {
+            long length = end - start;
+            long alignedLength = length / AES_BLOCK_SIZE * AES_BLOCK_SIZE;
+            MappedByteBuffer source = in.map(FileChannel.MapMode.READ_ONLY, dataOffset + start,
+                    Math.min(length + AES_BLOCK_SIZE, dataLength - start));
+            MappedByteBuffer target = out.map(FileChannel.MapMode.READ_WRITE, HEADERS_SIZE + start, length);
+
+            Cipher cipher = Cipher.getInstance(transformation);
+            if (iv != null) {
+                byte[] segmentIv = iv;
+                if (start > 0) {
+                    segmentIv = new byte[AES_BLOCK_SIZE];
+                    readFully(in, ByteBuffer.wrap(segmentIv), dataOffset + start - AES_BLOCK_SIZE);
+                }
+                cipher.init(cipherMode, keySpec, new IvParameterSpec(segmentIv));
+            } else {
+                cipher.init(cipherMode, keySpec);
+            }
+
+            if (alignedLength > 0) {
+                cipher.doFinal(source.slice(0, (int) alignedLength), target.slice(0, (int) alignedLength));
+            }
+            int available = (int) Math.min(AES_BLOCK_SIZE, source.capacity() - alignedLength);
+            if (length > alignedLength && (cipherMode == Cipher.ENCRYPT_MODE || available == AES_BLOCK_SIZE)) {
+                byte[] lastBlock = new byte[AES_BLOCK_SIZE];
+                source.get((int) alignedLength, lastBlock, 0, available);
+                byte[] processed = cipher.doFinal(lastBlock);
+                target.put((int) alignedLength, processed, 0, (int) (length - alignedLength));
+            }
+        }
+    }
+}
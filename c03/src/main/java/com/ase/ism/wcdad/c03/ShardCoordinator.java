@@ -0,0 +1,324 @@
+package com.ase.ism.wcdad.c03;
+
+import com.ase.ism.wcdad.common.JobSharding;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.BuiltinExchangeType;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.Delivery;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+
+public class ShardCoordinator implements AutoCloseable {
+    private static final String MEMBERSHIP_EXCHANGE_NAME = "c03_membership_exchange";
+    private static final long HEARTBEAT_INTERVAL_MS = 2000;
+    private static final long DRAINING_REQUEUE_DELAY_MS = 250;
+    private static final int MAX_PREFETCH = 65535;
+
+    public interface ChunkHandler {
+        void handle(int shard, Channel channel, Delivery delivery) throws IOException;
+    }
+
+    private final Connection connection;
+    private final ObjectMapper objectMapper;
+    private final String instanceId;
+    private final int shardCount;
+    private final long memberTtlMillis;
+    private final int prefetch;
+    private final ChunkHandler handler;
+    private final IntPredicate shardBusy;
+    private final Map<String, Long> membersLastSeen = new ConcurrentHashMap<>();
+    private final Map<Integer, ShardClaim> claims = new ConcurrentHashMap<>();
+    private final Set<Integer> drainingShards = ConcurrentHashMap.newKeySet();
+    private final Map<String, HeldDelivery> heldDeliveries = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "c03-shard-coordinator");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Channel membershipChannel;
+
+    public ShardCoordinator(Connection connection, ObjectMapper objectMapper, String instanceId, int shardCount,
+            long memberTtlMillis, int prefetch, ChunkHandler handler, IntPredicate shardBusy) {
+        this.connection = connection;
+        this.objectMapper = objectMapper;
+        this.instanceId = instanceId;
+        this.shardCount = shardCount;
+        this.memberTtlMillis = memberTtlMillis;
+        this.prefetch = prefetch;
+        this.handler = handler;
+        this.shardBusy = shardBusy;
+    }
+
+    public void start() throws IOException {
+        membershipChannel = connection.createChannel();
+        membershipChannel.exchangeDeclare(MEMBERSHIP_EXCHANGE_NAME, BuiltinExchangeType.FANOUT, false);
+        String membershipQueue = membershipChannel.queueDeclare().getQueue();
+        membershipChannel.queueBind(membershipQueue, MEMBERSHIP_EXCHANGE_NAME, "");
+        membershipChannel.basicConsume(membershipQueue, true, (consumerTag, delivery) -> {
+            try {
+                Map<?, ?> message = objectMapper.readValue(delivery.getBody(), Map.class);
+                String memberId = (String) message.get("instanceId");
+                if (memberId == null || memberId.equals(instanceId)) {
+                    return;
+                }
+                if ("leave".equals(message.get("type"))) {
+                    if (membersLastSeen.remove(memberId) != null) {
+                        System.out.println(" [i] C03 instance " + memberId + " left. Rebalancing shards.");
+                        scheduler.execute(this::rebalance);
+                    }
+                } else if (membersLastSeen.put(memberId, System.currentTimeMillis()) == null) {
+                    System.out.println(" [i] C03 instance " + memberId + " joined. Rebalancing shards.");
+                    scheduler.execute(this::rebalance);
+                }
+            } catch (IOException e) {
+                System.err.println(" [!] Ignoring malformed membership message: " + e.getMessage());
+            }
+        }, consumerTag -> {
+        });
+
+        scheduler.scheduleWithFixedDelay(() -> publishMembership("heartbeat"), 0, HEARTBEAT_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::rebalance, HEARTBEAT_INTERVAL_MS * 2, HEARTBEAT_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+        System.out.println(" [*] C03 instance " + instanceId + " coordinating " + shardCount + " job shard(s).");
+    }
+
+    public boolean isDraining(int shard) {
+        return drainingShards.contains(shard);
+    }
+
+    public void requeueLater(Channel channel, long deliveryTag) {
+        scheduler.schedule(() -> {
+            try {
+                if (channel.isOpen()) {
+                    channel.basicNack(deliveryTag, false, true);
+                }
+            } catch (IOException e) {
+                System.err.println(" [!] Failed to requeue held-back delivery: " + e.getMessage());
+            }
+        }, DRAINING_REQUEUE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Leaves a delivery unacked until {@link #ackHeld(String)}. Meanwhile the
+     * shard channel's prefetch grows by one, so held deliveries never use up
+     * the window the shard needs for the rest of its chunks.
+     */
+    public void hold(String jobId, int shard, Channel channel, long deliveryTag) {
+        HeldDelivery held = new HeldDelivery(channel, deliveryTag, shard);
+        HeldDelivery previous = heldDeliveries.put(jobId, held);
+        if (previous != null) {
+            adjustPrefetch(previous, -1);
+        }
+        adjustPrefetch(held, 1);
+    }
+
+    /** True while the job's held delivery is still unacked on an open channel. */
+    public boolean isHolding(String jobId) {
+        HeldDelivery held = heldDeliveries.get(jobId);
+        return held != null && held.channel.isOpen();
+    }
+
+    public void ackHeld(String jobId) {
+        HeldDelivery held = heldDeliveries.remove(jobId);
+        if (held == null || !held.channel.isOpen()) {
+            return;
+        }
+        try {
+            held.channel.basicAck(held.deliveryTag, false);
+        } catch (IOException e) {
+            System.err.println(" [!] Job " + jobId + ": Failed to ack held delivery: " + e.getMessage());
+        }
+        adjustPrefetch(held, -1);
+    }
+
+    /** Stops holding the delivery without acking it, for a caller that nacks it instead. */
+    public void forgetHeld(String jobId, Channel channel, long deliveryTag) {
+        HeldDelivery held = heldDeliveries.get(jobId);
+        if (held != null && held.channel == channel && held.deliveryTag == deliveryTag
+                && heldDeliveries.remove(jobId, held)) {
+            adjustPrefetch(held, -1);
+        }
+    }
+
+    public List<Integer> ownedShards() {
+        List<Integer> owned = new ArrayList<>(claims.keySet());
+        Collections.sort(owned);
+        return owned;
+    }
+
+    @Override
+    public void close() {
+        publishMembership("leave");
+        scheduler.shutdownNow();
+        for (Integer shard : new ArrayList<>(claims.keySet())) {
+            release(shard);
+        }
+    }
+
+    private void publishMembership(String type) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(Map.of("instanceId", instanceId, "type", type));
+            membershipChannel.basicPublish(MEMBERSHIP_EXCHANGE_NAME, "", null, body);
+        } catch (Exception e) {
+            System.err.println(" [!] Failed to publish C03 membership " + type + ": " + e.getMessage());
+        }
+    }
+
+    synchronized void rebalance() {
+        long now = System.currentTimeMillis();
+        membersLastSeen.entrySet().removeIf(entry -> {
+            if (now - entry.getValue() > memberTtlMillis) {
+                System.out.println(" [i] C03 instance " + entry.getKey() + " missed its heartbeats. Removing it.");
+                return true;
+            }
+            return false;
+        });
+        List<String> members = new ArrayList<>(membersLastSeen.keySet());
+        members.add(instanceId);
+
+        for (int shard = 0; shard < shardCount; shard++) {
+            boolean shouldOwn = instanceId.equals(JobSharding.ownerOf(shard, members));
+            ShardClaim claim = claims.get(shard);
+            if (claim != null && !claim.channel.isOpen()) {
+                claims.remove(shard);
+                drainingShards.remove(shard);
+                claim = null;
+            }
+            if (shouldOwn) {
+                drainingShards.remove(shard);
+                if (claim == null) {
+                    tryClaim(shard);
+                }
+            } else if (claim != null) {
+                if (shardBusy.test(shard) || hasHeldDeliveries(shard)) {
+                    if (drainingShards.add(shard)) {
+                        System.out.println(" [i] Draining shard " + shard
+                                + " before handing it over. In-flight jobs will finish here.");
+                    }
+                } else {
+                    release(shard);
+                }
+            }
+        }
+    }
+
+    private void tryClaim(int shard) {
+        String queueName = JobSharding.queueName(shard);
+        Channel channel = null;
+        try {
+            channel = connection.createChannel();
+            // Channel-wide, so adjustPrefetch can widen it for the consumer that is already running.
+            channel.basicQos(prefetch, true);
+            channel.queueDeclare(queueName, true, false, false, null);
+            channel.queueBind(queueName, JobSharding.EXCHANGE_NAME, JobSharding.routingKey(shard));
+            Channel claimChannel = channel;
+            String consumerTag = "c03-" + instanceId + "-" + shard;
+            // Registered before consuming: deliveries can arrive before basicConsume returns and may be held.
+            ShardClaim claim = new ShardClaim(channel, consumerTag);
+            claims.put(shard, claim);
+            try {
+                channel.basicConsume(queueName, false, consumerTag, false, true, null,
+                        (tag, delivery) -> handler.handle(shard, claimChannel, delivery),
+                        tag -> System.out.println(" [i] Consumer " + tag + " for shard " + shard + " cancelled."));
+            } catch (IOException e) {
+                claims.remove(shard, claim);
+                throw e;
+            }
+            System.out.println(" [ok] Claimed job shard " + shard + " (queue " + queueName + ").");
+        } catch (IOException e) {
+            // Exclusive consume is refused while the previous owner is still draining the shard.
+            closeQuietly(channel);
+        }
+    }
+
+    private void release(int shard) {
+        ShardClaim claim = claims.remove(shard);
+        drainingShards.remove(shard);
+        if (claim == null) {
+            return;
+        }
+        try {
+            if (claim.channel.isOpen()) {
+                claim.channel.basicCancel(claim.consumerTag);
+            }
+        } catch (IOException e) {
+            System.err.println(" [!] Failed to cancel consumer for shard " + shard + ": " + e.getMessage());
+        }
+        closeQuietly(claim.channel);
+        System.out.println(" [i] Released job shard " + shard + ".");
+    }
+
+    private boolean hasHeldDeliveries(int shard) {
+        for (HeldDelivery held : heldDeliveries.values()) {
+            if (held.shard == shard && held.channel.isOpen()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void adjustPrefetch(HeldDelivery held, int delta) {
+        ShardClaim claim = claims.get(held.shard);
+        // Deliveries held on an older channel for this shard went back to the queue when it closed.
+        if (claim == null || claim.channel != held.channel) {
+            return;
+        }
+        synchronized (claim) {
+            claim.heldCount = Math.max(0, claim.heldCount + delta);
+            try {
+                if (claim.channel.isOpen()) {
+                    claim.channel.basicQos(Math.min(MAX_PREFETCH, prefetch + claim.heldCount), true);
+                }
+            } catch (IOException e) {
+                System.err.println(" [!] Failed to adjust prefetch for shard " + held.shard + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static void closeQuietly(Channel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            if (channel.isOpen()) {
+                channel.close();
+            }
+        } catch (Exception ignored) {
+        }
+    }
+
+    private static class ShardClaim {
+        final Channel channel;
+        final String consumerTag;
+        int heldCount = 0;
+
+        ShardClaim(Channel channel, String consumerTag) {
+            this.channel = channel;
+            this.consumerTag = consumerTag;
+        }
+    }
+
+    private static class HeldDelivery {
+        final Channel channel;
+        final long deliveryTag;
+        final int shard;
+
+        HeldDelivery(Channel channel, long deliveryTag, int shard) {
+            this.channel = channel;
+            this.deliveryTag = deliveryTag;
+            this.shard = shard;
+        }
+    }
+}
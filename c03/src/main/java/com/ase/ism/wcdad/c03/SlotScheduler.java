@@ -0,0 +1,238 @@
+package com.ase.ism.wcdad.c03;
+
+import com.ase.ism.wcdad.common.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Runs processing jobs against the MPI slots of the hostfile instead of a
+ * fixed thread pool, so concurrent mpiexec runs never oversubscribe the
+ * nodes. Each job reserves its ranks up front, always including at least one
+ * slot on the head node, where rank 0 reads the aggregated file. Jobs that
+ * run on the head node alone can ask for all of its slots. Queued jobs are
+ * ordered shortest-first by input size, with aging: a job's size counts less
+ * the longer it waits. Smaller jobs may start ahead of one that does not fit
+ * yet, until that job has waited longer than the starvation limit. From then
+ * on, freed slots are held for it. A job's slots return to the pool when its
+ * task ends, or earlier once the task calls {@link Allocation#release()}.
+ */
+public class SlotScheduler implements AutoCloseable {
+    private final Map<String, Integer> freeSlots = new LinkedHashMap<>();
+    private final String headHost;
+    private final int headHostSlots;
+    private final int capacity;
+    private final long agingBytesPerSecond;
+    private final long starvationMillis;
+    private final List<QueuedJob> queue = new ArrayList<>();
+    private final ExecutorService runners = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "c03-job-runner");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram completionTime = new LatencyHistogram();
+    private long busySlotNanos = 0;
+    private long busySlotsSince = System.nanoTime();
+    private long windowStart = System.nanoTime();
+    private int busySlots = 0;
+    private long completedJobs = 0;
+
+    public SlotScheduler(Map<String, Integer> slotsByHost, long agingBytesPerSecond, long starvationMillis) {
+        slotsByHost.forEach((host, slots) -> freeSlots.put(host, Math.max(0, slots)));
+        this.headHost = slotsByHost.keySet().iterator().next();
+        freeSlots.put(headHost, Math.max(1, freeSlots.get(headHost)));
+        this.headHostSlots = freeSlots.get(headHost);
+        this.capacity = freeSlots.values().stream().mapToInt(Integer::intValue).sum();
+        this.agingBytesPerSecond = agingBytesPerSecond;
+        this.starvationMillis = starvationMillis;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getHeadHostSlots() {
+        return headHostSlots;
+    }
+
+    /**
+     * Queues a job that needs {@code ranks} slots, {@code headRanks} of them
+     * on the head node; {@code task} runs once they are reserved.
+     */
+    public synchronized void submit(String jobId, long sizeBytes, int ranks, int headRanks,
+            Consumer<Allocation> task) {
+        int jobHeadRanks = Math.max(1, Math.min(headRanks, headHostSlots));
+        QueuedJob job = new QueuedJob(jobId, sizeBytes, Math.max(jobHeadRanks, Math.min(ranks, capacity)),
+                jobHeadRanks, task);
+        queue.add(job);
+        System.out.println(" [i] Job " + jobId + ": Queued for " + job.ranks + " MPI slot(s) (" + sizeBytes
+                + " bytes). " + queue.size() + " job(s) waiting, " + busySlots + "/" + capacity + " slot(s) busy.");
+        dispatch();
+    }
+
+    public synchronized Map<String, Object> snapshot() {
+        long now = System.nanoTime();
+        long windowNanos = Math.max(1, now - windowStart);
+        long busyNanos = busySlotNanos + busySlots * (now - busySlotsSince);
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("queued", queue.size());
+        snapshot.put("busySlots", busySlots);
+        snapshot.put("capacity", capacity);
+        snapshot.put("slotUtilizationPercent",
+                Math.round(busyNanos * 1000.0 / ((double) windowNanos * capacity)) / 10.0);
+        snapshot.put("completedJobs", completedJobs);
+        snapshot.put("queueWait", queueWait.snapshot());
+        snapshot.put("completionTime", completionTime.snapshot());
+        return snapshot;
+    }
+
+    /** Starts a new utilization window; queue wait and completion histograms keep accumulating. */
+    public synchronized void resetUtilizationWindow() {
+        long now = System.nanoTime();
+        busySlotNanos = 0;
+        busySlotsSince = now;
+        windowStart = now;
+    }
+
+    @Override
+    public void close() {
+        runners.shutdown();
+    }
+
+    private void dispatch() {
+        long now = System.nanoTime();
+        List<QueuedJob> ordered = new ArrayList<>(queue);
+        Collections.sort(ordered, Comparator.comparingDouble(job -> job.score(now)));
+        for (QueuedJob job : ordered) {
+            Map<String, Integer> reserved = allocate(job.ranks, job.headRanks);
+            if (reserved != null) {
+                queue.remove(job);
+                start(job, reserved, now);
+            } else if (TimeUnit.NANOSECONDS.toMillis(now - job.enqueuedAt) > starvationMillis) {
+                // Hold further slots for this job instead of letting smaller jobs keep overtaking it.
+                return;
+            }
+        }
+    }
+
+    private Map<String, Integer> allocate(int ranks, int headRanks) {
+        int free = freeSlots.values().stream().mapToInt(Integer::intValue).sum();
+        if (free < ranks || freeSlots.get(headHost) < headRanks) {
+            return null;
+        }
+        Map<String, Integer> reserved = new LinkedHashMap<>();
+        reserved.put(headHost, headRanks);
+        int remaining = ranks - headRanks;
+        // Fill the other nodes first so head-node slots stay available for more jobs to start.
+        for (Map.Entry<String, Integer> host : freeSlots.entrySet()) {
+            if (host.getKey().equals(headHost) || remaining == 0 || host.getValue() <= 0) {
+                continue;
+            }
+            int take = Math.min(host.getValue(), remaining);
+            reserved.put(host.getKey(), take);
+            remaining -= take;
+        }
+        if (remaining > 0) {
+            reserved.put(headHost, headRanks + remaining);
+        }
+        accountBusySlots(ranks);
+        reserved.forEach((host, slots) -> freeSlots.merge(host, -slots, Integer::sum));
+        return reserved;
+    }
+
+    private void start(QueuedJob job, Map<String, Integer> reserved, long now) {
+        queueWait.recordNanos(now - job.enqueuedAt);
+        Allocation allocation = new Allocation(reserved, () -> release(job, reserved));
+        runners.submit(() -> {
+            try {
+                job.task.accept(allocation);
+            } catch (Throwable t) {
+                System.err.println(" [!] Job " + job.jobId + ": Unhandled error in scheduled task: " + t.getMessage());
+            } finally {
+                allocation.release();
+            }
+        });
+    }
+
+    private synchronized void release(QueuedJob job, Map<String, Integer> reserved) {
+        reserved.forEach((host, slots) -> freeSlots.merge(host, slots, Integer::sum));
+        accountBusySlots(-reserved.values().stream().mapToInt(Integer::intValue).sum());
+        completedJobs++;
+        completionTime.recordNanos(System.nanoTime() - job.enqueuedAt);
+        dispatch();
+    }
+
+    private void accountBusySlots(int delta) {
+        long now = System.nanoTime();
+        busySlotNanos += busySlots * (now - busySlotsSince);
+        busySlotsSince = now;
+        busySlots += delta;
+    }
+
+    public static class Allocation {
+        private final Map<String, Integer> slotsByHost;
+        private final Runnable releaseAction;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        Allocation(Map<String, Integer> slotsByHost, Runnable releaseAction) {
+            this.slotsByHost = slotsByHost;
+            this.releaseAction = releaseAction;
+        }
+
+        public Map<String, Integer> getSlotsByHost() {
+            return slotsByHost;
+        }
+
+        public int ranks() {
+            return slotsByHost.values().stream().mapToInt(Integer::intValue).sum();
+        }
+
+        /**
+         * Returns the slots to the scheduler, e.g. once the ranks are done and
+         * only the upload of the result is left. Later calls do nothing.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                releaseAction.run();
+            }
+        }
+
+        /** Hostfile contents for this allocation, head node first. */
+        public String toHostfile() {
+            StringBuilder hostfile = new StringBuilder();
+            slotsByHost.forEach((host, slots) -> hostfile.append(host).append(" slots=").append(slots).append('\n'));
+            return hostfile.toString();
+        }
+    }
+
+    private class QueuedJob {
+        final String jobId;
+        final long sizeBytes;
+        final int ranks;
+        final int headRanks;
+        final Consumer<Allocation> task;
+        final long enqueuedAt = System.nanoTime();
+
+        QueuedJob(String jobId, long sizeBytes, int ranks, int headRanks, Consumer<Allocation> task) {
+            this.jobId = jobId;
+            this.sizeBytes = sizeBytes;
+            this.ranks = ranks;
+            this.headRanks = headRanks;
+            this.task = task;
+        }
+
+        double score(long now) {
+            return sizeBytes - agingBytesPerSecond * ((now - enqueuedAt) / 1e9);
+        }
+    }
+}
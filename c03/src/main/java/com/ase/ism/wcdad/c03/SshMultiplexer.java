@@ -0,0 +1,173 @@
+package com.ase.ism.wcdad.c03;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one multiplexed SSH master connection per MPI host as a child process
+ * of the JVM, so the ssh sessions mpiexec opens to start orted reuse it instead
+ * of doing a full key exchange per job. A dead master is restarted by the
+ * watchdog, and while it is down ssh simply connects directly.
+ */
+public class SshMultiplexer implements AutoCloseable {
+    static final String SSH_OPTIONS = "-o StrictHostKeyChecking=no"
+            + " -o UserKnownHostsFile=/home/mpiuser/.ssh/known_hosts"
+            + " -o PasswordAuthentication=no"
+            + " -o PreferredAuthentications=publickey"
+            + " -o IdentityFile=/home/mpiuser/.ssh/id_rsa"
+            + " -o ConnectTimeout=10 -o ServerAliveInterval=5 -o ServerAliveCountMax=3";
+
+    private final String user;
+    private final List<String> hosts;
+    private final Path controlDir;
+    private final boolean enabled;
+    private final Map<String, Process> masters = new LinkedHashMap<>();
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "c03-ssh-multiplexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean closed = false;
+
+    public SshMultiplexer(String user, List<String> hosts, Path controlDir, boolean enabled) {
+        this.user = user;
+        this.hosts = hosts;
+        this.controlDir = controlDir;
+        this.enabled = enabled;
+    }
+
+    public void start(long checkIntervalMillis) {
+        if (!enabled) {
+            System.out.println(" [i] SSH connection multiplexing for mpiexec is disabled.");
+            return;
+        }
+        try {
+            Files.createDirectories(controlDir);
+            Files.setPosixFilePermissions(controlDir, PosixFilePermissions.fromString("rwx------"));
+        } catch (IOException | UnsupportedOperationException e) {
+            System.err.println(" [!] Failed to prepare SSH control directory " + controlDir + ": " + e.getMessage());
+        }
+        watchdog.scheduleWithFixedDelay(this::ensureMasters, 0, checkIntervalMillis, TimeUnit.MILLISECONDS);
+        System.out.println(" [*] SSH multiplexing started for " + hosts + " (control sockets in " + controlDir + ").");
+    }
+
+    /** The ssh command mpiexec should use as its rsh agent. */
+    public String rshAgent() {
+        if (!enabled) {
+            return "ssh " + SSH_OPTIONS;
+        }
+        return "ssh " + SSH_OPTIONS + " -o ControlMaster=no -o ControlPath=" + controlPath();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        for (String host : hosts) {
+            Process master = masters.get(host);
+            snapshot.put(host, master != null && master.isAlive() ? "up" : "down");
+        }
+        return snapshot;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        watchdog.shutdownNow();
+        synchronized (this) {
+            for (Map.Entry<String, Process> master : masters.entrySet()) {
+                runControlCommand(master.getKey(), "exit");
+                master.getValue().destroy();
+            }
+            masters.clear();
+        }
+    }
+
+    private synchronized void ensureMasters() {
+        for (String host : hosts) {
+            if (closed) {
+                return;
+            }
+            Process master = masters.get(host);
+            if (master != null && master.isAlive() && runControlCommand(host, "check")) {
+                continue;
+            }
+            if (master != null) {
+                master.destroyForcibly();
+                System.err.println(" [!] SSH master connection to " + host + " is gone. Re-establishing it.");
+            }
+            try {
+                masters.put(host, startMaster(host));
+            } catch (IOException e) {
+                masters.remove(host);
+                System.err.println(" [!] Failed to start SSH master connection to " + host + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private Process startMaster(String host) throws IOException {
+        deleteStaleControlSockets(host);
+        List<String> command = new ArrayList<>();
+        command.add("ssh");
+        command.addAll(Arrays.asList(SSH_OPTIONS.split(" ")));
+        command.addAll(Arrays.asList("-o", "BatchMode=yes", "-o", "ControlMaster=yes",
+                "-o", "ControlPath=" + controlPath(), "-N", user + "@" + host));
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectErrorStream(true);
+        pb.redirectOutput(ProcessBuilder.Redirect.appendTo(new File(controlDir.toFile(), "master-" + host + ".log")));
+        Process master = pb.start();
+        System.out.println(" [✓] Started SSH master connection to " + host + " (pid " + master.pid() + ")");
+        return master;
+    }
+
+    /**
+     * A master killed by destroyForcibly leaves its socket behind, and a new
+     * master then runs with multiplexing disabled, so every launch would go
+     * back to a full handshake.
+     */
+    private void deleteStaleControlSockets(String host) throws IOException {
+        String prefix = user + "@" + host + ":";
+        try (DirectoryStream<Path> sockets = Files.newDirectoryStream(controlDir, prefix + "*")) {
+            for (Path socket : sockets) {
+                Files.deleteIfExists(socket);
+            }
+        }
+    }
+
+    private boolean runControlCommand(String host, String controlCommand) {
+        try {
+            Process process = new ProcessBuilder("ssh", "-o", "ControlPath=" + controlPath(), "-O", controlCommand,
+                    user + "@" + host).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return false;
+            }
+            return process.exitValue() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private String controlPath() {
+        return Paths.get(controlDir.toString(), "%r@%h:%p").toString();
+    }
+}
@@ -0,0 +1,267 @@
+package com.ase.ism.wcdad.c03;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Drives a long-lived MPI world started once with {@code process_image --serve}
+ * and feeds it jobs over a Unix socket, so a job does not pay for mpiexec,
+ * orted and MPI_Init. The world runs one job at a time. When it is busy,
+ * still starting, or dies mid-job, {@link #submit} returns null and the caller
+ * runs its own mpiexec instead. A health check restarts a dead or unresponsive
+ * world.
+ *
+ * <p>Protocol, one line per message: {@code PING} / {@code PONG},
+ * {@code JOB\tjobId\tkeyHex\tinput\toutput\toperation\tkeySize\tmode[\tiv]} /
+ * {@code DONE\tjobId\texitCode}, and {@code QUIT}.
+ */
+public class WorkerPoolClient implements AutoCloseable {
+    private final List<String> launchCommand;
+    private final Path socketPath;
+    private final long startTimeoutMillis;
+    private final long jobTimeoutMillis;
+    private final long busyWaitMillis;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final ScheduledExecutorService supervisor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "c03-mpi-worker-supervisor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService responseReader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "c03-mpi-worker-reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Process world;
+    private SocketChannel connection;
+    private BufferedReader responses;
+    private OutputStream requests;
+    private volatile boolean ready = false;
+    private volatile boolean closed = false;
+
+    public WorkerPoolClient(List<String> launchCommand, Path socketPath, long startTimeoutMillis,
+            long jobTimeoutMillis, long busyWaitMillis) {
+        this.launchCommand = launchCommand;
+        this.socketPath = socketPath;
+        this.startTimeoutMillis = startTimeoutMillis;
+        this.jobTimeoutMillis = jobTimeoutMillis;
+        this.busyWaitMillis = busyWaitMillis;
+    }
+
+    public void start(long healthCheckIntervalMillis) {
+        supervisor.scheduleWithFixedDelay(this::checkHealth, 0, healthCheckIntervalMillis, TimeUnit.MILLISECONDS);
+        System.out.println(" [*] MPI worker pool enabled (socket " + socketPath + ", health check every "
+                + healthCheckIntervalMillis + "ms).");
+    }
+
+    /**
+     * Runs a job on the worker world and returns its exit code, or null if the
+     * world could not take or finish it and the caller should fall back to mpiexec.
+     * A key that is not {@code keySize} bits of hex is never put on the socket.
+     */
+    public Integer submit(String jobId, String keyHex, int keySize, List<String> jobArgs)
+            throws InterruptedException {
+        if (!isHexKey(keyHex, keySize) || !isProtocolSafe(jobId)) {
+            System.err.println(" [!] Job " + jobId + ": Key or job id cannot be sent to the MPI worker pool.");
+            return null;
+        }
+        StringBuilder request = new StringBuilder("JOB\t").append(jobId).append('\t').append(keyHex);
+        for (String arg : jobArgs) {
+            if (!isProtocolSafe(arg)) {
+                return null;
+            }
+            request.append('\t').append(arg);
+        }
+        if (!ready || !lock.tryLock(busyWaitMillis, TimeUnit.MILLISECONDS)) {
+            return null;
+        }
+        try {
+            if (!ready) {
+                return null;
+            }
+            System.out.println(" [>] Job " + jobId + ": Dispatching to MPI worker pool.");
+            String response = exchange(request.toString(), jobTimeoutMillis);
+            String[] fields = response != null ? response.split("\t") : new String[0];
+            if (fields.length == 3 && "DONE".equals(fields[0]) && jobId.equals(fields[1])) {
+                return Integer.parseInt(fields[2]);
+            }
+            System.err.println(" [!] Job " + jobId + ": MPI worker pool failed the job (response: " + response
+                    + "). The worker world will be restarted.");
+            stopWorld();
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static boolean isHexKey(String keyHex, int keySize) {
+        if (keyHex == null || (keySize != 128 && keySize != 192 && keySize != 256)
+                || keyHex.length() != keySize / 4) {
+            return false;
+        }
+        for (int i = 0; i < keyHex.length(); i++) {
+            char c = keyHex.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f') && (c < 'A' || c > 'F')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isProtocolSafe(String field) {
+        return field != null && field.indexOf('\t') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        supervisor.shutdownNow();
+        lock.lock();
+        try {
+            if (ready) {
+                try {
+                    requests.write("QUIT\n".getBytes(StandardCharsets.UTF_8));
+                    requests.flush();
+                    world.waitFor(5, TimeUnit.SECONDS);
+                } catch (IOException e) {
+                    // The world is torn down below anyway.
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            stopWorld();
+        } finally {
+            lock.unlock();
+            responseReader.shutdownNow();
+        }
+    }
+
+    private void checkHealth() {
+        if (closed || !lock.tryLock()) {
+            return;
+        }
+        try {
+            if (ready && world.isAlive() && "PONG".equals(exchange("PING", 5000))) {
+                return;
+            }
+            if (ready) {
+                System.err.println(" [!] MPI worker pool is unresponsive. Restarting it.");
+            }
+            restart();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private String exchange(String request, long timeoutMillis) throws InterruptedException {
+        try {
+            requests.write((request + "\n").getBytes(StandardCharsets.UTF_8));
+            requests.flush();
+            Future<String> response = responseReader.submit(responses::readLine);
+            return response.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            System.err.println(" [!] MPI worker pool request failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void restart() throws InterruptedException {
+        stopWorld();
+        if (closed) {
+            return;
+        }
+        try {
+            Files.createDirectories(socketPath.getParent());
+            Files.deleteIfExists(socketPath);
+            ProcessBuilder processBuilder = new ProcessBuilder(launchCommand);
+            processBuilder.redirectErrorStream(true);
+            world = processBuilder.start();
+            Process startedWorld = world;
+            Thread outputPump = new Thread(() -> pumpOutput(startedWorld), "c03-mpi-worker-output");
+            outputPump.setDaemon(true);
+            outputPump.start();
+
+            long deadline = System.currentTimeMillis() + startTimeoutMillis;
+            while (!Files.exists(socketPath)) {
+                if (!world.isAlive() || System.currentTimeMillis() > deadline) {
+                    throw new IOException("MPI worker world did not open " + socketPath + " within "
+                            + startTimeoutMillis + "ms");
+                }
+                Thread.sleep(200);
+            }
+            connection = SocketChannel.open(StandardProtocolFamily.UNIX);
+            connection.connect(UnixDomainSocketAddress.of(socketPath));
+            responses = new BufferedReader(new InputStreamReader(Channels.newInputStream(connection),
+                    StandardCharsets.UTF_8));
+            requests = Channels.newOutputStream(connection);
+            if (!"PONG".equals(exchange("PING", 5000))) {
+                throw new IOException("MPI worker world did not answer the first health check");
+            }
+            ready = true;
+            System.out.println(" [ok] MPI worker pool is up (pid " + world.pid() + ").");
+        } catch (IOException e) {
+            System.err.println(" [!] Failed to start MPI worker pool: " + e.getMessage()
+                    + ". Jobs use per-job mpiexec until it recovers.");
+            stopWorld();
+        }
+    }
+
+    private void stopWorld() {
+        ready = false;
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (IOException e) {
+                System.err.println(" [!] Error closing MPI worker pool socket: " + e.getMessage());
+            }
+            connection = null;
+        }
+        if (world != null) {
+            world.destroy();
+            try {
+                if (!world.waitFor(5, TimeUnit.SECONDS)) {
+                    world.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                world.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+            world = null;
+        }
+    }
+
+    private static void pumpOutput(Process process) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                System.out.println(" [MPI Worker Output] " + line);
+            }
+        } catch (IOException e) {
+            // The world exited; the health check takes care of restarting it.
+        }
+    }
+}
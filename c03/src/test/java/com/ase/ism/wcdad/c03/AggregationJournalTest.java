@@ -0,0 +1,253 @@
+package com.ase.ism.wcdad.c03;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ase.ism.wcdad.common.ChunkMessage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class AggregationJournalTest {
+    private static final int CHUNK_SIZE = 1024;
+    private static final String KEY = "00112233445566778899aabbccddeeff";
+    private static final byte[] METADATA = "{\"fileName\":\"a.bmp\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void replayIgnoresATornTrailingChunkRecord() throws Exception {
+        Path path = tempDir.resolve("job.journal");
+        try (AggregationJournal journal = AggregationJournal.create(path, 4, METADATA, false)) {
+            journal.recordChunk(0, CHUNK_SIZE);
+            journal.recordChunk(2, CHUNK_SIZE);
+            journal.recordChunk(1, CHUNK_SIZE);
+        }
+        long intact = Files.size(path);
+
+        // A chunk record is 9 bytes; cut the last one off at every point inside it.
+        for (long cut = intact - 8; cut < intact; cut++) {
+            Path torn = copyTruncated(path, cut);
+            AggregationJournal.Replay replay = AggregationJournal.replay(torn);
+            assertEquals(List.of(0, 2), chunkIds(replay), "cut at " + cut);
+            assertEquals(intact - 9, replay.validLength, "cut at " + cut);
+            assertEquals(4, replay.totalChunks);
+            assertArrayEquals(METADATA, replay.metadata);
+        }
+    }
+
+    @Test
+    void replayIgnoresATornDeferredLastChunkRecord() throws Exception {
+        Path path = tempDir.resolve("job.journal");
+        byte[] lastChunk = bytes(300, 7);
+        long beforeDeferred;
+        try (AggregationJournal journal = AggregationJournal.create(path, 4, METADATA, false)) {
+            journal.recordChunk(0, CHUNK_SIZE);
+            beforeDeferred = Files.size(path);
+            journal.recordDeferredLastChunk(lastChunk);
+        }
+        long intact = Files.size(path);
+        assertArrayEquals(lastChunk, AggregationJournal.replay(path).deferredLastChunk);
+        assertEquals(intact, AggregationJournal.replay(path).validLength);
+
+        for (long cut = beforeDeferred + 1; cut < intact; cut++) {
+            AggregationJournal.Replay replay = AggregationJournal.replay(copyTruncated(path, cut));
+            assertNull(replay.deferredLastChunk, "cut at " + cut);
+            assertEquals(List.of(0), chunkIds(replay), "cut at " + cut);
+            assertEquals(beforeDeferred, replay.validLength, "cut at " + cut);
+        }
+    }
+
+    @Test
+    void reopenTruncatesToTheValidLengthAndAppendsAfterIt() throws Exception {
+        Path path = tempDir.resolve("job.journal");
+        try (AggregationJournal journal = AggregationJournal.create(path, 4, METADATA, false)) {
+            journal.recordChunk(0, CHUNK_SIZE);
+            journal.recordChunk(1, CHUNK_SIZE);
+        }
+        long intact = Files.size(path);
+        // Half of a deferred-last-chunk record left behind by a crash.
+        Files.write(path, new byte[] { 'L', 0, 0, 1, 0, 9, 9 }, StandardOpenOption.APPEND);
+
+        AggregationJournal.Replay replay = AggregationJournal.replay(path);
+        assertEquals(intact, replay.validLength);
+        try (AggregationJournal reopened = AggregationJournal.reopen(path, replay, false)) {
+            assertEquals(intact, Files.size(path));
+            reopened.recordChunk(3, 17);
+            reopened.recordRegistered();
+        }
+
+        AggregationJournal.Replay again = AggregationJournal.replay(path);
+        assertEquals(List.of(0, 1, 3), chunkIds(again));
+        assertEquals(17, again.chunks.get(2)[1]);
+        assertTrue(again.registered);
+        assertNull(again.deferredLastChunk);
+        assertEquals(Files.size(path), again.validLength);
+    }
+
+    @Test
+    void recoveredAggregatorIgnoresRedeliveredChunks() throws Exception {
+        int totalChunks = 5;
+        long fileSize = (long) (totalChunks - 1) * CHUNK_SIZE + 100;
+        byte[][] chunks = new byte[totalChunks][];
+        for (int chunkId = 0; chunkId < totalChunks; chunkId++) {
+            chunks[chunkId] = bytes(chunkId == totalChunks - 1 ? 100 : CHUNK_SIZE, chunkId + 1);
+        }
+        String metadataJson = metadataJson("job", fileSize, CHUNK_SIZE);
+        C03Consumer.JobChunkAggregator crashed = new C03Consumer.JobChunkAggregator("job", mapper,
+                tempDir.toString());
+        ChunkMessage first = new ChunkMessage("job", 0, totalChunks, true, metadataJson, chunks[0]);
+        crashed.initializeMetadata(first);
+        crashed.addChunkData(first);
+        crashed.addChunkData(chunk("job", 3, totalChunks, chunks[3]));
+        crashed.addChunkData(chunk("job", 1, totalChunks, chunks[1]));
+        // The process dies here; the journal holds chunks 0, 3 and 1, none of them acked.
+
+        C03Consumer.JobChunkAggregator recovered = C03Consumer.JobChunkAggregator.recover("job", mapper,
+                tempDir.toString(), journalPathFor("job"));
+        assertEquals(3L * CHUNK_SIZE, recovered.writtenBytes());
+        assertTrue(recovered.isAwaitingKey());
+        assertTrue(recovered.restoreKey(first));
+        recovered.addChunkData(first);
+        recovered.addChunkData(chunk("job", 3, totalChunks, chunks[3]));
+        recovered.addChunkData(chunk("job", 1, totalChunks, chunks[1]));
+        assertEquals(3L * CHUNK_SIZE, recovered.writtenBytes(), "redelivered chunks must not be written again");
+        assertFalse(recovered.isComplete());
+
+        recovered.addChunkData(chunk("job", 4, totalChunks, chunks[4]));
+        recovered.addChunkData(chunk("job", 2, totalChunks, chunks[2]));
+        recovered.addChunkData(chunk("job", 2, totalChunks, chunks[2]));
+        assertTrue(recovered.isComplete());
+        assertEquals(fileSize, recovered.writtenBytes());
+        assertArrayEquals(concat(chunks), Files.readAllBytes(recovered.getAggregatedDataPath()));
+
+        AggregationJournal.Replay replay = AggregationJournal.replay(journalPathFor("job"));
+        assertEquals(List.of(0, 3, 1, 4, 2), chunkIds(replay), "every chunk is journaled exactly once");
+    }
+
+    @Test
+    void completeCheckpointAcceptsTheRedeliveredFirstChunk() throws Exception {
+        byte[][] chunks = { bytes(CHUNK_SIZE, 1), bytes(CHUNK_SIZE, 2), bytes(10, 3) };
+        String metadataJson = metadataJson("job", 2L * CHUNK_SIZE + 10, CHUNK_SIZE);
+        C03Consumer.JobChunkAggregator crashed = new C03Consumer.JobChunkAggregator("job", mapper,
+                tempDir.toString());
+        ChunkMessage first = new ChunkMessage("job", 0, 3, true, metadataJson, chunks[0]);
+        crashed.initializeMetadata(first);
+        crashed.addChunkData(first);
+        crashed.addChunkData(chunk("job", 2, 3, chunks[2]));
+        crashed.addChunkData(chunk("job", 1, 3, chunks[1]));
+        // Every chunk is on disk, but the first chunk was still held unacked when the process died.
+
+        C03Consumer.JobChunkAggregator recovered = C03Consumer.JobChunkAggregator.recover("job", mapper,
+                tempDir.toString(), journalPathFor("job"));
+        assertTrue(recovered.isComplete());
+        assertTrue(recovered.isAwaitingKey());
+        assertTrue(recovered.restoreKey(first));
+        recovered.addChunkData(first);
+        assertArrayEquals(concat(chunks), Files.readAllBytes(recovered.getAggregatedDataPath()));
+    }
+
+    @Test
+    void storedMetadataLeavesOutTheKey() throws Exception {
+        String metadataJson = metadataJson("job", 2L * CHUNK_SIZE, CHUNK_SIZE);
+        C03Consumer.JobChunkAggregator aggregator = new C03Consumer.JobChunkAggregator("job", mapper,
+                tempDir.toString());
+        aggregator.initializeMetadata(new ChunkMessage("job", 0, 2, true, metadataJson, null));
+        assertEquals(KEY, aggregator.getInitialJobDetails().getKey());
+
+        byte[] stored = AggregationJournal.replay(journalPathFor("job")).metadata;
+        assertFalse(new String(stored, StandardCharsets.UTF_8).contains(KEY));
+        JsonNode storedMetadata = mapper.readTree(stored);
+        assertFalse(storedMetadata.has("key"));
+        JsonNode original = mapper.readTree(metadataJson);
+        for (String field : List.of("fileName", "originalFileSize", "chunkSize", "mode", "keySize")) {
+            assertEquals(original.get(field), storedMetadata.get(field), field);
+        }
+
+        C03Consumer.JobChunkAggregator recovered = C03Consumer.JobChunkAggregator.recover("job", mapper,
+                tempDir.toString(), journalPathFor("job"));
+        assertNull(recovered.getInitialJobDetails().getKey());
+        assertFalse(recovered.restoreKey(new ChunkMessage("job", 0, 2, true, null, null)));
+        assertTrue(recovered.restoreKey(new ChunkMessage("job", 0, 2, true, metadataJson, null)));
+        assertNotNull(recovered.getInitialJobDetails().getKey());
+        assertFalse(recovered.isAwaitingKey());
+    }
+
+    private String metadataJson(String jobId, long fileSize, int chunkSize) throws IOException {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("fileName", jobId + ".bmp");
+        metadata.put("originalFileSize", fileSize);
+        metadata.put("operation", "encrypt");
+        metadata.put("mode", "ECB");
+        metadata.put("key", KEY);
+        metadata.put("keySize", 128);
+        metadata.put("chunkSize", chunkSize);
+        return mapper.writeValueAsString(metadata);
+    }
+
+    private Path journalPathFor(String jobId) {
+        return AggregationJournal.pathFor(tempDir.resolve(jobId + "_aggregated.dat"));
+    }
+
+    private Path copyTruncated(Path path, long length) throws IOException {
+        Path copy = tempDir.resolve("torn-" + length + ".journal");
+        Files.copy(path, copy);
+        try (FileChannel channel = FileChannel.open(copy, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        }
+        return copy;
+    }
+
+    private static ChunkMessage chunk(String jobId, int chunkId, int totalChunks, byte[] data) {
+        return new ChunkMessage(jobId, chunkId, totalChunks, false, null, data);
+    }
+
+    private static List<Integer> chunkIds(AggregationJournal.Replay replay) {
+        List<Integer> chunkIds = new ArrayList<>();
+        for (int[] record : replay.chunks) {
+            chunkIds.add(record[0]);
+        }
+        return chunkIds;
+    }
+
+    private static byte[] bytes(int length, int value) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+
+    private static byte[] concat(byte[][] chunks) {
+        int length = 0;
+        for (byte[] chunk : chunks) {
+            length += chunk.length;
+        }
+        byte[] all = new byte[length];
+        int offset = 0;
+        for (byte[] chunk : chunks) {
+            System.arraycopy(chunk, 0, all, offset, chunk.length);
+            offset += chunk.length;
+        }
+        return all;
+    }
+}
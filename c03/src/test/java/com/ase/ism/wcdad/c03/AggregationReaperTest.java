@@ -0,0 +1,93 @@
+package com.ase.ism.wcdad.c03;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ase.ism.wcdad.common.ChunkMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class AggregationReaperTest {
+    private static final long MB = 1024 * 1024;
+    private static final long IDLE_TTL_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final long MIN_IDLE_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, C03Consumer.JobChunkAggregator> activeJobs = new ConcurrentHashMap<>();
+    private final List<String> evicted = new ArrayList<>();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void pausedResumableUploadOutlivesTheDefaultTtlAndTheDiskBudget() throws Exception {
+        C03Consumer.JobChunkAggregator paused = job("paused", 64 * MB, (int) MB, TimeUnit.HOURS.toMillis(1));
+        paused.lastActivityTime -= TimeUnit.MINUTES.toMillis(30);
+        C03Consumer.JobChunkAggregator abandoned = job("abandoned", MB, (int) MB, 0);
+        abandoned.lastActivityTime -= TimeUnit.MINUTES.toMillis(30);
+
+        AggregationReaper reaper = reaper(MB);
+        reaper.sweep();
+
+        assertEquals(List.of("abandoned"), evicted);
+        assertTrue(activeJobs.containsKey("paused"));
+        assertEquals(0, paused.writtenBytes());
+        assertEquals(64 * MB, paused.reservedBytes());
+        assertFalse(reaper.isOverBudget(), "a preallocated extent must not count against the disk budget");
+    }
+
+    @Test
+    void budgetEvictionSkipsJobsThatHaveNoDataYet() throws Exception {
+        C03Consumer.JobChunkAggregator waiting = job("waiting", 64 * MB, (int) MB, TimeUnit.HOURS.toMillis(1));
+        waiting.lastActivityTime -= TimeUnit.MINUTES.toMillis(5);
+        C03Consumer.JobChunkAggregator writing = job("writing", 4 * MB, (int) MB, 0);
+        writing.addChunkData(new ChunkMessage("writing", 0, 4, false, null, new byte[(int) MB]));
+        writing.addChunkData(new ChunkMessage("writing", 1, 4, false, null, new byte[(int) MB]));
+        writing.lastActivityTime -= TimeUnit.MINUTES.toMillis(2);
+
+        AggregationReaper reaper = reaper(MB);
+        reaper.sweep();
+
+        assertEquals(List.of("writing"), evicted);
+        assertTrue(activeJobs.containsKey("waiting"));
+        assertFalse(reaper.isOverBudget());
+    }
+
+    private AggregationReaper reaper(long diskBudgetBytes) {
+        return new AggregationReaper(activeJobs, IDLE_TTL_MS, diskBudgetBytes, MB, MIN_IDLE_MS,
+                (jobId, reason) -> evicted.add(jobId));
+    }
+
+    private C03Consumer.JobChunkAggregator job(String jobId, long fileSize, int chunkSize, long idleTtlMs)
+            throws Exception {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("fileName", jobId + ".bmp");
+        metadata.put("originalFileSize", fileSize);
+        metadata.put("operation", "encrypt");
+        metadata.put("mode", "ECB");
+        metadata.put("key", "00112233445566778899aabbccddeeff");
+        metadata.put("keySize", 128);
+        metadata.put("chunkSize", chunkSize);
+        if (idleTtlMs > 0) {
+            metadata.put("idleTtlMs", idleTtlMs);
+        }
+        int totalChunks = (int) ((fileSize + chunkSize - 1) / chunkSize);
+        C03Consumer.JobChunkAggregator aggregator = new C03Consumer.JobChunkAggregator(jobId, mapper,
+                tempDir.toString());
+        aggregator.initializeMetadata(new ChunkMessage(jobId, 0, totalChunks, true,
+                mapper.writeValueAsString(metadata), null));
+        activeJobs.put(jobId, aggregator);
+        return aggregator;
+    }
+}
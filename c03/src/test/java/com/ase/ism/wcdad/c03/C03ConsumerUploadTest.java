@@ -0,0 +1,208 @@
+package com.ase.ism.wcdad.c03;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs the chunked result upload against a JDK HttpServer standing in for C05,
+ * which answers every chunk after a fixed delay.
+ */
+class C03ConsumerUploadTest {
+    private static final int CHUNK_SIZE = 256 * 1024;
+    private static final int CHUNKS = 32;
+    private static final long CHUNK_LATENCY_MS = 25;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private StubC05 c05;
+    private String previousBaseUrl;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        c05 = new StubC05();
+        previousBaseUrl = C03Consumer.c05ApiBaseUrl;
+        C03Consumer.c05ApiBaseUrl = "http://127.0.0.1:" + c05.server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopStub() {
+        C03Consumer.c05ApiBaseUrl = previousBaseUrl;
+        c05.close();
+    }
+
+    @ParameterizedTest(name = "concurrency {0}")
+    @ValueSource(ints = { 1, 4, 8 })
+    void retriesFailedChunksAndFinalizesOnlyAfterEveryAck(int concurrency) throws Exception {
+        byte[] content = randomBytes(CHUNKS * CHUNK_SIZE - 1000);
+        Path result = tempDir.resolve("result.bmp");
+        Files.write(result, content);
+        c05.failFirstAttempt.addAll(Set.of(0, 7, CHUNKS - 1));
+
+        ImageProcessingJob job = new ImageProcessingJob("job", "result.bmp", 128, null, "AES", null, "ECB",
+                "encrypt", content.length, CHUNK_SIZE, 0);
+        String pictureId = C03Consumer.sendProcessedImageToC05("job", result, job, concurrency);
+
+        assertEquals("picture-1", pictureId);
+        int totalChunks = c05.totalChunks.get();
+        assertEquals(totalChunks, c05.finalizedWithAcked.get(), "finalize must come after every chunk was acked");
+        assertEquals(0, c05.inFlightAtFinalize.get(), "no chunk may still be in flight at finalize");
+        for (int chunkId : Set.of(0, 7, CHUNKS - 1)) {
+            if (chunkId < totalChunks) {
+                assertEquals(2, c05.attempts.get(chunkId).get(), "chunk " + chunkId + " is retried once");
+            }
+        }
+        assertTrue(c05.peakInFlight.get() <= concurrency);
+        assertArrayEquals(content, c05.assembled(content.length));
+    }
+
+    /** Prints the upload time per concurrency; only a clear speed-up is asserted. */
+    @Test
+    void concurrentChunksHideC05Latency() throws Exception {
+        byte[] content = randomBytes(CHUNKS * CHUNK_SIZE);
+        Path result = tempDir.resolve("result.bmp");
+        Files.write(result, content);
+
+        // Warm-up, so the first measured run does not pay for JIT compilation.
+        C03Consumer.uploadResultChunksToC05("job", "upload-1", result, content.length, CHUNK_SIZE, CHUNKS, 8);
+        Map<Integer, Long> millis = new LinkedHashMap<>();
+        for (int concurrency : new int[] { 1, 4, 8 }) {
+            c05.reset();
+            long start = System.nanoTime();
+            assertEquals(CHUNKS, C03Consumer.uploadResultChunksToC05("job", "upload-1", result, content.length,
+                    CHUNK_SIZE, CHUNKS, concurrency));
+            millis.put(concurrency, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            assertArrayEquals(content, c05.assembled(content.length));
+            assertTrue(c05.peakInFlight.get() <= concurrency);
+        }
+        System.out.println(" [i] " + CHUNKS + " x " + CHUNK_SIZE + " byte chunks at " + CHUNK_LATENCY_MS
+                + "ms per chunk, upload time by concurrency: " + millis);
+        assertTrue(millis.get(4) * 2 < millis.get(1), "4 chunks in flight must at least halve the upload time");
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(17).nextBytes(bytes);
+        return bytes;
+    }
+
+    private class StubC05 implements AutoCloseable {
+        final HttpServer server;
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        final Map<Integer, byte[]> chunks = new ConcurrentHashMap<>();
+        final Map<Integer, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        final Set<Integer> failFirstAttempt = ConcurrentHashMap.newKeySet();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger peakInFlight = new AtomicInteger();
+        final AtomicInteger totalChunks = new AtomicInteger(-1);
+        final AtomicInteger finalizedWithAcked = new AtomicInteger(-1);
+        final AtomicInteger inFlightAtFinalize = new AtomicInteger(-1);
+
+        StubC05() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(executor);
+            server.createContext("/api/pictures/upload-capabilities", exchange -> respond(exchange, 404, "{}"));
+            server.createContext("/api/pictures/initiate-chunked-upload", exchange -> {
+                Map<?, ?> request = mapper.readValue(exchange.getRequestBody(), Map.class);
+                totalChunks.set(((Number) request.get("totalChunks")).intValue());
+                respond(exchange, 201, "{\"jobId\":\"upload-1\"}");
+            });
+            server.createContext("/api/pictures/upload-chunk", this::uploadChunk);
+            server.createContext("/api/pictures/finalize-chunked-upload", exchange -> {
+                exchange.getRequestBody().readAllBytes();
+                finalizedWithAcked.set(chunks.size());
+                inFlightAtFinalize.set(inFlight.get());
+                respond(exchange, 200, "{\"pictureId\":\"picture-1\"}");
+            });
+            server.start();
+        }
+
+        private void uploadChunk(HttpExchange exchange) throws IOException {
+            int running = inFlight.incrementAndGet();
+            peakInFlight.accumulateAndGet(running, Math::max);
+            try (InputStream body = exchange.getRequestBody()) {
+                Map<?, ?> request = mapper.readValue(body, Map.class);
+                int chunkId = ((Number) request.get("chunkId")).intValue();
+                int attempt = attempts.computeIfAbsent(chunkId, id -> new AtomicInteger()).incrementAndGet();
+                Thread.sleep(CHUNK_LATENCY_MS);
+                if (attempt == 1 && failFirstAttempt.contains(chunkId)) {
+                    respond(exchange, 503, "{\"message\":\"busy\"}");
+                    return;
+                }
+                chunks.put(chunkId, Base64.getDecoder().decode((String) request.get("chunkDataB64")));
+                // Count the chunk as acked before the response leaves.
+                inFlight.decrementAndGet();
+                running = -1;
+                respond(exchange, 200, "{}");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (running != -1) {
+                    inFlight.decrementAndGet();
+                }
+            }
+        }
+
+        byte[] assembled(int length) {
+            byte[] assembled = new byte[length];
+            int offset = 0;
+            for (int chunkId = 0; chunks.containsKey(chunkId); chunkId++) {
+                byte[] chunk = chunks.get(chunkId);
+                System.arraycopy(chunk, 0, assembled, offset, chunk.length);
+                offset += chunk.length;
+            }
+            assertEquals(length, offset);
+            return assembled;
+        }
+
+        void reset() {
+            chunks.clear();
+            attempts.clear();
+            peakInFlight.set(0);
+        }
+
+        private void respond(HttpExchange exchange, int status, String body) throws IOException {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+}
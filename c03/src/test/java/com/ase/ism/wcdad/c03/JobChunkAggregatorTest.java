@@ -0,0 +1,132 @@
+package com.ase.ism.wcdad.c03;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import com.ase.ism.wcdad.common.ChunkMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class JobChunkAggregatorTest {
+    private static final int CHUNK_SIZE = 4096;
+    private static final int TOTAL_CHUNKS = 9;
+    private static final int LAST_CHUNK_LENGTH = 1234;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest(name = "chunkSize in metadata {0}, seed {1}")
+    @CsvSource({ "true, 1", "true, 2", "true, 3", "false, 1", "false, 2", "false, 3" })
+    void outOfOrderDeliveryWithDuplicatesAssemblesTheFile(boolean chunkSizeInMetadata, long seed) throws Exception {
+        byte[] content = randomBytes((TOTAL_CHUNKS - 1) * CHUNK_SIZE + LAST_CHUNK_LENGTH, seed);
+        C03Consumer.JobChunkAggregator aggregator = aggregator("job", content.length,
+                chunkSizeInMetadata ? CHUNK_SIZE : 0, TOTAL_CHUNKS);
+
+        Random random = new Random(seed);
+        List<Integer> order = new ArrayList<>();
+        for (int chunkId = 0; chunkId < TOTAL_CHUNKS; chunkId++) {
+            order.add(chunkId);
+        }
+        Collections.shuffle(order, random);
+        // The last chunk comes first, so without a chunk size in the metadata it has to be held back.
+        order.remove(Integer.valueOf(TOTAL_CHUNKS - 1));
+        order.add(0, TOTAL_CHUNKS - 1);
+        for (int i = 0; i < 6; i++) {
+            int duplicate = order.get(random.nextInt(order.size()));
+            order.add(order.indexOf(duplicate) + 1 + random.nextInt(order.size() - order.indexOf(duplicate)),
+                    duplicate);
+        }
+        order.add(1, TOTAL_CHUNKS - 1);
+
+        Set<Integer> delivered = new HashSet<>();
+        for (int chunkId : order) {
+            aggregator.addChunkData(chunk("job", chunkId, content));
+            delivered.add(chunkId);
+            assertEquals(delivered.size() == TOTAL_CHUNKS, aggregator.isComplete(), "after chunks " + delivered);
+        }
+
+        assertTrue(aggregator.isComplete());
+        assertEquals(content.length, aggregator.writtenBytes(), "duplicates must not be written twice");
+        assertArrayEquals(content, Files.readAllBytes(aggregator.getAggregatedDataPath()));
+    }
+
+    @Test
+    void singleChunkJobWithoutChunkSizeIsWrittenAtOffsetZero() throws Exception {
+        byte[] content = randomBytes(LAST_CHUNK_LENGTH, 7);
+        C03Consumer.JobChunkAggregator aggregator = aggregator("single", content.length, 0, 1);
+
+        aggregator.addChunkData(new ChunkMessage("single", 0, 1, false, null, content));
+
+        assertTrue(aggregator.isComplete());
+        assertArrayEquals(content, Files.readAllBytes(aggregator.getAggregatedDataPath()));
+    }
+
+    @ParameterizedTest(name = "chunkSize in metadata {0}")
+    @CsvSource({ "true", "false" })
+    void overstatedFileSizeIsTruncatedToTheAssembledLength(boolean chunkSizeInMetadata) throws Exception {
+        byte[] content = randomBytes((TOTAL_CHUNKS - 1) * CHUNK_SIZE + LAST_CHUNK_LENGTH, 11);
+        C03Consumer.JobChunkAggregator aggregator = aggregator("job", content.length + 3L * CHUNK_SIZE,
+                chunkSizeInMetadata ? CHUNK_SIZE : 0, TOTAL_CHUNKS);
+        assertEquals(content.length + 3L * CHUNK_SIZE, aggregator.reservedBytes());
+
+        for (int chunkId = TOTAL_CHUNKS - 1; chunkId >= 0; chunkId--) {
+            aggregator.addChunkData(chunk("job", chunkId, content));
+        }
+
+        Path assembled = aggregator.getAggregatedDataPath();
+        assertEquals(content.length, Files.size(assembled));
+        assertArrayEquals(content, Files.readAllBytes(assembled));
+    }
+
+    private C03Consumer.JobChunkAggregator aggregator(String jobId, long fileSize, int chunkSize, int totalChunks)
+            throws Exception {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("fileName", jobId + ".bmp");
+        metadata.put("originalFileSize", fileSize);
+        metadata.put("operation", "encrypt");
+        metadata.put("mode", "ECB");
+        metadata.put("key", "00112233445566778899aabbccddeeff");
+        metadata.put("keySize", 128);
+        if (chunkSize > 0) {
+            metadata.put("chunkSize", chunkSize);
+        }
+        C03Consumer.JobChunkAggregator aggregator = new C03Consumer.JobChunkAggregator(jobId, mapper,
+                tempDir.toString());
+        // A metadata-only first message, so every data chunk can arrive in any order.
+        aggregator.initializeMetadata(new ChunkMessage(jobId, 0, totalChunks, true,
+                mapper.writeValueAsString(metadata), null));
+        return aggregator;
+    }
+
+    private static ChunkMessage chunk(String jobId, int chunkId, byte[] content) {
+        int offset = chunkId * CHUNK_SIZE;
+        int length = Math.min(CHUNK_SIZE, content.length - offset);
+        byte[] data = new byte[length];
+        System.arraycopy(content, offset, data, 0, length);
+        return new ChunkMessage(jobId, chunkId, TOTAL_CHUNKS, false, null, data);
+    }
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
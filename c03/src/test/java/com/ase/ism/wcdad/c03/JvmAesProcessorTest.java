@@ -0,0 +1,202 @@
+package com.ase.ism.wcdad.c03;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+
+import javax.crypto.BadPaddingException;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Cross-checks {@link JvmAesProcessor} against the native {@code process_image}
+ * program. The expected SHA-256 of every output file, headers included, is in
+ * {@code native-aes-digests.properties}, recorded from the native program.
+ */
+class JvmAesProcessorTest {
+    static final Path NATIVE_APP = Paths.get("native_app");
+    static final String IV = "a0a1a2a3a4a5a6a7a8a9aaabacadaeaf";
+    static final String[] PLAIN_INPUTS = { "test", "padded24", "topdown32" };
+
+    private static Properties nativeDigests;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void loadNativeDigests() throws IOException {
+        nativeDigests = new Properties();
+        try (InputStream in = JvmAesProcessorTest.class.getResourceAsStream("/native-aes-digests.properties")) {
+            nativeDigests.load(in);
+        }
+    }
+
+    static List<Arguments> plainCases() {
+        List<Arguments> cases = new ArrayList<>();
+        for (String input : PLAIN_INPUTS) {
+            for (int keySize : new int[] { 128, 192, 256 }) {
+                for (String mode : new String[] { "ECB", "CBC" }) {
+                    cases.add(Arguments.of(input, keySize, mode));
+                }
+            }
+        }
+        return cases;
+    }
+
+    static List<Arguments> keyCases() {
+        List<Arguments> cases = new ArrayList<>();
+        for (int keySize : new int[] { 128, 192, 256 }) {
+            for (String mode : new String[] { "ECB", "CBC" }) {
+                cases.add(Arguments.of(keySize, mode));
+            }
+        }
+        return cases;
+    }
+
+    @ParameterizedTest(name = "{0} {1} {2}")
+    @MethodSource("plainCases")
+    void encryptMatchesNative(String input, int keySize, String mode) throws Exception {
+        Path encrypted = tempDir.resolve("encrypted.bmp");
+        assertTrue(JvmAesProcessor.process(writeInput(input, tempDir), encrypted, "encrypt", keySize, mode,
+                key(keySize), iv(mode)));
+        assertEquals(expected(input + ".encrypt." + keySize + "." + mode), sha256(encrypted));
+    }
+
+    @ParameterizedTest(name = "{0} {1} {2}")
+    @MethodSource("plainCases")
+    void decryptOfEncryptedMatchesNative(String input, int keySize, String mode) throws Exception {
+        Path source = writeInput(input, tempDir);
+        Path encrypted = tempDir.resolve("encrypted.bmp");
+        Path decrypted = tempDir.resolve("decrypted.bmp");
+        assertTrue(JvmAesProcessor.process(source, encrypted, "encrypt", keySize, mode, key(keySize), iv(mode)));
+        assertTrue(JvmAesProcessor.process(encrypted, decrypted, "decrypt", keySize, mode, key(keySize), iv(mode)));
+        assertEquals(expected(input + ".decrypt." + keySize + "." + mode), sha256(decrypted));
+
+        ByteBuffer in = header(source);
+        ByteBuffer out = header(decrypted);
+        for (int field : new int[] { 10, 18, 22, 28 }) {
+            assertEquals(in.getInt(field), out.getInt(field), "header field at offset " + field);
+        }
+        assertEquals(Files.size(decrypted) - 54, out.getInt(34) & 0xFFFFFFFFL, "size_image");
+        assertEquals(out.getInt(10) + out.getInt(34), out.getInt(2), "file_size");
+        String original = pixels(source, in);
+        String roundTrip = pixels(decrypted, out);
+        long pixelBytes = (long) Math.abs(in.getInt(22)) * in.getInt(18) * (in.getShort(28) / 8);
+        if ("ECB".equals(mode) && pixelBytes % 16 != 0) {
+            // ECB cipher text is cut to the original pixel size, so like the native program the last partial
+            // block decrypts to zeros; everything before it must survive.
+            int intact = (int) (pixelBytes / 16 * 16);
+            assertEquals(original.replace("\n", "").substring(0, intact * 2),
+                    roundTrip.replace("\n", "").substring(0, intact * 2), "pixel data before the last block");
+            return;
+        }
+        assertEquals(original, roundTrip, "pixel data after a round trip");
+    }
+
+    @ParameterizedTest(name = "test_encrypted {0} {1}")
+    @MethodSource("keyCases")
+    void decryptOfForeignCipherTextMatchesNative(int keySize, String mode) throws Exception {
+        Path input = NATIVE_APP.resolve("test_encrypted.bmp");
+        Path decrypted = tempDir.resolve("decrypted.bmp");
+        String expected = expected("test_encrypted.decrypt." + keySize + "." + mode);
+        if ("FAIL".equals(expected)) {
+            // The native program exits with an error here: the key does not match, so the CBC padding is invalid.
+            assertThrows(BadPaddingException.class, () -> JvmAesProcessor.process(input, decrypted, "decrypt",
+                    keySize, mode, key(keySize), iv(mode)));
+            return;
+        }
+        assertTrue(JvmAesProcessor.process(input, decrypted, "decrypt", keySize, mode, key(keySize), iv(mode)));
+        assertEquals(expected, sha256(decrypted));
+    }
+
+    static String key(int keySize) {
+        byte[] key = new byte[keySize / 8];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = (byte) i;
+        }
+        return HexFormat.of().formatHex(key);
+    }
+
+    static String iv(String mode) {
+        return "CBC".equals(mode) ? IV : null;
+    }
+
+    /** Writes the named input into {@code dir}: a fixture from native_app or a synthetic BMP. */
+    static Path writeInput(String name, Path dir) throws IOException {
+        Path path = dir.resolve(name + ".bmp");
+        switch (name) {
+            case "test" -> Files.copy(NATIVE_APP.resolve("test.bmp"), path);
+            // 13 px * 3 bytes leaves one byte of row padding; size_image is left 0 as many encoders do.
+            case "padded24" -> Files.write(path, syntheticBmp(13, 7, 24, false));
+            // Negative height marks a top-down bitmap.
+            case "topdown32" -> Files.write(path, syntheticBmp(5, -3, 32, true));
+            default -> throw new IllegalArgumentException(name);
+        }
+        return path;
+    }
+
+    static byte[] syntheticBmp(int width, int height, int bitCount, boolean withSizeImage) {
+        int rowBytes = width * bitCount / 8;
+        int stride = (rowBytes + 3) & ~3;
+        int sizeImage = stride * Math.abs(height);
+        ByteBuffer bmp = ByteBuffer.allocate(54 + sizeImage).order(ByteOrder.LITTLE_ENDIAN);
+        bmp.putShort((short) 0x4D42).putInt(54 + sizeImage).putInt(0).putInt(54);
+        bmp.putInt(40).putInt(width).putInt(height).putShort((short) 1).putShort((short) bitCount).putInt(0)
+                .putInt(withSizeImage ? sizeImage : 0).putInt(2835).putInt(2835).putInt(0).putInt(0);
+        for (int row = 0; row < Math.abs(height); row++) {
+            for (int i = 0; i < stride; i++) {
+                bmp.put(i < rowBytes ? (byte) (row * 31 + i * 7 + 1) : 0);
+            }
+        }
+        return bmp.array();
+    }
+
+    static String sha256(Path path) throws IOException, NoSuchAlgorithmException {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(path)));
+    }
+
+    private static String expected(String key) {
+        String digest = nativeDigests.getProperty(key);
+        assertTrue(digest != null, "no native digest recorded for " + key);
+        return digest;
+    }
+
+    private static ByteBuffer header(Path path) throws IOException {
+        byte[] header = new byte[54];
+        try (InputStream in = Files.newInputStream(path)) {
+            assertEquals(54, in.readNBytes(header, 0, 54));
+        }
+        return ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /** The pixel rows without their padding, for comparing bitmaps whose size_image fields differ. */
+    private static String pixels(Path path, ByteBuffer header) throws IOException {
+        byte[] file = Files.readAllBytes(path);
+        int rowBytes = header.getInt(18) * (header.getShort(28) / 8);
+        int stride = (rowBytes + 3) & ~3;
+        StringBuilder rows = new StringBuilder();
+        for (int row = 0; row < Math.abs(header.getInt(22)); row++) {
+            int offset = header.getInt(10) + row * stride;
+            rows.append(HexFormat.of().formatHex(file, offset, offset + rowBytes)).append('\n');
+        }
+        return rows.toString();
+    }
+}
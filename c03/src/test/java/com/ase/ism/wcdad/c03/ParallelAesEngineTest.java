@@ -0,0 +1,135 @@
+package com.ase.ism.wcdad.c03;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.crypto.BadPaddingException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Checks that the mmap/ForkJoin path writes the same files as
+ * {@link JvmAesProcessor}. The segment size is kept small and not a multiple
+ * of the row size, so every input spans many segments and the segment
+ * boundaries fall inside rows.
+ */
+class ParallelAesEngineTest {
+    private static final int SEGMENT_BYTES = 1000;
+    private static final String[] INPUTS = { "aligned24", "unaligned24", "bottomup32", "topdown32" };
+
+    private ParallelAesEngine engine;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void startEngine() {
+        engine = new ParallelAesEngine(4, SEGMENT_BYTES);
+    }
+
+    @AfterEach
+    void closeEngine() {
+        engine.close();
+    }
+
+    static List<Arguments> cases() {
+        List<Arguments> cases = new ArrayList<>();
+        for (String input : INPUTS) {
+            for (int keySize : new int[] { 128, 192, 256 }) {
+                for (String mode : new String[] { "ECB", "CBC" }) {
+                    cases.add(Arguments.of(input, keySize, mode));
+                }
+            }
+        }
+        return cases;
+    }
+
+    static List<Arguments> ecbCases() {
+        List<Arguments> cases = new ArrayList<>();
+        for (String input : INPUTS) {
+            for (int keySize : new int[] { 128, 192, 256 }) {
+                cases.add(Arguments.of(input, keySize));
+            }
+        }
+        return cases;
+    }
+
+    @ParameterizedTest(name = "{0} {1} {2}")
+    @MethodSource("cases")
+    void decryptMatchesJvmAesProcessor(String input, int keySize, String mode) throws Exception {
+        Path source = writeInput(input);
+        Path encrypted = tempDir.resolve("encrypted.bmp");
+        assertTrue(JvmAesProcessor.process(source, encrypted, "encrypt", keySize, mode,
+                JvmAesProcessorTest.key(keySize), JvmAesProcessorTest.iv(mode)));
+        assertTrue(Files.size(encrypted) - 54 > 4L * SEGMENT_BYTES, "input must span several segments");
+
+        Path expected = tempDir.resolve("expected.bmp");
+        Path actual = tempDir.resolve("actual.bmp");
+        assertTrue(JvmAesProcessor.process(encrypted, expected, "decrypt", keySize, mode,
+                JvmAesProcessorTest.key(keySize), JvmAesProcessorTest.iv(mode)));
+        assertTrue(engine.process(encrypted, actual, "decrypt", keySize, mode, JvmAesProcessorTest.key(keySize),
+                JvmAesProcessorTest.iv(mode)));
+        assertEquals(JvmAesProcessorTest.sha256(expected), JvmAesProcessorTest.sha256(actual));
+    }
+
+    @ParameterizedTest(name = "{0} {1}")
+    @MethodSource("ecbCases")
+    void ecbEncryptMatchesJvmAesProcessor(String input, int keySize) throws Exception {
+        Path source = writeInput(input);
+        Path expected = tempDir.resolve("expected.bmp");
+        Path actual = tempDir.resolve("actual.bmp");
+        assertTrue(JvmAesProcessor.process(source, expected, "encrypt", keySize, "ECB",
+                JvmAesProcessorTest.key(keySize), null));
+        assertTrue(engine.process(source, actual, "encrypt", keySize, "ECB", JvmAesProcessorTest.key(keySize),
+                null));
+        assertEquals(JvmAesProcessorTest.sha256(expected), JvmAesProcessorTest.sha256(actual));
+    }
+
+    @Test
+    void cbcDecryptWithWrongKeyFailsOnPadding() throws Exception {
+        Path encrypted = tempDir.resolve("encrypted.bmp");
+        assertTrue(JvmAesProcessor.process(writeInput("aligned24"), encrypted, "encrypt", 128, "CBC",
+                JvmAesProcessorTest.key(128), JvmAesProcessorTest.IV));
+        String wrongKey = JvmAesProcessorTest.key(128).replace('0', 'f');
+        assertThrows(BadPaddingException.class, () -> engine.process(encrypted, tempDir.resolve("actual.bmp"),
+                "decrypt", 128, "CBC", wrongKey, JvmAesProcessorTest.IV));
+    }
+
+    @Test
+    void declinesPaddedRowsAndCbcEncryption() throws Exception {
+        Path padded = JvmAesProcessorTest.writeInput("padded24", tempDir);
+        Path output = tempDir.resolve("actual.bmp");
+        assertFalse(engine.process(padded, output, "decrypt", 128, "ECB", JvmAesProcessorTest.key(128), null));
+        assertFalse(engine.process(writeInput("aligned24"), output, "encrypt", 128, "CBC",
+                JvmAesProcessorTest.key(128), JvmAesProcessorTest.IV));
+        assertFalse(Files.exists(output));
+    }
+
+    /** Bitmaps without row padding, which is all this engine accepts. */
+    private Path writeInput(String name) throws Exception {
+        Path path = tempDir.resolve(name + ".bmp");
+        switch (name) {
+            // 64 px * 3 bytes per row; the pixel data is a whole number of AES blocks.
+            case "aligned24" -> Files.write(path, JvmAesProcessorTest.syntheticBmp(64, 90, 24, true));
+            // 20 px * 3 bytes per row and 333 rows end in a partial AES block; size_image is left 0.
+            case "unaligned24" -> Files.write(path, JvmAesProcessorTest.syntheticBmp(20, 333, 24, false));
+            case "bottomup32" -> Files.write(path, JvmAesProcessorTest.syntheticBmp(37, 41, 32, true));
+            case "topdown32" -> Files.write(path, JvmAesProcessorTest.syntheticBmp(37, -41, 32, false));
+            default -> throw new IllegalArgumentException(name);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,152 @@
+package com.ase.ism.wcdad.c03;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.DeliverCallback;
+import com.rabbitmq.client.Delivery;
+import com.rabbitmq.client.Envelope;
+
+class ShardCoordinatorTest {
+    private static final int PREFETCH = 4;
+
+    @Test
+    void heldFirstChunksDoNotStarveTheShard() throws Exception {
+        FakeQueue queue = new FakeQueue();
+        int jobs = PREFETCH * 3;
+        for (int i = 0; i < jobs; i++) {
+            queue.publish("first:job-" + i);
+        }
+        for (int i = 0; i < jobs; i++) {
+            queue.publish("data:job-" + i);
+        }
+
+        List<String> dataReceived = new ArrayList<>();
+        ShardCoordinator[] coordinator = new ShardCoordinator[1];
+        coordinator[0] = new ShardCoordinator(queue.connection(), new ObjectMapper(), "test", 1, 60_000, PREFETCH,
+                (shard, channel, delivery) -> {
+                    String[] message = new String(delivery.getBody(), StandardCharsets.UTF_8).split(":");
+                    long tag = delivery.getEnvelope().getDeliveryTag();
+                    if ("first".equals(message[0])) {
+                        coordinator[0].hold(message[1], shard, channel, tag);
+                    } else {
+                        dataReceived.add(message[1]);
+                        channel.basicAck(tag, false);
+                    }
+                }, shard -> false);
+        coordinator[0].rebalance();
+        queue.pump();
+
+        assertEquals(jobs, dataReceived.size(), "data chunks must get past the held first chunks");
+        assertEquals(jobs, queue.unacked.size());
+        assertEquals(PREFETCH + jobs, queue.prefetch);
+        assertTrue(coordinator[0].isHolding("job-0"));
+
+        for (int i = 0; i < jobs; i++) {
+            coordinator[0].ackHeld("job-" + i);
+        }
+        assertTrue(queue.unacked.isEmpty());
+        assertEquals(PREFETCH, queue.prefetch);
+        assertFalse(coordinator[0].isHolding("job-0"));
+    }
+
+    @Test
+    void forgottenDeliveryGivesItsPrefetchBack() throws Exception {
+        FakeQueue queue = new FakeQueue();
+        queue.publish("first:job-a");
+        ShardCoordinator[] coordinator = new ShardCoordinator[1];
+        coordinator[0] = new ShardCoordinator(queue.connection(), new ObjectMapper(), "test", 1, 60_000, PREFETCH,
+                (shard, channel, delivery) -> coordinator[0].hold("job-a", shard, channel,
+                        delivery.getEnvelope().getDeliveryTag()), shard -> false);
+        coordinator[0].rebalance();
+        queue.pump();
+        assertEquals(PREFETCH + 1, queue.prefetch);
+
+        coordinator[0].forgetHeld("job-a", queue.channel, 1);
+        assertEquals(PREFETCH, queue.prefetch);
+        assertFalse(coordinator[0].isHolding("job-a"));
+        // Forgetting does not ack: the caller nacks the delivery itself.
+        assertEquals(Set.of(1L), queue.unacked);
+    }
+
+    /**
+     * One queue with one consumer, delivering while fewer messages are unacked
+     * than the channel's prefetch, like the broker does for a global basic.qos.
+     */
+    private static class FakeQueue {
+        final Deque<String> ready = new ArrayDeque<>();
+        final Set<Long> unacked = new LinkedHashSet<>();
+        int prefetch = 0;
+        long nextTag = 1;
+        DeliverCallback consumer;
+        boolean pumping = false;
+        Channel channel;
+
+        void publish(String body) {
+            ready.add(body);
+        }
+
+        Connection connection() {
+            channel = (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[] { Channel.class },
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "basicQos" -> {
+                                prefetch = (Integer) args[0];
+                                pump();
+                            }
+                            case "basicConsume" -> {
+                                consumer = (DeliverCallback) args[6];
+                                pump();
+                                return "consumer";
+                            }
+                            case "basicAck" -> {
+                                unacked.remove((Long) args[0]);
+                                pump();
+                            }
+                            case "isOpen" -> {
+                                return true;
+                            }
+                            default -> {
+                            }
+                        }
+                        return null;
+                    });
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    (proxy, method, args) -> "createChannel".equals(method.getName()) ? channel : null);
+        }
+
+        void pump() throws Exception {
+            if (pumping || consumer == null) {
+                return;
+            }
+            pumping = true;
+            try {
+                while (!ready.isEmpty() && unacked.size() < prefetch) {
+                    long tag = nextTag++;
+                    unacked.add(tag);
+                    consumer.handle("consumer", new Delivery(new Envelope(tag, false, "", ""),
+                            new AMQP.BasicProperties(), ready.poll().getBytes(StandardCharsets.UTF_8)));
+                }
+            } finally {
+                pumping = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.ase.ism.wcdad.c03;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class SlotSchedulerTest {
+    private static final long MB = 1024 * 1024;
+    private static final long BYTES_PER_RANK = 8 * MB;
+    private static final double SLOT_MILLIS_PER_MB = 10;
+
+    private static SlotScheduler scheduler(int headSlots, int otherSlots) {
+        Map<String, Integer> slotsByHost = new LinkedHashMap<>();
+        slotsByHost.put("head", headSlots);
+        slotsByHost.put("other", otherSlots);
+        return new SlotScheduler(slotsByHost, 0, 60_000);
+    }
+
+    @Test
+    void headNodeJobReservesEveryHeadSlot() throws Exception {
+        try (SlotScheduler scheduler = scheduler(2, 2)) {
+            CountDownLatch releaseSmallJob = new CountDownLatch(1);
+            CountDownLatch headJobStarted = new CountDownLatch(1);
+            AtomicReference<Map<String, Integer>> headJobSlots = new AtomicReference<>();
+
+            scheduler.submit("small", 1, 1, 1, allocation -> await(releaseSmallJob));
+            scheduler.submit("head-only", 2, 2, 2, allocation -> {
+                headJobSlots.set(allocation.getSlotsByHost());
+                headJobStarted.countDown();
+            });
+
+            // The small job holds a head slot, so the head-only job cannot start even though two slots are free.
+            assertFalse(headJobStarted.await(200, TimeUnit.MILLISECONDS));
+            releaseSmallJob.countDown();
+            assertTrue(headJobStarted.await(5, TimeUnit.SECONDS));
+            assertEquals(Map.of("head", 2), headJobSlots.get());
+        }
+    }
+
+    @Test
+    void otherRanksFillTheOtherNodesFirst() throws Exception {
+        try (SlotScheduler scheduler = scheduler(2, 2)) {
+            CountDownLatch started = new CountDownLatch(1);
+            AtomicReference<Map<String, Integer>> slots = new AtomicReference<>();
+            scheduler.submit("ecb", 1, 3, 1, allocation -> {
+                slots.set(allocation.getSlotsByHost());
+                started.countDown();
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertEquals(Map.of("head", 1, "other", 2), slots.get());
+        }
+    }
+
+    @Test
+    void releasedSlotsGoToTheNextJobWhileTheTaskFinishes() throws Exception {
+        try (SlotScheduler scheduler = scheduler(1, 1)) {
+            CountDownLatch finishUpload = new CountDownLatch(1);
+            CountDownLatch uploadDone = new CountDownLatch(1);
+            CountDownLatch nextJobStarted = new CountDownLatch(1);
+            scheduler.submit("first", 1, 2, 1, allocation -> {
+                allocation.release();
+                await(finishUpload);
+                uploadDone.countDown();
+            });
+            scheduler.submit("next", 1, 2, 1, allocation -> nextJobStarted.countDown());
+
+            assertTrue(nextJobStarted.await(5, TimeUnit.SECONDS));
+            finishUpload.countDown();
+            assertTrue(uploadDone.await(5, TimeUnit.SECONDS));
+            // The release when the first task returns must not hand its slots back a second time.
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while ((Long) scheduler.snapshot().get("completedJobs") < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(100);
+            assertEquals(2L, scheduler.snapshot().get("completedJobs"));
+            assertEquals(0, scheduler.snapshot().get("busySlots"));
+        }
+    }
+
+    /**
+     * Replays one mixed workload against the old fixed pool of 4 threads and
+     * against the scheduler, on 2 + 2 slots. Four in five jobs are 2 MB
+     * (1 rank), the rest 32 MB (4 ranks, as mpiRanksFor sizes them). Running
+     * jobs share the slots: when more ranks run than there are slots, every
+     * job slows down proportionally and the slots only deliver
+     * {@code efficiency} of their work, for the context switches and
+     * busy-polling of oversubscribed ranks. Only the invariants are asserted;
+     * the percentiles are printed for comparison. The scheduler only breaks
+     * even with the fixed pool once oversubscription loses about 20%, and
+     * wins only beyond that; with no loss, the small jobs it queues behind a
+     * 4-rank job make it slower. Tagged as a benchmark because it sleeps
+     * through the workload three times.
+     */
+    @Tag("benchmark")
+    @ParameterizedTest(name = "oversubscription efficiency {0}")
+    @ValueSource(doubles = { 1.0, 0.8, 0.5 })
+    void mixedWorkloadCompletionTimeAgainstFixedPool(double efficiency) throws Exception {
+        List<long[]> workload = mixedWorkload(new Random(25), 80, 30);
+
+        SharedSlots fifoSlots = new SharedSlots(4, efficiency);
+        ExecutorService fifo = Executors.newFixedThreadPool(4);
+        List<Long> fifoTimes;
+        try {
+            fifoTimes = replay(workload, (job, done) -> fifo.submit(() -> {
+                fifoSlots.run(ranksFor(job[1]), job[1]);
+                done.run();
+            }));
+        } finally {
+            fifo.shutdownNow();
+        }
+
+        SharedSlots scheduledSlots = new SharedSlots(4, efficiency);
+        List<Long> scheduledTimes;
+        try (SlotScheduler scheduler = scheduler(2, 2)) {
+            scheduledTimes = replay(workload, (job, done) -> scheduler.submit("job-" + job[0], job[1] * MB,
+                    ranksFor(job[1]), 1, allocation -> {
+                        scheduledSlots.run(allocation.ranks(), job[1]);
+                        done.run();
+                    }));
+        }
+
+        System.out.println(" [i] Oversubscription efficiency " + efficiency + ":");
+        System.out.println(" [i] Fixed pool of 4: p50 " + percentile(fifoTimes, 50) + "ms, p99 "
+                + percentile(fifoTimes, 99) + "ms, peak " + fifoSlots.peakRanks + " ranks on 4 slots");
+        System.out.println(" [i] SlotScheduler:   p50 " + percentile(scheduledTimes, 50) + "ms, p99 "
+                + percentile(scheduledTimes, 99) + "ms, peak " + scheduledSlots.peakRanks + " ranks on 4 slots");
+        assertEquals(workload.size(), scheduledTimes.size());
+        assertTrue(scheduledSlots.peakRanks <= 4, "the scheduler oversubscribed the slots");
+    }
+
+    /** Jobs as {id, size in MB, arrival in ms}, arriving with exponential gaps. */
+    private static List<long[]> mixedWorkload(Random random, int jobs, double meanGapMillis) {
+        List<long[]> workload = new ArrayList<>();
+        double arrival = 0;
+        for (int i = 0; i < jobs; i++) {
+            workload.add(new long[] { i, random.nextInt(5) == 0 ? 32 : 2, Math.round(arrival) });
+            arrival += -Math.log(1 - random.nextDouble()) * meanGapMillis;
+        }
+        return workload;
+    }
+
+    private static int ranksFor(long sizeMb) {
+        return (int) Math.min(4, (sizeMb * MB + BYTES_PER_RANK - 1) / BYTES_PER_RANK);
+    }
+
+    /** Submits each job at its arrival time and returns the completion times in ms. */
+    private static List<Long> replay(List<long[]> workload, BiConsumer<long[], Runnable> submit)
+            throws InterruptedException {
+        List<Long> completionTimes = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch finished = new CountDownLatch(workload.size());
+        long start = System.nanoTime();
+        for (long[] job : workload) {
+            long delay = start + TimeUnit.MILLISECONDS.toNanos(job[2]) - System.nanoTime();
+            if (delay > 0) {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            }
+            long submitted = System.nanoTime();
+            submit.accept(job, () -> {
+                completionTimes.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submitted));
+                finished.countDown();
+            });
+        }
+        assertTrue(finished.await(60, TimeUnit.SECONDS));
+        return completionTimes;
+    }
+
+    private static long percentile(List<Long> values, int percentile) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(Math.max(0, (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1));
+    }
+
+    /** Slots shared by every running job; each rank gets at most one slot's worth of progress. */
+    private static class SharedSlots {
+        private final int slots;
+        private final double efficiency;
+        private int runningRanks = 0;
+        private int peakRanks = 0;
+
+        SharedSlots(int slots, double efficiency) {
+            this.slots = slots;
+            this.efficiency = efficiency;
+        }
+
+        void run(int ranks, long sizeMb) {
+            synchronized (this) {
+                runningRanks += ranks;
+                peakRanks = Math.max(peakRanks, runningRanks);
+            }
+            double remaining = sizeMb * SLOT_MILLIS_PER_MB;
+            long last = System.nanoTime();
+            try {
+                while (remaining > 0) {
+                    TimeUnit.MILLISECONDS.sleep(1);
+                    long now = System.nanoTime();
+                    double share;
+                    synchronized (this) {
+                        share = runningRanks <= slots ? 1.0 : efficiency * slots / runningRanks;
+                    }
+                    remaining -= ranks * share * (now - last) / 1e6;
+                    last = now;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                synchronized (this) {
+                    runningRanks -= ranks;
+                }
+            }
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -89,6 +89,85 @@ router.get("/:jobId", async (req, res) => {
   }
 });
 
+async function applyJobUpdate(jobId, { status, pictureId, errorMessage }) {
+  let query = "UPDATE jobs SET finished_at = NOW()";
+  const queryParams = [];
+
+  if (status) {
+    query += ", status = ?";
+    queryParams.push(status);
+  }
+  if (pictureId) {
+    query += ", picture_id = ?";
+    queryParams.push(pictureId);
+  }
+  if (errorMessage) {
+    query += ", error_message = ?";
+    queryParams.push(errorMessage);
+  }
+
+  if (queryParams.length === 0) {
+    return null;
+  }
+
+  query += " WHERE id = ?";
+  queryParams.push(jobId);
+
+  const [result] = await pool.query(query, queryParams);
+  return result.affectedRows;
+}
+
+// Applies several status updates in one request. Each entry has the same
+// fields as PUT /:jobId plus jobId; results report per-job success.
+router.post("/status-batch", async (req, res) => {
+  const { updates } = req.body;
+  if (!Array.isArray(updates) || updates.length === 0) {
+    return res
+      .status(400)
+      .json({ message: "Body must contain a non-empty updates array." });
+  }
+
+  try {
+    const results = [];
+    for (const update of updates) {
+      const {
+        jobId,
+        status,
+        pictureId,
+        error_message: errorMessage,
+      } = update || {};
+      if (!jobId) {
+        results.push({ jobId: null, updated: false, message: "Missing jobId" });
+        continue;
+      }
+      const affectedRows = await applyJobUpdate(jobId, {
+        status,
+        pictureId,
+        errorMessage,
+      });
+      results.push({
+        jobId,
+        updated: affectedRows > 0,
+        message:
+          affectedRows === null
+            ? "No update fields provided"
+            : affectedRows > 0
+            ? "Updated"
+            : "Job not found or no changes made",
+      });
+    }
+    console.log(
+      `[C05 POST /api/jobs/status-batch] Applied ${results.length} status update(s).`
+    );
+    res.status(200).json({ results });
+  } catch (error) {
+    console.error("Error applying job status batch:", error);
+    res
+      .status(500)
+      .json({ message: "Failed to apply job updates", error: error.message });
+  }
+});
+
 router.put("/:jobId", async (req, res) => {
   try {
     const { jobId } = req.params;
@@ -99,34 +178,19 @@ router.put("/:jobId", async (req, res) => {
       `[C05 PUT /api/jobs/${jobId}] Destructured: status=${status}, pictureId=${pictureId}, errorMessage=${errorMessage}`
     );
 
-    let query = "UPDATE jobs SET finished_at = NOW()";
-    const queryParams = [];
-
-    if (status) {
-      query += ", status = ?";
-      queryParams.push(status);
-    }
-    if (pictureId) {
-      query += ", picture_id = ?";
-      queryParams.push(pictureId);
-    }
-    if (errorMessage) {
-      query += ", error_message = ?";
-      queryParams.push(errorMessage);
-    }
+    const affectedRows = await applyJobUpdate(jobId, {
+      status,
+      pictureId,
+      errorMessage,
+    });
 
-    if (queryParams.length === 0) {
+    if (affectedRows === null) {
       return res.status(400).json({
         message: "No update fields provided (status, pictureId, errorMessage).",
       });
     }
 
-    query += " WHERE id = ?";
-    queryParams.push(jobId);
-
-    const [result] = await pool.query(query, queryParams);
-
-    if (result.affectedRows > 0) {
+    if (affectedRows > 0) {
       const [rows] = await pool.query("SELECT * FROM jobs WHERE id = ?", [
         jobId,
       ]);
@@ -4,6 +4,7 @@ import multer from "multer";
 import path from "path";
 import fs from "fs";
 import fsp from "fs/promises";
+import { pipeline } from "stream/promises";
 
 const r = Router();
 
@@ -136,6 +137,116 @@ const storage = multer.diskStorage({
 });
 const upload = multer({ storage: storage });
 
+async function savePictureAndCompleteJob(jobId, sqlFilePath, bmpMetadata) {
+  let insertQuery, insertParams;
+
+  if (bmpMetadata) {
+    console.log(`Storing BMP metadata for jobId ${jobId}:`, bmpMetadata);
+    insertQuery =
+      "INSERT INTO pictures (blob_data, bmp_metadata, created_at) VALUES (LOAD_FILE(?), ?, NOW())";
+    insertParams = [sqlFilePath, JSON.stringify(bmpMetadata)];
+  } else {
+    insertQuery =
+      "INSERT INTO pictures (blob_data, created_at) VALUES (LOAD_FILE(?), NOW())";
+    insertParams = [sqlFilePath];
+  }
+
+  const [pictureResult] = await db.query(insertQuery, insertParams);
+  const pictureId = pictureResult.insertId;
+
+  if (!pictureId) {
+    console.error(
+      `LOAD_FILE() for ${sqlFilePath} (jobId: ${jobId}) did not return a valid pictureId. MySQL warnings might provide more details.`
+    );
+
+    throw new Error(
+      `Failed to insert picture using LOAD_FILE for jobId: ${jobId}. pictureId is invalid.`
+    );
+  }
+
+  const [jobUpdateResult] = await db.query(
+    "UPDATE jobs SET status = ?, picture_id = ?, finished_at = NOW() WHERE id = ?",
+    ["DONE", pictureId, jobId]
+  );
+
+  if (jobUpdateResult.affectedRows === 0) {
+    console.error(
+      `Failed to update job status for jobId: ${jobId}. Job not found or no change made.`
+    );
+  }
+
+  return pictureId;
+}
+
+r.get("/upload-capabilities", (req, res) => {
+  res.status(200).json({ streamingUpload: true, chunkedUpload: true });
+});
+
+// Single-request upload of a processed file as a raw octet-stream body.
+// BMP metadata, when present, travels Base64-encoded in X-Bmp-Metadata.
+r.post("/stream-upload/:jobId", async (req, res) => {
+  const { jobId } = req.params;
+  let bmpMetadata = null;
+  const bmpMetadataHeader = req.get("X-Bmp-Metadata");
+  if (bmpMetadataHeader) {
+    try {
+      bmpMetadata = JSON.parse(
+        Buffer.from(bmpMetadataHeader, "base64").toString("utf8")
+      );
+    } catch (error) {
+      return res
+        .status(400)
+        .json({ error: "X-Bmp-Metadata is not Base64-encoded JSON." });
+    }
+  }
+
+  const tempSqlFileName = `${jobId}_final_for_mysql.bin`;
+  const tempSqlFilePathNode = path.join(SHARED_DIR_C05_NODE, tempSqlFileName);
+  const tempSqlFilePathMySql = path.join(
+    SHARED_DIR_MYSQL_SERVER,
+    tempSqlFileName
+  );
+
+  try {
+    await pipeline(req, fs.createWriteStream(tempSqlFilePathNode));
+    const { size } = await fsp.stat(tempSqlFilePathNode);
+    console.log(
+      `Streamed processed file for jobId ${jobId} to ${tempSqlFilePathNode} (${size} bytes).`
+    );
+
+    const pictureId = await savePictureAndCompleteJob(
+      jobId,
+      tempSqlFilePathMySql,
+      bmpMetadata
+    );
+
+    console.log(
+      `File for jobId: ${jobId} (Picture ID: ${pictureId}) streamed and saved to DB via LOAD_FILE.`
+    );
+    res.status(201).json({
+      message: "File streamed and saved to database successfully.",
+      pictureId: pictureId,
+    });
+  } catch (error) {
+    console.error(`Error storing streamed upload for jobId ${jobId}:`, error);
+    res.status(500).json({
+      error: "Failed to store streamed upload.",
+      details: error.message,
+    });
+  } finally {
+    try {
+      await fsp.unlink(tempSqlFilePathNode);
+    } catch (unlinkError) {
+      if (unlinkError.code !== "ENOENT") {
+        console.error(
+          `Error cleaning up temporary MySQL LOAD_FILE file ${tempSqlFilePathNode}:`,
+          unlinkError
+        );
+      }
+    }
+  }
+});
+
 r.post("/initiate-chunked-upload", async (req, res) => {
   const { jobId, originalFileName, operationType, totalChunks, fileSize } =
     req.body;
@@ -340,43 +451,12 @@ r.post("/finalize-chunked-upload", async (req, res) => {
       `Temporarily wrote assembled file for jobId ${jobId} to ${tempSqlFilePathNode} for MySQL LOAD_FILE.`
     );
 
-    let insertQuery, insertParams;
-
-    if (bmpMetadata) {
-      console.log(`Storing BMP metadata for jobId ${jobId}:`, bmpMetadata);
-      insertQuery =
-        "INSERT INTO pictures (blob_data, bmp_metadata, created_at) VALUES (LOAD_FILE(?), ?, NOW())";
-      insertParams = [tempSqlFilePathMySql, JSON.stringify(bmpMetadata)];
-    } else {
-      insertQuery =
-        "INSERT INTO pictures (blob_data, created_at) VALUES (LOAD_FILE(?), NOW())";
-      insertParams = [tempSqlFilePathMySql];
-    }
-
-    const [pictureResult] = await db.query(insertQuery, insertParams);
-    const pictureId = pictureResult.insertId;
-
-    if (!pictureId) {
-      console.error(
-        `LOAD_FILE() for ${tempSqlFilePathMySql} (jobId: ${jobId}) did not return a valid pictureId. MySQL warnings might provide more details.`
-      );
-
-      throw new Error(
-        `Failed to insert picture using LOAD_FILE for jobId: ${jobId}. pictureId is invalid.`
-      );
-    }
-
-    const [jobUpdateResult] = await db.query(
-      "UPDATE jobs SET status = ?, picture_id = ?, finished_at = NOW() WHERE id = ?",
-      ["DONE", pictureId, jobId]
+    const pictureId = await savePictureAndCompleteJob(
+      jobId,
+      tempSqlFilePathMySql,
+      bmpMetadata
     );
 
-    if (jobUpdateResult.affectedRows === 0) {
-      console.error(
-        `Failed to update job status for jobId: ${jobId}. Job not found or no change made.`
-      );
-    }
-
     try {
       await fsp.unlink(tempSqlFilePathNode);
       console.log(
@@ -0,0 +1,141 @@
+package com.ase.ism.wcdad.common;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.AMQP;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Wire format for image chunks published on image_processing_exchange.
+ *
+ * Binary frames (content type {@value #CONTENT_TYPE_BINARY}) carry a fixed
+ * {@value #HEADER_SIZE}-byte big-endian header followed by the raw payload:
+ *
+ * <pre>
+ *  0  u16  magic 'WC'
+ *  2  u8   format version
+ *  3  u8   flags (bit 0 = first chunk)
+ *  4  u64  jobId most significant bits
+ * 12  u64  jobId least significant bits
+ * 20  i32  chunkId
+ * 24  i32  totalChunks
+ * 28  i32  payload length
+ * </pre>
+ *
+ * Job metadata travels as the {@value #HEADER_JOB_METADATA} AMQP header on the
+ * first chunk. Messages with any other content type are decoded as the legacy
+ * JSON + Base64 {@link ChunkMessage}.
+ */
+public final class ChunkCodec {
+    public static final String CONTENT_TYPE_BINARY = "application/x-wcdad-chunk";
+    public static final String CONTENT_TYPE_JSON = "application/json";
+    public static final String HEADER_FORMAT_VERSION = "x-chunk-format-version";
+    public static final String HEADER_JOB_METADATA = "x-job-metadata";
+
+    public static final int FORMAT_VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int FLAG_FIRST_CHUNK = 0x01;
+
+    private static final short MAGIC = 0x5743;
+    private static final int PERSISTENT_DELIVERY_MODE = 2;
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ChunkCodec() {
+    }
+
+    public static byte[] encodeBinary(String jobId, int chunkId, int totalChunks, boolean firstChunk, byte[] data,
+            int offset, int length) {
+        UUID jobUuid = UUID.fromString(jobId);
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + length);
+        frame.putShort(MAGIC);
+        frame.put((byte) FORMAT_VERSION);
+        frame.put((byte) (firstChunk ? FLAG_FIRST_CHUNK : 0));
+        frame.putLong(jobUuid.getMostSignificantBits());
+        frame.putLong(jobUuid.getLeastSignificantBits());
+        frame.putInt(chunkId);
+        frame.putInt(totalChunks);
+        frame.putInt(length);
+        if (length > 0) {
+            frame.put(data, offset, length);
+        }
+        return frame.array();
+    }
+
+    public static byte[] encodeBinary(ChunkMessage chunk) {
+        byte[] data = chunk.chunkData != null ? chunk.chunkData : new byte[0];
+        return encodeBinary(chunk.jobId, chunk.chunkId, chunk.totalChunks, chunk.firstChunk, data, 0, data.length);
+    }
+
+    public static AMQP.BasicProperties binaryProperties(String metadataJson) {
+        Map<String, Object> headers = new HashMap<>();
+        headers.put(HEADER_FORMAT_VERSION, FORMAT_VERSION);
+        if (metadataJson != null) {
+            headers.put(HEADER_JOB_METADATA, metadataJson);
+        }
+        return new AMQP.BasicProperties.Builder()
+                .contentType(CONTENT_TYPE_BINARY)
+                .deliveryMode(PERSISTENT_DELIVERY_MODE)
+                .headers(headers)
+                .build();
+    }
+
+    public static byte[] encodeJson(ChunkMessage chunk) throws IOException {
+        return objectMapper.writeValueAsBytes(chunk);
+    }
+
+    public static AMQP.BasicProperties jsonProperties() {
+        return new AMQP.BasicProperties.Builder()
+                .contentType(CONTENT_TYPE_JSON)
+                .deliveryMode(PERSISTENT_DELIVERY_MODE)
+                .build();
+    }
+
+    public static boolean isBinary(AMQP.BasicProperties properties) {
+        return properties != null && CONTENT_TYPE_BINARY.equals(properties.getContentType());
+    }
+
+    public static ChunkMessage decode(AMQP.BasicProperties properties, byte[] body) throws IOException {
+        if (isBinary(properties)) {
+            return decodeBinary(properties, body);
+        }
+        return objectMapper.readValue(body, ChunkMessage.class);
+    }
+
+    private static ChunkMessage decodeBinary(AMQP.BasicProperties properties, byte[] body) throws IOException {
+        if (body == null || body.length < HEADER_SIZE) {
+            throw new IOException("Binary chunk frame too short: " + (body == null ? 0 : body.length) + " bytes");
+        }
+        ByteBuffer frame = ByteBuffer.wrap(body);
+        short magic = frame.getShort();
+        if (magic != MAGIC) {
+            throw new IOException("Binary chunk frame has bad magic: 0x" + Integer.toHexString(magic & 0xFFFF));
+        }
+        int version = frame.get() & 0xFF;
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported binary chunk format version: " + version);
+        }
+        int flags = frame.get() & 0xFF;
+
+        ChunkMessage chunk = new ChunkMessage();
+        chunk.jobId = new UUID(frame.getLong(), frame.getLong()).toString();
+        chunk.chunkId = frame.getInt();
+        chunk.totalChunks = frame.getInt();
+        int length = frame.getInt();
+        if (length < 0 || length != frame.remaining()) {
+            throw new IOException("Binary chunk frame for job " + chunk.jobId + " declares " + length
+                    + " payload bytes but carries " + frame.remaining());
+        }
+        chunk.firstChunk = (flags & FLAG_FIRST_CHUNK) != 0;
+        chunk.chunkData = new byte[length];
+        frame.get(chunk.chunkData);
+
+        Map<String, Object> headers = properties.getHeaders();
+        Object metadata = headers != null ? headers.get(HEADER_JOB_METADATA) : null;
+        chunk.metadataJson = metadata != null ? metadata.toString() : null;
+        return chunk;
+    }
+}
@@ -0,0 +1,30 @@
+package com.ase.ism.wcdad.common;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class ChunkMessage {
+    public String jobId;
+    public int chunkId;
+    public int totalChunks;
+    public boolean firstChunk;
+    public String metadataJson;
+    @JsonProperty("chunkDataB64")
+    public byte[] chunkData;
+
+    public ChunkMessage() {
+    }
+
+    public ChunkMessage(String jobId, int chunkId, int totalChunks, boolean firstChunk, String metadataJson,
+            byte[] chunkData) {
+        this.jobId = jobId;
+        this.chunkId = chunkId;
+        this.totalChunks = totalChunks;
+        this.firstChunk = firstChunk;
+        this.metadataJson = metadataJson;
+        this.chunkData = chunkData;
+    }
+
+    public boolean hasData() {
+        return chunkData != null && chunkData.length > 0;
+    }
+}
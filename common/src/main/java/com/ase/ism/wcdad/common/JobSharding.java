@@ -0,0 +1,101 @@
+package com.ase.ism.wcdad.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Job-affine routing of chunks on image_processing_exchange.
+ *
+ * Every chunk of a job is published with routing key
+ * {@value #ROUTING_KEY_PREFIX}&lt;shard&gt; and lands in queue
+ * {@value #QUEUE_PREFIX}&lt;shard&gt;, so a single C03 instance sees the whole
+ * job. The shard is a jump consistent hash of the jobId. C03 instances spread
+ * shards among themselves by rendezvous hashing of their instance ids, so only
+ * the shards of a joining or leaving instance move.
+ */
+public final class JobSharding {
+    public static final String EXCHANGE_NAME = "image_processing_exchange";
+    public static final String ROUTING_KEY_PREFIX = "image.job.";
+    public static final String QUEUE_PREFIX = "image_processing_queue.";
+    public static final String SHARD_COUNT_ENV = "JOB_SHARD_COUNT";
+    public static final int DEFAULT_SHARD_COUNT = 8;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private JobSharding() {
+    }
+
+    public static int shardCount() {
+        try {
+            return Math.max(1, Integer.parseInt(
+                    System.getenv().getOrDefault(SHARD_COUNT_ENV, String.valueOf(DEFAULT_SHARD_COUNT))));
+        } catch (NumberFormatException e) {
+            return DEFAULT_SHARD_COUNT;
+        }
+    }
+
+    public static int shardFor(String jobId, int shardCount) {
+        return jumpConsistentHash(hash64(jobId), shardCount);
+    }
+
+    public static String routingKey(int shard) {
+        return ROUTING_KEY_PREFIX + shard;
+    }
+
+    public static String queueName(int shard) {
+        return QUEUE_PREFIX + shard;
+    }
+
+    public static List<String> queueNames(int shardCount) {
+        List<String> names = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            names.add(queueName(shard));
+        }
+        return names;
+    }
+
+    /**
+     * Picks the owner of {@code shard} among {@code memberIds} with the highest
+     * rendezvous weight. Returns null when there are no members.
+     */
+    public static String ownerOf(int shard, List<String> memberIds) {
+        String owner = null;
+        long bestWeight = 0;
+        for (String memberId : memberIds) {
+            long weight = mix(hash64(memberId) ^ (shard * 0x9e3779b97f4a7c15L));
+            if (owner == null || Long.compareUnsigned(weight, bestWeight) > 0) {
+                owner = memberId;
+                bestWeight = weight;
+            }
+        }
+        return owner;
+    }
+
+    static int jumpConsistentHash(long key, int buckets) {
+        long b = -1;
+        long j = 0;
+        while (j < buckets) {
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+
+    static long hash64(String value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
@@ -0,0 +1,58 @@
+package com.ase.ism.wcdad.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LatencyHistogram {
+    private static final long[] BUCKET_UPPER_BOUNDS_MS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000,
+            10000, 30000 };
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_UPPER_BOUNDS_MS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Long::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        long millis = micros / 1000;
+        int bucket = BUCKET_UPPER_BOUNDS_MS.length;
+        for (int i = 0; i < BUCKET_UPPER_BOUNDS_MS.length; i++) {
+            if (millis <= BUCKET_UPPER_BOUNDS_MS[i]) {
+                bucket = i;
+                break;
+            }
+        }
+        buckets[bucket].increment();
+        count.increment();
+        sumMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        long total = count.sum();
+        snapshot.put("count", total);
+        snapshot.put("meanMs", total == 0 ? 0.0 : sumMicros.sum() / 1000.0 / total);
+        snapshot.put("maxMs", maxMicros.get() / 1000.0);
+        Map<String, Long> bucketCounts = new LinkedHashMap<>();
+        for (int i = 0; i < BUCKET_UPPER_BOUNDS_MS.length; i++) {
+            bucketCounts.put("le_" + BUCKET_UPPER_BOUNDS_MS[i] + "ms", buckets[i].sum());
+        }
+        bucketCounts.put("gt_" + BUCKET_UPPER_BOUNDS_MS[BUCKET_UPPER_BOUNDS_MS.length - 1] + "ms",
+                buckets[BUCKET_UPPER_BOUNDS_MS.length].sum());
+        snapshot.put("buckets", bucketCounts);
+        return snapshot;
+    }
+}